@@ -0,0 +1,320 @@
+package frc492;
+
+import java.io.IOException;
+
+import hallib.HalMotorController;
+import simlib.SimDriveBase;
+import simlib.SimGyro;
+import simlib.SimMotorController;
+import simlib.SimReplay;
+import simlib.SimReplayGyro;
+import simlib.SimReplayMotorController;
+import simlib.SimRobotBase;
+import trclib.TrcRobot;
+import trclib.TrcSensor.DoubleData;
+import trclib.TrcSensor.SensorData;
+import trclib.TrcTelemetry;
+
+/**
+ * This class replays a telemetry log of the AutoLowBar autonomous period
+ * through the robot code and checks that the drive motor powers match the
+ * recording. The DriveBase subsystem is created over replay stand-ins that
+ * feed back the recorded encoder positions and gyro readings, so the log can
+ * come from the robot or from the record mode of this class.
+ *
+ * The record mode runs AutoLowBar on simulated devices that record the same
+ * channels as the robot: "FrcCANTalon<CAN ID>.position" and ".power" for the
+ * drive motors and the pickup, and "gyro.zHeading" and "gyro.zRotationRate".
+ * Telemetry channel names are global, so record and replay run in separate
+ * JVMs. The replay exits with status 1 if any output diverged.
+ *
+ * Run it off-robot with:
+ *     java frc492.AutoLowBarReplay record <logFile>
+ *     java frc492.AutoLowBarReplay <logFile>
+ */
+public class AutoLowBarReplay extends SimRobotBase
+{
+    private static final double AUTO_PERIOD = 15.0;
+    private static final double MOTOR_TIME_CONSTANT = 0.1;
+
+    private final SimReplay replay;
+    private SimDriveBase simDriveBase = null;
+    private DriveTrain driveTrain;
+    private HalMotorController pickup;
+
+    /**
+     * Constructor: Creates an instance of the object.
+     *
+     * @param replay specifies the replay, null to record on simulated devices.
+     */
+    public AutoLowBarReplay(SimReplay replay)
+    {
+        super("AutoLowBarReplay");
+        this.replay = replay;
+    }   //AutoLowBarReplay
+
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length == 2 && args[0].equals("record"))
+        {
+            record(args[1]);
+        }
+        else if (args.length == 1)
+        {
+            replay(args[0]);
+        }
+        else
+        {
+            throw new IllegalArgumentException("Usage: AutoLowBarReplay [record] <logFile>");
+        }
+    }   //main
+
+    /**
+     * This method runs the autonomous period on simulated devices and records
+     * it to the given log file.
+     *
+     * @param fileName specifies the log file path.
+     * @throws IOException if the log file cannot be created.
+     */
+    private static void record(String fileName) throws IOException
+    {
+        AutoLowBarReplay robot = new AutoLowBarReplay(null);
+        TrcTelemetry telemetry = TrcTelemetry.getInstance();
+
+        if (!telemetry.start(fileName))
+        {
+            throw new IOException("Failed to create " + fileName + ".");
+        }
+        robot.runMode(TrcRobot.RunMode.AUTO_MODE, AUTO_PERIOD);
+        telemetry.stop();
+
+        System.out.printf(
+                "Recorded %.1f sec of AutoLowBar to %s (%d samples dropped)\n",
+                AUTO_PERIOD, fileName, telemetry.getDroppedCount());
+        System.out.printf(
+                "End pose: x=%.1f, y=%.1f, heading=%.1f\n",
+                robot.simDriveBase.getFieldX(), robot.simDriveBase.getFieldY(),
+                robot.simDriveBase.getFieldHeading());
+    }   //record
+
+    /**
+     * This method replays the given log file through AutoLowBar and prints
+     * the comparison report.
+     *
+     * @param fileName specifies the log file path.
+     * @throws IOException if the log file cannot be read.
+     */
+    private static void replay(String fileName) throws IOException
+    {
+        SimReplay replay = new SimReplay(fileName);
+        AutoLowBarReplay robot = new AutoLowBarReplay(replay);
+        int numFrames = replay.getLog().getNumFrames();
+        double recordedTime =
+                (replay.getLog().getFrameTimeNanos(numFrames - 1) -
+                 replay.getLog().getFrameTimeNanos(0))/1000000000.0;
+
+        long startNanos = System.nanoTime();
+        robot.runReplay(TrcRobot.RunMode.AUTO_MODE, replay);
+        double wallTime = (System.nanoTime() - startNanos)/1000000000.0;
+
+        System.out.print(replay.getReport());
+        System.out.printf(
+                "Replayed %.1f sec in %.1f msec (%.0fx real time)\n",
+                recordedTime, wallTime*1000.0, recordedTime/wallTime);
+        System.out.println(replay.hasDiverged()? "DIVERGED": "MATCHED");
+        if (replay.hasDiverged())
+        {
+            System.exit(1);
+        }
+    }   //replay
+
+    //
+    // Implements SimRobotBase.
+    //
+
+    @Override
+    public void initRobot()
+    {
+        HalMotorController leftFrontMotor;
+        HalMotorController leftRearMotor;
+        HalMotorController rightFrontMotor;
+        HalMotorController rightRearMotor;
+
+        if (replay != null)
+        {
+            leftFrontMotor = new SimReplayMotorController(
+                    replay, "FrcCANTalon" + RobotInfo.CANID_LEFTFRONTMOTOR);
+            leftRearMotor = new SimReplayMotorController(
+                    replay, "FrcCANTalon" + RobotInfo.CANID_LEFTREARMOTOR);
+            rightFrontMotor = new SimReplayMotorController(
+                    replay, "FrcCANTalon" + RobotInfo.CANID_RIGHTFRONTMOTOR);
+            rightRearMotor = new SimReplayMotorController(
+                    replay, "FrcCANTalon" + RobotInfo.CANID_RIGHTREARMOTOR);
+            pickup = new SimReplayMotorController(replay, "FrcCANTalon" + RobotInfo.CANID_PICKUP);
+            leftFrontMotor.setInverted(false);
+            leftRearMotor.setInverted(false);
+            rightFrontMotor.setInverted(true);
+            rightRearMotor.setInverted(true);
+            driveTrain = new DriveTrain(
+                    leftFrontMotor, leftRearMotor, rightFrontMotor, rightRearMotor,
+                    new SimReplayGyro(replay, "gyro"));
+        }
+        else
+        {
+            //
+            // Full power drives the wheels at DRIVE_FULL_POWER_VELOCITY. The
+            // inversion is set up as in AutoLowBarSim.
+            //
+            double freeSpeed = RobotInfo.DRIVE_FULL_POWER_VELOCITY/RobotInfo.DRIVEBASE_Y_SCALE;
+            RecordedMotor lf = new RecordedMotor(RobotInfo.CANID_LEFTFRONTMOTOR, freeSpeed);
+            RecordedMotor lr = new RecordedMotor(RobotInfo.CANID_LEFTREARMOTOR, freeSpeed);
+            RecordedMotor rf = new RecordedMotor(RobotInfo.CANID_RIGHTFRONTMOTOR, freeSpeed);
+            RecordedMotor rr = new RecordedMotor(RobotInfo.CANID_RIGHTREARMOTOR, freeSpeed);
+            RecordedGyro gyro = new RecordedGyro("gyro");
+
+            pickup = new RecordedMotor(RobotInfo.CANID_PICKUP, 1.0);
+            lf.setInverted(false);
+            lr.setInverted(false);
+            rf.setInverted(true);
+            rr.setInverted(true);
+            lf.setPositionSensorInverted(false);
+            lr.setPositionSensorInverted(false);
+            rf.setPositionSensorInverted(true);
+            rr.setPositionSensorInverted(true);
+
+            simDriveBase = new SimDriveBase(
+                    new SimMotorController[] {lf, lr},
+                    new SimMotorController[] {rf, rr},
+                    gyro,
+                    RobotInfo.DRIVEBASE_Y_SCALE,
+                    RobotInfo.DRIVE_TRACK_WIDTH);
+            addModel(simDriveBase);
+            driveTrain = new DriveTrain(lf, lr, rf, rr, gyro);
+        }
+
+        setupRobotModes(
+                null,
+                new TrcRobot.RobotMode()
+                {
+                    private AutoLowBar autoLowBar;
+
+                    @Override
+                    public void startMode()
+                    {
+                        driveTrain.driveBase.resetPosition();
+                        autoLowBar = new AutoLowBar(driveTrain, null, null, pickup);
+                    }   //startMode
+
+                    @Override
+                    public void stopMode()
+                    {
+                        driveTrain.driveBase.stop();
+                    }   //stopMode
+
+                    @Override
+                    public void runPeriodic(double elapsedTime)
+                    {
+                    }   //runPeriodic
+
+                    @Override
+                    public void runContinuous(double elapsedTime)
+                    {
+                        autoLowBar.autoPeriodic(elapsedTime);
+                    }   //runContinuous
+                },
+                null,
+                null);
+    }   //initRobot
+
+    /**
+     * This class implements a simulated motor that records its position and
+     * power like FrcCANTalon: the position once per loop, the power on every
+     * write before motor inversion.
+     */
+    private static class RecordedMotor extends SimMotorController
+    {
+        private final TrcTelemetry.Channel positionChannel;
+        private final TrcTelemetry.Channel powerChannel;
+
+        public RecordedMotor(int canId, double freeSpeed)
+        {
+            super("FrcCANTalon" + canId, freeSpeed, MOTOR_TIME_CONSTANT);
+
+            TrcTelemetry telemetry = TrcTelemetry.getInstance();
+            positionChannel = telemetry.addChannel(
+                    "FrcCANTalon" + canId + ".position", TrcTelemetry.ChannelType.DOUBLE);
+            powerChannel = telemetry.addChannel(
+                    "FrcCANTalon" + canId + ".power", TrcTelemetry.ChannelType.DOUBLE);
+        }   //RecordedMotor
+
+        @Override
+        public double getPosition()
+        {
+            double pos = super.getPosition();
+
+            positionChannel.recordOncePerFrame(pos);
+            return pos;
+        }   //getPosition
+
+        @Override
+        public void setPower(double power)
+        {
+            powerChannel.record(power);
+            super.setPower(power);
+        }   //setPower
+
+    }   //class RecordedMotor
+
+    /**
+     * This class implements a simulated gyro that records its z-axis readings
+     * like FrcADXRS450Gyro, once per loop.
+     */
+    private static class RecordedGyro extends SimGyro
+    {
+        private final TrcTelemetry.Channel zRateChannel;
+        private final TrcTelemetry.Channel zHeadingChannel;
+
+        public RecordedGyro(String instanceName)
+        {
+            TrcTelemetry telemetry = TrcTelemetry.getInstance();
+            zRateChannel = telemetry.addChannel(
+                    instanceName + ".zRotationRate", TrcTelemetry.ChannelType.DOUBLE);
+            zHeadingChannel = telemetry.addChannel(
+                    instanceName + ".zHeading", TrcTelemetry.ChannelType.DOUBLE);
+        }   //RecordedGyro
+
+        @Override
+        public SensorData getZRotationRate()
+        {
+            SensorData data = super.getZRotationRate();
+
+            zRateChannel.recordOncePerFrame((Double)data.value);
+            return data;
+        }   //getZRotationRate
+
+        @Override
+        public SensorData getZHeading()
+        {
+            SensorData data = super.getZHeading();
+
+            zHeadingChannel.recordOncePerFrame((Double)data.value);
+            return data;
+        }   //getZHeading
+
+        @Override
+        public void getZRotationRate(DoubleData data)
+        {
+            super.getZRotationRate(data);
+            zRateChannel.recordOncePerFrame(data.value);
+        }   //getZRotationRate
+
+        @Override
+        public void getZHeading(DoubleData data)
+        {
+            super.getZHeading(data);
+            zHeadingChannel.recordOncePerFrame(data.value);
+        }   //getZHeading
+
+    }   //class RecordedGyro
+
+}   //class AutoLowBarReplay
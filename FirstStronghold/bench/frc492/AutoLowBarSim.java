@@ -0,0 +1,217 @@
+package frc492;
+
+import simlib.SimDriveBase;
+import simlib.SimGyro;
+import simlib.SimMotorController;
+import simlib.SimRobotBase;
+import trclib.TrcRobot;
+
+/**
+ * This class runs the AutoLowBar autonomous strategy headless on simulated
+ * devices. The DriveBase subsystem is created over four simulated motors and
+ * a simulated gyro, and a tank drive model moves the robot on the field. The
+ * arm and crane are not simulated. After the 15 second autonomous period it
+ * checks where the robot ended up against where the drive/turn/drive legs
+ * should put it: the tower distance straight ahead, then the goal distance
+ * at the turn angle. It exits with status 1 if the robot is not there.
+ *
+ * The same robot runs the period several times, each from the field origin.
+ * The first run is reported on its own because it includes class loading and
+ * JIT compilation.
+ *
+ * Run it off-robot with: java frc492.AutoLowBarSim [runs]
+ */
+public class AutoLowBarSim extends SimRobotBase
+{
+    private static final int DEF_RUNS = 20;
+    private static final double AUTO_PERIOD = 15.0;
+    private static final double MOTOR_TIME_CONSTANT = 0.1;
+    private static final double POSITION_TOLERANCE = 4.0;
+    private static final double HEADING_TOLERANCE = 3.0;
+    //
+    // These are the AutoLowBar dashboard defaults.
+    //
+    private static final double DISTANCE_TO_TOWER = 200.0;
+    private static final double TURN_TO_TOWER = 70.0;
+    private static final double DISTANCE_TO_GOAL = 118.0;
+
+    private SimMotorController leftFrontMotor;
+    private SimMotorController leftRearMotor;
+    private SimMotorController rightFrontMotor;
+    private SimMotorController rightRearMotor;
+    private SimMotorController pickup;
+    private SimGyro gyro;
+    private SimDriveBase simDriveBase;
+    private DriveTrain driveTrain;
+
+    public AutoLowBarSim()
+    {
+        super("AutoLowBarSim");
+    }   //AutoLowBarSim
+
+    public static void main(String[] args)
+    {
+        int runs = args.length > 0? Integer.parseInt(args[0]): DEF_RUNS;
+
+        if (runs < 2)
+        {
+            throw new IllegalArgumentException("Need at least 2 runs.");
+        }
+
+        AutoLowBarSim sim = new AutoLowBarSim();
+        double coldTime = 0.0;
+        double warmTime = 0.0;
+        int failures = 0;
+
+        for (int i = 0; i < runs; i++)
+        {
+            long startNanos = System.nanoTime();
+            if (!sim.runAuto())
+            {
+                failures++;
+            }
+            double wallTime = (System.nanoTime() - startNanos)/1000000000.0;
+
+            if (i == 0)
+            {
+                coldTime = wallTime;
+            }
+            else
+            {
+                warmTime += wallTime;
+            }
+        }
+        warmTime /= runs - 1;
+
+        System.out.printf(
+                "AutoLowBar: %.1f sec simulated, %d loops per run\n",
+                AUTO_PERIOD, Math.round(AUTO_PERIOD/DEFAULT_LOOP_PERIOD));
+        System.out.printf(
+                "cold run: %.1f msec (%.0fx real time)\n", coldTime*1000.0, AUTO_PERIOD/coldTime);
+        System.out.printf(
+                "warm runs: %.1f msec (%.0fx real time)\n", warmTime*1000.0, AUTO_PERIOD/warmTime);
+        System.out.println(failures == 0? "PASSED": "FAILED " + failures + " of " + runs + " runs");
+        if (failures > 0)
+        {
+            System.exit(1);
+        }
+    }   //main
+
+    /**
+     * This method runs the autonomous period once from the field origin and
+     * checks the end pose.
+     *
+     * @return true if the robot ended at the expected pose, false otherwise.
+     */
+    private boolean runAuto()
+    {
+        //
+        // The first runMode() creates the model at the origin in initRobot().
+        //
+        if (simDriveBase != null)
+        {
+            simDriveBase.setFieldPose(0.0, 0.0, 0.0);
+        }
+        runMode(TrcRobot.RunMode.AUTO_MODE, AUTO_PERIOD);
+
+        double goalHeading = Math.toRadians(TURN_TO_TOWER);
+        double expectedX = DISTANCE_TO_GOAL*Math.sin(goalHeading);
+        double expectedY = DISTANCE_TO_TOWER + DISTANCE_TO_GOAL*Math.cos(goalHeading);
+        double x = simDriveBase.getFieldX();
+        double y = simDriveBase.getFieldY();
+        double heading = simDriveBase.getFieldHeading();
+        boolean passed = Math.abs(x - expectedX) <= POSITION_TOLERANCE &&
+                         Math.abs(y - expectedY) <= POSITION_TOLERANCE &&
+                         Math.abs(heading - TURN_TO_TOWER) <= HEADING_TOLERANCE;
+
+        if (!passed)
+        {
+            System.out.printf(
+                    "End pose: x=%.1f, y=%.1f, heading=%.1f (expected x=%.1f, y=%.1f, heading=%.1f)\n",
+                    x, y, heading, expectedX, expectedY, TURN_TO_TOWER);
+        }
+
+        return passed;
+    }   //runAuto
+
+    //
+    // Implements SimRobotBase.
+    //
+
+    @Override
+    public void initRobot()
+    {
+        //
+        // Full power drives the wheels at DRIVE_FULL_POWER_VELOCITY.
+        //
+        double freeSpeed = RobotInfo.DRIVE_FULL_POWER_VELOCITY/RobotInfo.DRIVEBASE_Y_SCALE;
+
+        leftFrontMotor = new SimMotorController("leftFrontMotor", freeSpeed, MOTOR_TIME_CONSTANT);
+        leftRearMotor = new SimMotorController("leftRearMotor", freeSpeed, MOTOR_TIME_CONSTANT);
+        rightFrontMotor = new SimMotorController("rightFrontMotor", freeSpeed, MOTOR_TIME_CONSTANT);
+        rightRearMotor = new SimMotorController("rightRearMotor", freeSpeed, MOTOR_TIME_CONSTANT);
+        pickup = new SimMotorController("pickup", 1.0, MOTOR_TIME_CONSTANT);
+
+        //
+        // The motors are inverted as on the robot. The simulated encoders
+        // count in the direction of the applied power, so unlike the robot,
+        // where the sensor inversion follows how each encoder is wired, only
+        // the inverted right side needs its sensor inverted to count up
+        // going forward.
+        //
+        leftFrontMotor.setInverted(false);
+        leftRearMotor.setInverted(false);
+        rightFrontMotor.setInverted(true);
+        rightRearMotor.setInverted(true);
+
+        leftFrontMotor.setPositionSensorInverted(false);
+        leftRearMotor.setPositionSensorInverted(false);
+        rightFrontMotor.setPositionSensorInverted(true);
+        rightRearMotor.setPositionSensorInverted(true);
+
+        gyro = new SimGyro();
+        simDriveBase = new SimDriveBase(
+                new SimMotorController[] {leftFrontMotor, leftRearMotor},
+                new SimMotorController[] {rightFrontMotor, rightRearMotor},
+                gyro,
+                RobotInfo.DRIVEBASE_Y_SCALE,
+                RobotInfo.DRIVE_TRACK_WIDTH);
+        addModel(simDriveBase);
+
+        driveTrain = new DriveTrain(leftFrontMotor, leftRearMotor, rightFrontMotor, rightRearMotor, gyro);
+
+        setupRobotModes(
+                null,
+                new TrcRobot.RobotMode()
+                {
+                    private AutoLowBar autoLowBar;
+
+                    @Override
+                    public void startMode()
+                    {
+                        driveTrain.driveBase.resetPosition();
+                        autoLowBar = new AutoLowBar(driveTrain, null, null, pickup);
+                    }   //startMode
+
+                    @Override
+                    public void stopMode()
+                    {
+                        driveTrain.driveBase.stop();
+                    }   //stopMode
+
+                    @Override
+                    public void runPeriodic(double elapsedTime)
+                    {
+                    }   //runPeriodic
+
+                    @Override
+                    public void runContinuous(double elapsedTime)
+                    {
+                        autoLowBar.autoPeriodic(elapsedTime);
+                    }   //runContinuous
+                },
+                null,
+                null);
+    }   //initRobot
+
+}   //class AutoLowBarSim
@@ -0,0 +1,199 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package trclib;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * This class benchmarks TrcFormatter against String.format on the kind of
+ * line HalDashboard.displayPrintfNoAlloc renders every loop. For each it
+ * reports the time and the heap bytes allocated per formatted line. The
+ * allocation is read from the HotSpot per-thread allocation counter, so it
+ * shows as n/a on JVMs that do not have it. Before timing, it checks that the
+ * %f output of TrcFormatter matches String.format over a large set of values.
+ *
+ * Run it off-robot with: java trclib.TrcFormatterBench [iterations]
+ */
+public class TrcFormatterBench
+{
+    private static final int DEF_ITERATIONS = 2000000;
+    private static final String FORMAT = "x=%.1f,y=%.1f,heading=%6.2f,enc=%08d,state=%s,on=%b";
+    private static final int FIXED_CHECK_VALUES = 200000;
+    private static final String[] FIXED_FORMATS = {
+        "%.0f", "%.1f", "%.2f", "%.3f", "%06.3f", "%-10.4f", "%.5f", "%f"};
+    private static final double[] FIXED_EDGE_VALUES = {
+        -1.275, 1.0595, 0.125, -0.125, 2.5, 0.0, -0.0, 0.0005, -0.0049999, 999999.9999995};
+
+    /**
+     * This interface is one way of formatting a line.
+     */
+    private interface Method
+    {
+        /**
+         * This method formats one line from the given loop index and returns
+         * its length, so the work cannot be optimized away.
+         *
+         * @param i specifies the loop index the arguments are derived from.
+         * @return length of the formatted line.
+         */
+        int format(int i);
+
+    }   //interface Method
+
+    private static final String[] states = {"START", "DRIVE", "TURN", "DONE"};
+    private static final TrcFormatter formatter = new TrcFormatter();
+
+    private static final Method stringFormat = new Method()
+    {
+        @Override
+        public int format(int i)
+        {
+            return String.format(
+                    FORMAT, i*0.1, i*0.2, i*0.01, i, states[i & 3], (i & 1) == 0).length();
+        }   //format
+    };
+
+    private static final Method trcFormatter = new Method()
+    {
+        @Override
+        public int format(int i)
+        {
+            return formatter.begin(FORMAT)
+                    .arg(i*0.1).arg(i*0.2).arg(i*0.01).arg(i).arg(states[i & 3]).arg((i & 1) == 0)
+                    .end().length();
+        }   //format
+    };
+
+    public static void main(String[] args)
+    {
+        int iterations = args.length > 0? Integer.parseInt(args[0]): DEF_ITERATIONS;
+
+        //
+        // Make sure both produce the same text before timing them.
+        //
+        for (int i = 0; i < 1000; i++)
+        {
+            String expected = String.format(
+                    FORMAT, i*0.1, i*0.2, i*0.01, i, states[i & 3], (i & 1) == 0);
+            trcFormatter.format(i);
+            if (!expected.contentEquals(formatter.getBuffer()))
+            {
+                throw new IllegalStateException(
+                        "Mismatch: \"" + expected + "\" != \"" + formatter.getBuffer() + "\"");
+            }
+        }
+
+        checkFixed(FIXED_CHECK_VALUES);
+
+        System.out.printf("%-14s %12s %16s\n", "Method", "Time (nsec)", "Alloc (bytes)");
+        run("String.format", stringFormat, iterations);
+        run("TrcFormatter", trcFormatter, iterations);
+    }   //main
+
+    /**
+     * This method compares %f output with String.format over many values and
+     * precisions. Half of the values are short decimals such as 1.275 or
+     * -0.0595, which are where rounding the binary product goes wrong, and the
+     * other half are random doubles. It throws on the first mismatch.
+     *
+     * @param numValues specifies the number of values to check.
+     */
+    private static void checkFixed(int numValues)
+    {
+        Random random = new Random(492);
+        int numChecked = 0;
+
+        for (int i = 0; i < numValues; i++)
+        {
+            double value;
+
+            if (i < FIXED_EDGE_VALUES.length)
+            {
+                value = FIXED_EDGE_VALUES[i];
+            }
+            else if ((i & 1) == 0)
+            {
+                int decimals = 1 + random.nextInt(6);
+                value = (random.nextInt(2000000) - 1000000)/Math.pow(10.0, decimals);
+            }
+            else
+            {
+                value = (random.nextDouble() - 0.5)*Math.pow(10.0, random.nextInt(12) - 4);
+            }
+
+            for (String format: FIXED_FORMATS)
+            {
+                String expected = String.format(format, value);
+                formatter.begin(format).arg(value).end();
+                if (!expected.contentEquals(formatter.getBuffer()))
+                {
+                    throw new IllegalStateException(
+                            "Mismatch for " + value + " with " + format + ": \"" + expected + "\" != \"" +
+                            formatter.getBuffer() + "\"");
+                }
+                numChecked++;
+            }
+        }
+        System.out.printf("%%f output matches String.format for %d value/format pairs.\n", numChecked);
+    }   //checkFixed
+
+    private static void run(String name, Method method, int iterations)
+    {
+        long checksum = 0;
+
+        for (int i = 0; i < iterations/10; i++)
+        {
+            checksum += method.format(i);
+        }
+
+        long startBytes = getAllocatedBytes();
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < iterations; i++)
+        {
+            checksum += method.format(i);
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+        long allocatedBytes = getAllocatedBytes() - startBytes;
+
+        System.out.printf("%-14s %12.1f %16s   (checksum %d)\n",
+                name, (double)elapsedNanos/iterations,
+                startBytes < 0? "n/a": String.format("%.1f", (double)allocatedBytes/iterations),
+                checksum);
+    }   //run
+
+    private static long getAllocatedBytes()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean)
+        {
+            return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        }
+
+        return -1;
+    }   //getAllocatedBytes
+
+}   //class TrcFormatterBench
@@ -0,0 +1,203 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package trclib;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * This class benchmarks the cost of TrcPoseEstimator per robot loop. It
+ * simulates a robot driving a weaving path towards a wall and feeds the
+ * filter what one 5 msec loop would: an encoder, a gyro and an accelerometer
+ * sample, each with its own timestamp so every update predicts forward, a
+ * sonar reading every 10 loops, and a getPose. The sensor samples are
+ * generated up front so only the filter is timed.
+ *
+ * The first run is reported on its own because it includes JIT compilation,
+ * which is what the robot sees at the start of a match. The remaining runs
+ * are reported together. The budget is judged on p99.9 of the loop time; the
+ * maximum is shown too but on a desktop it mostly measures the OS and GC
+ * pausing the thread, not the filter. The allocation is read from the HotSpot per-thread
+ * allocation counter, so it shows as n/a on JVMs that do not have it.
+ *
+ * Run it off-robot with: java trclib.TrcPoseEstimatorBench [runs]
+ */
+public class TrcPoseEstimatorBench
+{
+    private static final double LOOP_PERIOD = 0.005;
+    private static final int LOOPS_PER_RUN = 12000;     //60 seconds
+    private static final int SONAR_INTERVAL = 10;
+    private static final double WALL_Y = 600.0;
+    private static final int DEF_RUNS = 20;
+
+    private static final double[] encoderDistance = new double[LOOPS_PER_RUN];
+    private static final double[] gyroHeading = new double[LOOPS_PER_RUN];
+    private static final double[] gyroRate = new double[LOOPS_PER_RUN];
+    private static final double[] forwardAccel = new double[LOOPS_PER_RUN];
+    private static final double[] lateralAccel = new double[LOOPS_PER_RUN];
+    private static final double[] sonarRange = new double[LOOPS_PER_RUN];
+
+    public static void main(String[] args)
+    {
+        int runs = args.length > 0? Integer.parseInt(args[0]): DEF_RUNS;
+
+        if (runs < 2)
+        {
+            throw new IllegalArgumentException("Need at least 2 runs.");
+        }
+
+        generateSamples(new Random(492));
+
+        TrcPoseEstimator estimator = new TrcPoseEstimator("bench", 1000.0, 1000.0);
+        TrcDriveBase.Pose pose = new TrcDriveBase.Pose();
+        long[] coldNanos = new long[LOOPS_PER_RUN];
+        long[] warmNanos = new long[LOOPS_PER_RUN*(runs - 1)];
+        long warmBytes = 0;
+
+        estimator.setSonarWall(WALL_Y);
+        runOnce(estimator, pose, coldNanos, 0);
+        for (int i = 1; i < runs; i++)
+        {
+            long startBytes = getAllocatedBytes();
+            runOnce(estimator, pose, warmNanos, (i - 1)*LOOPS_PER_RUN);
+            warmBytes += getAllocatedBytes() - startBytes;
+        }
+
+        System.out.printf("Loop period %.1f msec, %d loops per run, final pose %s\n",
+                LOOP_PERIOD*1000.0, LOOPS_PER_RUN, pose);
+        System.out.printf("%-6s %10s %10s %10s %12s %10s %13s %14s\n",
+                "Runs", "Mean (us)", "p50 (us)", "p99 (us)", "p99.9 (us)", "Max (us)", "p99.9/loop",
+                "Alloc (B/loop)");
+        report("cold", coldNanos, null);
+        report("warm", warmNanos,
+               getAllocatedBytes() < 0? "n/a": String.format("%.2f", (double)warmBytes/warmNanos.length));
+    }   //main
+
+    /**
+     * This method generates the sensor samples of a robot accelerating to
+     * 60 in/s and weaving +/-30 degrees, with noise on every sensor and an
+     * occasional false sonar echo.
+     *
+     * @param random specifies the random number generator.
+     */
+    private static void generateSamples(Random random)
+    {
+        double y = 0.0;
+        double heading = 0.0;
+        double velocity = 0.0;
+        double distance = 0.0;
+
+        for (int i = 0; i < LOOPS_PER_RUN; i++)
+        {
+            double t = i*LOOP_PERIOD;
+            double accel = velocity < 60.0? 40.0: 0.0;
+            double rate = 30.0*2.0*Math.PI/8.0*Math.cos(2.0*Math.PI*t/8.0);
+
+            velocity += accel*LOOP_PERIOD;
+            heading += rate*LOOP_PERIOD;
+            distance += velocity*LOOP_PERIOD;
+            y += velocity*LOOP_PERIOD*Math.cos(Math.toRadians(heading));
+
+            encoderDistance[i] = distance*1.03 + random.nextGaussian()*0.25;
+            gyroHeading[i] = heading + random.nextGaussian()*0.5;
+            gyroRate[i] = rate + random.nextGaussian()*2.0;
+            forwardAccel[i] = accel + random.nextGaussian()*20.0;
+            lateralAccel[i] = velocity*Math.toRadians(rate) + random.nextGaussian()*20.0;
+            //
+            // The robot drives past the wall position, so keep the range
+            // positive by wrapping it; it only has to look like a sonar.
+            //
+            double range = (WALL_Y - y%WALL_Y)/Math.cos(Math.toRadians(heading));
+            sonarRange[i] = random.nextInt(10) == 0? range*0.5: range + random.nextGaussian();
+        }
+    }   //generateSamples
+
+    /**
+     * This method feeds one run of samples to the estimator and times each
+     * loop.
+     *
+     * @param estimator specifies the estimator.
+     * @param pose specifies the pose to fill in every loop.
+     * @param loopNanos specifies the array to receive the loop times.
+     * @param offset specifies where the loop times of this run start in the array.
+     */
+    private static void runOnce(
+            TrcPoseEstimator estimator, TrcDriveBase.Pose pose, long[] loopNanos, int offset)
+    {
+        estimator.reset(0.0, 0.0, 0.0, 0.0);
+        for (int i = 0; i < LOOPS_PER_RUN; i++)
+        {
+            double t = i*LOOP_PERIOD;
+            long startNanos = System.nanoTime();
+
+            estimator.updateEncoder(t, encoderDistance[i]);
+            estimator.updateGyro(t + 0.0005, gyroHeading[i], gyroRate[i]);
+            estimator.updateAccelerometer(t + 0.001, forwardAccel[i], lateralAccel[i]);
+            if (i%SONAR_INTERVAL == 0)
+            {
+                estimator.updateSonar(t + 0.0015, sonarRange[i]);
+            }
+            estimator.getPose(t + 0.002, pose);
+
+            loopNanos[offset + i] = System.nanoTime() - startNanos;
+        }
+    }   //runOnce
+
+    private static void report(String name, long[] loopNanos, String allocPerLoop)
+    {
+        long total = 0;
+
+        for (long nanos: loopNanos)
+        {
+            total += nanos;
+        }
+        Arrays.sort(loopNanos);
+
+        long p999 = loopNanos[(int)(loopNanos.length*0.999)];
+        System.out.printf("%-6s %10.2f %10.2f %10.2f %12.2f %10.2f %12.2f%% %14s\n",
+                name,
+                total/1000.0/loopNanos.length,
+                loopNanos[loopNanos.length/2]/1000.0,
+                loopNanos[(int)(loopNanos.length*0.99)]/1000.0,
+                p999/1000.0,
+                loopNanos[loopNanos.length - 1]/1000.0,
+                p999/(LOOP_PERIOD*1.0e9)*100.0,
+                allocPerLoop != null? allocPerLoop: "-");
+    }   //report
+
+    private static long getAllocatedBytes()
+    {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+
+        if (bean instanceof com.sun.management.ThreadMXBean)
+        {
+            return ((com.sun.management.ThreadMXBean)bean).getThreadAllocatedBytes(
+                    Thread.currentThread().getId());
+        }
+
+        return -1;
+    }   //getAllocatedBytes
+
+}   //class TrcPoseEstimatorBench
@@ -0,0 +1,366 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package trclib;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Random;
+
+/**
+ * This class benchmarks the TrcTaskMgr dispatch cost. It registers a mix of
+ * tasks with the task manager and times full passes over all six task types,
+ * which is what the scheduler does per loop. For comparison, it runs the same
+ * passes over a copy of the old registry: one task list, a HashSet of task
+ * types per task, and a switch on the type inside the loop. It also times a
+ * register/unregister pair, as TrcTimer and TrcPidMotor do all the time,
+ * picking the task at random so most removals hit the middle of the arrays.
+ *
+ * Run it off-robot with: java trclib.TrcTaskMgrBench [numTasks...]
+ */
+public class TrcTaskMgrBench
+{
+    private static final int WARMUP_PASSES = 200000;
+    private static final int TIMED_PASSES = 2000000;
+    private static final int CHURN_OPS = 1000000;
+    private static final int CHURN_ORDER_SIZE = 4096;
+
+    /**
+     * This class implements a task that does a trivial amount of work so the
+     * benchmark measures the dispatch and not the task bodies.
+     */
+    private static class BenchTask implements TrcTaskMgr.Task
+    {
+        long counter = 0;
+
+        @Override
+        public void startTask(TrcRobot.RunMode runMode)
+        {
+            counter++;
+        }   //startTask
+
+        @Override
+        public void stopTask(TrcRobot.RunMode runMode)
+        {
+            counter++;
+        }   //stopTask
+
+        @Override
+        public void prePeriodicTask(TrcRobot.RunMode runMode)
+        {
+            counter++;
+        }   //prePeriodicTask
+
+        @Override
+        public void postPeriodicTask(TrcRobot.RunMode runMode)
+        {
+            counter++;
+        }   //postPeriodicTask
+
+        @Override
+        public void preContinuousTask(TrcRobot.RunMode runMode)
+        {
+            counter++;
+        }   //preContinuousTask
+
+        @Override
+        public void postContinuousTask(TrcRobot.RunMode runMode)
+        {
+            counter++;
+        }   //postContinuousTask
+
+    }   //class BenchTask
+
+    /**
+     * This class is a copy of the registry TrcTaskMgr used before it was
+     * indexed by task type. It is only here as the baseline.
+     */
+    private static class LegacyRegistry
+    {
+        private static class TaskObject
+        {
+            HashSet<TrcTaskMgr.TaskType> taskTypes = new HashSet<TrcTaskMgr.TaskType>();
+            TrcTaskMgr.Task task;
+
+            TaskObject(TrcTaskMgr.Task task)
+            {
+                this.task = task;
+            }   //TaskObject
+
+        }   //class TaskObject
+
+        private ArrayList<TaskObject> taskList = new ArrayList<TaskObject>();
+
+        private TaskObject findTask(TrcTaskMgr.Task task)
+        {
+            for (int i = 0; i < taskList.size(); i++)
+            {
+                if (taskList.get(i).task == task)
+                {
+                    return taskList.get(i);
+                }
+            }
+
+            return null;
+        }   //findTask
+
+        void registerTask(TrcTaskMgr.Task task, TrcTaskMgr.TaskType type)
+        {
+            TaskObject taskObj = findTask(task);
+
+            if (taskObj == null)
+            {
+                taskObj = new TaskObject(task);
+                taskList.add(taskObj);
+            }
+            taskObj.taskTypes.add(type);
+        }   //registerTask
+
+        void unregisterTask(TrcTaskMgr.Task task, TrcTaskMgr.TaskType type)
+        {
+            TaskObject taskObj = findTask(task);
+
+            if (taskObj != null)
+            {
+                taskObj.taskTypes.remove(type);
+                if (taskObj.taskTypes.isEmpty())
+                {
+                    taskList.remove(taskObj);
+                }
+            }
+        }   //unregisterTask
+
+        void executeTaskType(TrcTaskMgr.TaskType type, TrcRobot.RunMode mode)
+        {
+            for (int i = 0; i < taskList.size(); i++)
+            {
+                TaskObject taskObj = taskList.get(i);
+                if (taskObj.taskTypes.contains(type))
+                {
+                    TrcTaskMgr.Task task = taskObj.task;
+                    switch (type)
+                    {
+                        case START_TASK:
+                            task.startTask(mode);
+                            break;
+
+                        case STOP_TASK:
+                            task.stopTask(mode);
+                            break;
+
+                        case PREPERIODIC_TASK:
+                            task.prePeriodicTask(mode);
+                            break;
+
+                        case POSTPERIODIC_TASK:
+                            task.postPeriodicTask(mode);
+                            break;
+
+                        case PRECONTINUOUS_TASK:
+                            task.preContinuousTask(mode);
+                            break;
+
+                        case POSTCONTINUOUS_TASK:
+                            task.postContinuousTask(mode);
+                            break;
+                    }
+                }
+            }
+        }   //executeTaskType
+
+    }   //class LegacyRegistry
+
+    private static final TrcTaskMgr.TaskType[] taskTypes = TrcTaskMgr.TaskType.values();
+
+    public static void main(String[] args)
+    {
+        int[] taskCounts = {10, 60};
+
+        if (args.length > 0)
+        {
+            taskCounts = new int[args.length];
+            for (int i = 0; i < args.length; i++)
+            {
+                taskCounts[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.printf("%-8s %-10s %14s %18s\n", "Tasks", "Registry", "Pass (nsec)", "Reg+unreg (nsec)");
+        for (int numTasks: taskCounts)
+        {
+            BenchTask[] tasks = createTasks(numTasks);
+            TrcTaskMgr taskMgr = new TrcTaskMgr();
+            LegacyRegistry legacy = new LegacyRegistry();
+
+            for (int i = 0; i < tasks.length; i++)
+            {
+                //
+                // Like the robot code, every task has a continuous type and
+                // only some have the other types.
+                //
+                for (TrcTaskMgr.TaskType type: taskTypes)
+                {
+                    if (type == TrcTaskMgr.TaskType.PRECONTINUOUS_TASK ||
+                        type == TrcTaskMgr.TaskType.POSTCONTINUOUS_TASK ||
+                        (i + type.ordinal())%3 == 0)
+                    {
+                        taskMgr.registerTask("task" + i, tasks[i], type);
+                        legacy.registerTask(tasks[i], type);
+                    }
+                }
+            }
+
+            double legacyPass = timeLegacyPasses(legacy);
+            double indexedPass = timeIndexedPasses(taskMgr);
+            int[] churnOrder = createChurnOrder(numTasks);
+            double legacyChurn = timeLegacyChurn(legacy, tasks, churnOrder);
+            double indexedChurn = timeIndexedChurn(taskMgr, tasks, churnOrder);
+
+            System.out.printf("%-8d %-10s %14.1f %18.1f\n", numTasks, "legacy", legacyPass, legacyChurn);
+            System.out.printf("%-8d %-10s %14.1f %18.1f\n", numTasks, "indexed", indexedPass, indexedChurn);
+        }
+    }   //main
+
+    private static BenchTask[] createTasks(int numTasks)
+    {
+        BenchTask[] tasks = new BenchTask[numTasks];
+
+        for (int i = 0; i < numTasks; i++)
+        {
+            tasks[i] = new BenchTask();
+        }
+
+        return tasks;
+    }   //createTasks
+
+    private static double timeIndexedPasses(TrcTaskMgr taskMgr)
+    {
+        for (int i = 0; i < WARMUP_PASSES; i++)
+        {
+            runIndexedPass(taskMgr);
+        }
+
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < TIMED_PASSES; i++)
+        {
+            runIndexedPass(taskMgr);
+        }
+
+        return (double)(System.nanoTime() - startNanos)/TIMED_PASSES;
+    }   //timeIndexedPasses
+
+    private static void runIndexedPass(TrcTaskMgr taskMgr)
+    {
+        for (TrcTaskMgr.TaskType type: taskTypes)
+        {
+            taskMgr.executeTaskType(type, TrcRobot.RunMode.TELEOP_MODE);
+        }
+    }   //runIndexedPass
+
+    private static double timeLegacyPasses(LegacyRegistry legacy)
+    {
+        for (int i = 0; i < WARMUP_PASSES; i++)
+        {
+            runLegacyPass(legacy);
+        }
+
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < TIMED_PASSES; i++)
+        {
+            runLegacyPass(legacy);
+        }
+
+        return (double)(System.nanoTime() - startNanos)/TIMED_PASSES;
+    }   //timeLegacyPasses
+
+    private static void runLegacyPass(LegacyRegistry legacy)
+    {
+        for (TrcTaskMgr.TaskType type: taskTypes)
+        {
+            legacy.executeTaskType(type, TrcRobot.RunMode.TELEOP_MODE);
+        }
+    }   //runLegacyPass
+
+    /**
+     * This method returns the order in which the churn loops pick the task to
+     * unregister and register again. The picks are spread over the whole task
+     * list, so removals from the middle of the arrays are timed too, not just
+     * removals of the last task registered.
+     *
+     * @param numTasks specifies the number of registered tasks.
+     * @return array of task indices.
+     */
+    private static int[] createChurnOrder(int numTasks)
+    {
+        Random random = new Random(492);
+        int[] order = new int[CHURN_ORDER_SIZE];
+
+        for (int i = 0; i < order.length; i++)
+        {
+            order[i] = random.nextInt(numTasks);
+        }
+
+        return order;
+    }   //createChurnOrder
+
+    private static double timeIndexedChurn(TrcTaskMgr taskMgr, BenchTask[] tasks, int[] order)
+    {
+        for (int i = 0; i < WARMUP_PASSES; i++)
+        {
+            BenchTask task = tasks[order[i%order.length]];
+            taskMgr.unregisterTask(task, TrcTaskMgr.TaskType.POSTCONTINUOUS_TASK);
+            taskMgr.registerTask("churn", task, TrcTaskMgr.TaskType.POSTCONTINUOUS_TASK);
+        }
+
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < CHURN_OPS; i++)
+        {
+            BenchTask task = tasks[order[i%order.length]];
+            taskMgr.unregisterTask(task, TrcTaskMgr.TaskType.POSTCONTINUOUS_TASK);
+            taskMgr.registerTask("churn", task, TrcTaskMgr.TaskType.POSTCONTINUOUS_TASK);
+        }
+
+        return (double)(System.nanoTime() - startNanos)/CHURN_OPS;
+    }   //timeIndexedChurn
+
+    private static double timeLegacyChurn(LegacyRegistry legacy, BenchTask[] tasks, int[] order)
+    {
+        for (int i = 0; i < WARMUP_PASSES; i++)
+        {
+            BenchTask task = tasks[order[i%order.length]];
+            legacy.unregisterTask(task, TrcTaskMgr.TaskType.POSTCONTINUOUS_TASK);
+            legacy.registerTask(task, TrcTaskMgr.TaskType.POSTCONTINUOUS_TASK);
+        }
+
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < CHURN_OPS; i++)
+        {
+            BenchTask task = tasks[order[i%order.length]];
+            legacy.unregisterTask(task, TrcTaskMgr.TaskType.POSTCONTINUOUS_TASK);
+            legacy.registerTask(task, TrcTaskMgr.TaskType.POSTCONTINUOUS_TASK);
+        }
+
+        return (double)(System.nanoTime() - startNanos)/CHURN_OPS;
+    }   //timeLegacyChurn
+
+}   //class TrcTaskMgrBench
@@ -81,10 +81,10 @@ public class Arm implements TrcPidController.PidInput, TrcTimer.Callback
 
     public void displayDebugInfo(int lineNum)
     {
-        dashboard.displayPrintf(
+        dashboard.displayPrintfNoAlloc(
                 lineNum, "Arm: Pos=%.2f",
                 armMotor.getPosition());
-        dashboard.displayPrintf(
+        dashboard.displayPrintfNoAlloc(
                 lineNum + 1, "Arm: SW=%d/%d",
                 armMotor.isLowerLimitSwitchActive()? 1: 0,
                 armMotor.isUpperLimitSwitchActive()? 1: 0);
@@ -1,7 +1,9 @@
 package frc492;
 
 import hallib.HalDashboard;
+import hallib.HalMotorController;
 import trclib.TrcEvent;
+import trclib.TrcPath;
 import trclib.TrcRobot;
 import trclib.TrcStateMachine;
 import trclib.TrcTimer;
@@ -11,12 +13,17 @@ public class AutoLowBar implements TrcRobot.AutoStrategy
     private static final String moduleName = "AutoLowBar";
     private HalDashboard dashboard = HalDashboard.getInstance();
 
-    private Robot robot;
+    private DriveTrain driveTrain;
+    private Arm arm;
+    private Crane crane;
+    private HalMotorController pickup;
     private double distanceToDefense;
     private double distanceCrossDefense;
     private double distanceToTower;
     private double turnToTower;
     private double distanceToGoal;
+    private boolean usePurePursuit;
+    private TrcPath path = null;
     private TrcStateMachine sm;
     private TrcEvent event;
     private TrcTimer timer;
@@ -28,13 +35,32 @@ public class AutoLowBar implements TrcRobot.AutoStrategy
         DRIVE_TO_TOWER,
         TURN_TO_TOWER,
         DRIVE_TO_GOAL,
+        FOLLOW_PATH,
+        PATH_THROUGH_LOWBAR,
         SCORE_GOAL,
         DONE
     }
 
     public AutoLowBar(Robot robot)
     {
-        this.robot = robot;
+        this(robot.driveTrain, robot.arm, robot.crane, robot.pickup);
+    }   //AutoLowBar
+
+    /**
+     * Constructor: Creates an instance of the object over the given subsystems
+     * instead of the robot's, e.g. over simulated devices.
+     *
+     * @param driveTrain specifies the DriveBase subsystem.
+     * @param arm specifies the arm, can be null if not simulated.
+     * @param crane specifies the crane, can be null if not simulated.
+     * @param pickup specifies the pickup motor.
+     */
+    public AutoLowBar(DriveTrain driveTrain, Arm arm, Crane crane, HalMotorController pickup)
+    {
+        this.driveTrain = driveTrain;
+        this.arm = arm;
+        this.crane = crane;
+        this.pickup = pickup;
         distanceToDefense = HalDashboard.getNumber(
                 "1.LowBar:DistanceToDefense", RobotInfo.AUTO_DISTANCE_TO_DEFENSE);
         distanceCrossDefense = HalDashboard.getNumber(
@@ -42,12 +68,37 @@ public class AutoLowBar implements TrcRobot.AutoStrategy
         distanceToTower = HalDashboard.getNumber("3.LowBar:DistanceToTower", 200.0);
         turnToTower = HalDashboard.getNumber("4.LowBar:TurnToTower", 70.0);
         distanceToGoal = HalDashboard.getNumber("5.LowBar:DistanceToGoal", 118.0);
+        //
+        // The drive/turn/drive legs are the default. Pure pursuit stays
+        // selectable but is off until its kV/kP have been tuned on the robot.
+        //
+        usePurePursuit = HalDashboard.getBoolean(
+                "AutoUsePurePursuit", RobotInfo.AUTO_USE_PURE_PURSUIT);
+        if (usePurePursuit)
+        {
+            //
+            // Drive straight through the low bar, then curve onto the line the
+            // drive/turn/drive legs end on, all without stopping. The path is
+            // only generated again if the dashboard numbers change.
+            //
+            double goalHeading = Math.toRadians(turnToTower);
+            path = TrcPath.getPath(
+                    moduleName,
+                    RobotInfo.PATH_MAX_VELOCITY,
+                    RobotInfo.DRIVE_MAX_ACCELERATION,
+                    new TrcPath.Waypoint(0.0, 0.0, 0.0),
+                    new TrcPath.Waypoint(0.0, distanceCrossDefense, 0.0),
+                    new TrcPath.Waypoint(
+                            distanceToGoal*Math.sin(goalHeading),
+                            distanceToTower + distanceToGoal*Math.cos(goalHeading),
+                            turnToTower));
+        }
 
         sm = new TrcStateMachine(moduleName);
         event = new TrcEvent(moduleName);
         timer = new TrcTimer(moduleName);
-        sm.start(State.DRIVE_TO_LOWBAR);
-     }   //AutoLowBar
+        sm.start(usePurePursuit? State.FOLLOW_PATH: State.DRIVE_TO_LOWBAR);
+    }   //AutoLowBar
 
     //
     // Implements TrcRobot.AutoStrategy.
@@ -56,12 +107,24 @@ public class AutoLowBar implements TrcRobot.AutoStrategy
     public void autoPeriodic(double elapsedTime)
     {
         State state = (State)sm.getState();
-        dashboard.displayPrintf(
+        dashboard.displayPrintfNoAlloc(
                 1, "[%6.3f] %s", elapsedTime, state != null? state.toString(): "DISABLED");
-        robot.encoderXPidCtrl.displayPidInfo(2);
-        robot.encoderYPidCtrl.displayPidInfo(4);
-        robot.gyroTurnPidCtrl.displayPidInfo(6);
-        robot.arm.displayDebugInfo(8);
+        if (usePurePursuit)
+        {
+            dashboard.displayPrintfNoAlloc(
+                    2, "Path: distance=%.1f/%.1f",
+                    driveTrain.pathDrive.getPathDistance(), path.getLength());
+        }
+        else
+        {
+            driveTrain.encoderXPidCtrl.displayPidInfo(2);
+            driveTrain.encoderYPidCtrl.displayPidInfo(4);
+            driveTrain.gyroTurnPidCtrl.displayPidInfo(6);
+        }
+        if (arm != null)
+        {
+            arm.displayDebugInfo(8);
+        }
 
         if (sm.isReady())
         {
@@ -70,47 +133,87 @@ public class AutoLowBar implements TrcRobot.AutoStrategy
             switch (state)
             {
                 case DRIVE_TO_LOWBAR:
-                    robot.encoderYPidCtrl.setOutputRange(-0.5, 0.5);
-                    robot.pidDrive.setTarget(0.0, distanceToDefense, 0.0, false, event, 2.0);
+                    driveTrain.encoderYPidCtrl.setOutputRange(-0.5, 0.5);
+                    driveTrain.pidDrive.setTarget(0.0, distanceToDefense, 0.0, false, event, 2.0);
 //                    robot.arm.setPosition(RobotInfo.ARM_OUT_POSITION);
-                    robot.arm.setPower(1.0, 0.85);
+                    if (arm != null)
+                    {
+                        arm.setPower(1.0, 0.85);
+                    }
                     sm.addEvent(event);
                     sm.waitForEvents(State.CROSS_LOWBAR);
                     break;
 
                 case CROSS_LOWBAR:
-                    robot.encoderYPidCtrl.setOutputRange(-0.4, 0.4);
-                    robot.pidDrive.setTarget(0.0, distanceCrossDefense, 0.0, false, event, 3.0);
+                    driveTrain.encoderYPidCtrl.setOutputRange(-0.4, 0.4);
+                    driveTrain.pidDrive.setTarget(0.0, distanceCrossDefense, 0.0, false, event, 3.0);
                     sm.addEvent(event);
                     sm.waitForEvents(State.DRIVE_TO_TOWER);
                     break;
 
                 case DRIVE_TO_TOWER:
-                    robot.encoderYPidCtrl.setOutputRange(-0.5, 0.5);
-                    robot.pidDrive.setTarget(0.0, distanceToTower, 0.0, false, event, 3.0);
-                    robot.crane.setTilterAngle(20.0);
+                    driveTrain.encoderYPidCtrl.setOutputRange(-0.5, 0.5);
+                    driveTrain.pidDrive.setTarget(0.0, distanceToTower, 0.0, false, event, 3.0);
+                    if (crane != null)
+                    {
+                        crane.setTilterAngle(20.0);
+                    }
 //                    robot.arm.setPosition(RobotInfo.ARM_UP_POSITION);
-                    robot.arm.setPower(-1.0, 1.0);
+                    if (arm != null)
+                    {
+                        arm.setPower(-1.0, 1.0);
+                    }
                     sm.addEvent(event);
                     sm.waitForEvents(State.TURN_TO_TOWER);
                     break;
 
                 case TURN_TO_TOWER:
-                    robot.gyroTurnPidCtrl.setOutputRange(-0.5, 0.5);
-                    robot.pidDrive.setTarget(0.0, 0.0, turnToTower, false, event, 2.0);
+                    driveTrain.gyroTurnPidCtrl.setOutputRange(-0.5, 0.5);
+                    driveTrain.pidDrive.setTarget(0.0, 0.0, turnToTower, false, event, 2.0);
                     sm.addEvent(event);
                     sm.waitForEvents(State.DRIVE_TO_GOAL);
                     break;
 
                 case DRIVE_TO_GOAL:
-                    robot.driveBase.resetPosition();
-                    robot.pidDrive.setTarget(0.0, distanceToGoal, 0.0, false, event, 3.0);
+                    driveTrain.driveBase.resetPosition();
+                    driveTrain.pidDrive.setTarget(0.0, distanceToGoal, 0.0, false, event, 3.0);
                     sm.addEvent(event);
                     sm.waitForEvents(State.SCORE_GOAL);
                     break;
 
+                case FOLLOW_PATH:
+                    driveTrain.pathDrive.start(path, event, 10.0);
+//                    robot.arm.setPosition(RobotInfo.ARM_OUT_POSITION);
+                    if (arm != null)
+                    {
+                        arm.setPower(1.0, 0.85);
+                    }
+                    sm.setState(State.PATH_THROUGH_LOWBAR);
+                    break;
+
+                case PATH_THROUGH_LOWBAR:
+                    //
+                    // Keep the arm down until the robot is through the low bar.
+                    //
+                    if (driveTrain.pathDrive.getPathDistance() >= distanceCrossDefense ||
+                        !driveTrain.pathDrive.isEnabled())
+                    {
+                        if (crane != null)
+                        {
+                            crane.setTilterAngle(20.0);
+                        }
+//                        robot.arm.setPosition(RobotInfo.ARM_UP_POSITION);
+                        if (arm != null)
+                        {
+                            arm.setPower(-1.0, 1.0);
+                        }
+                        sm.addEvent(event);
+                        sm.waitForEvents(State.SCORE_GOAL);
+                    }
+                    break;
+
                 case SCORE_GOAL:
-                    robot.pickup.setPower(RobotInfo.PICKUP_OUT_POWER);
+                    pickup.setPower(RobotInfo.PICKUP_OUT_POWER);
                     timer.set(2.0, event);
                     sm.addEvent(event);
                     sm.waitForEvents(State.DONE);
@@ -118,7 +221,7 @@ public class AutoLowBar implements TrcRobot.AutoStrategy
 
                 case DONE:
                 default:
-                    robot.pickup.setPower(0.0);
+                    pickup.setPower(0.0);
                     sm.stop();
                     break;
             }
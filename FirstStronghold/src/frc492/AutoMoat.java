@@ -2,6 +2,7 @@ package frc492;
 
 import hallib.HalDashboard;
 import trclib.TrcEvent;
+import trclib.TrcMotionProfile;
 import trclib.TrcRobot;
 import trclib.TrcStateMachine;
 
@@ -12,6 +13,8 @@ public class AutoMoat implements TrcRobot.AutoStrategy
 
     private Robot robot;
     private double distanceCrossDefense;
+    private boolean useMotionProfiles;
+    private TrcMotionProfile crossDefenseProfile;
     private TrcStateMachine sm;
     private TrcEvent event;
 
@@ -25,6 +28,16 @@ public class AutoMoat implements TrcRobot.AutoStrategy
     {
         this.robot = robot;
         distanceCrossDefense = HalDashboard.getNumber("1.Moat:DistanceCrossDefense", 144.0);
+        useMotionProfiles = HalDashboard.getBoolean(
+                "AutoUseMotionProfiles", RobotInfo.AUTO_USE_MOTION_PROFILES);
+        if (useMotionProfiles)
+        {
+            crossDefenseProfile = new TrcMotionProfile(
+                    distanceCrossDefense,
+                    0.6*RobotInfo.DRIVE_FULL_POWER_VELOCITY,
+                    RobotInfo.DRIVE_MAX_ACCELERATION,
+                    RobotInfo.DRIVE_MAX_JERK);
+        }
         sm = new TrcStateMachine(moduleName);
         event = new TrcEvent(moduleName);
         sm.start(State.DRIVE_OVER_MOAT);
@@ -38,7 +51,7 @@ public class AutoMoat implements TrcRobot.AutoStrategy
     public void autoPeriodic(double elapsedTime)
     {
         State state = (State)sm.getState();
-        dashboard.displayPrintf(
+        dashboard.displayPrintfNoAlloc(
                 1, "[%6.3f] %s", elapsedTime, state != null? state.toString(): "DISABLED");
         robot.encoderXPidCtrl.displayPidInfo(2);
         robot.encoderYPidCtrl.displayPidInfo(4);
@@ -53,7 +66,14 @@ public class AutoMoat implements TrcRobot.AutoStrategy
             {
                 case DRIVE_OVER_MOAT:
                     robot.encoderYPidCtrl.setOutputRange(-0.6, 0.6);
-                    robot.pidDrive.setTarget(0.0, distanceCrossDefense, 0.0, false, event);
+                    if (useMotionProfiles)
+                    {
+                        robot.pidDrive.setTarget(null, crossDefenseProfile, null, false, event, 0.0);
+                    }
+                    else
+                    {
+                        robot.pidDrive.setTarget(0.0, distanceCrossDefense, 0.0, false, event);
+                    }
 //                    robot.arm.setPosition(RobotInfo.ARM_OUT_POSITION);
                     robot.arm.setPower(1.0,  1.0);
                     sm.addEvent(event);
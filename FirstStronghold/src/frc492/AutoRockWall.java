@@ -2,6 +2,7 @@ package frc492;
 
 import hallib.HalDashboard;
 import trclib.TrcEvent;
+import trclib.TrcMotionProfile;
 import trclib.TrcRobot.AutoStrategy;
 import trclib.TrcStateMachine;
 import trclib.TrcTimer;
@@ -21,6 +22,10 @@ public class AutoRockWall implements AutoStrategy
     private double distanceToDefense;
     private double distanceApproachDefense;
     private double distanceCrossDefense;
+    private boolean useMotionProfiles;
+    private TrcMotionProfile toDefenseProfile;
+    private TrcMotionProfile approachDefenseProfile;
+    private TrcMotionProfile crossDefenseProfile;
     private TrcStateMachine sm;
     private TrcEvent event;
     private TrcTimer timer;
@@ -45,6 +50,30 @@ public class AutoRockWall implements AutoStrategy
                 "2.RockWall:DistanceApproachDefense", 70.0);
         distanceCrossDefense = HalDashboard.getNumber(
                 "DistanceOverRockWall", RobotInfo.AUTO_DISTANCE_CROSS_DEFENSE);
+        useMotionProfiles = HalDashboard.getBoolean(
+                "AutoUseMotionProfiles", RobotInfo.AUTO_USE_MOTION_PROFILES);
+        if (useMotionProfiles)
+        {
+            //
+            // Profiles are relative to where each leg starts, so they cover the
+            // distance between the absolute targets of consecutive legs.
+            //
+            toDefenseProfile = new TrcMotionProfile(
+                    distanceToDefense,
+                    0.5*RobotInfo.DRIVE_FULL_POWER_VELOCITY,
+                    RobotInfo.DRIVE_MAX_ACCELERATION,
+                    RobotInfo.DRIVE_MAX_JERK);
+            approachDefenseProfile = new TrcMotionProfile(
+                    distanceApproachDefense - distanceToDefense,
+                    0.4*RobotInfo.DRIVE_FULL_POWER_VELOCITY,
+                    RobotInfo.DRIVE_MAX_ACCELERATION,
+                    RobotInfo.DRIVE_MAX_JERK);
+            crossDefenseProfile = new TrcMotionProfile(
+                    distanceCrossDefense - distanceApproachDefense,
+                    0.7*RobotInfo.DRIVE_FULL_POWER_VELOCITY,
+                    RobotInfo.DRIVE_MAX_ACCELERATION,
+                    RobotInfo.DRIVE_MAX_JERK);
+        }
         sm = new TrcStateMachine(moduleName);
         event = new TrcEvent(moduleName);
         timer = new TrcTimer(moduleName);
@@ -54,7 +83,7 @@ public class AutoRockWall implements AutoStrategy
     public void autoPeriodic(double elapsedTime)
     {
         State state = (State)sm.getState();
-        dashboard.displayPrintf(
+        dashboard.displayPrintfNoAlloc(
                 1, "[%6.3f] %s", elapsedTime, state != null? state.toString(): "DISABLED");
         robot.encoderXPidCtrl.displayPidInfo(2);
         robot.encoderYPidCtrl.displayPidInfo(4);
@@ -71,7 +100,16 @@ public class AutoRockWall implements AutoStrategy
                      * drive to defense
                      */
                     robot.encoderYPidCtrl.setOutputRange(-0.5, 0.5);
-                    robot.pidDrive.setTarget(0.0, distanceToDefense, 0.0, false, event, 2.0);
+                    if (useMotionProfiles)
+                    {
+                        robot.pidDrive.setTarget(
+                                null, toDefenseProfile, null, false, event,
+                                toDefenseProfile.getDuration() + 1.0);
+                    }
+                    else
+                    {
+                        robot.pidDrive.setTarget(0.0, distanceToDefense, 0.0, false, event, 2.0);
+                    }
 //                    robot.arm.setPosition(RobotInfo.ARM_OUT_POSITION);
                     robot.arm.setPower(1.0, 1.0);
                     sm.addEvent(event);
@@ -83,8 +121,17 @@ public class AutoRockWall implements AutoStrategy
                      * drive to defense
                      */
                     robot.encoderYPidCtrl.setOutputRange(-0.4, 0.4);
-                    robot.pidDrive.setTarget(
-                            0.0, distanceApproachDefense, 0.0, false, event, 2.0);
+                    if (useMotionProfiles)
+                    {
+                        robot.pidDrive.setTarget(
+                                null, approachDefenseProfile, null, false, event,
+                                approachDefenseProfile.getDuration() + 1.0);
+                    }
+                    else
+                    {
+                        robot.pidDrive.setTarget(
+                                0.0, distanceApproachDefense, 0.0, false, event, 2.0);
+                    }
                     sm.addEvent(event);
                     sm.waitForEvents(State.LOWER_ARMS);
                     break;
@@ -106,7 +153,16 @@ public class AutoRockWall implements AutoStrategy
                      */
                     robot.arm.setPower(1.0, 2.0);
                     robot.encoderYPidCtrl.setOutputRange(-0.7, 0.7);
-                    robot.pidDrive.setTarget(0.0, distanceCrossDefense, 0.0, false, event, 5.0);
+                    if (useMotionProfiles)
+                    {
+                        robot.pidDrive.setTarget(
+                                null, crossDefenseProfile, null, false, event,
+                                crossDefenseProfile.getDuration() + 2.0);
+                    }
+                    else
+                    {
+                        robot.pidDrive.setTarget(0.0, distanceCrossDefense, 0.0, false, event, 5.0);
+                    }
                     sm.addEvent(event);
                     sm.waitForEvents(State.DONE);
                     break;
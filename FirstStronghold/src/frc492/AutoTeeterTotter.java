@@ -46,7 +46,7 @@ public class AutoTeeterTotter implements AutoStrategy
     public void autoPeriodic(double elapsedTime) 
   	{
         State state = (State)sm.getState();
-        dashboard.displayPrintf(
+        dashboard.displayPrintfNoAlloc(
                 1, "[%6.3f] %s", elapsedTime, state != null? state.toString(): "DISABLED");
         robot.encoderXPidCtrl.displayPidInfo(2);
         robot.encoderYPidCtrl.displayPidInfo(4);
@@ -39,7 +39,7 @@ public class Crane implements TrcPidController.PidInput
         winchMotor.setFeedbackDevice(FeedbackDevice.QuadEncoder);
         winchMotor.reverseSensor(false);
         winchPidCtrl = new TrcPidController(
-                moduleName,
+                moduleName + ".winch",
                 RobotInfo.WINCH_KP,
                 RobotInfo.WINCH_KI,
                 RobotInfo.WINCH_KD,
@@ -63,7 +63,7 @@ public class Crane implements TrcPidController.PidInput
         craneMotor.setFeedbackDevice(FeedbackDevice.QuadEncoder);
         craneMotor.reverseSensor(true);
         cranePidCtrl = new TrcPidController(
-                moduleName,
+                moduleName + ".crane",
                 RobotInfo.CRANE_KP,
                 RobotInfo.CRANE_KI,
                 RobotInfo.CRANE_KD,
@@ -88,7 +88,7 @@ public class Crane implements TrcPidController.PidInput
         tilterMotor.setFeedbackDevice(FeedbackDevice.QuadEncoder);
         tilterMotor.reverseSensor(false);
         tilterPidCtrl = new TrcPidController(
-                moduleName,
+                moduleName + ".tilter",
                 RobotInfo.TILTER_KP,
                 RobotInfo.TILTER_KI,
                 RobotInfo.TILTER_KD,
@@ -106,19 +106,19 @@ public class Crane implements TrcPidController.PidInput
 
     public void displayDebugInfo(int lineNum)
     {
-        dashboard.displayPrintf(
+        dashboard.displayPrintfNoAlloc(
                 lineNum, "Tilter: Angle=%.2f, SW=%d/%d, Enc=%.0f",
                 getTilterAngle(),
                 tilterMotor.isLowerLimitSwitchActive()? 1: 0,
                 tilterMotor.isUpperLimitSwitchActive()? 1: 0, tilterMotor.getPosition());
         tilterPidCtrl.displayPidInfo(lineNum + 1);
-        dashboard.displayPrintf(
+        dashboard.displayPrintfNoAlloc(
                 lineNum + 3, "Crane: Length=%.2f, SW=%d/%d",
                 getCraneLength(),
                 craneMotor.isLowerLimitSwitchActive()? 1: 0,
                 craneMotor.isUpperLimitSwitchActive()? 1: 0);
         cranePidCtrl.displayPidInfo(lineNum + 4);
-        dashboard.displayPrintf(lineNum + 6, "Winch: Length=%.2f", getWinchLength());
+        dashboard.displayPrintfNoAlloc(lineNum + 6, "Winch: Length=%.2f", getWinchLength());
     }
 
     /*
@@ -0,0 +1,160 @@
+package frc492;
+
+import hallib.HalGyro;
+import hallib.HalMotorController;
+import trclib.TrcDriveBase;
+import trclib.TrcPidController;
+import trclib.TrcPidDrive;
+import trclib.TrcPurePursuitDrive;
+import trclib.TrcSensor;
+
+/**
+ * This class implements the DriveBase subsystem: the drive base with its PID
+ * and path drives. The motors and gyro are created and configured by the
+ * caller, so the same subsystem runs on the CAN Talons of the robot or on
+ * simulated devices off-robot.
+ */
+public class DriveTrain implements TrcPidController.PidInput
+{
+    public HalMotorController leftFrontMotor;
+    public HalMotorController leftRearMotor;
+    public HalMotorController rightFrontMotor;
+    public HalMotorController rightRearMotor;
+    public HalGyro gyro;
+    public TrcDriveBase driveBase;
+
+    public TrcPidController encoderXPidCtrl;
+    public TrcPidController encoderYPidCtrl;
+    public TrcPidController gyroTurnPidCtrl;
+    public TrcPidDrive pidDrive;
+
+    public TrcPidController sonarYPidCtrl;
+    public TrcPidDrive sonarPidDrive;
+
+    public TrcPurePursuitDrive pathDrive;
+
+    private TrcSensor.DoubleData gyroData = new TrcSensor.DoubleData();
+
+    /**
+     * Constructor: Creates an instance of the object.
+     *
+     * @param leftFrontMotor specifies the left front motor.
+     * @param leftRearMotor specifies the left rear motor.
+     * @param rightFrontMotor specifies the right front motor.
+     * @param rightRearMotor specifies the right rear motor.
+     * @param gyro specifies the gyro, can be null if it failed to initialize.
+     */
+    public DriveTrain(
+            HalMotorController leftFrontMotor,
+            HalMotorController leftRearMotor,
+            HalMotorController rightFrontMotor,
+            HalMotorController rightRearMotor,
+            HalGyro gyro)
+    {
+        this.leftFrontMotor = leftFrontMotor;
+        this.leftRearMotor = leftRearMotor;
+        this.rightFrontMotor = rightFrontMotor;
+        this.rightRearMotor = rightRearMotor;
+        this.gyro = gyro;
+
+        driveBase = new TrcDriveBase(
+                "driveBase",
+                leftFrontMotor,
+                leftRearMotor,
+                rightFrontMotor,
+                rightRearMotor,
+                gyro);
+
+        //
+        // Create PID controllers for DriveBase PID drive.
+        //
+        encoderXPidCtrl = new TrcPidController(
+                "encoderXPidCtrl",
+                RobotInfo.ENCODER_X_KP,
+                RobotInfo.ENCODER_X_KI,
+                RobotInfo.ENCODER_X_KD,
+                RobotInfo.ENCODER_X_KF,
+                RobotInfo.ENCODER_X_TOLERANCE,
+                RobotInfo.ENCODER_X_SETTLING,
+                this);
+        encoderXPidCtrl.setAbsoluteSetPoint(true);
+        encoderYPidCtrl = new TrcPidController(
+                "encoderYPidCtrl",
+                RobotInfo.ENCODER_Y_KP,
+                RobotInfo.ENCODER_Y_KI,
+                RobotInfo.ENCODER_Y_KD,
+                RobotInfo.ENCODER_Y_KF,
+                RobotInfo.ENCODER_Y_TOLERANCE,
+                RobotInfo.ENCODER_Y_SETTLING,
+                this);
+        encoderYPidCtrl.setAbsoluteSetPoint(true);
+        gyroTurnPidCtrl = new TrcPidController(
+                "gyroTurnPidCtrl",
+                RobotInfo.GYRO_TURN_KP,
+                RobotInfo.GYRO_TURN_KI,
+                RobotInfo.GYRO_TURN_KD,
+                RobotInfo.GYRO_TURN_KF,
+                RobotInfo.GYRO_TURN_TOLERANCE,
+                RobotInfo.GYRO_TURN_SETTLING,
+                this);
+        gyroTurnPidCtrl.setAbsoluteSetPoint(true);
+        pidDrive = new TrcPidDrive(
+                "pidDrive", driveBase, encoderXPidCtrl, encoderYPidCtrl, gyroTurnPidCtrl);
+        pidDrive.setYFeedforward(RobotInfo.ENCODER_Y_KV, RobotInfo.ENCODER_Y_KA);
+
+        sonarYPidCtrl = new TrcPidController(
+                "sonarYPidCtrl",
+                RobotInfo.SONAR_Y_KP,
+                RobotInfo.SONAR_Y_KI,
+                RobotInfo.SONAR_Y_KD,
+                RobotInfo.SONAR_Y_KF,
+                RobotInfo.SONAR_Y_TOLERANCE,
+                RobotInfo.SONAR_Y_SETTLING,
+                this);
+        sonarYPidCtrl.setAbsoluteSetPoint(true);
+        sonarYPidCtrl.setInverted(true);
+        sonarPidDrive = new TrcPidDrive(
+                "sonarPidDrive", driveBase,
+                encoderXPidCtrl, sonarYPidCtrl, gyroTurnPidCtrl);
+
+        pathDrive = new TrcPurePursuitDrive(
+                "pathDrive", driveBase,
+                RobotInfo.DRIVE_TRACK_WIDTH,
+                RobotInfo.PATH_LOOKAHEAD_DISTANCE,
+                RobotInfo.ENCODER_Y_KV,
+                RobotInfo.PATH_VELOCITY_KP);
+        pathDrive.setEndTolerance(RobotInfo.PATH_END_TOLERANCE);
+    }   //DriveTrain
+
+    //
+    // Implements TrcPidController.PidInput.
+    //
+    @Override
+    public double getInput(TrcPidController pidCtrl)
+    {
+        double value = 0.0;
+
+        if (pidCtrl == encoderXPidCtrl)
+        {
+            value = driveBase.getXPosition()*RobotInfo.DRIVEBASE_X_SCALE;
+        }
+        else if (pidCtrl == encoderYPidCtrl)
+        {
+            value = driveBase.getYPosition()*RobotInfo.DRIVEBASE_Y_SCALE;
+        }
+        else if (pidCtrl == gyroTurnPidCtrl && gyro != null)
+        {
+            gyro.getZHeading(gyroData);
+            value = gyroData.value;
+        }
+        /*
+        else if (pidCtrl == sonarYPidCtrl)
+        {
+            value = sonarDistance;
+        }
+        */
+
+        return value;
+    }   //getInput
+
+}   //class DriveTrain
@@ -1,11 +1,7 @@
 package frc492;
 
 import com.ni.vision.NIVision;
-import com.ni.vision.NIVision.DrawMode;
 import com.ni.vision.NIVision.IMAQdxCameraControlMode;
-import com.ni.vision.NIVision.Image;
-import com.ni.vision.NIVision.ImageType;
-import com.ni.vision.NIVision.ShapeMode;
 
 import edu.wpi.first.wpilibj.CANTalon;
 import edu.wpi.first.wpilibj.CameraServer;
@@ -13,14 +9,16 @@ import edu.wpi.first.wpilibj.Relay;
 import frclib.FrcADXRS450Gyro;
 import frclib.FrcCANTalon;
 import frclib.FrcDigitalRGB;
+import frclib.FrcImagePipeline;
 import frclib.FrcRobotBase;
-import frclib.FrcVision;
+import frclib.FrcVideoStreamer;
 import hallib.HalDashboard;
 import hallib.HalUtil;
 import trclib.TrcDbgTrace;
 import trclib.TrcDriveBase;
 import trclib.TrcPidController;
 import trclib.TrcPidDrive;
+import trclib.TrcPurePursuitDrive;
 import trclib.TrcRobot.RobotMode;
 
 /**
@@ -30,8 +28,7 @@ import trclib.TrcRobot.RobotMode;
  * creating this project, you must also update the manifest file in the
  * resource directory.
  */
-public class Robot extends FrcRobotBase implements TrcPidController.PidInput,
-                                                   FrcVision.ImageProvider
+public class Robot extends FrcRobotBase
 {
     private static final String programName = "FirstStronghold";
     private TrcDbgTrace dbgTrace = FrcRobotBase.getRobotTracer();
@@ -41,6 +38,7 @@ public class Robot extends FrcRobotBase implements TrcPidController.PidInput,
     private static final boolean debugDriveBase = true;
     private static final boolean debugArm = true;
     private static final boolean debugCrane = false;
+    private static final boolean debugVision = true;
     private static final boolean debugPidDrive = false;
     private static final boolean debugPidSonar = false;
     private static final double DASHBOARD_UPDATE_INTERVAL = 0.1;
@@ -59,12 +57,12 @@ public class Robot extends FrcRobotBase implements TrcPidController.PidInput,
     //
     // Camera.
     //
+    private static final int VISION_CONSUMER = 0;
+    private static final int STREAM_CONSUMER = 1;
     private CameraServer cameraServer = null;
     private int usbCamSession = -1;
-    private Image usbCamImage = null;
-    private Image overlayImage = null;
-    private boolean freshImage = false;
-    private boolean videoEnabled = false;
+    private FrcImagePipeline imagePipeline = null;
+    private FrcVideoStreamer videoStreamer = null;
 
     //
     // DriveBase subsystem.
@@ -73,6 +71,7 @@ public class Robot extends FrcRobotBase implements TrcPidController.PidInput,
     public FrcCANTalon leftRearMotor;
     public FrcCANTalon rightFrontMotor;
     public FrcCANTalon rightRearMotor;
+    public DriveTrain driveTrain;
     public TrcDriveBase driveBase;
 
     public TrcPidController encoderXPidCtrl;
@@ -83,6 +82,8 @@ public class Robot extends FrcRobotBase implements TrcPidController.PidInput,
     public TrcPidController sonarYPidCtrl;
     public TrcPidDrive sonarPidDrive;
 
+    public TrcPurePursuitDrive pathDrive;
+
     //
     // Define our subsystems for Auto and TeleOp modes.
     //
@@ -145,12 +146,15 @@ public class Robot extends FrcRobotBase implements TrcPidController.PidInput,
     {
         final String funcName = "initRobot";
 
+        setTaskProfilingEnabled(
+                RobotInfo.ENABLE_TASK_PROFILING, RobotInfo.TASK_PROFILE_OVERRUN);
+
         //
         // Sensors.
         //
         try
         {
-            gyro = new FrcADXRS450Gyro();
+            gyro = new FrcADXRS450Gyro("gyro");
         }
         catch (NullPointerException e)
         {
@@ -181,10 +185,13 @@ public class Robot extends FrcRobotBase implements TrcPidController.PidInput,
                         IMAQdxCameraControlMode.CameraControlModeController);
                 NIVision.IMAQdxConfigureGrab(usbCamSession);
 
-                usbCamImage = NIVision.imaqCreateImage(ImageType.IMAGE_RGB, 0);
-                overlayImage = NIVision.imaqCreateImage(ImageType.IMAGE_RGB, 0);
+                imagePipeline = new FrcImagePipeline(
+                        "usbCam", usbCamSession, "vision", "stream");
                 cameraServer = CameraServer.getInstance();
                 cameraServer.setQuality(30);
+                videoStreamer = new FrcVideoStreamer(
+                        "usbCam", imagePipeline.getConsumer(STREAM_CONSUMER), cameraServer);
+                videoStreamer.setStreamingInterval((long)(DASHBOARD_UPDATE_INTERVAL*1000));
             }
             catch (Exception e)
             {
@@ -233,65 +240,24 @@ public class Robot extends FrcRobotBase implements TrcPidController.PidInput,
         rightRearMotor.setFeedbackDevice(CANTalon.FeedbackDevice.QuadEncoder);
 
         //
-        // Initialize DriveBase subsystem.
+        // Initialize DriveBase subsystem. The drive base and its PID and path
+        // drives are in DriveTrain, which only needs HAL devices, so the same
+        // code runs in simulation.
         //
-        driveBase = new TrcDriveBase(
+        driveTrain = new DriveTrain(
                 leftFrontMotor,
                 leftRearMotor,
                 rightFrontMotor,
                 rightRearMotor,
                 gyro);
-
-        //
-        // Create PID controllers for DriveBase PID drive.
-        //
-        encoderXPidCtrl = new TrcPidController(
-                "encoderXPidCtrl",
-                RobotInfo.ENCODER_X_KP,
-                RobotInfo.ENCODER_X_KI,
-                RobotInfo.ENCODER_X_KD,
-                RobotInfo.ENCODER_X_KF,
-                RobotInfo.ENCODER_X_TOLERANCE,
-                RobotInfo.ENCODER_X_SETTLING,
-                this);
-        encoderXPidCtrl.setAbsoluteSetPoint(true);
-        encoderYPidCtrl = new TrcPidController(
-                "encoderYPidCtrl",
-                RobotInfo.ENCODER_Y_KP,
-                RobotInfo.ENCODER_Y_KI,
-                RobotInfo.ENCODER_Y_KD,
-                RobotInfo.ENCODER_Y_KF,
-                RobotInfo.ENCODER_Y_TOLERANCE,
-                RobotInfo.ENCODER_Y_SETTLING,
-                this);
-        encoderYPidCtrl.setAbsoluteSetPoint(true);
-        gyroTurnPidCtrl = new TrcPidController(
-                "gyroTurnPidCtrl",
-                RobotInfo.GYRO_TURN_KP,
-                RobotInfo.GYRO_TURN_KI,
-                RobotInfo.GYRO_TURN_KD,
-                RobotInfo.GYRO_TURN_KF,
-                RobotInfo.GYRO_TURN_TOLERANCE,
-                RobotInfo.GYRO_TURN_SETTLING,
-                this);
-        gyroTurnPidCtrl.setAbsoluteSetPoint(true);
-        pidDrive = new TrcPidDrive(
-                "pidDrive", driveBase, encoderXPidCtrl, encoderYPidCtrl, gyroTurnPidCtrl);
-
-        sonarYPidCtrl = new TrcPidController(
-                "sonarYPidCtrl",
-                RobotInfo.SONAR_Y_KP,
-                RobotInfo.SONAR_Y_KI,
-                RobotInfo.SONAR_Y_KD,
-                RobotInfo.SONAR_Y_KF,
-                RobotInfo.SONAR_Y_TOLERANCE,
-                RobotInfo.SONAR_Y_SETTLING,
-                this);
-        sonarYPidCtrl.setAbsoluteSetPoint(true);
-        sonarYPidCtrl.setInverted(true);
-        sonarPidDrive = new TrcPidDrive(
-                "sonarPidDrive", driveBase,
-                encoderXPidCtrl, sonarYPidCtrl, gyroTurnPidCtrl);
+        driveBase = driveTrain.driveBase;
+        encoderXPidCtrl = driveTrain.encoderXPidCtrl;
+        encoderYPidCtrl = driveTrain.encoderYPidCtrl;
+        gyroTurnPidCtrl = driveTrain.gyroTurnPidCtrl;
+        pidDrive = driveTrain.pidDrive;
+        sonarYPidCtrl = driveTrain.sonarYPidCtrl;
+        sonarPidDrive = driveTrain.sonarPidDrive;
+        pathDrive = driveTrain.pathDrive;
 
         //
         // Arm subsystem.
@@ -341,7 +307,8 @@ public class Robot extends FrcRobotBase implements TrcPidController.PidInput,
         {
             if (cameraServer != null)
             {
-                visionTarget = new VisionTarget(this);
+                visionTarget = new VisionTarget(
+                        imagePipeline.getConsumer(VISION_CONSUMER), driveBase);
             }
         }
         else
@@ -362,15 +329,7 @@ public class Robot extends FrcRobotBase implements TrcPidController.PidInput,
     {
         if (cameraServer != null)
         {
-            if (enabled)
-            {
-                NIVision.IMAQdxStartAcquisition(usbCamSession);
-            }
-            else
-            {
-                NIVision.IMAQdxStopAcquisition(usbCamSession);
-            }
-            videoEnabled = enabled;
+            imagePipeline.setCaptureEnabled(enabled);
         }
     }   //setVideoEnabled
 
@@ -391,30 +350,13 @@ public class Robot extends FrcRobotBase implements TrcPidController.PidInput,
             */
 
             //
-            // USB camera streaming.
+            // USB camera streaming. Capture and encoding run on their own
+            // threads, only the target overlay is updated here.
             //
-            if (videoEnabled)
+            if (videoStreamer != null)
             {
-                NIVision.IMAQdxGrab(usbCamSession, usbCamImage, 1);
-                freshImage = true;
-                NIVision.Rect rect = visionTarget != null? visionTarget.getLastTargetRect(): null;
-                if (rect != null)
-                {
-//                    NIVision.imaqDuplicate(overlayImage, usbCamImage);
-                    NIVision.imaqDrawShapeOnImage(
-                            overlayImage,
-                            usbCamImage,
-//                            overlayImage,
-                            rect,
-                            DrawMode.DRAW_VALUE,
-                            ShapeMode.SHAPE_RECT,
-                            (float)0x0);
-                    cameraServer.setImage(overlayImage);
-                }
-                else
-                {
-                    cameraServer.setImage(usbCamImage);
-                }
+                videoStreamer.setOverlayRect(
+                        visionTarget != null? visionTarget.getLastTargetRect(): null);
             }
 
             if (debugDriveBase)
@@ -422,11 +364,11 @@ public class Robot extends FrcRobotBase implements TrcPidController.PidInput,
                 //
                 // DriveBase debug info.
                 //
-                dashboard.displayPrintf(
+                dashboard.displayPrintfNoAlloc(
                         1, "DriveBase: lf=%.0f, rf=%.0f, lr=%.0f, rr=%.0f",
                         leftFrontMotor.getPosition(), rightFrontMotor.getPosition(),
                         leftRearMotor.getPosition(), rightRearMotor.getPosition());
-                dashboard.displayPrintf(
+                dashboard.displayPrintfNoAlloc(
                         2, "DriveBase: X=%.1f, Y=%.1f, Heading=%.1f",
                         driveBase.getXPosition()*RobotInfo.DRIVEBASE_X_SCALE,
                         driveBase.getYPosition()*RobotInfo.DRIVEBASE_Y_SCALE,
@@ -445,9 +387,9 @@ public class Robot extends FrcRobotBase implements TrcPidController.PidInput,
                     gyroTurnPidCtrl.displayPidInfo(7);
                 }
 
-                HalDashboard.putNumber("DriveBase.X", driveBase.getXPosition());
-                HalDashboard.putNumber("DriveBase.Y", driveBase.getYPosition());
-                HalDashboard.putNumber("DriveBase.Heading", driveBase.getHeading());
+                HalDashboard.publishNumber("DriveBase.X", driveBase.getXPosition());
+                HalDashboard.publishNumber("DriveBase.Y", driveBase.getYPosition());
+                HalDashboard.publishNumber("DriveBase.Heading", driveBase.getHeading());
             }
 
             if (debugArm)
@@ -460,47 +402,12 @@ public class Robot extends FrcRobotBase implements TrcPidController.PidInput,
             {
                 crane.displayDebugInfo(8);
             }
-        }
-    }   //updateDashboard
-
-    //
-    // Implements TrcPidController.PidInput.
-    //
-    @Override
-    public double getInput(TrcPidController pidCtrl)
-    {
-        double value = 0.0;
 
-        if (pidCtrl == encoderXPidCtrl)
-        {
-            value = driveBase.getXPosition()*RobotInfo.DRIVEBASE_X_SCALE;
-        }
-        else if (pidCtrl == encoderYPidCtrl)
-        {
-            value = driveBase.getYPosition()*RobotInfo.DRIVEBASE_Y_SCALE;
-        }
-        else if (pidCtrl == gyroTurnPidCtrl && gyro != null)
-        {
-            value = gyro.getAngle();
-        }
-        /*
-        else if (pidCtrl == sonarYPidCtrl)
-        {
-            value = sonarDistance;
+            if (debugVision && visionTarget != null)
+            {
+                visionTarget.getVisionTask().displayStageStats();
+            }
         }
-        */
-
-        return value;
-    }   //getInput
-
-    //
-    // Implements FrcVision.ImageProvider.
-    //
-
-    @Override
-    public Image getImage()
-    {
-        return freshImage? usbCamImage: null;
-    }   //getImage
+    }   //updateDashboard
 
 }   //class Robot
@@ -6,6 +6,8 @@ public class RobotInfo
     // Compiler switches
     //
     public static final boolean ENABLE_LEDS             = true;
+    public static final boolean ENABLE_TASK_PROFILING   = false;
+    public static final double TASK_PROFILE_OVERRUN     = 0.002;
     
     //
     // Joystick ports.
@@ -94,6 +96,22 @@ public class RobotInfo
     public static final double DRIVE_SLOW_XSCALE        = 3.0;
     public static final double DRIVE_SLOW_YSCALE        = 3.0;
     public static final double DRIVE_SLOW_TURNSCALE     = 3.0;
+    //
+    // Motion profile limits and feedforward. These assume the robot reaches
+    // about DRIVE_FULL_POWER_VELOCITY at full power. None of them has been
+    // measured yet, so the autonomous routines keep their stepped PID legs
+    // unless AUTO_USE_MOTION_PROFILES is turned on.
+    //
+    public static final double DRIVE_FULL_POWER_VELOCITY = 120.0;   //inches/sec, not measured yet
+    public static final double DRIVE_MAX_ACCELERATION   = 80.0;     //inches/sec^2
+    public static final double DRIVE_MAX_JERK           = 400.0;    //inches/sec^3
+    public static final double ENCODER_Y_KV             = 1.0/DRIVE_FULL_POWER_VELOCITY;
+    public static final double ENCODER_Y_KA             = 0.0;      //not measured yet
+    public static final double DRIVE_TRACK_WIDTH        = 24.0;     //inches, not measured yet
+    public static final double PATH_LOOKAHEAD_DISTANCE  = 18.0;     //inches
+    public static final double PATH_MAX_VELOCITY        = 60.0;     //inches/sec
+    public static final double PATH_VELOCITY_KP         = 0.0;      //not tuned yet
+    public static final double PATH_END_TOLERANCE       = 2.0;      //inches
 
     //
     // Arm subsystem.
@@ -162,5 +180,7 @@ public class RobotInfo
     //
     public static final double AUTO_DISTANCE_TO_DEFENSE         = 50.0;
     public static final double AUTO_DISTANCE_CROSS_DEFENSE      = 130.0;
+    public static final boolean AUTO_USE_MOTION_PROFILES        = false;
+    public static final boolean AUTO_USE_PURE_PURSUIT           = false;
 
 }   //class RobotInfo
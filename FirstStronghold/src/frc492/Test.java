@@ -94,7 +94,7 @@ public class Test extends TeleOp
     {
         if (testMode != TestMode.SENSORS_TEST)
         {
-            dashboard.displayPrintf(1, "[%8.3f] %s", elapsedTime, sm.getState().toString());
+            dashboard.displayPrintfNoAlloc(1, "[%8.3f] %s", elapsedTime, sm.getState().toString());
         }
 
         switch (testMode)
@@ -126,8 +126,8 @@ public class Test extends TeleOp
 
     public void doDriveMotorsTest()
     {
-        dashboard.displayPrintf(2, "Motors Test: index=%d", motorIndex);
-        dashboard.displayPrintf(3, "Enc: lf=%.0f, rf=%.0f, lr=%.0f, rr=%.0f",
+        dashboard.displayPrintfNoAlloc(2, "Motors Test: index=%d", motorIndex);
+        dashboard.displayPrintfNoAlloc(3, "Enc: lf=%.0f, rf=%.0f, lr=%.0f, rr=%.0f",
                                 robot.leftFrontMotor.getPosition(),
                                 robot.rightFrontMotor.getPosition(),
                                 robot.leftRearMotor.getPosition(),
@@ -198,10 +198,10 @@ public class Test extends TeleOp
         double lrEnc = robot.leftRearMotor.getPosition();
         double rrEnc = robot.rightRearMotor.getPosition();
         dashboard.displayPrintf(2, "Timed Drive:");
-        dashboard.displayPrintf(
+        dashboard.displayPrintfNoAlloc(
                 3, "Enc: lf=%.0f,rf=%.0f,lr=%.0f,rr=%.0f", lfEnc, rfEnc, lrEnc, rrEnc);
-        dashboard.displayPrintf(3, "average=%f", (lfEnc + rfEnc + lrEnc + rrEnc)/4.0);
-        dashboard.displayPrintf(4, "xPos=%.1f,yPos=%.1f,heading=%.1f",
+        dashboard.displayPrintfNoAlloc(3, "average=%f", (lfEnc + rfEnc + lrEnc + rrEnc)/4.0);
+        dashboard.displayPrintfNoAlloc(4, "xPos=%.1f,yPos=%.1f,heading=%.1f",
                                 robot.driveBase.getXPosition(),
                                 robot.driveBase.getYPosition(),
                                 robot.driveBase.getHeading());
@@ -230,7 +230,7 @@ public class Test extends TeleOp
     public void doXDrive()
     {
         dashboard.displayPrintf(2, "X Drive:");
-        dashboard.displayPrintf(3, "xPos=%.1f,yPos=%.1f,heading=%.1f",
+        dashboard.displayPrintfNoAlloc(3, "xPos=%.1f,yPos=%.1f,heading=%.1f",
                                 robot.driveBase.getXPosition(),
                                 robot.driveBase.getYPosition(),
                                 robot.driveBase.getHeading());
@@ -260,7 +260,7 @@ public class Test extends TeleOp
     public void doYDrive()
     {
         dashboard.displayPrintf(2, "Y Drive:");
-        dashboard.displayPrintf(3, "xPos=%.1f,yPos=%.1f,heading=%.1f",
+        dashboard.displayPrintfNoAlloc(3, "xPos=%.1f,yPos=%.1f,heading=%.1f",
                                 robot.driveBase.getXPosition(),
                                 robot.driveBase.getYPosition(),
                                 robot.driveBase.getHeading());
@@ -290,7 +290,7 @@ public class Test extends TeleOp
     public void doTurn()
     {
         dashboard.displayPrintf(2, "Turn:");
-        dashboard.displayPrintf(3, "xPos=%.1f,yPos=%.1f,heading=%.1f",
+        dashboard.displayPrintfNoAlloc(3, "xPos=%.1f,yPos=%.1f,heading=%.1f",
                                 robot.driveBase.getXPosition(),
                                 robot.driveBase.getYPosition(),
                                 robot.driveBase.getHeading());
@@ -320,7 +320,7 @@ public class Test extends TeleOp
     public void doSonarDrive()
     {
         dashboard.displayPrintf(2, "Sonar Drive:");
-        dashboard.displayPrintf(3, "xPos=%.1f,yPos=%.1f,heading=%.1f",
+        dashboard.displayPrintfNoAlloc(3, "xPos=%.1f,yPos=%.1f,heading=%.1f",
                                 robot.driveBase.getXPosition(),
                                 robot.driveBase.getYPosition(),
                                 robot.driveBase.getHeading());
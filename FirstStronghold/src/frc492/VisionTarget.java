@@ -1,7 +1,5 @@
 package frc492;
 
-import java.util.Vector;
-
 import com.ni.vision.NIVision;
 import com.ni.vision.NIVision.*;
 
@@ -9,6 +7,7 @@ import edu.wpi.first.wpilibj.Relay;
 import frclib.FrcVision;
 import frclib.FrcVision.ParticleReport;
 import trclib.TrcDbgTrace;
+import trclib.TrcDriveBase;
 import hallib.HalDashboard;
 
 public class VisionTarget
@@ -22,20 +21,26 @@ public class VisionTarget
 
     public class TargetReport
     {
+        double timestamp;
         int imageWidth;
         int imageHeight;
         NIVision.Rect rect;
         double distance;
+        double angle;
+        double targetHeading;
 
         public String toString()
         {
-            return  "\nimageWidth  = " + imageWidth +
+            return  "\ntimestamp   = " + timestamp +
+                    "\nimageWidth  = " + imageWidth +
                     "\nimageHeight = " + imageHeight +
                     "\nrectLeft    = " + rect.left +
                     "\nrectTop     = " + rect.top +
                     "\nrectRight   = " + rect.left + rect.width +
                     "\nrectBottom  = " + rect.top + rect.height +
-                    "\ndistance    = " + distance;
+                    "\ndistance    = " + distance +
+                    "\nangle       = " + angle +
+                    "\ntargetHeading = " + targetHeading;
         }   //toString
 
     }   //class TargetReport
@@ -48,9 +53,19 @@ public class VisionTarget
     private ParticleFilterCriteria2[] filterCriteria;
     private ParticleFilterOptions2 filterOptions;
     private TargetReport targetReport;
+    private ParticleReport particleReport;
     private FrcVision visionTask;
+    private TrcDriveBase driveBase;
+    private TrcDriveBase.Pose capturePose;
 
-    public VisionTarget(FrcVision.ImageProvider imageProvider)
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param imageProvider specifies the camera image provider.
+     * @param driveBase specifies the drive base used to look up the robot
+     *        heading when an image was captured, can be null.
+     */
+    public VisionTarget(FrcVision.ImageProvider imageProvider, TrcDriveBase driveBase)
     {
         if (debugEnabled)
         {
@@ -75,6 +90,9 @@ public class VisionTarget
         filterOptions = new ParticleFilterOptions2(0, 0, 1, 1);
         targetReport = new TargetReport();
         targetReport.rect = new NIVision.Rect();
+        this.driveBase = driveBase;
+        capturePose = new TrcDriveBase.Pose();
+        particleReport = new ParticleReport(FrcVision.DEF_MAX_TARGETS);
         visionTask = new FrcVision(
                 imageProvider,
                 ImageType.IMAGE_RGB,
@@ -83,6 +101,11 @@ public class VisionTarget
                 false,
                 filterCriteria,
                 filterOptions);
+        //
+        // Once the goal is found, only search around it to get fresher target
+        // data while aligning.
+        //
+        visionTask.setTrackingEnabled(true);
     }   //VisionTarget
 
     public void setVisionTaskEnabled(boolean enabled)
@@ -124,62 +147,81 @@ public class VisionTarget
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
         }
 
-        Vector<ParticleReport> reports = visionTask.getTargets();
-        boolean hasReport = reports != null && reports.size() >= 1;
+        boolean hasReport =
+                visionTask.getTargets(particleReport) && particleReport.numParticles >= 1;
 
         if (debugEnabled)
         {
             dbgTrace.traceInfo(
                     funcName, "reports=%s,numReports=%d",
-                    reports != null? "Reports": "null",
-                    reports != null? reports.size(): 0);
+                    hasReport? "Reports": "null",
+                    hasReport? particleReport.numParticles: 0);
         }
 
         if (hasReport)
         {
             if (debugEnabled)
             {
-                for (int i = 0; i < reports.size(); i++)
+                for (int i = 0; i < particleReport.numParticles; i++)
                 {
                         dbgTrace.traceInfo(
                                 funcName,
                                 "rect[%d] = {%3.0f,%3.0f/%3.0f,%3.0f}",
                                 i,
-                                reports.elementAt(i).boundingRectLeft,
-                                reports.elementAt(i).boundingRectTop,
-                                reports.elementAt(i).boundingRectRight,
-                                reports.elementAt(i).boundingRectBottom);
+                                particleReport.boundingRectLeft[i],
+                                particleReport.boundingRectTop[i],
+                                particleReport.boundingRectRight[i],
+                                particleReport.boundingRectBottom[i]);
                 }
             }
 
-            targetReport.imageWidth =
-                    reports.elementAt(0).imageWidth;
-            targetReport.imageHeight =
-                    reports.elementAt(0).imageHeight;
-            targetReport.rect.left = (int)reports.elementAt(0).boundingRectLeft;
-            targetReport.rect.width = (int)(reports.elementAt(0).boundingRectRight -
-                                            reports.elementAt(0).boundingRectLeft);
-            targetReport.rect.top = (int)reports.elementAt(0).boundingRectTop;
-            targetReport.rect.height = (int)(reports.elementAt(0).boundingRectBottom -
-                                             reports.elementAt(0).boundingRectTop);
+            targetReport.timestamp = particleReport.timestamp;
+            targetReport.imageWidth = particleReport.imageWidth;
+            targetReport.imageHeight = particleReport.imageHeight;
+            targetReport.rect.left = (int)particleReport.boundingRectLeft[0];
+            targetReport.rect.width = (int)(particleReport.boundingRectRight[0] -
+                                            particleReport.boundingRectLeft[0]);
+            targetReport.rect.top = (int)particleReport.boundingRectTop[0];
+            targetReport.rect.height = (int)(particleReport.boundingRectBottom[0] -
+                                             particleReport.boundingRectTop[0]);
             targetReport.distance =
                     computeDistance(targetReport.rect.width, targetReport.imageWidth);
+            targetReport.angle =
+                    computeAngle(targetReport.rect.left + targetReport.rect.width/2.0,
+                                 targetReport.imageWidth);
+            //
+            // The robot may have turned since the image was captured, so the
+            // field heading of the target is the angle from the heading at
+            // capture time, not the current one.
+            //
+            if (driveBase == null)
+            {
+                targetReport.targetHeading = targetReport.angle;
+            }
+            else if (driveBase.getPoseAt(targetReport.timestamp, capturePose))
+            {
+                targetReport.targetHeading = capturePose.heading + targetReport.angle;
+            }
+            else
+            {
+                targetReport.targetHeading = driveBase.getFieldHeading() + targetReport.angle;
+            }
 
             if (debugVision)
             {
-                dashboard.displayPrintf(
+                dashboard.displayPrintfNoAlloc(
                         8, "imageWidth=%d, imageHeight=%d",
                         targetReport.imageWidth,
                         targetReport.imageHeight);
-                dashboard.displayPrintf(
+                dashboard.displayPrintfNoAlloc(
                         9, "rectLeft=%d, rectRight=%d",
                         targetReport.rect.left,
                         targetReport.rect.left + targetReport.rect.width);
-                dashboard.displayPrintf(
+                dashboard.displayPrintfNoAlloc(
                         10, "rectTop=%d, rectBottom=%d",
                         targetReport.rect.top,
                         targetReport.rect.top + targetReport.rect.height);
-                dashboard.displayPrintf(
+                dashboard.displayPrintfNoAlloc(
                         11, "dist=%f, deltaX/Y=%4.1f/%4.1f",
                         targetReport.distance,
                         (targetReport.rect.left + targetReport.rect.width/2.0 -
@@ -202,6 +244,17 @@ public class VisionTarget
         return targetReport.rect;
     }   //getLastTargetRect
 
+    /**
+     * This method returns the vision pipeline so that its stage timing can be
+     * displayed.
+     *
+     * @return vision pipeline.
+     */
+    public FrcVision getVisionTask()
+    {
+        return visionTask;
+    }   //getVisionTask
+
     /**
      * Computes the estimated distance to a target using the width of the
      * particle in the image. For more information and graphics showing the
@@ -222,4 +275,22 @@ public class VisionTarget
                (normalizedWidth*Math.tan(VIEW_ANGLE*Math.PI/(180*2)));
     }   //computeDistance
 
+    /**
+     * Computes the horizontal angle of a point in the image relative to the
+     * camera axis, positive to the right. The angle is relative to the robot
+     * heading at the time the image was captured, so adding it to the heading
+     * at the report timestamp compensates for the vision latency.
+     *
+     * @param x specifies the x position of the point in the image.
+     * @param imageWidth specifies the image width.
+     * @return the angle in degrees.
+     */
+    private double computeAngle(double x, double imageWidth)
+    {
+        double normalizedX = (2*x - imageWidth)/imageWidth;
+
+        return Math.toDegrees(
+                Math.atan(normalizedX*Math.tan(VIEW_ANGLE*Math.PI/(180*2))));
+    }   //computeAngle
+
 }   //class VisionTarget
@@ -26,18 +26,54 @@ package frclib;
 import edu.wpi.first.wpilibj.ADXRS450_Gyro;
 import hallib.HalGyro;
 import hallib.HalUtil;
+import trclib.TrcSensor.DoubleData;
 import trclib.TrcSensor.SensorData;
+import trclib.TrcTelemetry;
 
 public class FrcADXRS450Gyro extends ADXRS450_Gyro implements HalGyro
 {
+    private static final String moduleName = "FrcADXRS450Gyro";
+
+    private final String instanceName;
     private double zSign = 1.0;
+    private TrcTelemetry.Channel zRateChannel;
+    private TrcTelemetry.Channel zHeadingChannel;
 
-    public FrcADXRS450Gyro() throws NullPointerException
+    /**
+     * Constructor: Create an instance of the object. The z-axis data is
+     * recorded to the "<instanceName>.zRotationRate" and
+     * "<instanceName>.zHeading" telemetry channels, the same channels TrcGyro
+     * records, so the log can be replayed with SimReplayGyro.
+     *
+     * @param instanceName specifies the instance name.
+     */
+    public FrcADXRS450Gyro(final String instanceName) throws NullPointerException
     {
         super();
+        this.instanceName = instanceName;
+        TrcTelemetry telemetry = TrcTelemetry.getInstance();
+        zRateChannel = telemetry.addChannel(
+                instanceName + ".zRotationRate", TrcTelemetry.ChannelType.DOUBLE);
+        zHeadingChannel = telemetry.addChannel(
+                instanceName + ".zHeading", TrcTelemetry.ChannelType.DOUBLE);
         reset();
     }   //FrcADXRS450Gyro
 
+    public FrcADXRS450Gyro() throws NullPointerException
+    {
+        this(moduleName);
+    }   //FrcADXRS450Gyro
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
     //
     // Implements HalGyro interface.
     //
@@ -112,7 +148,10 @@ public class FrcADXRS450Gyro extends ADXRS450_Gyro implements HalGyro
      */
     public SensorData getZRotationRate()
     {
-        return new SensorData(HalUtil.getCurrentTime(), zSign*getRate());
+        double rate = zSign*getRate();
+
+        zRateChannel.recordOncePerFrame(rate);
+        return new SensorData(HalUtil.getCurrentTime(), rate);
     }   //getZRotationRate
 
     /**
@@ -157,7 +196,84 @@ public class FrcADXRS450Gyro extends ADXRS450_Gyro implements HalGyro
      */
     public SensorData getZHeading()
     {
-        return new SensorData(HalUtil.getCurrentTime(), zSign*getAngle());
+        double heading = zSign*getAngle();
+
+        zHeadingChannel.recordOncePerFrame(heading);
+        return new SensorData(HalUtil.getCurrentTime(), heading);
+    }   //getZHeading
+
+    /**
+     * This method reads the rotation rate on the x-axis into the given holder.
+     *
+     * @param data specifies the holder to receive the X rotation rate.
+     */
+    public void getXRotationRate(DoubleData data)
+    {
+        //
+        // X-axis is not supported.
+        //
+        data.set(HalUtil.getCurrentTime(), Double.NaN);
+    }   //getXRotationRate
+
+    /**
+     * This method reads the rotation rate on the y-axis into the given holder.
+     *
+     * @param data specifies the holder to receive the Y rotation rate.
+     */
+    public void getYRotationRate(DoubleData data)
+    {
+        //
+        // Y-axis is not supported.
+        //
+        data.set(HalUtil.getCurrentTime(), Double.NaN);
+    }   //getYRotationRate
+
+    /**
+     * This method reads the rotation rate on the z-axis into the given holder.
+     *
+     * @param data specifies the holder to receive the Z rotation rate.
+     */
+    public void getZRotationRate(DoubleData data)
+    {
+        data.set(HalUtil.getCurrentTime(), zSign*getRate());
+        zRateChannel.recordOncePerFrame(data.value);
+    }   //getZRotationRate
+
+    /**
+     * This method reads the heading of the x-axis into the given holder.
+     *
+     * @param data specifies the holder to receive the X heading.
+     */
+    public void getXHeading(DoubleData data)
+    {
+        //
+        // X-axis is not supported.
+        //
+        data.set(HalUtil.getCurrentTime(), Double.NaN);
+    }   //getXHeading
+
+    /**
+     * This method reads the heading of the y-axis into the given holder.
+     *
+     * @param data specifies the holder to receive the Y heading.
+     */
+    public void getYHeading(DoubleData data)
+    {
+        //
+        // Y-axis is not supported.
+        //
+        data.set(HalUtil.getCurrentTime(), Double.NaN);
+    }   //getYHeading
+
+    /**
+     * This method reads the heading of the z-axis into the given holder.
+     *
+     * @param data specifies the holder to receive the Z heading.
+     */
+    public void getZHeading(DoubleData data)
+    {
+        data.set(HalUtil.getCurrentTime(), zSign*getAngle());
+        zHeadingChannel.recordOncePerFrame(data.value);
     }   //getZHeading
 
     /**
@@ -3,6 +3,7 @@ package frclib;
 import edu.wpi.first.wpilibj.AnalogGyro;
 import hallib.HalGyro;
 import hallib.HalUtil;
+import trclib.TrcSensor.DoubleData;
 import trclib.TrcSensor.SensorData;
 
 public class FrcAnalogGyro extends AnalogGyro implements HalGyro
@@ -136,6 +137,78 @@ public class FrcAnalogGyro extends AnalogGyro implements HalGyro
         return new SensorData(HalUtil.getCurrentTime(), zSign*getAngle());
     }   //getZHeading
 
+    /**
+     * This method reads the rotation rate on the x-axis into the given holder.
+     *
+     * @param data specifies the holder to receive the X rotation rate.
+     */
+    public void getXRotationRate(DoubleData data)
+    {
+        //
+        // X-axis is not supported.
+        //
+        data.set(HalUtil.getCurrentTime(), Double.NaN);
+    }   //getXRotationRate
+
+    /**
+     * This method reads the rotation rate on the y-axis into the given holder.
+     *
+     * @param data specifies the holder to receive the Y rotation rate.
+     */
+    public void getYRotationRate(DoubleData data)
+    {
+        //
+        // Y-axis is not supported.
+        //
+        data.set(HalUtil.getCurrentTime(), Double.NaN);
+    }   //getYRotationRate
+
+    /**
+     * This method reads the rotation rate on the z-axis into the given holder.
+     *
+     * @param data specifies the holder to receive the Z rotation rate.
+     */
+    public void getZRotationRate(DoubleData data)
+    {
+        data.set(HalUtil.getCurrentTime(), zSign*getRate());
+    }   //getZRotationRate
+
+    /**
+     * This method reads the heading of the x-axis into the given holder.
+     *
+     * @param data specifies the holder to receive the X heading.
+     */
+    public void getXHeading(DoubleData data)
+    {
+        //
+        // X-axis is not supported.
+        //
+        data.set(HalUtil.getCurrentTime(), Double.NaN);
+    }   //getXHeading
+
+    /**
+     * This method reads the heading of the y-axis into the given holder.
+     *
+     * @param data specifies the holder to receive the Y heading.
+     */
+    public void getYHeading(DoubleData data)
+    {
+        //
+        // Y-axis is not supported.
+        //
+        data.set(HalUtil.getCurrentTime(), Double.NaN);
+    }   //getYHeading
+
+    /**
+     * This method reads the heading of the z-axis into the given holder.
+     *
+     * @param data specifies the holder to receive the Z heading.
+     */
+    public void getZHeading(DoubleData data)
+    {
+        data.set(HalUtil.getCurrentTime(), zSign*getAngle());
+    }   //getZHeading
+
     /**
      * This method resets the integrator on the x-axis.
      */
@@ -25,6 +25,7 @@ package frclib;
 
 import edu.wpi.first.wpilibj.CANTalon;
 import hallib.HalMotorController;
+import trclib.TrcTelemetry;
 
 public class FrcCANTalon extends CANTalon implements HalMotorController
 {
@@ -37,6 +38,27 @@ public class FrcCANTalon extends CANTalon implements HalMotorController
     private boolean softUpperLimitEnabled = false;
     private double softLowerLimit = 0.0;
     private double softUpperLimit = 0.0;
+    private String instanceName;
+    private TrcTelemetry.Channel positionChannel;
+    private TrcTelemetry.Channel powerChannel;
+
+    /**
+     * This method is called by the constructors to do common initialization.
+     * The telemetry channels are named after the CAN ID so that a recorded
+     * log can be matched to the motors by the replay.
+     *
+     * @param deviceNumber specifies the CAN ID of the device.
+     */
+    private void commonInit(int deviceNumber)
+    {
+        instanceName = "FrcCANTalon" + deviceNumber;
+        TrcTelemetry telemetry = TrcTelemetry.getInstance();
+        positionChannel = telemetry.addChannel(
+                instanceName + ".position", TrcTelemetry.ChannelType.DOUBLE);
+        powerChannel = telemetry.addChannel(
+                instanceName + ".power", TrcTelemetry.ChannelType.DOUBLE);
+        resetPosition();
+    }   //commonInit
 
     /**
      * Constructor: Create an instance of the object.
@@ -52,7 +74,7 @@ public class FrcCANTalon extends CANTalon implements HalMotorController
     public FrcCANTalon(int deviceNumber, int controlPeriodMs, int enablePeriodMs)
     {
         super(deviceNumber, controlPeriodMs, enablePeriodMs);
-        resetPosition();
+        commonInit(deviceNumber);
     }   //FrcCANTalon
 
     /**
@@ -65,7 +87,7 @@ public class FrcCANTalon extends CANTalon implements HalMotorController
     public FrcCANTalon(int deviceNumber, int controlPeriodMs)
     {
         super(deviceNumber, controlPeriodMs);
-        resetPosition();
+        commonInit(deviceNumber);
     }   //FrcCANTalon
 
     /**
@@ -76,9 +98,19 @@ public class FrcCANTalon extends CANTalon implements HalMotorController
     public FrcCANTalon(int deviceNumber)
     {
         super(deviceNumber);
-        resetPosition();
+        commonInit(deviceNumber);
     }   //FrcCANTalon
 
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
     public void setLimitSwitchesSwapped(boolean swapped)
     {
         limitSwitchesSwapped = swapped;
@@ -135,6 +167,7 @@ public class FrcCANTalon extends CANTalon implements HalMotorController
         {
             pos -= zeroPosition;
         }
+        positionChannel.recordOncePerFrame(pos);
 
         return pos;
     }   //getPosition
@@ -227,9 +260,42 @@ public class FrcCANTalon extends CANTalon implements HalMotorController
             power = 0.0;
         }
 
-        super.set(power);
+        set(power);
     }   //setPower
 
+    //
+    // Overrides CANTalon methods. HalRobotDrive (through RobotDrive) drives the
+    // motors with set(double, byte) and not setPower, so the output power is
+    // recorded here to catch every path.
+    //
+
+    /**
+     * This method sets the output of the motor controller and records it.
+     *
+     * @param outputValue specifies the output value, which is the power in the range of
+     *                    -1.0 to 1.0 in the default percent Vbus control mode.
+     */
+    @Override
+    public void set(double outputValue)
+    {
+        powerChannel.record(outputValue);
+        super.set(outputValue);
+    }   //set
+
+    /**
+     * This method sets the output of the motor controller and records it. The
+     * sync group is not used by the CANTalon.
+     *
+     * @param outputValue specifies the output value, which is the power in the range of
+     *                    -1.0 to 1.0 in the default percent Vbus control mode.
+     * @param syncGroup specifies the sync group, ignored.
+     */
+    @Override
+    public void set(double outputValue, byte syncGroup)
+    {
+        set(outputValue);
+    }   //set
+
     /**
      * This method inverts the position sensor direction. This may be rare but
      * there are scenarios where the motor encoder may be mounted somewhere in
@@ -0,0 +1,404 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package frclib;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.ni.vision.NIVision;
+import com.ni.vision.NIVision.Image;
+import com.ni.vision.NIVision.ImageType;
+import com.ni.vision.VisionException;
+
+import hallib.HalUtil;
+import trclib.TrcDbgTrace;
+
+/**
+ * This class implements the capture stage of the camera pipeline. A capture
+ * thread grabs frames from an IMAQdx camera session into a pool of
+ * preallocated images and hands each frame to every consumer through a
+ * lock-free single slot exchange that only holds the latest frame. A frame a
+ * consumer has not taken before the next one arrives is dropped. Frames are
+ * reference counted and go back to the pool once every consumer is done with
+ * them, so capture, vision processing and streaming each run at their own
+ * rate without tearing or allocating per frame.
+ *
+ * Each consumer holds at most one frame and has at most one more waiting in
+ * its slot, so a pool of 2 * numConsumers + 1 images always has a free image
+ * for the capture thread to grab into.
+ */
+public class FrcImagePipeline implements Runnable
+{
+    private static final String moduleName = "FrcImagePipeline";
+    private static final boolean debugEnabled = false;
+    private TrcDbgTrace dbgTrace = null;
+
+    private static final long ERROR_RETRY_DELAY = 100;  // in msec
+    private static final long FREE_FRAME_RETRY_DELAY = 5;   // in msec
+
+    /**
+     * This class holds a captured image and its capture time.
+     */
+    private class Frame
+    {
+        final Image image = NIVision.imaqCreateImage(ImageType.IMAGE_RGB, 0);
+        final AtomicInteger refCount = new AtomicInteger(0);
+        double timestamp;
+    }   //class Frame
+
+    /**
+     * This class implements a consumer of the pipeline. It is created by the
+     * pipeline and handed to a processing stage such as FrcVision as its
+     * image provider.
+     */
+    public class Consumer implements FrcVision.ImageProvider
+    {
+        private final String name;
+        private final AtomicReference<Frame> latestFrame = new AtomicReference<Frame>(null);
+        private Frame currFrame = null;
+
+        private Consumer(String name)
+        {
+            this.name = name;
+        }   //Consumer
+
+        /**
+         * This method returns the consumer name.
+         *
+         * @return consumer name.
+         */
+        public String toString()
+        {
+            return name;
+        }   //toString
+
+        /**
+         * This method takes the latest frame captured since the last call. The
+         * image stays valid until releaseImage or the next getImage call.
+         *
+         * @return latest image, null if there is no new frame.
+         */
+        @Override
+        public Image getImage()
+        {
+            //
+            // Only this consumer empties the slot, so if it has a frame now it
+            // still has one below. The current frame is released before the
+            // new one is taken so that the consumer never holds more than one
+            // frame and the pool cannot run dry.
+            //
+            if (latestFrame.get() == null)
+            {
+                return null;
+            }
+
+            if (currFrame != null)
+            {
+                releaseFrame(currFrame);
+                currFrame = null;
+            }
+            currFrame = latestFrame.getAndSet(null);
+
+            return currFrame.image;
+        }   //getImage
+
+        /**
+         * This method returns the image obtained by getImage to the pipeline.
+         *
+         * @param image specifies the image obtained by getImage.
+         */
+        @Override
+        public void releaseImage(Image image)
+        {
+            if (currFrame != null && currFrame.image == image)
+            {
+                releaseFrame(currFrame);
+                currFrame = null;
+            }
+        }   //releaseImage
+
+        /**
+         * This method returns the capture time of the image obtained by
+         * getImage.
+         *
+         * @return capture time in seconds, 0.0 if not holding an image.
+         */
+        @Override
+        public double getImageTimestamp()
+        {
+            return currFrame != null? currFrame.timestamp: 0.0;
+        }   //getImageTimestamp
+
+        /**
+         * This method is called by the capture thread to publish a new frame,
+         * dropping the one still waiting if the consumer has not taken it.
+         *
+         * @param frame specifies the new frame.
+         */
+        private void publish(Frame frame)
+        {
+            Frame staleFrame = latestFrame.getAndSet(frame);
+
+            if (staleFrame != null)
+            {
+                releaseFrame(staleFrame);
+            }
+        }   //publish
+
+    }   //class Consumer
+
+    private final String instanceName;
+    private final int camSession;
+    private final Frame[] frames;
+    private final Consumer[] consumers;
+    private final Object monitor = new Object();
+    private volatile boolean captureEnabled = false;
+    private boolean acquiring = false;
+    private long captureCount = 0;
+    private Thread captureThread = null;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param instanceName specifies the instance name.
+     * @param camSession specifies the IMAQdx session of a configured camera.
+     * @param consumerNames specifies the names of the consumers, one for each
+     *        processing stage.
+     */
+    public FrcImagePipeline(String instanceName, int camSession, String... consumerNames)
+    {
+        if (debugEnabled)
+        {
+            dbgTrace = new TrcDbgTrace(
+                    moduleName + "." + instanceName,
+                    false,
+                    TrcDbgTrace.TraceLevel.API,
+                    TrcDbgTrace.MsgLevel.INFO);
+        }
+
+        if (consumerNames.length == 0)
+        {
+            throw new IllegalArgumentException("Pipeline must have at least one consumer.");
+        }
+
+        this.instanceName = instanceName;
+        this.camSession = camSession;
+
+        consumers = new Consumer[consumerNames.length];
+        for (int i = 0; i < consumers.length; i++)
+        {
+            consumers[i] = new Consumer(consumerNames[i]);
+        }
+
+        frames = new Frame[2*consumers.length + 1];
+        for (int i = 0; i < frames.length; i++)
+        {
+            frames[i] = new Frame();
+        }
+
+        captureThread = new Thread(this, moduleName + "." + instanceName);
+        captureThread.setDaemon(true);
+        captureThread.start();
+    }   //FrcImagePipeline
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
+    /**
+     * This method returns the consumer at the given index, in the order of
+     * the names passed to the constructor.
+     *
+     * @param index specifies the consumer index.
+     * @return consumer.
+     */
+    public Consumer getConsumer(int index)
+    {
+        return consumers[index];
+    }   //getConsumer
+
+    /**
+     * This method starts or stops capturing. Camera acquisition is started
+     * and stopped on the capture thread so that it never races with a grab.
+     *
+     * @param enabled specifies true to start capturing, false to stop.
+     */
+    public void setCaptureEnabled(boolean enabled)
+    {
+        final String funcName = "setCaptureEnabled";
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(
+                    funcName, TrcDbgTrace.TraceLevel.API,
+                    "enabled=%s", Boolean.toString(enabled));
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        synchronized(monitor)
+        {
+            captureEnabled = enabled;
+            monitor.notify();
+        }
+    }   //setCaptureEnabled
+
+    /**
+     * This method checks if capturing is enabled.
+     *
+     * @return true if capturing is enabled, false otherwise.
+     */
+    public boolean isCaptureEnabled()
+    {
+        return captureEnabled;
+    }   //isCaptureEnabled
+
+    /**
+     * This method returns the number of frames captured so far.
+     *
+     * @return number of frames captured.
+     */
+    public long getCaptureCount()
+    {
+        synchronized(monitor)
+        {
+            return captureCount;
+        }
+    }   //getCaptureCount
+
+    /**
+     * This method runs the capture thread.
+     */
+    @Override
+    public void run()
+    {
+        final String funcName = "run";
+
+        while (true)
+        {
+            synchronized(monitor)
+            {
+                while (!captureEnabled)
+                {
+                    if (acquiring)
+                    {
+                        NIVision.IMAQdxStopAcquisition(camSession);
+                        acquiring = false;
+                    }
+
+                    try
+                    {
+                        monitor.wait();
+                    }
+                    catch (InterruptedException e)
+                    {
+                    }
+                }
+            }
+
+            try
+            {
+                if (!acquiring)
+                {
+                    NIVision.IMAQdxStartAcquisition(camSession);
+                    acquiring = true;
+                }
+
+                Frame frame = getFreeFrame();
+                if (frame == null)
+                {
+                    //
+                    // Skip this frame and give the consumers time to release
+                    // theirs rather than killing the capture thread.
+                    //
+                    if (debugEnabled)
+                    {
+                        dbgTrace.traceWarn(funcName, "No free image in the pool, frame skipped.");
+                    }
+                    HalUtil.sleep(FREE_FRAME_RETRY_DELAY);
+                    continue;
+                }
+                NIVision.IMAQdxGrab(camSession, frame.image, 1);
+                frame.timestamp = HalUtil.getCurrentTime();
+                frame.refCount.set(consumers.length);
+                for (int i = 0; i < consumers.length; i++)
+                {
+                    consumers[i].publish(frame);
+                }
+
+                synchronized(monitor)
+                {
+                    captureCount++;
+                }
+            }
+            catch (VisionException e)
+            {
+                if (debugEnabled)
+                {
+                    dbgTrace.traceErr(funcName, "Failed to grab image: %s", e.getMessage());
+                }
+                HalUtil.sleep(ERROR_RETRY_DELAY);
+            }
+        }
+    }   //run
+
+    /**
+     * This method finds an image in the pool that no consumer is using. Only
+     * the capture thread takes a frame out of the pool, so a frame found free
+     * stays free until it is published.
+     *
+     * @return free frame, null if every frame is in use.
+     */
+    private Frame getFreeFrame()
+    {
+        for (int i = 0; i < frames.length; i++)
+        {
+            if (frames[i].refCount.get() == 0)
+            {
+                return frames[i];
+            }
+        }
+        //
+        // The pool is sized so that this should not happen.
+        //
+        return null;
+    }   //getFreeFrame
+
+    /**
+     * This method drops one reference to a frame. The frame is free again
+     * once its reference count reaches zero.
+     *
+     * @param frame specifies the frame.
+     */
+    private void releaseFrame(Frame frame)
+    {
+        frame.refCount.decrementAndGet();
+    }   //releaseFrame
+
+}   //class FrcImagePipeline
@@ -23,8 +23,12 @@
 
 package frclib;
 
+import java.io.File;
 import java.io.InputStream;
 import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.locks.LockSupport;
 
 import edu.wpi.first.wpilibj.Timer;
 import edu.wpi.first.wpilibj.RobotBase;
@@ -33,10 +37,12 @@ import edu.wpi.first.wpilibj.communication.FRCNetworkCommunicationsLibrary.*;
 import edu.wpi.first.wpilibj.livewindow.LiveWindow;
 import hallib.HalDashboard;
 import hallib.HalDbgLog;
+import hallib.HalLogSink;
 import hallib.HalUtil;
 import trclib.TrcDbgTrace;
 import trclib.TrcRobot.*;
 import trclib.TrcTaskMgr;
+import trclib.TrcTelemetry;
 
 /**
  *  This class defines and implements the FrcRobotBase object. The FrcRobotBase
@@ -54,13 +60,61 @@ public abstract class FrcRobotBase extends RobotBase
     private TrcDbgTrace dbgTrace = null;
     private static TrcDbgTrace robotTracer = null;
 
+    /**
+     * This enum specifies how the scheduler runs the continuous loop.
+     */
+    public enum LoopMode
+    {
+        /**
+         * The continuous loop runs as fast as the CPU allows with no delay
+         * between iterations.
+         */
+        FREE_RUNNING,
+
+        /**
+         * The continuous loop runs at a fixed rate against absolute deadlines.
+         * Between iterations, the scheduler blocks waiting for Driver Station
+         * data or the next deadline, whichever comes first.
+         */
+        FIXED_RATE
+
+    }   //enum LoopMode
+
+    public static final double DEFAULT_LOOP_PERIOD = 0.005;     //200 Hz
+    private static final String TASK_PROFILING_KEY = "TaskProfiling";
+
+    public static final String LOG_FOLDER = "/home/lvuser/logs";
+    private static final String TRACE_LOG_NAME = "trace.log";
+    private static final long TRACE_LOG_MAX_SIZE = 1024*1024;
+    private static final int TRACE_LOG_MAX_FILES = 5;
+    private static final String TELEMETRY_LOG_SUFFIX = ".tlm";
+
     /**
      * This method is called to initialize the robot.
      */
     public abstract void initRobot();
 
+    /**
+     * This method starts recording telemetry into a new log file in the log
+     * folder named after the program and the current date and time.
+     */
+    private void startTelemetry()
+    {
+        final String funcName = "startTelemetry";
+        String fileName = LOG_FOLDER + File.separator + progName + "_" +
+                          new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date()) +
+                          TELEMETRY_LOG_SUFFIX;
+
+        if (!telemetry.start(fileName))
+        {
+            getRobotTracer().traceWarn(funcName, "Failed to start telemetry log %s.", fileName);
+        }
+    }   //startTelemetry
+
     private TrcTaskMgr taskMgr = new TrcTaskMgr();
     private HalDashboard dashboard = new HalDashboard();
+    private TrcTelemetry telemetry = TrcTelemetry.getInstance();
+    private HalLogSink logSink = null;
 
     private static FrcRobotBase instance;
     private String progName;
@@ -70,6 +124,13 @@ public abstract class FrcRobotBase extends RobotBase
     private RobotMode disabledMode = null;
     private static double modeStartTime = 0.0;
     private static double modeElapsedTime = 0.0;
+    private LoopMode loopMode = LoopMode.FIXED_RATE;
+    private double loopPeriod = DEFAULT_LOOP_PERIOD;
+    private double nextLoopDeadline = 0.0;
+    private long loopCount = 0;
+    private long loopOverrunCount = 0;
+    private double maxLoopLateness = 0.0;
+    private double profileOverrunThreshold = DEFAULT_LOOP_PERIOD;
 
     /**
      * Constructor.
@@ -87,6 +148,21 @@ public abstract class FrcRobotBase extends RobotBase
 
         FrcRobotBase.instance = this;
         this.progName = progName;
+        //
+        // Install the asynchronous log sink so that tracing from the robot
+        // loop never blocks on console or file output. The trace log goes to
+        // the log folder and is rotated.
+        //
+        new File(LOG_FOLDER).mkdirs();
+        logSink = new HalLogSink(
+                HalLogSink.DEF_CAPACITY,
+                true,
+                LOG_FOLDER + File.separator + TRACE_LOG_NAME,
+                TRACE_LOG_MAX_SIZE,
+                TRACE_LOG_MAX_FILES,
+                HalLogSink.DEF_FLUSH_PERIOD);
+        logSink.start();
+        HalDbgLog.setLogSink(logSink);
         dashboard.clearDisplay();
     }   //FrcRobotBase
 
@@ -127,6 +203,122 @@ public abstract class FrcRobotBase extends RobotBase
         this.disabledMode = disabledMode;
     }   //setupRobotModes
 
+    /**
+     * This method selects how the scheduler runs the continuous loop. In
+     * FIXED_RATE mode, the continuous tasks run once every loopPeriod seconds
+     * and the scheduler sleeps in between. In FREE_RUNNING mode, the loop
+     * spins as fast as possible and loopPeriod is ignored.
+     *
+     * @param loopMode specifies the loop mode.
+     * @param loopPeriod specifies the continuous loop period in seconds for
+     *                   FIXED_RATE mode.
+     */
+    public void setLoopMode(LoopMode loopMode, double loopPeriod)
+    {
+        final String funcName = "setLoopMode";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(
+                    funcName, TrcDbgTrace.TraceLevel.API,
+                    "mode=%s,period=%f", loopMode.toString(), loopPeriod);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        if (loopMode == LoopMode.FIXED_RATE && loopPeriod <= 0.0)
+        {
+            throw new IllegalArgumentException("Loop period must be positive.");
+        }
+
+        this.loopMode = loopMode;
+        this.loopPeriod = loopPeriod;
+        resetLoopStats();
+    }   //setLoopMode
+
+    /**
+     * This method returns the current loop mode.
+     *
+     * @return loop mode.
+     */
+    public LoopMode getLoopMode()
+    {
+        return loopMode;
+    }   //getLoopMode
+
+    /**
+     * This method returns the number of continuous loop iterations since
+     * the loop statistics were last reset.
+     *
+     * @return number of loop iterations.
+     */
+    public long getLoopCount()
+    {
+        return loopCount;
+    }   //getLoopCount
+
+    /**
+     * This method returns the number of continuous loop iterations that
+     * missed their deadline by more than a whole loop period. This is only
+     * meaningful in FIXED_RATE mode.
+     *
+     * @return number of loop overruns.
+     */
+    public long getLoopOverrunCount()
+    {
+        return loopOverrunCount;
+    }   //getLoopOverrunCount
+
+    /**
+     * This method returns the maximum time in seconds a continuous loop
+     * iteration started after its deadline. This is only meaningful in
+     * FIXED_RATE mode.
+     *
+     * @return maximum loop lateness in seconds.
+     */
+    public double getMaxLoopLateness()
+    {
+        return maxLoopLateness;
+    }   //getMaxLoopLateness
+
+    /**
+     * This method resets the loop statistics.
+     */
+    public void resetLoopStats()
+    {
+        nextLoopDeadline = 0.0;
+        loopCount = 0;
+        loopOverrunCount = 0;
+        maxLoopLateness = 0.0;
+    }   //resetLoopStats
+
+    /**
+     * This method enables/disables per-task execution profiling. The setting
+     * is also published to the dashboard under "TaskProfiling" and can be
+     * toggled from there, taking effect on the next mode transition. While
+     * profiling is enabled, the task profiles of each mode are traced with
+     * the robot tracer when the mode ends.
+     *
+     * @param enabled specifies true to enable profiling, false to disable.
+     * @param overrunThreshold specifies the execution time in seconds above
+     *                         which a task call is counted as an overrun.
+     */
+    public void setTaskProfilingEnabled(boolean enabled, double overrunThreshold)
+    {
+        final String funcName = "setTaskProfilingEnabled";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(
+                    funcName, TrcDbgTrace.TraceLevel.API,
+                    "enabled=%s,threshold=%f", Boolean.toString(enabled), overrunThreshold);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        profileOverrunThreshold = overrunThreshold;
+        taskMgr.setProfilingEnabled(enabled, overrunThreshold);
+        HalDashboard.putBoolean(TASK_PROFILING_KEY, enabled);
+    }   //setTaskProfilingEnabled
+
     /**
      * Start a competition.
      * This specific StartCompetition() implements "main loop" behavior like
@@ -139,6 +331,9 @@ public abstract class FrcRobotBase extends RobotBase
      * enabled. After running the correct method, wait for some state to
      * change, either the other mode starts or the robot is disabled. Then go
      * back and wait for the robot to be enabled again.
+     * In FIXED_RATE loop mode, the continuous loop runs against absolute
+     * deadlines and the scheduler blocks between iterations instead of
+     * spinning.
      */
     public void startCompetition()
     {
@@ -216,12 +411,34 @@ public abstract class FrcRobotBase extends RobotBase
                             prevMode.toString(), currMode.toString());
                 }
                 //
-                // Execute all stop tasks for previous mode.
+                // Pause the task groups and execute all stop tasks for
+                // previous mode.
                 //
+                taskMgr.setRunMode(RunMode.INVALID_MODE);
                 if (prevMode != RunMode.INVALID_MODE)
                 {
                     taskMgr.executeTaskType(
                             TrcTaskMgr.TaskType.STOP_TASK, prevMode);
+                    //
+                    // Dump the task profiles of the mode that just ended.
+                    //
+                    if (taskMgr.isProfilingEnabled())
+                    {
+                        TrcDbgTrace tracer = getRobotTracer();
+                        tracer.traceInfo(funcName, "Task profiles for %s:", prevMode.toString());
+                        taskMgr.traceProfiles(tracer);
+                        taskMgr.resetProfiles();
+                    }
+                }
+                //
+                // Pick up the profiling toggle from the dashboard so the new
+                // mode is profiled (or not) from its start.
+                //
+                boolean profilingEnabled = HalDashboard.getBoolean(
+                        TASK_PROFILING_KEY, taskMgr.isProfilingEnabled());
+                if (profilingEnabled != taskMgr.isProfilingEnabled())
+                {
+                    taskMgr.setProfilingEnabled(profilingEnabled, profileOverrunThreshold);
                 }
                 //
                 // Stop previous mode.
@@ -244,6 +461,19 @@ public abstract class FrcRobotBase extends RobotBase
                     teleOpMode.stopMode();
                 }
                 //
+                // Record telemetry while the robot is enabled. A new log file
+                // is started on every enable and closed on disable, so each
+                // match or test run gets its own log.
+                //
+                if (currMode == RunMode.DISABLED_MODE)
+                {
+                    telemetry.stop();
+                }
+                else if (currMode != RunMode.INVALID_MODE && !telemetry.isRecording())
+                {
+                    startTelemetry();
+                }
+                //
                 // Start current mode.
                 //
                 modeStartTime = HalUtil.getCurrentTime();
@@ -280,13 +510,15 @@ public abstract class FrcRobotBase extends RobotBase
                     }
                 }
                 //
-                // Execute all start tasks for current mode.
+                // Execute all start tasks for current mode and resume the
+                // task groups.
                 //
                 if (currMode != RunMode.INVALID_MODE)
                 {
                     taskMgr.executeTaskType(
                             TrcTaskMgr.TaskType.START_TASK, currMode);
                 }
+                taskMgr.setRunMode(currMode);
             }
 
             modeElapsedTime = HalUtil.getCurrentTime() - modeStartTime;
@@ -350,8 +582,19 @@ public abstract class FrcRobotBase extends RobotBase
                 }
             }
             //
+            // In FIXED_RATE mode, skip the continuous loop until its deadline
+            // arrives. We may get here early because Driver Station data
+            // woke us up to run the periodic loop.
+            //
+            if (!nextContinuousReady())
+            {
+                waitForNextLoop();
+                continue;
+            }
+            //
             // Run continuous mode.
             //
+            telemetry.recordFrame();
             taskMgr.executeTaskType(
                     TrcTaskMgr.TaskType.PRECONTINUOUS_TASK, currMode);
             if (currMode == RunMode.DISABLED_MODE && disabledMode != null)
@@ -375,13 +618,18 @@ public abstract class FrcRobotBase extends RobotBase
 
             if (dashboardEnabled)
             {
-                dashboard.displayPrintf(
+                dashboard.displayPrintfNoAlloc(
                         0,
                         "[%3d:%06.3f] %s",
                         (int)(modeElapsedTime/60),
                         modeElapsedTime%60,
                         currMode.toString());
             }
+
+            if (loopMode == LoopMode.FIXED_RATE)
+            {
+                waitForNextLoop();
+            }
         }
     }   //startCompetition
 
@@ -413,4 +661,89 @@ public abstract class FrcRobotBase extends RobotBase
         return m_ds.isNewControlData();
     }   //nextPeriodReady
 
+    /**
+     * Determine if the continuous loop should run now. In FREE_RUNNING mode,
+     * it always runs. In FIXED_RATE mode, it runs when the current deadline
+     * has arrived. The deadline then advances by one loop period so the loop
+     * rate does not drift. If we have fallen behind by more than a whole
+     * period, the overrun is counted and the deadline is re-synchronized to
+     * the current time instead of running a burst of iterations to catch up.
+     *
+     * @return true if the continuous loop should run, false otherwise.
+     */
+    private boolean nextContinuousReady()
+    {
+        boolean ready = true;
+
+        if (loopMode == LoopMode.FIXED_RATE)
+        {
+            double currTime = Timer.getFPGATimestamp();
+
+            if (nextLoopDeadline == 0.0)
+            {
+                nextLoopDeadline = currTime;
+            }
+
+            if (currTime >= nextLoopDeadline)
+            {
+                double lateness = currTime - nextLoopDeadline;
+
+                if (lateness > maxLoopLateness)
+                {
+                    maxLoopLateness = lateness;
+                }
+
+                nextLoopDeadline += loopPeriod;
+                if (nextLoopDeadline <= currTime)
+                {
+                    loopOverrunCount++;
+                    nextLoopDeadline = currTime + loopPeriod;
+                }
+            }
+            else
+            {
+                ready = false;
+            }
+        }
+
+        if (ready)
+        {
+            loopCount++;
+        }
+
+        return ready;
+    }   //nextContinuousReady
+
+    /**
+     * Block until the next continuous loop deadline or until new Driver
+     * Station data arrives, whichever comes first. waitForData only has
+     * millisecond resolution, so we block for the whole milliseconds left
+     * and then park for the sub-millisecond remainder. Rounding the wait up
+     * instead would make every iteration oversleep by up to a millisecond.
+     */
+    private void waitForNextLoop()
+    {
+        long waitTime = (long)Math.floor((nextLoopDeadline - Timer.getFPGATimestamp())*1000.0);
+
+        //
+        // Note that waitForData(0) means wait forever, so only wait if there
+        // is at least one whole millisecond left.
+        //
+        if (waitTime > 0)
+        {
+            m_ds.waitForData(waitTime);
+        }
+
+        //
+        // If Driver Station data woke us up early, there is more than a
+        // millisecond left and we return right away to run the periodic
+        // loop. Otherwise, park for what is left of the deadline.
+        //
+        double remainingTime = nextLoopDeadline - Timer.getFPGATimestamp();
+        if (remainingTime > 0.0 && remainingTime < 0.001)
+        {
+            LockSupport.parkNanos((long)(remainingTime*1000000000.0));
+        }
+    }   //waitForNextLoop
+
 }   //class FrcRobotBase
@@ -0,0 +1,181 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package frclib;
+
+import com.ni.vision.NIVision;
+import com.ni.vision.NIVision.DrawMode;
+import com.ni.vision.NIVision.Image;
+import com.ni.vision.NIVision.ImageType;
+import com.ni.vision.NIVision.Rect;
+import com.ni.vision.NIVision.ShapeMode;
+
+import edu.wpi.first.wpilibj.CameraServer;
+import hallib.HalUtil;
+import trclib.TrcDbgTrace;
+
+/**
+ * This class implements the streaming stage of the camera pipeline. It runs
+ * on its own thread, takes the latest image from its image provider at the
+ * streaming interval, optionally draws an overlay rectangle on it and hands
+ * it to the CameraServer for JPEG encoding, so none of that work is done on
+ * the robot loop.
+ */
+public class FrcVideoStreamer implements Runnable
+{
+    private static final String moduleName = "FrcVideoStreamer";
+    private static final boolean debugEnabled = false;
+    private TrcDbgTrace dbgTrace = null;
+
+    private final String instanceName;
+    private final FrcVision.ImageProvider imageProvider;
+    private final CameraServer cameraServer;
+    private final Image overlayImage;
+    private final Rect overlayRect = new Rect();
+    private boolean overlayEnabled = false;
+    private long streamingInterval = 100;   // in msec
+    private Thread streamerThread = null;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param instanceName specifies the instance name.
+     * @param imageProvider specifies the provider of the images to stream.
+     * @param cameraServer specifies the camera server to stream to.
+     */
+    public FrcVideoStreamer(
+            String instanceName, FrcVision.ImageProvider imageProvider, CameraServer cameraServer)
+    {
+        if (debugEnabled)
+        {
+            dbgTrace = new TrcDbgTrace(
+                    moduleName + "." + instanceName,
+                    false,
+                    TrcDbgTrace.TraceLevel.API,
+                    TrcDbgTrace.MsgLevel.INFO);
+        }
+
+        this.instanceName = instanceName;
+        this.imageProvider = imageProvider;
+        this.cameraServer = cameraServer;
+        overlayImage = NIVision.imaqCreateImage(ImageType.IMAGE_RGB, 0);
+
+        streamerThread = new Thread(this, moduleName + "." + instanceName);
+        streamerThread.setDaemon(true);
+        streamerThread.start();
+    }   //FrcVideoStreamer
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
+    /**
+     * This method sets the interval between streamed images.
+     *
+     * @param interval specifies the interval in msec.
+     */
+    public void setStreamingInterval(long interval)
+    {
+        final String funcName = "setStreamingInterval";
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API,
+                    "interval=%dms", interval);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        streamingInterval = interval;
+    }   //setStreamingInterval
+
+    /**
+     * This method sets the rectangle drawn on the streamed images. The
+     * rectangle is copied, so the caller may keep updating its own.
+     *
+     * @param rect specifies the rectangle, null to stop drawing it.
+     */
+    public void setOverlayRect(Rect rect)
+    {
+        synchronized(overlayRect)
+        {
+            if (rect != null)
+            {
+                overlayRect.left = rect.left;
+                overlayRect.top = rect.top;
+                overlayRect.width = rect.width;
+                overlayRect.height = rect.height;
+            }
+            overlayEnabled = rect != null;
+        }
+    }   //setOverlayRect
+
+    /**
+     * This method runs the streamer thread.
+     */
+    @Override
+    public void run()
+    {
+        while (true)
+        {
+            long startTime = HalUtil.getCurrentTimeMillis();
+            Image image = imageProvider.getImage();
+
+            if (image != null)
+            {
+                try
+                {
+                    Image streamImage = image;
+                    synchronized(overlayRect)
+                    {
+                        if (overlayEnabled)
+                        {
+                            NIVision.imaqDrawShapeOnImage(
+                                    overlayImage,
+                                    image,
+                                    overlayRect,
+                                    DrawMode.DRAW_VALUE,
+                                    ShapeMode.SHAPE_RECT,
+                                    (float)0x0);
+                            streamImage = overlayImage;
+                        }
+                    }
+                    cameraServer.setImage(streamImage);
+                }
+                finally
+                {
+                    imageProvider.releaseImage(image);
+                }
+            }
+
+            long sleepTime = streamingInterval - (HalUtil.getCurrentTimeMillis() - startTime);
+            HalUtil.sleep(sleepTime);
+        }
+    }   //run
+
+}   //class FrcVideoStreamer
@@ -1,15 +1,12 @@
 package frclib;
 
-import java.util.Comparator;
-import java.util.Vector;
-
 import com.ni.vision.NIVision;
 import com.ni.vision.NIVision.*;
 
-import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import hallib.HalDashboard;
 import hallib.HalUtil;
 import trclib.TrcDbgTrace;
+import trclib.TrcLatencyHistogram;
 
 public class FrcVision implements Runnable
 {
@@ -19,31 +16,192 @@ public class FrcVision implements Runnable
 
     public interface ImageProvider
     {
+        /**
+         * This method returns the latest image. The image belongs to the
+         * caller until it is passed back to releaseImage.
+         *
+         * @return latest image, null if there is no new image.
+         */
         public Image getImage();
-    }   //interface ImageProvider
 
-    private static final boolean visionPerfEnabled = false;
+        /**
+         * This method returns the capture time of the image obtained by
+         * getImage.
+         *
+         * @return capture time in seconds.
+         */
+        public double getImageTimestamp();
+
+        /**
+         * This method returns an image obtained by getImage to the provider.
+         *
+         * @param image specifies the image obtained by getImage.
+         */
+        public void releaseImage(Image image);
+    }   //interface ImageProvider
 
-    public class ParticleReport implements Comparator<ParticleReport>, Comparable<ParticleReport>
+    /**
+     * Stages of the vision pipeline that are timed. CAPTURE is the age of the
+     * image when processing starts, THRESHOLD includes cutting out the search
+     * region in tracking mode and TOTAL is the age of the image when the
+     * results are published.
+     */
+    public enum Stage
+    {
+        CAPTURE,
+        THRESHOLD,
+        CONVEX_HULL,
+        FILTER,
+        MEASURE,
+        TOTAL
+    }   //enum Stage
+
+    private static final Stage[] stages = Stage.values();
+
+    public static final int DEF_MAX_TARGETS = 8;
+    public static final double DEF_TRACKING_MARGIN = 0.5;
+    public static final int DEF_TRACKING_MAX_MISSES = 3;
+
+    //
+    // Order of the measurements in the batched particle report.
+    //
+    private static final MeasurementType[] particleMeasurements =
     {
+        MeasurementType.MT_AREA_BY_IMAGE_AREA,
+        MeasurementType.MT_AREA,
+        MeasurementType.MT_BOUNDING_RECT_LEFT,
+        MeasurementType.MT_BOUNDING_RECT_TOP,
+        MeasurementType.MT_BOUNDING_RECT_RIGHT,
+        MeasurementType.MT_BOUNDING_RECT_BOTTOM
+    };
+    private static final int MEAS_AREA_BY_IMAGE_AREA = 0;
+    private static final int MEAS_AREA = 1;
+    private static final int MEAS_RECT_LEFT = 2;
+    private static final int MEAS_RECT_TOP = 3;
+    private static final int MEAS_RECT_RIGHT = 4;
+    private static final int MEAS_RECT_BOTTOM = 5;
+
+    /**
+     * This class holds the largest particles found in an image, largest
+     * first. The particles are kept in parallel arrays of a fixed capacity so
+     * that a report can be reused from frame to frame.
+     */
+    public static class ParticleReport
+    {
+        public double timestamp;
         public int imageWidth;
         public int imageHeight;
-        public double percentAreaToImageArea;
-        public double area;
-        public double boundingRectLeft;
-        public double boundingRectTop;
-        public double boundingRectRight;
-        public double boundingRectBottom;
-
-        public int compareTo(ParticleReport r)
+        public int numParticles;
+        public final double[] percentAreaToImageArea;
+        public final double[] area;
+        public final double[] boundingRectLeft;
+        public final double[] boundingRectTop;
+        public final double[] boundingRectRight;
+        public final double[] boundingRectBottom;
+
+        /**
+         * Constructor: Create an instance of the object.
+         *
+         * @param capacity specifies the maximum number of particles to keep.
+         */
+        public ParticleReport(int capacity)
         {
-            return (int)(r.area - this.area);
-        }
+            if (capacity <= 0)
+            {
+                throw new IllegalArgumentException("Capacity must be positive.");
+            }
 
-        public int compare(ParticleReport r1, ParticleReport r2)
+            percentAreaToImageArea = new double[capacity];
+            area = new double[capacity];
+            boundingRectLeft = new double[capacity];
+            boundingRectTop = new double[capacity];
+            boundingRectRight = new double[capacity];
+            boundingRectBottom = new double[capacity];
+        }   //ParticleReport
+
+        /**
+         * This method returns the maximum number of particles the report keeps.
+         *
+         * @return report capacity.
+         */
+        public int getCapacity()
         {
-            return (int)(r1.area - r2.area);
-        }
+            return area.length;
+        }   //getCapacity
+
+        /**
+         * This method adds a particle if it is one of the largest seen so
+         * far, keeping the particles sorted by area with an insertion step.
+         *
+         * @param measurements specifies the particle measurements in the
+         *        order of particleMeasurements.
+         * @param xOffset specifies the x offset of the processed region in
+         *        the image.
+         * @param yOffset specifies the y offset of the processed region in
+         *        the image.
+         * @param areaScale specifies the ratio of the processed region area
+         *        to the image area.
+         */
+        private void addParticle(
+                double[] measurements, double xOffset, double yOffset, double areaScale)
+        {
+            double particleArea = measurements[MEAS_AREA];
+            int i = numParticles;
+
+            if (i == area.length)
+            {
+                if (particleArea <= area[i - 1])
+                {
+                    return;
+                }
+                i--;
+            }
+            else
+            {
+                numParticles++;
+            }
+
+            while (i > 0 && area[i - 1] < particleArea)
+            {
+                percentAreaToImageArea[i] = percentAreaToImageArea[i - 1];
+                area[i] = area[i - 1];
+                boundingRectLeft[i] = boundingRectLeft[i - 1];
+                boundingRectTop[i] = boundingRectTop[i - 1];
+                boundingRectRight[i] = boundingRectRight[i - 1];
+                boundingRectBottom[i] = boundingRectBottom[i - 1];
+                i--;
+            }
+
+            percentAreaToImageArea[i] = measurements[MEAS_AREA_BY_IMAGE_AREA]*areaScale;
+            area[i] = particleArea;
+            boundingRectLeft[i] = measurements[MEAS_RECT_LEFT] + xOffset;
+            boundingRectTop[i] = measurements[MEAS_RECT_TOP] + yOffset;
+            boundingRectRight[i] = measurements[MEAS_RECT_RIGHT] + xOffset;
+            boundingRectBottom[i] = measurements[MEAS_RECT_BOTTOM] + yOffset;
+        }   //addParticle
+
+        /**
+         * This method copies the report into another one, truncated to the
+         * capacity of the other report.
+         *
+         * @param report specifies the report to copy into.
+         */
+        private void copyTo(ParticleReport report)
+        {
+            int n = Math.min(numParticles, report.area.length);
+
+            report.timestamp = timestamp;
+            report.imageWidth = imageWidth;
+            report.imageHeight = imageHeight;
+            report.numParticles = n;
+            System.arraycopy(percentAreaToImageArea, 0, report.percentAreaToImageArea, 0, n);
+            System.arraycopy(area, 0, report.area, 0, n);
+            System.arraycopy(boundingRectLeft, 0, report.boundingRectLeft, 0, n);
+            System.arraycopy(boundingRectTop, 0, report.boundingRectTop, 0, n);
+            System.arraycopy(boundingRectRight, 0, report.boundingRectRight, 0, n);
+            System.arraycopy(boundingRectBottom, 0, report.boundingRectBottom, 0, n);
+        }   //copyTo
+
     }   //class ParticleReport
 
     private ImageProvider camera;
@@ -51,16 +209,31 @@ public class FrcVision implements Runnable
     private Range[] colorThresholds;
     private boolean doConvexHull;
     private ParticleFilterCriteria2[] filterCriteria;
+    private ParticleFilterCriteria2[] searchFilterCriteria;
     private ParticleFilterOptions2 filterOptions;
 
     private Image binaryImage;
+    private Image searchImage;
     private Object monitor;
     private Thread visionThread = null;
 
     private long processingInterval = 50;   // in msec
+    private final TrcLatencyHistogram[] stageStats = new TrcLatencyHistogram[stages.length];
     private boolean taskEnabled = false;
     private boolean oneShotEnabled = false;
-    private Vector<ParticleReport> targets = null;
+    private final ParticleReport particles;
+    private final ParticleReport targets;
+    private boolean newTargets = false;
+
+    //
+    // Tracking mode. The search rectangle is only used by the vision thread.
+    //
+    private boolean trackingEnabled = false;
+    private double trackingMargin = DEF_TRACKING_MARGIN;
+    private int trackingMaxMisses = DEF_TRACKING_MAX_MISSES;
+    private final Rect searchRect = new Rect();
+    private boolean searchRectValid = false;
+    private int missCount = 0;
 
     public FrcVision(
             ImageProvider camera,
@@ -70,6 +243,20 @@ public class FrcVision implements Runnable
             boolean doConvexHull,
             ParticleFilterCriteria2[] filterCriteria,
             ParticleFilterOptions2 filterOptions)
+    {
+        this(camera, imageType, colorMode, colorThresholds, doConvexHull,
+             filterCriteria, filterOptions, DEF_MAX_TARGETS);
+    }   //FrcVision
+
+    public FrcVision(
+            ImageProvider camera,
+            ImageType imageType,
+            ColorMode colorMode,
+            Range[] colorThresholds,
+            boolean doConvexHull,
+            ParticleFilterCriteria2[] filterCriteria,
+            ParticleFilterOptions2 filterOptions,
+            int maxTargets)
     {
         if (debugEnabled)
         {
@@ -91,8 +278,29 @@ public class FrcVision implements Runnable
             throw new IllegalArgumentException(
                     "Color threshold array must have 3 elements.");
         }
+        //
+        // The filter criteria used on the search region in tracking mode are
+        // copies so the area-by-image-area limits can be rescaled per image.
+        //
+        searchFilterCriteria = new ParticleFilterCriteria2[filterCriteria.length];
+        for (int i = 0; i < filterCriteria.length; i++)
+        {
+            searchFilterCriteria[i] = new ParticleFilterCriteria2(
+                    filterCriteria[i].parameter,
+                    filterCriteria[i].lower,
+                    filterCriteria[i].upper,
+                    filterCriteria[i].calibrated,
+                    filterCriteria[i].exclude);
+        }
 
         binaryImage = NIVision.imaqCreateImage(ImageType.IMAGE_U8, 0);
+        searchImage = NIVision.imaqCreateImage(imageType, 0);
+        particles = new ParticleReport(maxTargets);
+        for (int i = 0; i < stageStats.length; i++)
+        {
+            stageStats[i] = new TrcLatencyHistogram(processingInterval*1000000);
+        }
+        targets = new ParticleReport(maxTargets);
 
         monitor = new Object();
         visionThread = new Thread(this, "VisionTask");
@@ -173,7 +381,129 @@ public class FrcVision implements Runnable
         return processingInterval;
     }   //getProcessingPeriod
 
-    public Vector<ParticleReport> getTargets()
+    /**
+     * This method returns the rolling timing statistics of a pipeline stage.
+     *
+     * @param stage specifies the stage.
+     * @return timing statistics in msec.
+     */
+    public String getStageStats(Stage stage)
+    {
+        synchronized(stageStats)
+        {
+            return stageStats[stage.ordinal()].toString();
+        }
+    }   //getStageStats
+
+    /**
+     * This method clears the timing statistics of all pipeline stages.
+     */
+    public void resetStageStats()
+    {
+        synchronized(stageStats)
+        {
+            for (int i = 0; i < stageStats.length; i++)
+            {
+                stageStats[i].reset();
+            }
+        }
+    }   //resetStageStats
+
+    /**
+     * This method publishes the timing statistics of all pipeline stages to
+     * the dashboard.
+     */
+    public void displayStageStats()
+    {
+        for (int i = 0; i < stages.length; i++)
+        {
+            HalDashboard.publishString(moduleName + "." + stages[i], getStageStats(stages[i]));
+        }
+    }   //displayStageStats
+
+    /**
+     * This method rescales the area-by-image-area limits of the search region
+     * filter criteria so that they measure the same absolute particle area as
+     * the full image criteria. The other criteria are left as they are.
+     *
+     * @param areaScale specifies the ratio of the search region area to the
+     *        image area.
+     * @return search region filter criteria.
+     */
+    private ParticleFilterCriteria2[] scaleSearchFilterCriteria(double areaScale)
+    {
+        for (int i = 0; i < filterCriteria.length; i++)
+        {
+            if (filterCriteria[i].parameter == MeasurementType.MT_AREA_BY_IMAGE_AREA)
+            {
+                searchFilterCriteria[i].lower = (float)(filterCriteria[i].lower/areaScale);
+                searchFilterCriteria[i].upper = (float)(filterCriteria[i].upper/areaScale);
+            }
+        }
+
+        return searchFilterCriteria;
+    }   //scaleSearchFilterCriteria
+
+    /**
+     * This method enables or disables tracking mode. In tracking mode, once a
+     * target is found, the next image is only processed within a search
+     * region around the bounding rectangle of the largest target, grown by
+     * the given margin on every side. The search goes back to the full image
+     * after the given number of images without a target. Area-by-image-area
+     * filter criteria stay relative to the full image: their limits are
+     * rescaled by the ratio of the image area to the search region area.
+     *
+     * @param enabled specifies true to enable tracking mode, false to disable.
+     * @param margin specifies the margin as a fraction of the target size.
+     * @param maxMisses specifies the number of images without a target before
+     *        going back to the full image.
+     */
+    public void setTrackingEnabled(boolean enabled, double margin, int maxMisses)
+    {
+        final String funcName = "setTrackingEnabled";
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(
+                    funcName, TrcDbgTrace.TraceLevel.API,
+                    "enabled=%s,margin=%f,maxMisses=%d",
+                    Boolean.toString(enabled), margin, maxMisses);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        if (margin < 0.0 || maxMisses <= 0)
+        {
+            throw new IllegalArgumentException(
+                    "Margin must not be negative and maxMisses must be positive.");
+        }
+
+        synchronized(monitor)
+        {
+            trackingEnabled = enabled;
+            trackingMargin = margin;
+            trackingMaxMisses = maxMisses;
+        }
+    }   //setTrackingEnabled
+
+    /**
+     * This method enables or disables tracking mode with the default margin
+     * and number of misses.
+     *
+     * @param enabled specifies true to enable tracking mode, false to disable.
+     */
+    public void setTrackingEnabled(boolean enabled)
+    {
+        setTrackingEnabled(enabled, DEF_TRACKING_MARGIN, DEF_TRACKING_MAX_MISSES);
+    }   //setTrackingEnabled
+
+    /**
+     * This method copies the targets found since the last call into the
+     * given report, largest first. If the task is not enabled, it triggers a
+     * one-shot processing of the next image.
+     *
+     * @param report specifies the report to copy the targets into.
+     * @return true if there are new targets, false otherwise.
+     */
+    public boolean getTargets(ParticleReport report)
     {
         final String funcName = "getTargets";
         if (debugEnabled)
@@ -182,24 +512,29 @@ public class FrcVision implements Runnable
                     funcName, TrcDbgTrace.TraceLevel.API);
         }
 
-        Vector<ParticleReport> newTargets = null;
+        boolean hasTargets;
         synchronized(monitor)
         {
-            if (!taskEnabled && targets == null)
+            if (!taskEnabled && !newTargets)
             {
                 oneShotEnabled = true;
                 monitor.notify();
             }
-            newTargets = targets;
-            targets = null;
+            hasTargets = newTargets;
+            if (hasTargets)
+            {
+                targets.copyTo(report);
+                newTargets = false;
+            }
         }
 
         if (debugEnabled)
         {
             dbgTrace.traceExit(
-                    funcName, TrcDbgTrace.TraceLevel.API);
+                    funcName, TrcDbgTrace.TraceLevel.API,
+                    "=%s", Boolean.toString(hasTargets));
         }
-        return newTargets;
+        return hasTargets;
     }   //getTargets
 
     public void run()
@@ -240,136 +575,144 @@ public class FrcVision implements Runnable
             dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.TASK);
         }
 
-        double totalTime = 0.0;
-        double startTime;
-        double deltaTime;
         Image image = camera != null? camera.getImage(): null;
 
         if (image != null)
         {
-            if (visionPerfEnabled)
+            //
+            // Only the clock is read between stages, the statistics are
+            // updated once the results are published.
+            //
+            long captureTime =
+                    (long)(camera.getImageTimestamp()*1000000000.0);
+            long startTime = HalUtil.getCurrentTimeNanos();
+            GetImageSizeResult imageSize = NIVision.imaqGetImageSize(image);
+            boolean tracking;
+            int maxMisses;
+            double margin;
+            synchronized(monitor)
+            {
+                tracking = trackingEnabled;
+                margin = trackingMargin;
+                maxMisses = trackingMaxMisses;
+            }
+
+            //
+            // In tracking mode, only process the search region around the
+            // last target.
+            //
+            Image processImage = image;
+            ParticleFilterCriteria2[] criteria = filterCriteria;
+            double xOffset = 0.0;
+            double yOffset = 0.0;
+            double areaScale = 1.0;
+            if (tracking && searchRectValid &&
+                clipSearchRect(imageSize.width, imageSize.height))
             {
-                startTime = HalUtil.getCurrentTime();
+                NIVision.imaqScale(
+                        searchImage, image, 1, 1, ScalingMode.SCALE_SMALLER, searchRect);
+                processImage = searchImage;
+                xOffset = searchRect.left;
+                yOffset = searchRect.top;
+                areaScale = (double)searchRect.width*searchRect.height/
+                            ((double)imageSize.width*imageSize.height);
+                criteria = scaleSearchFilterCriteria(areaScale);
             }
+
             NIVision.imaqColorThreshold(
                     binaryImage,
-                    image,
+                    processImage,
                     255,
                     colorMode,
                     colorThresholds[0],
                     colorThresholds[1],
                     colorThresholds[2]);
-            if (visionPerfEnabled)
-            {
-                deltaTime = HalUtil.getCurrentTime() - startTime;
-                totalTime += deltaTime;
-                SmartDashboard.putNumber("ColorThresholdTime", deltaTime);
-            }
+            long thresholdTime = HalUtil.getCurrentTimeNanos();
 
             if (doConvexHull)
             {
-                if (visionPerfEnabled)
-                {
-                    startTime = HalUtil.getCurrentTime();
-                }
                 NIVision.imaqConvexHull(binaryImage, binaryImage, 1);
-                if (visionPerfEnabled)
-                {
-                    deltaTime = HalUtil.getCurrentTime() - startTime;
-                    totalTime += deltaTime;
-                    SmartDashboard.putNumber("ConvexHullTime", deltaTime);
-                }
             }
+            long convexHullTime = HalUtil.getCurrentTimeNanos();
 
-            if (visionPerfEnabled)
-            {
-                startTime = HalUtil.getCurrentTime();
-            }
             NIVision.imaqParticleFilter4(
                     binaryImage,
                     binaryImage,
-                    filterCriteria,
+                    criteria,
                     filterOptions,
                     null);
-            if (visionPerfEnabled)
+            long filterTime = HalUtil.getCurrentTimeNanos();
+
+            //
+            // Measure all particles with one batched call and keep the
+            // largest ones.
+            //
+            MeasureParticlesReport report =
+                    NIVision.imaqMeasureParticles(
+                            binaryImage,
+                            MeasureParticlesCalibrationMode.CALIBRATION_MODE_PIXEL,
+                            particleMeasurements);
+            particles.timestamp = camera.getImageTimestamp();
+            particles.imageWidth = imageSize.width;
+            particles.imageHeight = imageSize.height;
+            particles.numParticles = 0;
+            for (int i = 0; i < report.numParticles; i++)
             {
-                deltaTime = HalUtil.getCurrentTime() - startTime;
-                totalTime += deltaTime;
-                HalDashboard.putNumber("ParticleFilterTime", deltaTime);
+                particles.addParticle(report.pixelMeasurements[i], xOffset, yOffset, areaScale);
             }
+            report.free();
+            long measureTime = HalUtil.getCurrentTimeNanos();
 
-            int numParticles = NIVision.imaqCountParticles(binaryImage, 1);
-            if(numParticles > 0)
+            if (particles.numParticles > 0)
             {
-                //
-                // Measure particles and sort by particle size.
-                //
-                Vector<ParticleReport> particles = new Vector<ParticleReport>();
-                GetImageSizeResult imageSize =
-                        NIVision.imaqGetImageSize(binaryImage);
-                if (visionPerfEnabled)
-                {
-                    startTime = HalUtil.getCurrentTime();
-                }
-
-                for(int i = 0; i < numParticles; i++)
-                {
-                    ParticleReport par = new ParticleReport();
-                    par.imageWidth = imageSize.width;
-                    par.imageHeight = imageSize.height;
-                    par.percentAreaToImageArea =
-                            NIVision.imaqMeasureParticle(
-                                    binaryImage,
-                                    i,
-                                    0,
-                                    MeasurementType.MT_AREA_BY_IMAGE_AREA);
-                    par.area =
-                            NIVision.imaqMeasureParticle(
-                                    binaryImage,
-                                    i,
-                                    0,
-                                    MeasurementType.MT_AREA);
-                    par.boundingRectTop =
-                            NIVision.imaqMeasureParticle(
-                                    binaryImage,
-                                    i,
-                                    0,
-                                    MeasurementType.MT_BOUNDING_RECT_TOP);
-                    par.boundingRectLeft =
-                            NIVision.imaqMeasureParticle(
-                                    binaryImage,
-                                    i,
-                                    0,
-                                    MeasurementType.MT_BOUNDING_RECT_LEFT);
-                    par.boundingRectBottom =
-                            NIVision.imaqMeasureParticle(
-                                    binaryImage,
-                                    i,
-                                    0,
-                                    MeasurementType.MT_BOUNDING_RECT_BOTTOM);
-                    par.boundingRectRight =
-                            NIVision.imaqMeasureParticle(
-                                    binaryImage,
-                                    i,
-                                    0,
-                                    MeasurementType.MT_BOUNDING_RECT_RIGHT);
-                    particles.add(par);
-                }
-                particles.sort(null);
-                if (visionPerfEnabled)
-                {
-                    deltaTime = HalUtil.getCurrentTime() - startTime;
-                    totalTime += deltaTime;
-                    HalDashboard.putNumber("PrepareReportTime", deltaTime);
-                }
-
                 synchronized(monitor)
                 {
                     oneShotEnabled = false;
-                    targets = particles;
-                    particles = null;
+                    particles.copyTo(targets);
+                    newTargets = true;
                 }
             }
+            long endTime = HalUtil.getCurrentTimeNanos();
+
+            synchronized(stageStats)
+            {
+                stageStats[Stage.CAPTURE.ordinal()].record(startTime - captureTime);
+                stageStats[Stage.THRESHOLD.ordinal()].record(thresholdTime - startTime);
+                stageStats[Stage.CONVEX_HULL.ordinal()].record(convexHullTime - thresholdTime);
+                stageStats[Stage.FILTER.ordinal()].record(filterTime - convexHullTime);
+                stageStats[Stage.MEASURE.ordinal()].record(measureTime - filterTime);
+                stageStats[Stage.TOTAL.ordinal()].record(endTime - captureTime);
+            }
+
+            //
+            // Predict the search region of the next image from the largest
+            // target, or give up tracking after too many misses.
+            //
+            if (!tracking)
+            {
+                searchRectValid = false;
+            }
+            else if (particles.numParticles > 0)
+            {
+                double marginX =
+                        (particles.boundingRectRight[0] - particles.boundingRectLeft[0])*margin;
+                double marginY =
+                        (particles.boundingRectBottom[0] - particles.boundingRectTop[0])*margin;
+                searchRect.left = (int)(particles.boundingRectLeft[0] - marginX);
+                searchRect.top = (int)(particles.boundingRectTop[0] - marginY);
+                searchRect.width = (int)Math.ceil(
+                        particles.boundingRectRight[0] + marginX) - searchRect.left;
+                searchRect.height = (int)Math.ceil(
+                        particles.boundingRectBottom[0] + marginY) - searchRect.top;
+                searchRectValid = true;
+                missCount = 0;
+            }
+            else if (searchRectValid && ++missCount >= maxMisses)
+            {
+                searchRectValid = false;
+            }
+
+            camera.releaseImage(image);
         }
 
         if (debugEnabled)
@@ -378,4 +721,24 @@ public class FrcVision implements Runnable
         }
     }   //processImage
 
+    /**
+     * This method clips the search rectangle to the image.
+     *
+     * @param imageWidth specifies the image width.
+     * @param imageHeight specifies the image height.
+     * @return true if the clipped rectangle is not empty, false otherwise.
+     */
+    private boolean clipSearchRect(int imageWidth, int imageHeight)
+    {
+        int right = Math.min(searchRect.left + searchRect.width, imageWidth);
+        int bottom = Math.min(searchRect.top + searchRect.height, imageHeight);
+
+        searchRect.left = Math.max(searchRect.left, 0);
+        searchRect.top = Math.max(searchRect.top, 0);
+        searchRect.width = right - searchRect.left;
+        searchRect.height = bottom - searchRect.top;
+
+        return searchRect.width > 0 && searchRect.height > 0;
+    }   //clipSearchRect
+
 }   //class FrcVision
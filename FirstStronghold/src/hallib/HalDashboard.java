@@ -26,6 +26,7 @@ package hallib;
 import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
 import edu.wpi.first.wpilibj.tables.TableKeyNotDefinedException;
 import trclib.TrcDbgTrace;
+import trclib.TrcFormatter;
 
 /**
  * This class is a wrapper for the Telemetry class. In addition to providing
@@ -48,7 +49,19 @@ public class HalDashboard extends SmartDashboard
 
     private static final String displayKeyFormat = "%02d";
     private static HalDashboard instance = null;
-    private static String[] display = new String[MAX_NUM_TEXTLINES];
+    private static String[] displayKeys = new String[MAX_NUM_TEXTLINES];
+    private static TrcFormatter[] lineFormatters = new TrcFormatter[MAX_NUM_TEXTLINES];
+    private static HalDashboardPublisher publisher = new HalDashboardPublisher();
+    private static volatile boolean headless = false;
+
+    static
+    {
+        for (int i = 0; i < MAX_NUM_TEXTLINES; i++)
+        {
+            displayKeys[i] = String.format(displayKeyFormat, i);
+            lineFormatters[i] = new TrcFormatter();
+        }
+    }
 
     /**
      * Constructor: Creates an instance of the object.
@@ -56,8 +69,14 @@ public class HalDashboard extends SmartDashboard
      * Typically, only the FtcOpMode object should construct an
      * instance of this object via getInstance(telemetry) and
      * nobody else.
+     *
+     * @param headless specifies true to create a dashboard that never talks to
+     *                 NetworkTables. The publisher thread is not started, so
+     *                 display lines and published values are kept but never
+     *                 sent, and the get methods return their default values.
+     *                 This is used by simulation.
      */
-    public HalDashboard()
+    public HalDashboard(boolean headless)
     {
         if (debugEnabled)
         {
@@ -68,10 +87,34 @@ public class HalDashboard extends SmartDashboard
                     TrcDbgTrace.MsgLevel.INFO);
         }
 
+        HalDashboard.headless = headless;
         instance = this;
         clearDisplay();
+        if (!headless)
+        {
+            publisher.start();
+        }
     }   //HalDashboard
 
+    /**
+     * Constructor: Creates an instance of the object that sends to the
+     * Driver Station.
+     */
+    public HalDashboard()
+    {
+        this(false);
+    }   //HalDashboard
+
+    /**
+     * This method checks if the dashboard is headless.
+     *
+     * @return true if the dashboard never talks to NetworkTables, false otherwise.
+     */
+    public static boolean isHeadless()
+    {
+        return headless;
+    }   //isHeadless
+
     /**
      * This static method allows any class to get an instance of
      * the dashboard so that it can display information on its
@@ -84,8 +127,57 @@ public class HalDashboard extends SmartDashboard
         return instance;
     }   //getInstance
 
+    /**
+     * This method returns the publisher that sends the display lines and the
+     * published values to the Driver Station.
+     *
+     * @return dashboard publisher.
+     */
+    public static HalDashboardPublisher getPublisher()
+    {
+        return publisher;
+    }   //getPublisher
+
+    /**
+     * This method publishes a number through the change-detecting, rate-limited
+     * publisher. Use it instead of putNumber for values updated every loop.
+     *
+     * @param key specifies the key.
+     * @param value specifies the value.
+     */
+    public static void publishNumber(String key, double value)
+    {
+        publisher.putNumber(key, value);
+    }   //publishNumber
+
+    /**
+     * This method publishes a string through the change-detecting, rate-limited
+     * publisher. Use it instead of putString for values updated every loop.
+     *
+     * @param key specifies the key.
+     * @param value specifies the value.
+     */
+    public static void publishString(String key, String value)
+    {
+        publisher.putString(key, value);
+    }   //publishString
+
+    /**
+     * This method publishes a boolean through the change-detecting, rate-limited
+     * publisher. Use it instead of putBoolean for values updated every loop.
+     *
+     * @param key specifies the key.
+     * @param value specifies the value.
+     */
+    public static void publishBoolean(String key, boolean value)
+    {
+        publisher.putBoolean(key, value);
+    }   //publishBoolean
+
     /**
      * This method displays a formatted message to the display on the Driver Station.
+     * The line is sent by the publisher only if it has changed. This general form
+     * allocates, displayPrintfNoAlloc below does not.
      *
      * @param lineNum specifies the line number on the display.
      * @param format specifies the format string.
@@ -93,14 +185,203 @@ public class HalDashboard extends SmartDashboard
      */
     public void displayPrintf(int lineNum, String format, Object... args)
     {
-        if (lineNum >= 0 && lineNum < display.length)
+        if (lineNum >= 0 && lineNum < MAX_NUM_TEXTLINES)
         {
-            display[lineNum] = String.format(format, args);
-            SmartDashboard.putString(
-                    String.format(displayKeyFormat, lineNum), display[lineNum]);
+            publisher.putString(displayKeys[lineNum], String.format(format, args));
         }
     }   //displayPrintf
 
+    /**
+     * This method displays a formatted message to the display on the Driver Station
+     * without allocating. The message is rendered by a TrcFormatter into a buffer
+     * reused for the line, so only the subset of format specifiers supported by
+     * TrcFormatter can be used.
+     *
+     * @param lineNum specifies the line number on the display.
+     * @param format specifies the format string.
+     */
+    public void displayPrintf(int lineNum, String format)
+    {
+        TrcFormatter formatter = getLineFormatter(lineNum);
+
+        if (formatter != null)
+        {
+            synchronized (formatter)
+            {
+                formatter.begin(format).end();
+                publisher.putString(displayKeys[lineNum], formatter.getBuffer());
+            }
+        }
+    }   //displayPrintf
+
+    /**
+     * This method displays a formatted message to the display on the Driver Station
+     * without allocating, like displayPrintf(int, String). The numeric arguments
+     * are doubles, so integer arguments widen to double: %d and %x format them as
+     * integers, but %s would print them as doubles (e.g. "5.0"). That is why these
+     * overloads have their own name instead of overloading displayPrintf, where
+     * they would silently catch existing calls that pass integers.
+     *
+     * @param lineNum specifies the line number on the display.
+     * @param format specifies the format string.
+     * @param arg1 specifies the first argument.
+     */
+    public void displayPrintfNoAlloc(int lineNum, String format, double arg1)
+    {
+        TrcFormatter formatter = getLineFormatter(lineNum);
+
+        if (formatter != null)
+        {
+            synchronized (formatter)
+            {
+                formatter.begin(format).arg(arg1).end();
+                publisher.putString(displayKeys[lineNum], formatter.getBuffer());
+            }
+        }
+    }   //displayPrintfNoAlloc
+
+    /**
+     * This method displays a formatted message without allocating, see
+     * displayPrintfNoAlloc(int, String, double).
+     *
+     * @param lineNum specifies the line number on the display.
+     * @param format specifies the format string.
+     * @param arg1 specifies the first argument.
+     * @param arg2 specifies the second argument.
+     */
+    public void displayPrintfNoAlloc(int lineNum, String format, double arg1, double arg2)
+    {
+        TrcFormatter formatter = getLineFormatter(lineNum);
+
+        if (formatter != null)
+        {
+            synchronized (formatter)
+            {
+                formatter.begin(format).arg(arg1).arg(arg2).end();
+                publisher.putString(displayKeys[lineNum], formatter.getBuffer());
+            }
+        }
+    }   //displayPrintfNoAlloc
+
+    /**
+     * This method displays a formatted message without allocating, see
+     * displayPrintfNoAlloc(int, String, double).
+     *
+     * @param lineNum specifies the line number on the display.
+     * @param format specifies the format string.
+     * @param arg1 specifies the first argument.
+     * @param arg2 specifies the second argument.
+     * @param arg3 specifies the third argument.
+     */
+    public void displayPrintfNoAlloc(int lineNum, String format, double arg1, double arg2, double arg3)
+    {
+        TrcFormatter formatter = getLineFormatter(lineNum);
+
+        if (formatter != null)
+        {
+            synchronized (formatter)
+            {
+                formatter.begin(format).arg(arg1).arg(arg2).arg(arg3).end();
+                publisher.putString(displayKeys[lineNum], formatter.getBuffer());
+            }
+        }
+    }   //displayPrintfNoAlloc
+
+    /**
+     * This method displays a formatted message without allocating, see
+     * displayPrintfNoAlloc(int, String, double).
+     *
+     * @param lineNum specifies the line number on the display.
+     * @param format specifies the format string.
+     * @param arg1 specifies the first argument.
+     * @param arg2 specifies the second argument.
+     * @param arg3 specifies the third argument.
+     * @param arg4 specifies the fourth argument.
+     */
+    public void displayPrintfNoAlloc(
+            int lineNum, String format, double arg1, double arg2, double arg3, double arg4)
+    {
+        TrcFormatter formatter = getLineFormatter(lineNum);
+
+        if (formatter != null)
+        {
+            synchronized (formatter)
+            {
+                formatter.begin(format).arg(arg1).arg(arg2).arg(arg3).arg(arg4).end();
+                publisher.putString(displayKeys[lineNum], formatter.getBuffer());
+            }
+        }
+    }   //displayPrintfNoAlloc
+
+    /**
+     * This method displays a formatted message without allocating, see
+     * displayPrintfNoAlloc(int, String, double).
+     *
+     * @param lineNum specifies the line number on the display.
+     * @param format specifies the format string.
+     * @param arg1 specifies the first argument.
+     */
+    public void displayPrintfNoAlloc(int lineNum, String format, String arg1)
+    {
+        TrcFormatter formatter = getLineFormatter(lineNum);
+
+        if (formatter != null)
+        {
+            synchronized (formatter)
+            {
+                formatter.begin(format).arg(arg1).end();
+                publisher.putString(displayKeys[lineNum], formatter.getBuffer());
+            }
+        }
+    }   //displayPrintfNoAlloc
+
+    /**
+     * This method displays a formatted message without allocating, see
+     * displayPrintfNoAlloc(int, String, double).
+     *
+     * @param lineNum specifies the line number on the display.
+     * @param format specifies the format string.
+     * @param arg1 specifies the first argument.
+     * @param arg2 specifies the second argument.
+     */
+    public void displayPrintfNoAlloc(int lineNum, String format, double arg1, String arg2)
+    {
+        TrcFormatter formatter = getLineFormatter(lineNum);
+
+        if (formatter != null)
+        {
+            synchronized (formatter)
+            {
+                formatter.begin(format).arg(arg1).arg(arg2).end();
+                publisher.putString(displayKeys[lineNum], formatter.getBuffer());
+            }
+        }
+    }   //displayPrintfNoAlloc
+
+    /**
+     * This method displays a formatted message without allocating, see
+     * displayPrintfNoAlloc(int, String, double).
+     *
+     * @param lineNum specifies the line number on the display.
+     * @param format specifies the format string.
+     * @param arg1 specifies the first argument.
+     * @param arg2 specifies the second argument.
+     * @param arg3 specifies the third argument.
+     */
+    public void displayPrintfNoAlloc(int lineNum, String format, double arg1, double arg2, String arg3)
+    {
+        TrcFormatter formatter = getLineFormatter(lineNum);
+
+        if (formatter != null)
+        {
+            synchronized (formatter)
+            {
+                formatter.begin(format).arg(arg1).arg(arg2).arg(arg3).end();
+                publisher.putString(displayKeys[lineNum], formatter.getBuffer());
+            }
+        }
+    }   //displayPrintfNoAlloc
+
     /**
      * This method clears all the display lines.
      */
@@ -114,15 +395,16 @@ public class HalDashboard extends SmartDashboard
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
         }
 
-        for (int i = 0; i < display.length; i++)
+        for (int i = 0; i < MAX_NUM_TEXTLINES; i++)
         {
-            display[i] = "";
+            publisher.putString(displayKeys[i], "");
         }
         refreshDisplay();
     }   //clearDisplay
 
     /**
-     * This method refresh the display lines to the Driver Station.
+     * This method refresh the display lines to the Driver Station. The lines
+     * are resent by the publisher on its next batch.
      */
     public void refreshDisplay()
     {
@@ -134,17 +416,32 @@ public class HalDashboard extends SmartDashboard
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
         }
 
-        for (int i = 0; i < display.length; i++)
+        for (int i = 0; i < MAX_NUM_TEXTLINES; i++)
         {
-            SmartDashboard.putString(
-                    String.format(displayKeyFormat, i), display[i]);
+            publisher.refresh(displayKeys[i]);
         }
     }   //refreshDisplay
 
+    /**
+     * This method returns the formatter of the given display line.
+     *
+     * @param lineNum specifies the line number on the display.
+     * @return line formatter, null if the line number is out of range.
+     */
+    private TrcFormatter getLineFormatter(int lineNum)
+    {
+        return lineNum >= 0 && lineNum < MAX_NUM_TEXTLINES? lineFormatters[lineNum]: null;
+    }   //getLineFormatter
+
     public static boolean getBoolean(String key, boolean defaultValue)
     {
         boolean value;
 
+        if (headless)
+        {
+            return defaultValue;
+        }
+
         try
         {
             value = getBoolean(key);
@@ -162,6 +459,11 @@ public class HalDashboard extends SmartDashboard
     {
         double value;
 
+        if (headless)
+        {
+            return defaultValue;
+        }
+
         try
         {
             value = getNumber(key);
@@ -179,6 +481,11 @@ public class HalDashboard extends SmartDashboard
     {
         String value;
 
+        if (headless)
+        {
+            return defaultValue;
+        }
+
         try
         {
             value = getString(key);
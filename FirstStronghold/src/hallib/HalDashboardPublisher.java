@@ -0,0 +1,451 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package hallib;
+
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import edu.wpi.first.wpilibj.smartdashboard.SmartDashboard;
+
+/**
+ * This class implements a change-detecting, rate-limited publisher for the
+ * SmartDashboard. The robot code puts values by key, which only updates the
+ * latest value of the key. A low priority background thread periodically
+ * sends the keys that have changed since they were last sent, at most once
+ * per minimum interval per key, so a value that changes every loop is
+ * coalesced to the interval and a value that does not change is not sent
+ * again. Only the background thread talks to NetworkTables.
+ */
+public class HalDashboardPublisher implements Runnable
+{
+    private enum ValueType
+    {
+        STRING,
+        NUMBER,
+        BOOLEAN
+    }   //enum ValueType
+
+    /**
+     * This class keeps the state of a key. The pending value is written by the
+     * robot code and guarded by the entry lock. The published value is only
+     * used by flush() under the flush lock.
+     */
+    private static class Entry
+    {
+        final String key;
+        final ValueType type;
+        volatile long minIntervalNanos;
+
+        final StringBuilder pendingText = new StringBuilder();
+        double pendingNumber = 0.0;
+        boolean pendingBoolean = false;
+        boolean hasValue = false;
+        boolean dirty = false;
+        boolean forced = false;
+
+        String publishedString = null;
+        double publishedNumber = 0.0;
+        boolean publishedBoolean = false;
+        boolean published = false;
+        long lastPublishNanos = 0;
+
+        Entry(String key, ValueType type, long minIntervalNanos)
+        {
+            this.key = key;
+            this.type = type;
+            this.minIntervalNanos = minIntervalNanos;
+        }   //Entry
+
+    }   //class Entry
+
+    public static final double DEF_FLUSH_PERIOD = 0.05;     //in seconds.
+    public static final double DEF_MIN_INTERVAL = 0.1;      //in seconds.
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+    private final ConcurrentHashMap<String, Long> minIntervals = new ConcurrentHashMap<String, Long>();
+    private final Object flushLock = new Object();
+    private final ArrayList<Entry> flushList = new ArrayList<Entry>();
+    private final long flushPeriodNanos;
+    private final long defMinIntervalNanos;
+    private final AtomicLong publishCount = new AtomicLong(0);
+
+    private Thread publisherThread = null;
+    private volatile boolean stopRequested = false;
+
+    /**
+     * Constructor: Creates an instance of the object.
+     *
+     * @param flushPeriod specifies the interval in seconds between batches.
+     * @param defMinInterval specifies the default minimum interval in seconds
+     *                       between two sends of the same key.
+     */
+    public HalDashboardPublisher(double flushPeriod, double defMinInterval)
+    {
+        if (flushPeriod <= 0.0)
+        {
+            throw new IllegalArgumentException("flushPeriod must be positive.");
+        }
+
+        flushPeriodNanos = (long)(flushPeriod*1000000000.0);
+        defMinIntervalNanos = (long)(defMinInterval*1000000000.0);
+    }   //HalDashboardPublisher
+
+    /**
+     * Constructor: Creates an instance of the object with default parameters.
+     */
+    public HalDashboardPublisher()
+    {
+        this(DEF_FLUSH_PERIOD, DEF_MIN_INTERVAL);
+    }   //HalDashboardPublisher
+
+    /**
+     * This method starts the background thread. It does nothing if the thread
+     * is already running.
+     */
+    public synchronized void start()
+    {
+        if (publisherThread == null)
+        {
+            stopRequested = false;
+            publisherThread = new Thread(this, "HalDashboardPublisher");
+            publisherThread.setDaemon(true);
+            publisherThread.setPriority(Thread.MIN_PRIORITY);
+            publisherThread.start();
+        }
+    }   //start
+
+    /**
+     * This method stops the background thread after it has sent all pending
+     * values regardless of their minimum interval.
+     */
+    public synchronized void stop()
+    {
+        if (publisherThread != null)
+        {
+            stopRequested = true;
+            LockSupport.unpark(publisherThread);
+            try
+            {
+                publisherThread.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            publisherThread = null;
+        }
+    }   //stop
+
+    /**
+     * This method returns the number of values sent to the SmartDashboard.
+     *
+     * @return number of values sent.
+     */
+    public long getPublishCount()
+    {
+        return publishCount.get();
+    }   //getPublishCount
+
+    /**
+     * This method sets the minimum interval between two sends of the given key.
+     *
+     * @param key specifies the key.
+     * @param interval specifies the minimum interval in seconds, 0.0 to send
+     *                 every change.
+     */
+    public void setMinInterval(String key, double interval)
+    {
+        long intervalNanos = (long)(interval*1000000000.0);
+        Entry entry;
+
+        minIntervals.put(key, intervalNanos);
+        entry = entries.get(key);
+        if (entry != null)
+        {
+            entry.minIntervalNanos = intervalNanos;
+        }
+    }   //setMinInterval
+
+    /**
+     * This method puts a string value. The text is copied, so the caller can
+     * reuse its buffer, and the String to be sent is created by the publisher
+     * thread.
+     *
+     * @param key specifies the key.
+     * @param value specifies the value.
+     */
+    public void putString(String key, CharSequence value)
+    {
+        Entry entry = getEntry(key, ValueType.STRING);
+
+        synchronized (entry)
+        {
+            if (!entry.hasValue || !contentEquals(entry.pendingText, value))
+            {
+                entry.pendingText.setLength(0);
+                entry.pendingText.append(value);
+                entry.hasValue = true;
+                entry.dirty = true;
+            }
+        }
+    }   //putString
+
+    /**
+     * This method puts a number value.
+     *
+     * @param key specifies the key.
+     * @param value specifies the value.
+     */
+    public void putNumber(String key, double value)
+    {
+        Entry entry = getEntry(key, ValueType.NUMBER);
+
+        synchronized (entry)
+        {
+            if (!entry.hasValue || Double.compare(entry.pendingNumber, value) != 0)
+            {
+                entry.pendingNumber = value;
+                entry.hasValue = true;
+                entry.dirty = true;
+            }
+        }
+    }   //putNumber
+
+    /**
+     * This method puts a boolean value.
+     *
+     * @param key specifies the key.
+     * @param value specifies the value.
+     */
+    public void putBoolean(String key, boolean value)
+    {
+        Entry entry = getEntry(key, ValueType.BOOLEAN);
+
+        synchronized (entry)
+        {
+            if (!entry.hasValue || entry.pendingBoolean != value)
+            {
+                entry.pendingBoolean = value;
+                entry.hasValue = true;
+                entry.dirty = true;
+            }
+        }
+    }   //putBoolean
+
+    /**
+     * This method makes the publisher send the latest value of the given key
+     * on the next batch even if it has not changed.
+     *
+     * @param key specifies the key.
+     */
+    public void refresh(String key)
+    {
+        Entry entry = entries.get(key);
+
+        if (entry != null)
+        {
+            synchronized (entry)
+            {
+                entry.dirty = entry.hasValue;
+                entry.forced = entry.hasValue;
+            }
+        }
+    }   //refresh
+
+    /**
+     * This method sends all values that are due. It is called by the background
+     * thread every flush period. It can also be called directly if the thread is
+     * not started.
+     *
+     * @param ignoreInterval specifies true to send all changed values regardless
+     *                       of their minimum interval.
+     */
+    public void flush(boolean ignoreInterval)
+    {
+        synchronized (flushLock)
+        {
+            long currNanos = System.nanoTime();
+
+            flushList.clear();
+            flushList.addAll(entries.values());
+            for (int i = 0; i < flushList.size(); i++)
+            {
+                Entry entry = flushList.get(i);
+                String stringValue;
+                double numberValue;
+                boolean booleanValue;
+                boolean forced;
+
+                if (!ignoreInterval && entry.published &&
+                    currNanos - entry.lastPublishNanos < entry.minIntervalNanos)
+                {
+                    continue;
+                }
+
+                synchronized (entry)
+                {
+                    if (!entry.dirty)
+                    {
+                        continue;
+                    }
+
+                    stringValue = entry.type == ValueType.STRING? entry.pendingText.toString(): null;
+                    numberValue = entry.pendingNumber;
+                    booleanValue = entry.pendingBoolean;
+                    forced = entry.forced;
+                    entry.dirty = false;
+                    entry.forced = false;
+                }
+                //
+                // The value may have changed back to what was last sent before we got here.
+                //
+                if (!forced && entry.published)
+                {
+                    switch (entry.type)
+                    {
+                        case STRING:
+                            if (stringValue.equals(entry.publishedString))
+                            {
+                                continue;
+                            }
+                            break;
+
+                        case NUMBER:
+                            if (Double.compare(numberValue, entry.publishedNumber) == 0)
+                            {
+                                continue;
+                            }
+                            break;
+
+                        case BOOLEAN:
+                            if (booleanValue == entry.publishedBoolean)
+                            {
+                                continue;
+                            }
+                            break;
+                    }
+                }
+
+                switch (entry.type)
+                {
+                    case STRING:
+                        SmartDashboard.putString(entry.key, stringValue);
+                        entry.publishedString = stringValue;
+                        break;
+
+                    case NUMBER:
+                        SmartDashboard.putNumber(entry.key, numberValue);
+                        entry.publishedNumber = numberValue;
+                        break;
+
+                    case BOOLEAN:
+                        SmartDashboard.putBoolean(entry.key, booleanValue);
+                        entry.publishedBoolean = booleanValue;
+                        break;
+                }
+                entry.published = true;
+                entry.lastPublishNanos = currNanos;
+                publishCount.incrementAndGet();
+            }
+            flushList.clear();
+        }
+    }   //flush
+
+    /**
+     * This method runs the publisher thread.
+     */
+    @Override
+    public void run()
+    {
+        while (!stopRequested)
+        {
+            flush(false);
+            LockSupport.parkNanos(flushPeriodNanos);
+        }
+        flush(true);
+    }   //run
+
+    /**
+     * This method checks if two texts have the same content.
+     *
+     * @param text1 specifies the first text.
+     * @param text2 specifies the second text.
+     * @return true if they have the same content, false otherwise.
+     */
+    private static boolean contentEquals(CharSequence text1, CharSequence text2)
+    {
+        int length = text1.length();
+
+        if (length != text2.length())
+        {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++)
+        {
+            if (text1.charAt(i) != text2.charAt(i))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }   //contentEquals
+
+    /**
+     * This method returns the entry of the given key, creating it if necessary.
+     *
+     * @param key specifies the key.
+     * @param type specifies the value type.
+     * @return entry of the key.
+     * @throws IllegalArgumentException if the key was put with a different type.
+     */
+    private Entry getEntry(String key, ValueType type)
+    {
+        Entry entry = entries.get(key);
+
+        if (entry == null)
+        {
+            Long minInterval = minIntervals.get(key);
+            Entry newEntry = new Entry(key, type, minInterval != null? minInterval: defMinIntervalNanos);
+
+            entry = entries.putIfAbsent(key, newEntry);
+            if (entry == null)
+            {
+                entry = newEntry;
+            }
+        }
+
+        if (entry.type != type)
+        {
+            throw new IllegalArgumentException(
+                    "Key " + key + " is a " + entry.type + " not a " + type + ".");
+        }
+
+        return entry;
+    }   //getEntry
+
+}   //class HalDashboardPublisher
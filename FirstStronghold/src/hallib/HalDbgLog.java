@@ -201,48 +201,205 @@ public class HalDbgLog
                                                   + SGR_BRIGHT
                                                   + ESC_SUFFIX;
 
-    public static void msg(TrcDbgTrace.MsgLevel level, String msg)
+    //
+    // When a log sink is installed, the trace and msg methods below only post
+    // the unformatted record to it and the formatting and output happen on the
+    // sink thread. Otherwise, they format and print synchronously.
+    //
+    private static volatile HalLogSink logSink = null;
+
+    public static void setLogSink(HalLogSink sink)
+    {
+        logSink = sink;
+    }   //setLogSink
+
+    public static HalLogSink getLogSink()
+    {
+        return logSink;
+    }   //getLogSink
+
+    public static void traceEnter(
+            int indent, String instanceName, String funcName, String format, Object[] args)
+    {
+        post(HalLogSink.RecordType.TRACE_ENTER, null, indent, instanceName, funcName, format, args);
+    }   //traceEnter
+
+    public static void traceExit(
+            int indent, String instanceName, String funcName, String format, Object[] args)
+    {
+        post(HalLogSink.RecordType.TRACE_EXIT, null, indent, instanceName, funcName, format, args);
+    }   //traceExit
+
+    public static void msg(
+            TrcDbgTrace.MsgLevel level, String instanceName, String funcName, String format, Object[] args)
+    {
+        post(HalLogSink.RecordType.MSG, level, 0, instanceName, funcName, format, args);
+    }   //msg
+
+    private static void post(
+            HalLogSink.RecordType type,
+            TrcDbgTrace.MsgLevel level,
+            int indent,
+            String instanceName,
+            String funcName,
+            String format,
+            Object[] args)
+    {
+        HalLogSink sink = logSink;
+
+        if (sink != null)
+        {
+            sink.post(type, level, indent, instanceName, funcName, format, args);
+        }
+        else
+        {
+            StringBuilder sb = new StringBuilder();
+            formatRecord(sb, type, level, indent, instanceName, funcName, format, args);
+            System.out.print(sb);
+        }
+    }   //post
+
+    /**
+     * This method formats a trace or message record the way it is printed.
+     * Log sinks call it to format the records posted to them.
+     *
+     * @param sb specifies the string builder to append the formatted record to.
+     * @param type specifies the record type.
+     * @param level specifies the message level, only used by MSG records.
+     * @param indent specifies the trace indent level.
+     * @param instanceName specifies the instance name of the caller.
+     * @param funcName specifies the function name of the caller.
+     * @param format specifies the format string, can be null for trace records
+     *               without arguments.
+     * @param args specifies the format arguments.
+     */
+    public static void formatRecord(
+            StringBuilder sb,
+            HalLogSink.RecordType type,
+            TrcDbgTrace.MsgLevel level,
+            int indent,
+            String instanceName,
+            String funcName,
+            String format,
+            Object[] args)
+    {
+        switch (type)
+        {
+            case TRACE_ENTER:
+                for (int i = 0; i < indent; i++)
+                {
+                    sb.append("| ");
+                }
+                sb.append(instanceName).append('.').append(funcName);
+                if (format == null)
+                {
+                    sb.append("()\n");
+                }
+                else
+                {
+                    sb.append('(').append(String.format(format, args)).append(")\n");
+                }
+                break;
+
+            case TRACE_EXIT:
+                for (int i = 0; i < indent; i++)
+                {
+                    sb.append("| ");
+                }
+                sb.append(instanceName).append('.').append(funcName);
+                if (format == null)
+                {
+                    sb.append("!\n");
+                }
+                else
+                {
+                    sb.append(String.format(format, args)).append('\n');
+                }
+                break;
+
+            case MSG:
+                sb.append(getMsgColor(level))
+                  .append(instanceName).append('.').append(funcName).append(getMsgPrefix(level))
+                  .append(String.format(format, args)).append('\n')
+                  .append(ESC_NORMAL);
+                break;
+        }
+    }   //formatRecord
+
+    private static String getMsgPrefix(TrcDbgTrace.MsgLevel level)
     {
         String prefix;
-        String color;
 
         switch (level)
         {
             case FATAL:
                 prefix = "_Fatal: ";
+                break;
+
+            case ERR:
+                prefix = "_Err: ";
+                break;
+
+            case WARN:
+                prefix = "_Warn: ";
+                break;
+
+            case INFO:
+                prefix = "_Info: ";
+                break;
+
+            case VERBOSE:
+                prefix = "_Verbose: ";
+                break;
+
+            default:
+                prefix = "_Unk: ";
+                break;
+        }
+
+        return prefix;
+    }   //getMsgPrefix
+
+    private static String getMsgColor(TrcDbgTrace.MsgLevel level)
+    {
+        String color;
+
+        switch (level)
+        {
+            case FATAL:
                 color = ESC_PREFIX + SGR_FG_YELLOW +
                         ESC_SEP + SGR_BRIGHT +
                         ESC_SEP + SGR_BG_RED +
                         ESC_SUFFIX;
-            break;
+                break;
 
             case ERR:
-                prefix = "_Err: ";
                 color = ESC_FGB_RED;
                 break;
-    
+
             case WARN:
-                prefix = "_Warn: ";
                 color = ESC_FGB_YELLOW;
                 break;
-    
+
             case INFO:
-                prefix = "_Info: ";
                 color = ESC_FGB_GREEN;
                 break;
-    
+
             case VERBOSE:
-                prefix = "_Verbose: ";
                 color = ESC_FGB_WHITE;
                 break;
-    
+
             default:
-                prefix = "_Unk: ";
                 color = ESC_NORMAL;
                 break;
         }
 
-        System.out.print(color + msg + prefix);
+        return color;
+    }   //getMsgColor
+
+    public static void msg(TrcDbgTrace.MsgLevel level, String msg)
+    {
+        System.out.print(getMsgColor(level) + msg + ESC_NORMAL);
     }   //msg
 
     public static void traceMsg(String msg)
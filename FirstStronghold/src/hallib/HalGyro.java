@@ -1,5 +1,6 @@
 package hallib;
 
+import trclib.TrcSensor.DoubleData;
 import trclib.TrcSensor.SensorData;
 
 public interface HalGyro
@@ -79,6 +80,54 @@ public interface HalGyro
      */
     public SensorData getZHeading();
 
+    /**
+     * This method reads the rotation rate on the x-axis into the given holder
+     * without allocating. The value is set to NaN if the axis is not supported.
+     *
+     * @param data specifies the holder to receive the X rotation rate.
+     */
+    public void getXRotationRate(DoubleData data);
+
+    /**
+     * This method reads the rotation rate on the y-axis into the given holder
+     * without allocating. The value is set to NaN if the axis is not supported.
+     *
+     * @param data specifies the holder to receive the Y rotation rate.
+     */
+    public void getYRotationRate(DoubleData data);
+
+    /**
+     * This method reads the rotation rate on the z-axis into the given holder
+     * without allocating. The value is set to NaN if the axis is not supported.
+     *
+     * @param data specifies the holder to receive the Z rotation rate.
+     */
+    public void getZRotationRate(DoubleData data);
+
+    /**
+     * This method reads the heading of the x-axis into the given holder
+     * without allocating. The value is set to NaN if the axis is not supported.
+     *
+     * @param data specifies the holder to receive the X heading.
+     */
+    public void getXHeading(DoubleData data);
+
+    /**
+     * This method reads the heading of the y-axis into the given holder
+     * without allocating. The value is set to NaN if the axis is not supported.
+     *
+     * @param data specifies the holder to receive the Y heading.
+     */
+    public void getYHeading(DoubleData data);
+
+    /**
+     * This method reads the heading of the z-axis into the given holder
+     * without allocating. The value is set to NaN if the axis is not supported.
+     *
+     * @param data specifies the holder to receive the Z heading.
+     */
+    public void getZHeading(DoubleData data);
+
     /**
      * This method resets the integrator on the x-axis.
      */
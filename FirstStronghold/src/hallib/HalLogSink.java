@@ -0,0 +1,410 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package hallib;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import trclib.TrcDbgTrace;
+
+/**
+ * This class implements an asynchronous log sink for HalDbgLog. Callers post
+ * the unformatted pieces of a log record (format string and arguments) into a
+ * preallocated ring buffer. A low priority background thread periodically
+ * drains the ring buffer, formats the records and writes them in batches to
+ * the console and/or a rotating log file. Posting never blocks: if the ring
+ * buffer is full, the record is dropped and counted.
+ *
+ * Note that the arguments are formatted later on the background thread, so
+ * mutable objects passed as arguments will show their state at that time.
+ */
+public class HalLogSink implements Runnable
+{
+    public enum RecordType
+    {
+        TRACE_ENTER,
+        TRACE_EXIT,
+        MSG
+    }   //enum RecordType
+
+    /**
+     * This class implements a slot of the ring buffer. The sequence number
+     * tells whether the slot is free for the producer with the same position,
+     * or holds a record for the consumer at the previous position.
+     */
+    private static class LogRecord
+    {
+        volatile long sequence;
+        RecordType type;
+        TrcDbgTrace.MsgLevel level;
+        int indent;
+        String instanceName;
+        String funcName;
+        String format;
+        Object[] args;
+
+        LogRecord(long sequence)
+        {
+            this.sequence = sequence;
+        }   //LogRecord
+
+    }   //class LogRecord
+
+    public static final int DEF_CAPACITY = 1024;
+    public static final double DEF_FLUSH_PERIOD = 0.02;     //in seconds.
+
+    private final LogRecord[] ring;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong(0);
+    private final AtomicLong droppedCount = new AtomicLong(0);
+    private long head = 0;
+    private long reportedDropCount = 0;
+
+    private final boolean consoleEnabled;
+    private final String logFileName;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final long flushPeriodNanos;
+    private PrintStream fileOut = null;
+    private long fileSize = 0;
+    private final StringBuilder batch = new StringBuilder(8192);
+
+    private Thread sinkThread = null;
+    private volatile boolean stopRequested = false;
+
+    /**
+     * Constructor: Creates an instance of the object.
+     *
+     * @param capacity specifies the number of records the ring buffer can hold.
+     *                 It is rounded up to a power of two.
+     * @param consoleEnabled specifies true to write to System.out.
+     * @param logFileName specifies the log file path, null for no log file.
+     * @param maxFileSize specifies the size in bytes at which the log file is rotated,
+     *                    0 for no rotation.
+     * @param maxFiles specifies the number of rotated log files to keep.
+     * @param flushPeriod specifies the interval in seconds between batches.
+     */
+    public HalLogSink(
+            int capacity,
+            boolean consoleEnabled,
+            String logFileName,
+            long maxFileSize,
+            int maxFiles,
+            double flushPeriod)
+    {
+        if (capacity <= 0)
+        {
+            throw new IllegalArgumentException("capacity must be positive.");
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+        {
+            size <<= 1;
+        }
+
+        ring = new LogRecord[size];
+        for (int i = 0; i < size; i++)
+        {
+            ring[i] = new LogRecord(i);
+        }
+        mask = size - 1;
+
+        this.consoleEnabled = consoleEnabled;
+        this.logFileName = logFileName;
+        this.maxFileSize = maxFileSize;
+        this.maxFiles = maxFiles;
+        this.flushPeriodNanos = (long)(flushPeriod*1000000000.0);
+    }   //HalLogSink
+
+    /**
+     * Constructor: Creates an instance of the object that writes to the console
+     * only with default capacity and flush period.
+     */
+    public HalLogSink()
+    {
+        this(DEF_CAPACITY, true, null, 0, 0, DEF_FLUSH_PERIOD);
+    }   //HalLogSink
+
+    /**
+     * This method opens the log file if any and starts the background thread.
+     */
+    public synchronized void start()
+    {
+        if (sinkThread == null)
+        {
+            if (logFileName != null)
+            {
+                openLogFile();
+            }
+
+            stopRequested = false;
+            sinkThread = new Thread(this, "HalLogSink");
+            sinkThread.setDaemon(true);
+            sinkThread.setPriority(Thread.MIN_PRIORITY);
+            sinkThread.start();
+        }
+    }   //start
+
+    /**
+     * This method stops the background thread after it has written all pending
+     * records, and closes the log file.
+     */
+    public synchronized void stop()
+    {
+        if (sinkThread != null)
+        {
+            stopRequested = true;
+            LockSupport.unpark(sinkThread);
+            try
+            {
+                sinkThread.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            sinkThread = null;
+
+            if (fileOut != null)
+            {
+                fileOut.close();
+                fileOut = null;
+            }
+        }
+    }   //stop
+
+    /**
+     * This method returns the number of records dropped because the ring buffer
+     * was full.
+     *
+     * @return number of dropped records.
+     */
+    public long getDroppedCount()
+    {
+        return droppedCount.get();
+    }   //getDroppedCount
+
+    /**
+     * This method posts a log record to the ring buffer. It never blocks.
+     *
+     * @param type specifies the record type.
+     * @param level specifies the message level (MSG records only).
+     * @param indent specifies the trace indent level (TRACE records only).
+     * @param instanceName specifies the instance name of the caller.
+     * @param funcName specifies the function name of the caller.
+     * @param format specifies the format string, can be null for trace records
+     *               without arguments.
+     * @param args specifies the format arguments.
+     * @return true if the record was posted, false if it was dropped.
+     */
+    public boolean post(
+            RecordType type,
+            TrcDbgTrace.MsgLevel level,
+            int indent,
+            String instanceName,
+            String funcName,
+            String format,
+            Object[] args)
+    {
+        LogRecord record;
+        long pos;
+
+        for (;;)
+        {
+            pos = tail.get();
+            record = ring[(int)(pos & mask)];
+            long diff = record.sequence - pos;
+
+            if (diff == 0)
+            {
+                if (tail.compareAndSet(pos, pos + 1))
+                {
+                    break;
+                }
+            }
+            else if (diff < 0)
+            {
+                //
+                // The consumer has not freed this slot yet, the ring is full.
+                //
+                droppedCount.incrementAndGet();
+                return false;
+            }
+        }
+
+        record.type = type;
+        record.level = level;
+        record.indent = indent;
+        record.instanceName = instanceName;
+        record.funcName = funcName;
+        record.format = format;
+        record.args = args;
+        //
+        // Publish the record to the consumer.
+        //
+        record.sequence = pos + 1;
+
+        return true;
+    }   //post
+
+    /**
+     * This method runs the background thread. It drains and writes the ring
+     * buffer once per flush period until stopped.
+     */
+    @Override
+    public void run()
+    {
+        while (!stopRequested)
+        {
+            drain();
+            LockSupport.parkNanos(flushPeriodNanos);
+        }
+        drain();
+    }   //run
+
+    /**
+     * This method formats all published records into one batch and writes it.
+     */
+    private void drain()
+    {
+        batch.setLength(0);
+
+        for (;;)
+        {
+            LogRecord record = ring[(int)(head & mask)];
+
+            if (record.sequence != head + 1)
+            {
+                break;
+            }
+
+            try
+            {
+                HalDbgLog.formatRecord(
+                        batch, record.type, record.level, record.indent,
+                        record.instanceName, record.funcName, record.format, record.args);
+            }
+            catch (RuntimeException e)
+            {
+                batch.append("HalLogSink: failed to format \"")
+                     .append(record.format).append("\": ").append(e.toString()).append("\n");
+            }
+
+            record.instanceName = null;
+            record.funcName = null;
+            record.format = null;
+            record.args = null;
+            //
+            // Free the slot for the producer one lap ahead.
+            //
+            record.sequence = head + ring.length;
+            head++;
+        }
+
+        long dropped = droppedCount.get();
+        if (dropped != reportedDropCount)
+        {
+            batch.append("HalLogSink: ").append(dropped - reportedDropCount)
+                 .append(" messages dropped (total ").append(dropped).append(")\n");
+            reportedDropCount = dropped;
+        }
+
+        if (batch.length() > 0)
+        {
+            String text = batch.toString();
+
+            if (consoleEnabled)
+            {
+                System.out.print(text);
+                System.out.flush();
+            }
+
+            if (fileOut != null)
+            {
+                fileOut.print(text);
+                fileOut.flush();
+                fileSize += text.length();
+                if (maxFileSize > 0 && fileSize >= maxFileSize)
+                {
+                    rotateLogFile();
+                }
+            }
+        }
+    }   //drain
+
+    /**
+     * This method opens the log file for appending.
+     */
+    private void openLogFile()
+    {
+        try
+        {
+            File file = new File(logFileName);
+            fileSize = file.exists()? file.length(): 0;
+            fileOut = new PrintStream(new FileOutputStream(file, true));
+        }
+        catch (FileNotFoundException e)
+        {
+            System.out.println("HalLogSink: failed to open " + logFileName + ": " + e.getMessage());
+            fileOut = null;
+        }
+    }   //openLogFile
+
+    /**
+     * This method rotates the log files: name.(n-1) becomes name.n, ..., name
+     * becomes name.1, and a new log file is opened.
+     */
+    private void rotateLogFile()
+    {
+        fileOut.close();
+        fileOut = null;
+
+        if (maxFiles > 0)
+        {
+            new File(logFileName + "." + maxFiles).delete();
+            for (int i = maxFiles - 1; i >= 1; i--)
+            {
+                File file = new File(logFileName + "." + i);
+                if (file.exists())
+                {
+                    file.renameTo(new File(logFileName + "." + (i + 1)));
+                }
+            }
+            new File(logFileName).renameTo(new File(logFileName + ".1"));
+        }
+        else
+        {
+            new File(logFileName).delete();
+        }
+
+        openLogFile();
+    }   //rotateLogFile
+
+}   //class HalLogSink
@@ -28,6 +28,7 @@ import edu.wpi.first.wpilibj.Joystick;
 import edu.wpi.first.wpilibj.RobotDrive;
 import edu.wpi.first.wpilibj.SpeedController;
 import trclib.TrcDbgTrace;
+import trclib.TrcTelemetry;
 import trclib.TrcUtil;
 
 /**
@@ -45,7 +46,11 @@ public class HalRobotDrive extends RobotDrive
     private static double MOTOR_MAX_VALUE = 1.0;
     private static double MOTOR_MIN_VALUE = -1.0;
 
+    private TrcTelemetry.Channel leftOutputChannel;
+    private TrcTelemetry.Channel rightOutputChannel;
+
     private void commonInit(
+            final String instanceName,
             HalMotorController frontLeftMotor,
             HalMotorController rearLeftMotor,
             HalMotorController frontRightMotor,
@@ -59,12 +64,18 @@ public class HalRobotDrive extends RobotDrive
                     TrcDbgTrace.TraceLevel.API,
                     TrcDbgTrace.MsgLevel.INFO);
         }
+
+        TrcTelemetry telemetry = TrcTelemetry.getInstance();
+        leftOutputChannel = telemetry.addChannel(
+                instanceName + ".leftOutput", TrcTelemetry.ChannelType.DOUBLE);
+        rightOutputChannel = telemetry.addChannel(
+                instanceName + ".rightOutput", TrcTelemetry.ChannelType.DOUBLE);
     }   //commonInit
     
     public HalRobotDrive(int leftMotorChannel, int rightMotorChannel)
     {
         super(leftMotorChannel, rightMotorChannel);
-        commonInit(null, null, null, null);
+        commonInit(moduleName, null, null, null, null);
     }   //HalRobotDrive
 
     public HalRobotDrive(
@@ -72,17 +83,25 @@ public class HalRobotDrive extends RobotDrive
             int frontRightMotor, int rearRightMotor)
     {
         super(frontLeftMotor, rearLeftMotor, frontRightMotor, rearRightMotor);
-        commonInit(null, null, null, null);
+        commonInit(moduleName, null, null, null, null);
     }   //HalRobotDrive
 
     public HalRobotDrive(
+            final String instanceName,
             HalMotorController leftMotor, HalMotorController rightMotor)
     {
         super((SpeedController)leftMotor, (SpeedController)rightMotor);
-        commonInit(null, leftMotor, null, rightMotor);
+        commonInit(instanceName, null, leftMotor, null, rightMotor);
+    }   //HalRobotDrive
+
+    public HalRobotDrive(
+            HalMotorController leftMotor, HalMotorController rightMotor)
+    {
+        this(moduleName, leftMotor, rightMotor);
     }   //HalRobotDrive
 
     public HalRobotDrive(
+            final String instanceName,
             HalMotorController frontLeftMotor,
             HalMotorController rearLeftMotor,
             HalMotorController frontRightMotor,
@@ -92,9 +111,34 @@ public class HalRobotDrive extends RobotDrive
               (SpeedController)rearLeftMotor,
               (SpeedController)frontRightMotor,
               (SpeedController)rearRightMotor);
-        commonInit(frontLeftMotor, rearLeftMotor, frontRightMotor, rearRightMotor);
+        commonInit(instanceName, frontLeftMotor, rearLeftMotor, frontRightMotor, rearRightMotor);
+    }   //HalRobotDrive
+
+    public HalRobotDrive(
+            HalMotorController frontLeftMotor,
+            HalMotorController rearLeftMotor,
+            HalMotorController frontRightMotor,
+            HalMotorController rearRightMotor)
+    {
+        this(moduleName, frontLeftMotor, rearLeftMotor, frontRightMotor, rearRightMotor);
     }   //HalRobotDrive
 
+    /**
+     * This method turns off the WPILib usage reporting of the drive modes.
+     * RobotDrive reports the first use of each drive mode (including the one
+     * in its constructor) to the FRC network communication library, which is
+     * native code that only exists on the roboRIO. Call this before creating
+     * any drive base when running off-robot, e.g. in simulation.
+     */
+    public static void disableUsageReporting()
+    {
+        kArcadeRatioCurve_Reported = true;
+        kTank_Reported = true;
+        kArcadeStandard_Reported = true;
+        kMecanumCartesian_Reported = true;
+        kMecanumPolar_Reported = true;
+    }   //disableUsageReporting
+
     /**
      * This method implements tank drive where leftPower controls the left motors
      * and right power controls the right motors.
@@ -453,4 +497,25 @@ public class HalRobotDrive extends RobotDrive
         super.mecanumDrive_Polar(magnitude, direction, rotation);
     }   //mecanumDrive_Polar
 
+    /**
+     * This method is called by tank drive and arcade drive to set the motor
+     * outputs of the left and right sides. It records the outputs to telemetry.
+     *
+     * @param leftOutput specifies the left output power.
+     * @param rightOutput specifies the right output power.
+     */
+    @Override
+    public void setLeftRightMotorOutputs(double leftOutput, double rightOutput)
+    {
+        //
+        // The RobotDrive constructor calls this before commonInit creates the channels.
+        //
+        if (leftOutputChannel != null)
+        {
+            leftOutputChannel.record(leftOutput);
+            rightOutputChannel.record(rightOutput);
+        }
+        super.setLeftRightMotorOutputs(leftOutput, rightOutput);
+    }   //setLeftRightMotorOutputs
+
 }   //HalRobotDrive
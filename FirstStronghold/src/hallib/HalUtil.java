@@ -23,41 +23,161 @@
 
 package hallib;
 
+import edu.wpi.first.wpilibj.Utility;
+
 /**
  * This class implements some useful platform dependent utility methods.
  */
 public class HalUtil
 {
     /**
-     * This method returns the current time in seconds.
+     * This interface is implemented by a clock that provides the current time
+     * to the robot code. The time must be monotonic. It does not need to
+     * relate to the wall clock.
+     */
+    public interface TimeSource
+    {
+        /**
+         * This method returns the current time in nanoseconds.
+         *
+         * @return current time in nanoseconds.
+         */
+        public long getNanoTime();
+
+    }   //interface TimeSource
+
+    /**
+     * This class implements a time source backed by the FPGA timestamp, which
+     * is a microsecond counter that does not jump when the wall clock changes.
+     * The HAL returns it as a 32-bit value that rolls over every 71.6 minutes,
+     * so we extend it to 64 bits here.
+     */
+    private static class FpgaTimeSource implements TimeSource
+    {
+        private static final long ROLLOVER = 1L << 32;
+        private long prevMicros = 0;
+        private long rolloverOffset = 0;
+
+        @Override
+        public synchronized long getNanoTime()
+        {
+            long micros = Utility.getFPGATime();
+
+            if (micros < ROLLOVER && micros < prevMicros)
+            {
+                rolloverOffset += ROLLOVER;
+            }
+            prevMicros = micros;
+
+            return (micros + rolloverOffset)*1000;
+        }   //getNanoTime
+
+    }   //class FpgaTimeSource
+
+    /**
+     * This class implements a time source backed by System.nanoTime(). It is
+     * used when the FPGA is not available such as when running off-robot.
+     */
+    private static class SystemTimeSource implements TimeSource
+    {
+        @Override
+        public long getNanoTime()
+        {
+            return System.nanoTime();
+        }   //getNanoTime
+
+    }   //class SystemTimeSource
+
+    private static volatile TimeSource timeSource = createDefaultTimeSource();
+
+    /**
+     * This method creates the default time source. It uses the FPGA timestamp
+     * if we are running on the robot and System.nanoTime() otherwise.
+     *
+     * @return default time source.
+     */
+    private static TimeSource createDefaultTimeSource()
+    {
+        TimeSource source;
+
+        try
+        {
+            Utility.getFPGATime();
+            source = new FpgaTimeSource();
+        }
+        catch (LinkageError e)
+        {
+            //
+            // The HAL native library is not available.
+            //
+            source = new SystemTimeSource();
+        }
+
+        return source;
+    }   //createDefaultTimeSource
+
+    /**
+     * This method replaces the time source, for example with a virtual clock
+     * for deterministic simulation. Passing null restores the default time source.
+     *
+     * @param source specifies the new time source, null for the default.
+     */
+    public static void setTimeSource(TimeSource source)
+    {
+        timeSource = source != null? source: createDefaultTimeSource();
+    }   //setTimeSource
+
+    /**
+     * This method returns the current time source.
+     *
+     * @return current time source.
+     */
+    public static TimeSource getTimeSource()
+    {
+        return timeSource;
+    }   //getTimeSource
+
+    /**
+     * This method returns the current monotonic time in nanoseconds.
+     *
+     * @return current time in nanoseconds.
+     */
+    public static long getCurrentTimeNanos()
+    {
+        return timeSource.getNanoTime();
+    }   //getCurrentTimeNanos
+
+    /**
+     * This method returns the current monotonic time in seconds.
      *
      * @return current time in seconds.
      */
     public static double getCurrentTime()
     {
-        return System.currentTimeMillis()/1000.0;
+        return timeSource.getNanoTime()/1000000000.0;
     }   //getCurrentTime
 
     /**
-     * This method returns the current time in msec.
+     * This method returns the current monotonic time in msec.
      *
      * @return current time in msec.
      */
     public static long getCurrentTimeMillis()
     {
-        return System.currentTimeMillis();
+        return timeSource.getNanoTime()/1000000;
     }   //getCurrentTimeMillis
 
     /**
      * This method puts the current thread to sleep for the given time in msec.
      * It handles InterruptException where it recalculates the remaining time
      * and calls sleep again repeatedly until the specified sleep time has past.
+     * This always sleeps in real time regardless of the time source.
      *
      * @param sleepTime specifies sleep time in msec.
      */
     public static void sleep(long sleepTime)
     {
-        long wakeupTime = System.currentTimeMillis() + sleepTime;
+        long wakeupTime = System.nanoTime() + sleepTime*1000000;
 
         while (sleepTime > 0)
         {
@@ -68,7 +188,7 @@ public class HalUtil
             catch (InterruptedException e)
             {
             }
-            sleepTime = wakeupTime - System.currentTimeMillis();
+            sleepTime = (wakeupTime - System.nanoTime())/1000000;
         }
     }   //sleep
 
@@ -0,0 +1,90 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package simlib;
+
+import hallib.HalUtil;
+
+/**
+ * This class implements a virtual clock for simulation. Time only moves when
+ * the simulation advances it, so a simulation run is deterministic and can
+ * run as fast as the CPU allows. Install it with HalUtil.setTimeSource().
+ */
+public class SimClock implements HalUtil.TimeSource
+{
+    private volatile long currNanos;
+
+    /**
+     * Constructor: Creates an instance of the object starting at the given time.
+     *
+     * @param startTime specifies the start time in seconds.
+     */
+    public SimClock(double startTime)
+    {
+        currNanos = (long)(startTime*1000000000.0);
+    }   //SimClock
+
+    /**
+     * Constructor: Creates an instance of the object starting at time zero.
+     */
+    public SimClock()
+    {
+        this(0.0);
+    }   //SimClock
+
+    /**
+     * This method advances the clock by the given amount of time.
+     *
+     * @param deltaTime specifies the time to advance in seconds.
+     */
+    public void advance(double deltaTime)
+    {
+        advanceNanos((long)(deltaTime*1000000000.0));
+    }   //advance
+
+    /**
+     * This method advances the clock by the given amount of time.
+     *
+     * @param deltaNanos specifies the time to advance in nanoseconds.
+     */
+    public void advanceNanos(long deltaNanos)
+    {
+        if (deltaNanos < 0)
+        {
+            throw new IllegalArgumentException("Time cannot go backward.");
+        }
+
+        currNanos += deltaNanos;
+    }   //advanceNanos
+
+    //
+    // Implements HalUtil.TimeSource interface.
+    //
+
+    @Override
+    public long getNanoTime()
+    {
+        return currNanos;
+    }   //getNanoTime
+
+}   //class SimClock
@@ -0,0 +1,176 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package simlib;
+
+/**
+ * This class implements a simple kinematic model of a differential (tank)
+ * drive train. Each update, it steps the wheel motor models, derives the
+ * robot rotation rate from the left and right wheel speeds and feeds it to
+ * the simulated gyro. It also tracks the true field position of the robot
+ * so a simulation can compare it against what the robot code believes.
+ * The field heading is in degrees, positive clockwise like the gyro.
+ */
+public class SimDriveBase implements SimModel
+{
+    private final SimMotorController[] leftMotors;
+    private final SimMotorController[] rightMotors;
+    private final SimGyro gyro;
+    private final double distancePerUnit;
+    private final double trackWidth;
+    private double fieldX = 0.0;
+    private double fieldY = 0.0;
+    private double fieldHeading = 0.0;
+
+    /**
+     * Constructor: Creates an instance of the object.
+     *
+     * @param leftMotors specifies the motors on the left side.
+     * @param rightMotors specifies the motors on the right side.
+     * @param gyro specifies the simulated gyro, can be null if none.
+     * @param distancePerUnit specifies the wheel travel distance per motor sensor unit.
+     * @param trackWidth specifies the distance between the left and right wheels
+     *                   in the same distance unit.
+     */
+    public SimDriveBase(
+            SimMotorController[] leftMotors,
+            SimMotorController[] rightMotors,
+            SimGyro gyro,
+            double distancePerUnit,
+            double trackWidth)
+    {
+        if (leftMotors.length == 0 || rightMotors.length == 0)
+        {
+            throw new IllegalArgumentException("Must have at least one motor per side.");
+        }
+
+        this.leftMotors = leftMotors;
+        this.rightMotors = rightMotors;
+        this.gyro = gyro;
+        this.distancePerUnit = distancePerUnit;
+        this.trackWidth = trackWidth;
+    }   //SimDriveBase
+
+    /**
+     * This method places the robot on the field, for example to start another
+     * run from the same pose. The gyro heading follows the field heading.
+     *
+     * @param x specifies the field x position.
+     * @param y specifies the field y position.
+     * @param heading specifies the field heading in degrees.
+     */
+    public void setFieldPose(double x, double y, double heading)
+    {
+        fieldX = x;
+        fieldY = y;
+        fieldHeading = heading;
+
+        if (gyro != null)
+        {
+            gyro.setZHeading(heading);
+        }
+    }   //setFieldPose
+
+    /**
+     * This method returns the true x position of the robot on the field.
+     *
+     * @return field x position.
+     */
+    public double getFieldX()
+    {
+        return fieldX;
+    }   //getFieldX
+
+    /**
+     * This method returns the true y position of the robot on the field.
+     *
+     * @return field y position.
+     */
+    public double getFieldY()
+    {
+        return fieldY;
+    }   //getFieldY
+
+    /**
+     * This method returns the true heading of the robot on the field.
+     *
+     * @return field heading in degrees.
+     */
+    public double getFieldHeading()
+    {
+        return fieldHeading;
+    }   //getFieldHeading
+
+    /**
+     * This method returns the average wheel speed of one side.
+     *
+     * @param motors specifies the motors of that side.
+     * @return average wheel speed in distance units per second.
+     */
+    private double getSideSpeed(SimMotorController[] motors)
+    {
+        double sum = 0.0;
+
+        for (int i = 0; i < motors.length; i++)
+        {
+            sum += motors[i].getOutputSpeed();
+        }
+
+        return sum/motors.length*distancePerUnit;
+    }   //getSideSpeed
+
+    //
+    // Implements SimModel interface.
+    //
+
+    @Override
+    public void updateModel(double deltaTime)
+    {
+        for (int i = 0; i < leftMotors.length; i++)
+        {
+            leftMotors[i].updateModel(deltaTime);
+        }
+
+        for (int i = 0; i < rightMotors.length; i++)
+        {
+            rightMotors[i].updateModel(deltaTime);
+        }
+
+        double leftSpeed = getSideSpeed(leftMotors);
+        double rightSpeed = getSideSpeed(rightMotors);
+        double forwardSpeed = (leftSpeed + rightSpeed)/2.0;
+        double turnRate = Math.toDegrees((leftSpeed - rightSpeed)/trackWidth);
+        double midHeading = Math.toRadians(fieldHeading + turnRate*deltaTime/2.0);
+
+        fieldX += forwardSpeed*Math.sin(midHeading)*deltaTime;
+        fieldY += forwardSpeed*Math.cos(midHeading)*deltaTime;
+        fieldHeading += turnRate*deltaTime;
+
+        if (gyro != null)
+        {
+            gyro.setZRotationRate(turnRate);
+            gyro.updateModel(deltaTime);
+        }
+    }   //updateModel
+
+}   //class SimDriveBase
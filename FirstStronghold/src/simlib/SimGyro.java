@@ -0,0 +1,188 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package simlib;
+
+import hallib.HalGyro;
+import hallib.HalUtil;
+import trclib.TrcSensor.DoubleData;
+import trclib.TrcSensor.SensorData;
+
+/**
+ * This class implements a simulated single axis (z) gyro. The rotation rate
+ * is set by a physics model such as SimDriveBase and the heading is
+ * integrated from it on every model update.
+ */
+public class SimGyro implements HalGyro, SimModel
+{
+    private double zSign = 1.0;
+    private double rotationRate = 0.0;
+    private double heading = 0.0;
+    private double zeroHeading = 0.0;
+
+    /**
+     * This method sets the true rotation rate of the z-axis.
+     *
+     * @param rate specifies the rotation rate in degrees per second.
+     */
+    public void setZRotationRate(double rate)
+    {
+        rotationRate = rate;
+    }   //setZRotationRate
+
+    /**
+     * This method sets the true heading of the z-axis, for example to seed
+     * the model from recorded data.
+     *
+     * @param heading specifies the heading in degrees.
+     */
+    public void setZHeading(double heading)
+    {
+        this.heading = heading;
+    }   //setZHeading
+
+    //
+    // Implements SimModel interface.
+    //
+
+    @Override
+    public void updateModel(double deltaTime)
+    {
+        heading += rotationRate*deltaTime;
+    }   //updateModel
+
+    //
+    // Implements HalGyro interface.
+    //
+
+    @Override
+    public void setXInverted(boolean inverted)
+    {
+        //
+        // X-axis is not supported.
+        //
+    }   //setXInverted
+
+    @Override
+    public void setYInverted(boolean inverted)
+    {
+        //
+        // Y-axis is not supported.
+        //
+    }   //setYInverted
+
+    @Override
+    public void setZInverted(boolean inverted)
+    {
+        zSign = inverted? -1.0: 1.0;
+    }   //setZInverted
+
+    @Override
+    public SensorData getXRotationRate()
+    {
+        return null;
+    }   //getXRotationRate
+
+    @Override
+    public SensorData getYRotationRate()
+    {
+        return null;
+    }   //getYRotationRate
+
+    @Override
+    public SensorData getZRotationRate()
+    {
+        return new SensorData(HalUtil.getCurrentTime(), zSign*rotationRate);
+    }   //getZRotationRate
+
+    @Override
+    public SensorData getXHeading()
+    {
+        return null;
+    }   //getXHeading
+
+    @Override
+    public SensorData getYHeading()
+    {
+        return null;
+    }   //getYHeading
+
+    @Override
+    public SensorData getZHeading()
+    {
+        return new SensorData(HalUtil.getCurrentTime(), zSign*(heading - zeroHeading));
+    }   //getZHeading
+
+    @Override
+    public void getXRotationRate(DoubleData data)
+    {
+        data.set(HalUtil.getCurrentTime(), Double.NaN);
+    }   //getXRotationRate
+
+    @Override
+    public void getYRotationRate(DoubleData data)
+    {
+        data.set(HalUtil.getCurrentTime(), Double.NaN);
+    }   //getYRotationRate
+
+    @Override
+    public void getZRotationRate(DoubleData data)
+    {
+        data.set(HalUtil.getCurrentTime(), zSign*rotationRate);
+    }   //getZRotationRate
+
+    @Override
+    public void getXHeading(DoubleData data)
+    {
+        data.set(HalUtil.getCurrentTime(), Double.NaN);
+    }   //getXHeading
+
+    @Override
+    public void getYHeading(DoubleData data)
+    {
+        data.set(HalUtil.getCurrentTime(), Double.NaN);
+    }   //getYHeading
+
+    @Override
+    public void getZHeading(DoubleData data)
+    {
+        data.set(HalUtil.getCurrentTime(), zSign*(heading - zeroHeading));
+    }   //getZHeading
+
+    @Override
+    public void resetXIntegrator()
+    {
+    }   //resetXIntegrator
+
+    @Override
+    public void resetYIntegrator()
+    {
+    }   //resetYIntegrator
+
+    @Override
+    public void resetZIntegrator()
+    {
+        zeroHeading = heading;
+    }   //resetZIntegrator
+
+}   //class SimGyro
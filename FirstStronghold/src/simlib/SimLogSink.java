@@ -0,0 +1,109 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package simlib;
+
+import hallib.HalDbgLog;
+import hallib.HalLogSink;
+import trclib.TrcDbgTrace;
+
+/**
+ * This class implements a stand-in for the HalDbgLog sink in simulation. It
+ * formats each record synchronously on the posting thread into an in-memory
+ * log, so the trace and messages of a simulated run come out in loop order
+ * and can be checked afterwards. It has no background thread and never drops
+ * records. Optionally, it also echoes the records to the console.
+ */
+public class SimLogSink extends HalLogSink
+{
+    private final StringBuilder log = new StringBuilder();
+    private final boolean consoleEnabled;
+
+    /**
+     * Constructor: Creates an instance of the object.
+     *
+     * @param consoleEnabled specifies true to also write the records to System.out.
+     */
+    public SimLogSink(boolean consoleEnabled)
+    {
+        super(1, false, null, 0, 0, DEF_FLUSH_PERIOD);
+        this.consoleEnabled = consoleEnabled;
+    }   //SimLogSink
+
+    /**
+     * This method returns the records logged so far.
+     *
+     * @return logged records.
+     */
+    public synchronized String getLog()
+    {
+        return log.toString();
+    }   //getLog
+
+    /**
+     * This method clears the logged records.
+     */
+    public synchronized void clearLog()
+    {
+        log.setLength(0);
+    }   //clearLog
+
+    //
+    // Overrides HalLogSink.
+    //
+
+    @Override
+    public synchronized void start()
+    {
+        //
+        // Records are written as they are posted, there is no thread to start.
+        //
+    }   //start
+
+    @Override
+    public synchronized void stop()
+    {
+    }   //stop
+
+    @Override
+    public synchronized boolean post(
+            RecordType type,
+            TrcDbgTrace.MsgLevel level,
+            int indent,
+            String instanceName,
+            String funcName,
+            String format,
+            Object[] args)
+    {
+        int start = log.length();
+
+        HalDbgLog.formatRecord(log, type, level, indent, instanceName, funcName, format, args);
+        if (consoleEnabled)
+        {
+            System.out.print(log.substring(start));
+        }
+
+        return true;
+    }   //post
+
+}   //class SimLogSink
@@ -0,0 +1,274 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package simlib;
+
+import edu.wpi.first.wpilibj.SpeedController;
+import hallib.HalMotorController;
+import trclib.TrcUtil;
+
+/**
+ * This class implements a simulated motor controller with an encoder. The
+ * motor is modeled as a first order system: the speed approaches the free
+ * speed scaled by the applied power with the given time constant. In coast
+ * mode, the motor slows down more gradually when power is removed.
+ */
+public class SimMotorController implements HalMotorController, SpeedController, SimModel
+{
+    private static final double COAST_TIME_CONSTANT_FACTOR = 4.0;
+
+    private final String instanceName;
+    private final double freeSpeed;
+    private final double timeConstant;
+    private boolean inverted = false;
+    private boolean brakeModeEnabled = true;
+    private double sensorSign = 1.0;
+    private double power = 0.0;
+    private double speed = 0.0;
+    private double position = 0.0;
+    private double zeroPosition = 0.0;
+    private boolean softLowerLimitEnabled = false;
+    private boolean softUpperLimitEnabled = false;
+    private double softLowerLimit = 0.0;
+    private double softUpperLimit = 0.0;
+    private boolean lowerLimitSwitchActive = false;
+    private boolean upperLimitSwitchActive = false;
+
+    /**
+     * Constructor: Creates an instance of the object.
+     *
+     * @param instanceName specifies the instance name.
+     * @param freeSpeed specifies the encoder speed in sensor units per second at full power.
+     * @param timeConstant specifies the time in seconds to reach 63% of the target speed.
+     */
+    public SimMotorController(final String instanceName, double freeSpeed, double timeConstant)
+    {
+        this.instanceName = instanceName;
+        this.freeSpeed = freeSpeed;
+        this.timeConstant = timeConstant;
+    }   //SimMotorController
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
+    /**
+     * This method returns the last power applied to the motor after inversion
+     * and soft limits. This is the value the real motor would receive.
+     *
+     * @return applied motor power.
+     */
+    public double getAppliedPower()
+    {
+        return power;
+    }   //getAppliedPower
+
+    /**
+     * This method returns the speed of the mechanism driven by the motor in the
+     * direction of the power given to setPower(). In other words, it assumes
+     * the motor inversion has been configured to match how the motor is mounted,
+     * and it is not affected by how the position sensor is mounted.
+     *
+     * @return output speed in sensor units per second.
+     */
+    public double getOutputSpeed()
+    {
+        return inverted? -speed: speed;
+    }   //getOutputSpeed
+
+    /**
+     * This method sets the simulated state of the limit switches.
+     *
+     * @param lowerActive specifies true if the lower limit switch is active.
+     * @param upperActive specifies true if the upper limit switch is active.
+     */
+    public void setLimitSwitchesActive(boolean lowerActive, boolean upperActive)
+    {
+        lowerLimitSwitchActive = lowerActive;
+        upperLimitSwitchActive = upperActive;
+    }   //setLimitSwitchesActive
+
+    /**
+     * This method sets the raw motor position, for example to seed the model
+     * from recorded data.
+     *
+     * @param position specifies the raw motor position in sensor units.
+     */
+    public void setRawPosition(double position)
+    {
+        this.position = position;
+    }   //setRawPosition
+
+    //
+    // Implements SimModel interface.
+    //
+
+    @Override
+    public void updateModel(double deltaTime)
+    {
+        double tau = power == 0.0 && !brakeModeEnabled? timeConstant*COAST_TIME_CONSTANT_FACTOR: timeConstant;
+        double targetSpeed = power*freeSpeed;
+
+        speed += (targetSpeed - speed)*(1.0 - Math.exp(-deltaTime/tau));
+        position += speed*deltaTime;
+    }   //updateModel
+
+    //
+    // Implements HalMotorController interface.
+    //
+
+    @Override
+    public boolean getInverted()
+    {
+        return inverted;
+    }   //getInverted
+
+    @Override
+    public double getPosition()
+    {
+        return sensorSign*(position - zeroPosition);
+    }   //getPosition
+
+    @Override
+    public double getSpeed()
+    {
+        return sensorSign*speed;
+    }   //getSpeed
+
+    @Override
+    public boolean isLowerLimitSwitchActive()
+    {
+        return lowerLimitSwitchActive;
+    }   //isLowerLimitSwitchActive
+
+    @Override
+    public boolean isUpperLimitSwitchActive()
+    {
+        return upperLimitSwitchActive;
+    }   //isUpperLimitSwitchActive
+
+    @Override
+    public void resetPosition()
+    {
+        zeroPosition = position;
+    }   //resetPosition
+
+    @Override
+    public void setBrakeModeEnabled(boolean enabled)
+    {
+        brakeModeEnabled = enabled;
+    }   //setBrakeModeEnabled
+
+    @Override
+    public void setInverted(boolean inverted)
+    {
+        this.inverted = inverted;
+    }   //setInverted
+
+    @Override
+    public void setPower(double power)
+    {
+        power = TrcUtil.limit(inverted? -power: power);
+
+        double currPos = getPosition();
+        if (softLowerLimitEnabled && currPos <= softLowerLimit && sensorSign*power < 0.0 ||
+            softUpperLimitEnabled && currPos >= softUpperLimit && sensorSign*power > 0.0)
+        {
+            power = 0.0;
+        }
+
+        this.power = power;
+    }   //setPower
+
+    @Override
+    public void setPositionSensorInverted(boolean inverted)
+    {
+        sensorSign = inverted? -1.0: 1.0;
+    }   //setPositionSensorInverted
+
+    @Override
+    public void setSoftLimitEnabled(boolean lowerLimitEnabled, boolean upperLimitEnabled)
+    {
+        softLowerLimitEnabled = lowerLimitEnabled;
+        softUpperLimitEnabled = upperLimitEnabled;
+    }   //setSoftLimitEnabled
+
+    @Override
+    public void setSoftLowerLimit(double position)
+    {
+        softLowerLimit = position;
+    }   //setSoftLowerLimit
+
+    @Override
+    public void setSoftUpperLimit(double position)
+    {
+        softUpperLimit = position;
+    }   //setSoftUpperLimit
+
+    //
+    // Implements SpeedController interface.
+    //
+
+    @Override
+    public double get()
+    {
+        return inverted? -power: power;
+    }   //get
+
+    @Override
+    public void set(double speed, byte syncGroup)
+    {
+        setPower(speed);
+    }   //set
+
+    @Override
+    public void set(double speed)
+    {
+        setPower(speed);
+    }   //set
+
+    @Override
+    public void disable()
+    {
+        power = 0.0;
+    }   //disable
+
+    @Override
+    public void stopMotor()
+    {
+        power = 0.0;
+    }   //stopMotor
+
+    @Override
+    public void pidWrite(double output)
+    {
+        setPower(output);
+    }   //pidWrite
+
+}   //class SimMotorController
@@ -0,0 +1,316 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package simlib;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * This class implements the replay of a recorded telemetry log through the
+ * real robot code. Replay stand-ins such as SimReplayMotorController,
+ * SimReplayGyro and SimReplayAnalogInput take the place of the real devices
+ * and report the sensor values recorded in the current frame, while
+ * SimRobotBase.runReplay() steps the frames on the virtual clock as fast as
+ * the CPU allows. The outputs commanded by the replayed code are compared to
+ * the recorded outputs every frame.
+ *
+ * The replay is open loop: the sensors report what happened in the match, not
+ * what the commanded outputs would have done. The comparison is exact as long
+ * as the code behaves the same as the recorded code and shows where and by how
+ * much it starts to differ when it does not.
+ */
+public class SimReplay
+{
+    /**
+     * This interface is implemented by a replay stand-in that produces an
+     * output to be compared with the recording.
+     */
+    public interface Output
+    {
+        /**
+         * This method returns the output commanded by the replayed code.
+         *
+         * @return commanded output.
+         */
+        public double getReplayOutput();
+
+    }   //interface Output
+
+    /**
+     * This class keeps the comparison statistics of an output.
+     */
+    private class OutputCheck
+    {
+        final String name;
+        final int channel;
+        final Output output;
+        long numFrames = 0;
+        double sumSquaredError = 0.0;
+        double maxError = 0.0;
+        int maxErrorFrame = -1;
+        int firstDivergedFrame = -1;
+
+        OutputCheck(String name, int channel, Output output)
+        {
+            this.name = name;
+            this.channel = channel;
+            this.output = output;
+        }   //OutputCheck
+
+    }   //class OutputCheck
+
+    public static final double DEF_TOLERANCE = 1.0e-3;
+
+    private final SimReplayLog log;
+    private final ArrayList<OutputCheck> outputChecks = new ArrayList<OutputCheck>();
+    private double tolerance = DEF_TOLERANCE;
+    private int currFrame = 0;
+
+    /**
+     * Constructor: Creates an instance of the object and loads the log file.
+     *
+     * @param fileName specifies the telemetry log file path.
+     * @throws IOException if the log cannot be read.
+     */
+    public SimReplay(final String fileName) throws IOException
+    {
+        log = new SimReplayLog(fileName);
+        if (log.getNumFrames() == 0)
+        {
+            throw new IOException(fileName + " has no frames.");
+        }
+    }   //SimReplay
+
+    /**
+     * This method returns the replay log.
+     *
+     * @return replay log.
+     */
+    public SimReplayLog getLog()
+    {
+        return log;
+    }   //getLog
+
+    /**
+     * This method returns the index of the current frame.
+     *
+     * @return current frame index.
+     */
+    public int getCurrentFrame()
+    {
+        return currFrame;
+    }   //getCurrentFrame
+
+    /**
+     * This method sets the tolerance beyond which an output is considered to
+     * have diverged from the recording.
+     *
+     * @param tolerance specifies the tolerance.
+     */
+    public void setTolerance(double tolerance)
+    {
+        this.tolerance = tolerance;
+    }   //setTolerance
+
+    /**
+     * This method returns the index of the channel with the given name.
+     *
+     * @param name specifies the channel name.
+     * @return channel index.
+     * @throws IllegalArgumentException if the log has no such channel.
+     */
+    public int getChannel(String name)
+    {
+        int channel = log.getChannelIndex(name);
+
+        if (channel < 0)
+        {
+            throw new IllegalArgumentException(log + " has no channel " + name + ".");
+        }
+
+        return channel;
+    }   //getChannel
+
+    /**
+     * This method returns the value of the given channel in the current frame.
+     *
+     * @param channel specifies the channel index.
+     * @return channel value, 0.0 if the channel has not been sampled yet.
+     */
+    public double getValue(int channel)
+    {
+        double value = log.getValue(channel, currFrame);
+
+        return Double.isNaN(value)? 0.0: value;
+    }   //getValue
+
+    /**
+     * This method returns the rate of change of the given channel between the
+     * previous frame and the current frame.
+     *
+     * @param channel specifies the channel index.
+     * @return rate of change per second, 0.0 for the first frame.
+     */
+    public double getRate(int channel)
+    {
+        double rate = 0.0;
+
+        if (currFrame > 0)
+        {
+            double deltaTime =
+                    (log.getFrameTimeNanos(currFrame) - log.getFrameTimeNanos(currFrame - 1))/1000000000.0;
+            double prevValue = log.getValue(channel, currFrame - 1);
+            double currValue = log.getValue(channel, currFrame);
+
+            if (deltaTime > 0.0 && !Double.isNaN(prevValue) && !Double.isNaN(currValue))
+            {
+                rate = (currValue - prevValue)/deltaTime;
+            }
+        }
+
+        return rate;
+    }   //getRate
+
+    /**
+     * This method registers an output to be compared with the given recorded
+     * channel every frame.
+     *
+     * @param name specifies the recorded channel name.
+     * @param output specifies the output.
+     * @throws IllegalArgumentException if the log has no such channel.
+     */
+    public void addOutput(String name, Output output)
+    {
+        outputChecks.add(new OutputCheck(name, getChannel(name), output));
+    }   //addOutput
+
+    /**
+     * This method checks if any output has diverged from the recording.
+     *
+     * @return true if any output diverged, false otherwise.
+     */
+    public boolean hasDiverged()
+    {
+        for (int i = 0; i < outputChecks.size(); i++)
+        {
+            if (outputChecks.get(i).firstDivergedFrame >= 0)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }   //hasDiverged
+
+    /**
+     * This method returns the comparison report with one line per output. Times
+     * are in seconds from the first frame.
+     *
+     * @return comparison report.
+     */
+    public String getReport()
+    {
+        StringBuilder report = new StringBuilder();
+
+        report.append(String.format("Replay of %s: %d frames, %.3f s, tolerance %.6f\n",
+                                    log, log.getNumFrames(), getFrameTime(log.getNumFrames() - 1),
+                                    tolerance));
+        for (int i = 0; i < outputChecks.size(); i++)
+        {
+            OutputCheck check = outputChecks.get(i);
+
+            report.append(String.format(
+                    "  %-32s rms=%.6f max=%.6f", check.name,
+                    check.numFrames > 0? Math.sqrt(check.sumSquaredError/check.numFrames): 0.0,
+                    check.maxError));
+            if (check.maxErrorFrame >= 0)
+            {
+                report.append(String.format(" at %.3f", getFrameTime(check.maxErrorFrame)));
+            }
+            if (check.firstDivergedFrame >= 0)
+            {
+                report.append(String.format(" diverged at %.3f", getFrameTime(check.firstDivergedFrame)));
+            }
+            report.append('\n');
+        }
+
+        return report.toString();
+    }   //getReport
+
+    /**
+     * This method is called by SimRobotBase to make the given frame current.
+     *
+     * @param frame specifies the frame index.
+     */
+    void setFrame(int frame)
+    {
+        currFrame = frame;
+    }   //setFrame
+
+    /**
+     * This method is called by SimRobotBase at the end of a frame to compare
+     * the commanded outputs with the recorded outputs of the frame. Frames
+     * where an output has not been recorded yet are skipped.
+     *
+     * @param frame specifies the frame index.
+     */
+    void compareOutputs(int frame)
+    {
+        for (int i = 0; i < outputChecks.size(); i++)
+        {
+            OutputCheck check = outputChecks.get(i);
+            double recorded = log.getValue(check.channel, frame);
+
+            if (!Double.isNaN(recorded))
+            {
+                double error = Math.abs(check.output.getReplayOutput() - recorded);
+
+                check.numFrames++;
+                check.sumSquaredError += error*error;
+                if (error > check.maxError)
+                {
+                    check.maxError = error;
+                    check.maxErrorFrame = frame;
+                }
+
+                if (error > tolerance && check.firstDivergedFrame < 0)
+                {
+                    check.firstDivergedFrame = frame;
+                }
+            }
+        }
+    }   //compareOutputs
+
+    /**
+     * This method returns the time of the given frame from the first frame.
+     *
+     * @param frame specifies the frame index.
+     * @return frame time in seconds.
+     */
+    private double getFrameTime(int frame)
+    {
+        return (log.getFrameTimeNanos(frame) - log.getFrameTimeNanos(0))/1000000000.0;
+    }   //getFrameTime
+
+}   //class SimReplay
@@ -0,0 +1,93 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package simlib;
+
+import hallib.HalUtil;
+import trclib.TrcAnalogInput;
+
+/**
+ * This class implements a replay stand-in for an analog sensor such as a sonar
+ * recorded by TrcAnalogInput. The input data of each axis comes from the
+ * recorded "<name>.data<index>" channel. The recorded data is already
+ * processed, so the stand-in should be created without filters and scaling.
+ * Integrated data comes from the integrator if the options ask for one.
+ */
+public class SimReplayAnalogInput extends TrcAnalogInput
+{
+    private final SimReplay replay;
+    private final int[] dataChannels;
+
+    /**
+     * Constructor: Creates an instance of the object.
+     *
+     * @param replay specifies the replay.
+     * @param instanceName specifies the recorded sensor name.
+     * @param numAxes specifies the number of axes.
+     * @param options specifies the AnalogInput options.
+     * @throws IllegalArgumentException if the log has no data channel for an axis.
+     */
+    public SimReplayAnalogInput(SimReplay replay, final String instanceName, int numAxes, int options)
+    {
+        super(instanceName, numAxes, options);
+        this.replay = replay;
+        dataChannels = new int[numAxes];
+        for (int i = 0; i < numAxes; i++)
+        {
+            dataChannels[i] = replay.getChannel(instanceName + ".data" + i);
+        }
+    }   //SimReplayAnalogInput
+
+    /**
+     * Constructor: Creates an instance of the object.
+     *
+     * @param replay specifies the replay.
+     * @param instanceName specifies the recorded sensor name.
+     */
+    public SimReplayAnalogInput(SimReplay replay, final String instanceName)
+    {
+        this(replay, instanceName, 1, 0);
+    }   //SimReplayAnalogInput
+
+    //
+    // Implements TrcAnalogInput abstract methods.
+    //
+
+    @Override
+    public SensorData getRawData(int index, DataType dataType)
+    {
+        DoubleData data = new DoubleData();
+
+        getRawData(index, dataType, data);
+
+        return data.toSensorData();
+    }   //getRawData
+
+    @Override
+    public void getRawData(int index, DataType dataType, DoubleData data)
+    {
+        data.set(HalUtil.getCurrentTime(),
+                 dataType == DataType.INPUT_DATA? replay.getValue(dataChannels[index]): Double.NaN);
+    }   //getRawData
+
+}   //class SimReplayAnalogInput
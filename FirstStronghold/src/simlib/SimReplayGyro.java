@@ -0,0 +1,194 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package simlib;
+
+import hallib.HalGyro;
+import hallib.HalUtil;
+import trclib.TrcSensor.DoubleData;
+import trclib.TrcSensor.SensorData;
+
+/**
+ * This class implements a replay stand-in for a z-axis gyro recorded by
+ * TrcGyro or FrcADXRS450Gyro. The heading and rotation rate come from the
+ * recorded "<name>.zHeading" and "<name>.zRotationRate" channels. The
+ * recorded values already have inversion applied, so setting it has no
+ * effect. They include integrator resets from the next loop on, so a reset
+ * only zeroes the heading for the rest of the current frame.
+ */
+public class SimReplayGyro implements HalGyro
+{
+    private final String instanceName;
+    private final SimReplay replay;
+    private final int rateChannel;
+    private final int headingChannel;
+    private int resetFrame = -1;
+    private double resetHeading = 0.0;
+
+    /**
+     * Constructor: Creates an instance of the object.
+     *
+     * @param replay specifies the replay.
+     * @param instanceName specifies the recorded gyro name.
+     * @throws IllegalArgumentException if the log has no z-axis channels for the gyro.
+     */
+    public SimReplayGyro(SimReplay replay, final String instanceName)
+    {
+        this.instanceName = instanceName;
+        this.replay = replay;
+        rateChannel = replay.getChannel(instanceName + ".zRotationRate");
+        headingChannel = replay.getChannel(instanceName + ".zHeading");
+    }   //SimReplayGyro
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
+    /**
+     * This method returns the recorded heading of the current frame, zeroed
+     * if the integrator was reset in this frame.
+     *
+     * @return z-axis heading.
+     */
+    private double getHeading()
+    {
+        double heading = replay.getValue(headingChannel);
+
+        return replay.getCurrentFrame() == resetFrame? heading - resetHeading: heading;
+    }   //getHeading
+
+    //
+    // Implements HalGyro interface.
+    //
+
+    @Override
+    public void setXInverted(boolean inverted)
+    {
+    }   //setXInverted
+
+    @Override
+    public void setYInverted(boolean inverted)
+    {
+    }   //setYInverted
+
+    @Override
+    public void setZInverted(boolean inverted)
+    {
+    }   //setZInverted
+
+    @Override
+    public SensorData getXRotationRate()
+    {
+        return null;
+    }   //getXRotationRate
+
+    @Override
+    public SensorData getYRotationRate()
+    {
+        return null;
+    }   //getYRotationRate
+
+    @Override
+    public SensorData getZRotationRate()
+    {
+        return new SensorData(HalUtil.getCurrentTime(), replay.getValue(rateChannel));
+    }   //getZRotationRate
+
+    @Override
+    public SensorData getXHeading()
+    {
+        return null;
+    }   //getXHeading
+
+    @Override
+    public SensorData getYHeading()
+    {
+        return null;
+    }   //getYHeading
+
+    @Override
+    public SensorData getZHeading()
+    {
+        return new SensorData(HalUtil.getCurrentTime(), getHeading());
+    }   //getZHeading
+
+    @Override
+    public void getXRotationRate(DoubleData data)
+    {
+        data.set(HalUtil.getCurrentTime(), Double.NaN);
+    }   //getXRotationRate
+
+    @Override
+    public void getYRotationRate(DoubleData data)
+    {
+        data.set(HalUtil.getCurrentTime(), Double.NaN);
+    }   //getYRotationRate
+
+    @Override
+    public void getZRotationRate(DoubleData data)
+    {
+        data.set(HalUtil.getCurrentTime(), replay.getValue(rateChannel));
+    }   //getZRotationRate
+
+    @Override
+    public void getXHeading(DoubleData data)
+    {
+        data.set(HalUtil.getCurrentTime(), Double.NaN);
+    }   //getXHeading
+
+    @Override
+    public void getYHeading(DoubleData data)
+    {
+        data.set(HalUtil.getCurrentTime(), Double.NaN);
+    }   //getYHeading
+
+    @Override
+    public void getZHeading(DoubleData data)
+    {
+        data.set(HalUtil.getCurrentTime(), getHeading());
+    }   //getZHeading
+
+    @Override
+    public void resetXIntegrator()
+    {
+    }   //resetXIntegrator
+
+    @Override
+    public void resetYIntegrator()
+    {
+    }   //resetYIntegrator
+
+    @Override
+    public void resetZIntegrator()
+    {
+        resetHeading = replay.getValue(headingChannel);
+        resetFrame = replay.getCurrentFrame();
+    }   //resetZIntegrator
+
+}   //class SimReplayGyro
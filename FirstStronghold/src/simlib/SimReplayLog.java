@@ -0,0 +1,331 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package simlib;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import trclib.TrcTelemetry;
+
+/**
+ * This class reads a binary telemetry log written by TrcTelemetry. The whole
+ * log is loaded into per channel arrays indexed by frame, so the value of any
+ * channel in any frame can be looked up in constant time. A channel that has
+ * no sample in a frame keeps the value of its last sample, samples recorded
+ * before the first frame become the initial values and a channel that has
+ * not been sampled yet reads NaN. If a channel has more than one sample in a
+ * frame, the last one wins.
+ */
+public class SimReplayLog
+{
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final String fileName;
+    private final ArrayList<String> channelNames = new ArrayList<String>();
+    private final ArrayList<TrcTelemetry.ChannelType> channelTypes =
+            new ArrayList<TrcTelemetry.ChannelType>();
+    private final HashMap<String, Integer> channelMap = new HashMap<String, Integer>();
+    private long[] frameTimes = null;
+    private double[][] values = null;
+
+    /**
+     * Constructor: Creates an instance of the object and loads the log file.
+     *
+     * @param fileName specifies the log file path.
+     * @throws IOException if the file cannot be read or is not a telemetry log.
+     */
+    public SimReplayLog(final String fileName) throws IOException
+    {
+        this.fileName = fileName;
+
+        RandomAccessFile file = new RandomAccessFile(fileName, "r");
+        try
+        {
+            FileChannel fileChannel = file.getChannel();
+            ByteBuffer buffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileChannel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            byte[] magic = new byte[TrcTelemetry.LOG_MAGIC.length()];
+            if (buffer.remaining() < magic.length)
+            {
+                throw new IOException(fileName + " is not a telemetry log.");
+            }
+            buffer.get(magic);
+            if (!TrcTelemetry.LOG_MAGIC.equals(new String(magic, Charset.forName("US-ASCII"))))
+            {
+                throw new IOException(fileName + " is not a telemetry log.");
+            }
+            //
+            // The first pass counts the frames and collects the channel definitions,
+            // the second pass fills in the values.
+            //
+            int dataStart = buffer.position();
+            int numFrames = parse(buffer, false);
+            frameTimes = new long[numFrames];
+            values = new double[channelNames.size()][numFrames];
+            buffer.position(dataStart);
+            parse(buffer, true);
+        }
+        finally
+        {
+            file.close();
+        }
+    }   //SimReplayLog
+
+    /**
+     * This method returns the log file path.
+     *
+     * @return log file path.
+     */
+    public String toString()
+    {
+        return fileName;
+    }   //toString
+
+    /**
+     * This method returns the number of frames in the log.
+     *
+     * @return number of frames.
+     */
+    public int getNumFrames()
+    {
+        return frameTimes.length;
+    }   //getNumFrames
+
+    /**
+     * This method returns the timestamp of the given frame.
+     *
+     * @param frame specifies the frame index.
+     * @return frame timestamp in nanoseconds.
+     */
+    public long getFrameTimeNanos(int frame)
+    {
+        return frameTimes[frame];
+    }   //getFrameTimeNanos
+
+    /**
+     * This method returns the number of channels in the log.
+     *
+     * @return number of channels.
+     */
+    public int getNumChannels()
+    {
+        return channelNames.size();
+    }   //getNumChannels
+
+    /**
+     * This method returns the index of the channel with the given name.
+     *
+     * @param name specifies the channel name.
+     * @return channel index, -1 if the log has no such channel.
+     */
+    public int getChannelIndex(String name)
+    {
+        Integer index = channelMap.get(name);
+
+        return index != null? index: -1;
+    }   //getChannelIndex
+
+    /**
+     * This method returns the name of the given channel.
+     *
+     * @param channel specifies the channel index.
+     * @return channel name.
+     */
+    public String getChannelName(int channel)
+    {
+        return channelNames.get(channel);
+    }   //getChannelName
+
+    /**
+     * This method returns the type of the given channel.
+     *
+     * @param channel specifies the channel index.
+     * @return channel type.
+     */
+    public TrcTelemetry.ChannelType getChannelType(int channel)
+    {
+        return channelTypes.get(channel);
+    }   //getChannelType
+
+    /**
+     * This method returns the value of the given channel in the given frame.
+     * INT and BOOLEAN samples are returned as double, with true being 1.0.
+     *
+     * @param channel specifies the channel index.
+     * @param frame specifies the frame index.
+     * @return channel value, NaN if the channel has not been sampled yet.
+     */
+    public double getValue(int channel, int frame)
+    {
+        return values[channel][frame];
+    }   //getValue
+
+    /**
+     * This method parses the records of the log. It stops at the end marker,
+     * at the end of the file or at a record cut short by the end of the file.
+     *
+     * @param buffer specifies the log buffer positioned after the magic.
+     * @param fill specifies true to fill in the frame times and values, false
+     *             to only count the frames and collect the channel definitions.
+     * @return number of frames.
+     * @throws IOException if the log is corrupted.
+     */
+    private int parse(ByteBuffer buffer, boolean fill) throws IOException
+    {
+        TrcTelemetry.ChannelType[] types = TrcTelemetry.ChannelType.values();
+        double[] currValues = null;
+        int numFrames = 0;
+
+        if (fill)
+        {
+            currValues = new double[channelNames.size()];
+            Arrays.fill(currValues, Double.NaN);
+        }
+
+        while (buffer.remaining() >= 2)
+        {
+            short tag = buffer.getShort();
+
+            if (tag == TrcTelemetry.TAG_END)
+            {
+                break;
+            }
+            else if (tag == TrcTelemetry.TAG_FRAME)
+            {
+                if (buffer.remaining() < 8)
+                {
+                    break;
+                }
+
+                long timestamp = buffer.getLong();
+                if (fill)
+                {
+                    //
+                    // Close out the previous frame with the values current at the end of it.
+                    //
+                    if (numFrames > 0)
+                    {
+                        storeFrame(currValues, numFrames - 1);
+                    }
+                    frameTimes[numFrames] = timestamp;
+                }
+                numFrames++;
+            }
+            else if (tag == TrcTelemetry.TAG_DEF)
+            {
+                if (buffer.remaining() < 5)
+                {
+                    break;
+                }
+
+                int id = buffer.getShort();
+                int typeOrdinal = buffer.get();
+                int nameLength = buffer.getShort() & 0xffff;
+                if (buffer.remaining() < nameLength)
+                {
+                    break;
+                }
+
+                byte[] name = new byte[nameLength];
+                buffer.get(name);
+                if (!fill)
+                {
+                    if (id != channelNames.size() || typeOrdinal < 0 || typeOrdinal >= types.length)
+                    {
+                        throw new IOException(fileName + " has a bad channel definition.");
+                    }
+
+                    String channelName = new String(name, UTF8);
+                    channelNames.add(channelName);
+                    channelTypes.add(types[typeOrdinal]);
+                    channelMap.put(channelName, id);
+                }
+            }
+            else if (tag > 0 && tag <= channelTypes.size())
+            {
+                int id = tag - 1;
+                TrcTelemetry.ChannelType type = channelTypes.get(id);
+                if (buffer.remaining() < type.getSize())
+                {
+                    break;
+                }
+
+                double value;
+                switch (type)
+                {
+                    case DOUBLE:
+                        value = buffer.getDouble();
+                        break;
+
+                    case INT:
+                        value = buffer.getInt();
+                        break;
+
+                    default:
+                        value = buffer.get();
+                        break;
+                }
+
+                if (fill)
+                {
+                    currValues[id] = value;
+                }
+            }
+            else
+            {
+                throw new IOException(String.format("%s has a bad record tag %d.", fileName, tag));
+            }
+        }
+
+        if (fill && numFrames > 0)
+        {
+            storeFrame(currValues, numFrames - 1);
+        }
+
+        return numFrames;
+    }   //parse
+
+    /**
+     * This method stores the current channel values into the given frame.
+     *
+     * @param currValues specifies the current channel values.
+     * @param frame specifies the frame index.
+     */
+    private void storeFrame(double[] currValues, int frame)
+    {
+        for (int i = 0; i < currValues.length; i++)
+        {
+            values[i][frame] = currValues[i];
+        }
+    }   //storeFrame
+
+}   //class SimReplayLog
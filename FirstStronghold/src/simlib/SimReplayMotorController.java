@@ -0,0 +1,229 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package simlib;
+
+import edu.wpi.first.wpilibj.SpeedController;
+import hallib.HalMotorController;
+
+/**
+ * This class implements a replay stand-in for a motor controller recorded by
+ * FrcCANTalon. The position comes from the recorded "<name>.position" channel
+ * and the speed is derived from it. The power set by the replayed code is
+ * compared with the recorded "<name>.power" channel if the log has it.
+ *
+ * The recorded positions already include the resets done by the recorded
+ * code from the next loop on, so resetting the position only zeroes it for
+ * the rest of the current frame, the way later reads in the same loop saw it.
+ * The limit switches are not recorded and always read inactive.
+ */
+public class SimReplayMotorController implements HalMotorController, SpeedController, SimReplay.Output
+{
+    private final String instanceName;
+    private final SimReplay replay;
+    private final int positionChannel;
+    private boolean inverted = false;
+    private double power = 0.0;
+    private boolean softLowerLimitEnabled = false;
+    private boolean softUpperLimitEnabled = false;
+    private double softLowerLimit = 0.0;
+    private double softUpperLimit = 0.0;
+    private int resetFrame = -1;
+    private double resetPosition = 0.0;
+
+    /**
+     * Constructor: Creates an instance of the object.
+     *
+     * @param replay specifies the replay.
+     * @param instanceName specifies the recorded motor name (e.g. FrcCANTalon3).
+     * @throws IllegalArgumentException if the log has no position channel for the motor.
+     */
+    public SimReplayMotorController(SimReplay replay, final String instanceName)
+    {
+        this.instanceName = instanceName;
+        this.replay = replay;
+        positionChannel = replay.getChannel(instanceName + ".position");
+        if (replay.getLog().getChannelIndex(instanceName + ".power") >= 0)
+        {
+            replay.addOutput(instanceName + ".power", this);
+        }
+    }   //SimReplayMotorController
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
+    //
+    // Implements SimReplay.Output interface.
+    //
+
+    @Override
+    public double getReplayOutput()
+    {
+        return power;
+    }   //getReplayOutput
+
+    //
+    // Implements HalMotorController interface.
+    //
+
+    @Override
+    public boolean getInverted()
+    {
+        return inverted;
+    }   //getInverted
+
+    @Override
+    public double getPosition()
+    {
+        double pos = replay.getValue(positionChannel);
+
+        return replay.getCurrentFrame() == resetFrame? pos - resetPosition: pos;
+    }   //getPosition
+
+    @Override
+    public double getSpeed()
+    {
+        return replay.getRate(positionChannel);
+    }   //getSpeed
+
+    @Override
+    public boolean isLowerLimitSwitchActive()
+    {
+        return false;
+    }   //isLowerLimitSwitchActive
+
+    @Override
+    public boolean isUpperLimitSwitchActive()
+    {
+        return false;
+    }   //isUpperLimitSwitchActive
+
+    @Override
+    public void resetPosition()
+    {
+        resetPosition = replay.getValue(positionChannel);
+        resetFrame = replay.getCurrentFrame();
+    }   //resetPosition
+
+    @Override
+    public void setBrakeModeEnabled(boolean enabled)
+    {
+    }   //setBrakeModeEnabled
+
+    @Override
+    public void setInverted(boolean inverted)
+    {
+        this.inverted = inverted;
+    }   //setInverted
+
+    @Override
+    public void setPower(double power)
+    {
+        //
+        // Same as FrcCANTalon, the recorded power is before motor inversion.
+        //
+        double currPos = getPosition();
+        if (softLowerLimitEnabled && power < 0.0 && currPos <= softLowerLimit ||
+            softUpperLimitEnabled && power > 0.0 && currPos >= softUpperLimit)
+        {
+            power = 0.0;
+        }
+
+        this.power = power;
+    }   //setPower
+
+    @Override
+    public void setPositionSensorInverted(boolean inverted)
+    {
+        //
+        // The recorded positions already have the sensor inversion applied.
+        //
+    }   //setPositionSensorInverted
+
+    @Override
+    public void setSoftLimitEnabled(boolean lowerLimitEnabled, boolean upperLimitEnabled)
+    {
+        softLowerLimitEnabled = lowerLimitEnabled;
+        softUpperLimitEnabled = upperLimitEnabled;
+    }   //setSoftLimitEnabled
+
+    @Override
+    public void setSoftLowerLimit(double position)
+    {
+        softLowerLimit = position;
+    }   //setSoftLowerLimit
+
+    @Override
+    public void setSoftUpperLimit(double position)
+    {
+        softUpperLimit = position;
+    }   //setSoftUpperLimit
+
+    //
+    // Implements SpeedController interface.
+    //
+
+    @Override
+    public double get()
+    {
+        return power;
+    }   //get
+
+    @Override
+    public void set(double speed, byte syncGroup)
+    {
+        setPower(speed);
+    }   //set
+
+    @Override
+    public void set(double speed)
+    {
+        setPower(speed);
+    }   //set
+
+    @Override
+    public void disable()
+    {
+        power = 0.0;
+    }   //disable
+
+    @Override
+    public void stopMotor()
+    {
+        power = 0.0;
+    }   //stopMotor
+
+    @Override
+    public void pidWrite(double output)
+    {
+        setPower(output);
+    }   //pidWrite
+
+}   //class SimReplayMotorController
@@ -0,0 +1,423 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package simlib;
+
+import java.util.ArrayList;
+
+import edu.wpi.first.wpilibj.Timer;
+import hallib.HalDashboard;
+import hallib.HalDbgLog;
+import hallib.HalRobotDrive;
+import hallib.HalUtil;
+import trclib.TrcDbgTrace;
+import trclib.TrcRobot.*;
+import trclib.TrcTaskMgr;
+import trclib.TrcTelemetry;
+
+/**
+ * This class implements a headless robot loop driver for simulation. It runs
+ * the same cooperative multitasking sequence as FrcRobotBase (start tasks,
+ * periodic and continuous tasks, stop tasks) but on a virtual clock that
+ * advances by a fixed step per loop, and it updates the registered physics
+ * models after each loop. Nothing waits on real time, so a simulated run
+ * goes as fast as the CPU allows and is fully deterministic. To keep it so,
+ * the dashboard is headless and task groups have no threads. Their cycles
+ * run inline at the end of each loop on the virtual clock. The constructor
+ * also installs the off-robot stand-ins: the virtual clock backs both the HAL
+ * time and the WPILib Timer (SimTimer), RobotDrive usage reporting is turned
+ * off, and the debug log goes to an in-memory SimLogSink.
+ *
+ * Subclasses create their subsystems over simulated devices such as
+ * SimMotorController and SimGyro in initRobot() and register the models
+ * with addModel(). runReplay() runs the robot code against a recorded
+ * telemetry log instead, see SimReplay.
+ */
+public abstract class SimRobotBase
+{
+    private static final String moduleName = "SimRobotBase";
+    private static final boolean debugEnabled = false;
+    private TrcDbgTrace dbgTrace = null;
+
+    public static final double DEFAULT_LOOP_PERIOD = 0.005;
+    public static final double PERIODIC_INTERVAL = 0.02;
+
+    /**
+     * This method is called to initialize the robot.
+     */
+    public abstract void initRobot();
+
+    private TrcTaskMgr taskMgr = new TrcTaskMgr(true);
+    private HalDashboard dashboard = new HalDashboard(true);
+    private SimClock clock = new SimClock();
+    private SimLogSink logSink;
+    private TrcTelemetry telemetry = TrcTelemetry.getInstance();
+    private ArrayList<SimModel> models = new ArrayList<SimModel>();
+
+    private final String progName;
+    private final double loopPeriod;
+    private RobotMode teleOpMode = null;
+    private RobotMode autoMode = null;
+    private RobotMode testMode = null;
+    private RobotMode disabledMode = null;
+    private double modeStartTime = 0.0;
+    private double nextPeriodicTime = 0.0;
+    private long loopCount = 0;
+    private boolean robotInitialized = false;
+
+    /**
+     * Constructor: Creates an instance of the object. It installs the virtual
+     * clock as the HAL and WPILib time source and the simulation log sink.
+     * initRobot() is called by the first runMode().
+     *
+     * @param progName specifies the program name.
+     * @param loopPeriod specifies the simulated continuous loop period in seconds.
+     * @param logToConsole specifies true to also print the debug log to the console.
+     */
+    public SimRobotBase(final String progName, double loopPeriod, boolean logToConsole)
+    {
+        if (debugEnabled)
+        {
+            dbgTrace = new TrcDbgTrace(
+                    moduleName,
+                    false,
+                    TrcDbgTrace.TraceLevel.API,
+                    TrcDbgTrace.MsgLevel.INFO);
+        }
+
+        if (loopPeriod <= 0.0)
+        {
+            throw new IllegalArgumentException("Loop period must be positive.");
+        }
+
+        this.progName = progName;
+        this.loopPeriod = loopPeriod;
+        HalUtil.setTimeSource(clock);
+        Timer.SetImplementation(new SimTimer(clock));
+        HalRobotDrive.disableUsageReporting();
+        logSink = new SimLogSink(logToConsole);
+        HalDbgLog.setLogSink(logSink);
+        dashboard.clearDisplay();
+    }   //SimRobotBase
+
+    /**
+     * Constructor: Creates an instance of the object with the default loop
+     * period. The debug log is not printed.
+     *
+     * @param progName specifies the program name.
+     */
+    public SimRobotBase(final String progName)
+    {
+        this(progName, DEFAULT_LOOP_PERIOD, false);
+    }   //SimRobotBase
+
+    /**
+     * This method returns the program name.
+     *
+     * @return program name.
+     */
+    public String toString()
+    {
+        return progName;
+    }   //toString
+
+    public void setupRobotModes(
+            RobotMode teleOpMode,
+            RobotMode autoMode,
+            RobotMode testMode,
+            RobotMode disabledMode)
+    {
+        this.teleOpMode = teleOpMode;
+        this.autoMode = autoMode;
+        this.testMode = testMode;
+        this.disabledMode = disabledMode;
+    }   //setupRobotModes
+
+    /**
+     * This method registers a physics model to be updated every loop.
+     *
+     * @param model specifies the model.
+     */
+    public void addModel(SimModel model)
+    {
+        models.add(model);
+    }   //addModel
+
+    /**
+     * This method returns the virtual clock.
+     *
+     * @return virtual clock.
+     */
+    public SimClock getClock()
+    {
+        return clock;
+    }   //getClock
+
+    /**
+     * This method returns the simulation log sink that holds the debug log.
+     *
+     * @return simulation log sink.
+     */
+    public SimLogSink getLogSink()
+    {
+        return logSink;
+    }   //getLogSink
+
+    /**
+     * This method returns the simulated time since the current mode started.
+     *
+     * @return mode elapsed time in seconds.
+     */
+    public double getModeElapsedTime()
+    {
+        return HalUtil.getCurrentTime() - modeStartTime;
+    }   //getModeElapsedTime
+
+    /**
+     * This method returns the total number of simulated loops.
+     *
+     * @return loop count.
+     */
+    public long getLoopCount()
+    {
+        return loopCount;
+    }   //getLoopCount
+
+    /**
+     * This method runs the robot in the given mode for the given simulated
+     * duration. It runs the start tasks and startMode() first, then loops,
+     * then runs stopMode() and the stop tasks.
+     *
+     * @param runMode specifies the mode to run.
+     * @param duration specifies the simulated duration in seconds.
+     */
+    public void runMode(RunMode runMode, double duration)
+    {
+        final String funcName = "runMode";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(
+                    funcName, TrcDbgTrace.TraceLevel.API,
+                    "mode=%s,duration=%f", runMode.toString(), duration);
+        }
+
+        RobotMode robotMode = startRobotMode(runMode);
+        long numLoops = Math.round(duration/loopPeriod);
+        for (long i = 0; i < numLoops; i++)
+        {
+            runPeriodicTasks(robotMode, runMode);
+            runContinuousTasks(robotMode, runMode);
+
+            for (int j = 0; j < models.size(); j++)
+            {
+                models.get(j).updateModel(loopPeriod);
+            }
+            clock.advance(loopPeriod);
+        }
+        stopRobotMode(robotMode, runMode);
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+    }   //runMode
+
+    /**
+     * This method replays a recorded telemetry log in the given mode. Each
+     * recorded frame is one continuous loop, and the virtual clock follows the
+     * recorded frame times. The robot code should be created over replay
+     * stand-ins such as SimReplayMotorController. Physics models are not
+     * updated because the sensor values come from the recording.
+     *
+     * In the recording, the outputs of a periodic pass land in the frame before
+     * it, so the outputs of a frame are compared after the periodic pass of the
+     * next loop.
+     *
+     * @param runMode specifies the mode to run.
+     * @param replay specifies the replay.
+     */
+    public void runReplay(RunMode runMode, SimReplay replay)
+    {
+        final String funcName = "runReplay";
+        SimReplayLog log = replay.getLog();
+        int numFrames = log.getNumFrames();
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(
+                    funcName, TrcDbgTrace.TraceLevel.API,
+                    "mode=%s,log=%s", runMode.toString(), log.toString());
+        }
+
+        replay.setFrame(0);
+        RobotMode robotMode = startRobotMode(runMode);
+        for (int i = 0; i < numFrames; i++)
+        {
+            if (i > 0)
+            {
+                clock.advanceNanos(log.getFrameTimeNanos(i) - log.getFrameTimeNanos(i - 1));
+            }
+
+            runPeriodicTasks(robotMode, runMode);
+            if (i > 0)
+            {
+                replay.compareOutputs(i - 1);
+            }
+
+            replay.setFrame(i);
+            runContinuousTasks(robotMode, runMode);
+        }
+        replay.compareOutputs(numFrames - 1);
+        stopRobotMode(robotMode, runMode);
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+    }   //runReplay
+
+    /**
+     * This method initializes the robot if necessary and starts the given mode
+     * by calling startMode() and the start tasks.
+     *
+     * @param runMode specifies the mode to start.
+     * @return robot mode object, null if none.
+     */
+    private RobotMode startRobotMode(RunMode runMode)
+    {
+        if (!robotInitialized)
+        {
+            initRobot();
+            robotInitialized = true;
+        }
+
+        RobotMode robotMode = getRobotMode(runMode);
+        modeStartTime = HalUtil.getCurrentTime();
+        nextPeriodicTime = modeStartTime;
+        if (robotMode != null)
+        {
+            robotMode.startMode();
+        }
+        taskMgr.executeTaskType(TrcTaskMgr.TaskType.START_TASK, runMode);
+        taskMgr.setRunMode(runMode);
+
+        return robotMode;
+    }   //startRobotMode
+
+    /**
+     * This method stops the given mode by calling the stop tasks and stopMode().
+     *
+     * @param robotMode specifies the robot mode object, can be null.
+     * @param runMode specifies the mode to stop.
+     */
+    private void stopRobotMode(RobotMode robotMode, RunMode runMode)
+    {
+        taskMgr.setRunMode(RunMode.INVALID_MODE);
+        taskMgr.executeTaskType(TrcTaskMgr.TaskType.STOP_TASK, runMode);
+        if (robotMode != null)
+        {
+            robotMode.stopMode();
+        }
+    }   //stopRobotMode
+
+    /**
+     * This method runs the periodic tasks and runPeriodic() if the periodic
+     * interval has elapsed.
+     *
+     * @param robotMode specifies the robot mode object, can be null.
+     * @param runMode specifies the current mode.
+     */
+    private void runPeriodicTasks(RobotMode robotMode, RunMode runMode)
+    {
+        double currTime = HalUtil.getCurrentTime();
+
+        if (currTime >= nextPeriodicTime)
+        {
+            nextPeriodicTime += PERIODIC_INTERVAL;
+            taskMgr.executeTaskType(TrcTaskMgr.TaskType.PREPERIODIC_TASK, runMode);
+            if (robotMode != null)
+            {
+                robotMode.runPeriodic(currTime - modeStartTime);
+            }
+            taskMgr.executeTaskType(TrcTaskMgr.TaskType.POSTPERIODIC_TASK, runMode);
+        }
+    }   //runPeriodicTasks
+
+    /**
+     * This method runs one continuous loop: the continuous tasks and
+     * runContinuous().
+     *
+     * @param robotMode specifies the robot mode object, can be null.
+     * @param runMode specifies the current mode.
+     */
+    private void runContinuousTasks(RobotMode robotMode, RunMode runMode)
+    {
+        telemetry.recordFrame();
+        taskMgr.executeTaskType(TrcTaskMgr.TaskType.PRECONTINUOUS_TASK, runMode);
+        if (robotMode != null)
+        {
+            robotMode.runContinuous(HalUtil.getCurrentTime() - modeStartTime);
+        }
+        taskMgr.executeTaskType(TrcTaskMgr.TaskType.POSTCONTINUOUS_TASK, runMode);
+        taskMgr.runInlineTaskGroups();
+        loopCount++;
+    }   //runContinuousTasks
+
+    /**
+     * This method returns the robot mode object for the given run mode.
+     *
+     * @param runMode specifies the run mode.
+     * @return robot mode object, null if none.
+     */
+    private RobotMode getRobotMode(RunMode runMode)
+    {
+        RobotMode robotMode;
+
+        switch (runMode)
+        {
+            case DISABLED_MODE:
+                robotMode = disabledMode;
+                break;
+
+            case TEST_MODE:
+                robotMode = testMode;
+                break;
+
+            case AUTO_MODE:
+                robotMode = autoMode;
+                break;
+
+            case TELEOP_MODE:
+                robotMode = teleOpMode;
+                break;
+
+            default:
+                robotMode = null;
+                break;
+        }
+
+        return robotMode;
+    }   //getRobotMode
+
+}   //class SimRobotBase
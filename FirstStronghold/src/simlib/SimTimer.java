@@ -0,0 +1,136 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package simlib;
+
+import edu.wpi.first.wpilibj.Timer;
+import hallib.HalUtil;
+
+/**
+ * This class implements a stand-in for the WPILib timer in simulation. WPILib
+ * classes such as RobotDrive read the FPGA timestamp through Timer, which has
+ * no implementation until the robot base installs the hardware one. This one
+ * reads the HAL time source instead, so with the virtual clock installed they
+ * run on simulated time. Install it with Timer.SetImplementation().
+ */
+public class SimTimer implements Timer.StaticInterface
+{
+    /**
+     * This class implements a WPILib stopwatch on the HAL time source.
+     */
+    private static class Stopwatch implements Timer.Interface
+    {
+        private double startTime = HalUtil.getCurrentTime();
+        private double accumulatedTime = 0.0;
+        private boolean running = false;
+
+        @Override
+        public synchronized double get()
+        {
+            return running? accumulatedTime + HalUtil.getCurrentTime() - startTime: accumulatedTime;
+        }   //get
+
+        @Override
+        public synchronized void reset()
+        {
+            accumulatedTime = 0.0;
+            startTime = HalUtil.getCurrentTime();
+        }   //reset
+
+        @Override
+        public synchronized void start()
+        {
+            startTime = HalUtil.getCurrentTime();
+            running = true;
+        }   //start
+
+        @Override
+        public synchronized void stop()
+        {
+            accumulatedTime = get();
+            running = false;
+        }   //stop
+
+        @Override
+        public synchronized boolean hasPeriodPassed(double period)
+        {
+            boolean passed = false;
+
+            if (get() > period)
+            {
+                //
+                // Advance the start time by the period so we don't drift.
+                //
+                startTime += period;
+                passed = true;
+            }
+
+            return passed;
+        }   //hasPeriodPassed
+
+    }   //class Stopwatch
+
+    private final SimClock clock;
+
+    /**
+     * Constructor: Creates an instance of the object.
+     *
+     * @param clock specifies the virtual clock that delay() advances.
+     */
+    public SimTimer(SimClock clock)
+    {
+        this.clock = clock;
+    }   //SimTimer
+
+    //
+    // Implements Timer.StaticInterface.
+    //
+
+    @Override
+    public double getFPGATimestamp()
+    {
+        return HalUtil.getCurrentTime();
+    }   //getFPGATimestamp
+
+    @Override
+    public double getMatchTime()
+    {
+        //
+        // There is no field management system, same as WPILib off the field.
+        //
+        return -1.0;
+    }   //getMatchTime
+
+    @Override
+    public void delay(final double seconds)
+    {
+        clock.advance(seconds);
+    }   //delay
+
+    @Override
+    public Timer.Interface newTimer()
+    {
+        return new Stopwatch();
+    }   //newTimer
+
+}   //class SimTimer
@@ -70,6 +70,45 @@ public abstract class TrcAccelerometer extends TrcSensor implements TrcSensorDat
      */
     public abstract SensorData getRawZData(DataType dataType);
 
+    /**
+     * This method reads the raw data of the specified type for the x-axis into the
+     * given holder. The default implementation copies the result of getRawXData.
+     * A platform dependent accelerometer should override it to avoid allocation.
+     *
+     * @param dataType specifies the data type.
+     * @param data specifies the holder to receive the raw data.
+     */
+    public void getRawXData(DataType dataType, DoubleData data)
+    {
+        data.set(getRawXData(dataType));
+    }   //getRawXData
+
+    /**
+     * This method reads the raw data of the specified type for the y-axis into the
+     * given holder. The default implementation copies the result of getRawYData.
+     * A platform dependent accelerometer should override it to avoid allocation.
+     *
+     * @param dataType specifies the data type.
+     * @param data specifies the holder to receive the raw data.
+     */
+    public void getRawYData(DataType dataType, DoubleData data)
+    {
+        data.set(getRawYData(dataType));
+    }   //getRawYData
+
+    /**
+     * This method reads the raw data of the specified type for the z-axis into the
+     * given holder. The default implementation copies the result of getRawZData.
+     * A platform dependent accelerometer should override it to avoid allocation.
+     *
+     * @param dataType specifies the data type.
+     * @param data specifies the holder to receive the raw data.
+     */
+    public void getRawZData(DataType dataType, DoubleData data)
+    {
+        data.set(getRawZData(dataType));
+    }   //getRawZData
+
     //
     // Accelerometer options.
     //
@@ -344,9 +383,24 @@ public abstract class TrcAccelerometer extends TrcSensor implements TrcSensorDat
      * @return X acceleration.
      */
     public SensorData getXAcceleration()
+    {
+        DoubleData data = new DoubleData();
+
+        getXAcceleration(data);
+
+        return data.toSensorData();
+    }   //getXAcceleration
+
+    /**
+     * This method reads the acceleration on the x-axis into the given holder.
+     *
+     * @param data specifies the holder to receive the X acceleration.
+     */
+    public void getXAcceleration(DoubleData data)
     {
         final String funcName = "getXAcceleration";
-        SensorData data = getData(xIndex, DataType.ACCELERATION);
+
+        getData(xIndex, DataType.ACCELERATION, data);
 
         if (debugEnabled)
         {
@@ -354,8 +408,6 @@ public abstract class TrcAccelerometer extends TrcSensor implements TrcSensorDat
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
                                "=(timestamp=%.3f,value=%f)", data.timestamp, data.value);
         }
-
-        return data;
     }   //getXAcceleration
 
     /**
@@ -364,9 +416,24 @@ public abstract class TrcAccelerometer extends TrcSensor implements TrcSensorDat
      * @return Y acceleration.
      */
     public SensorData getYAcceleration()
+    {
+        DoubleData data = new DoubleData();
+
+        getYAcceleration(data);
+
+        return data.toSensorData();
+    }   //getYAcceleration
+
+    /**
+     * This method reads the acceleration on the y-axis into the given holder.
+     *
+     * @param data specifies the holder to receive the Y acceleration.
+     */
+    public void getYAcceleration(DoubleData data)
     {
         final String funcName = "getYAcceleration";
-        SensorData data = getData(yIndex, DataType.ACCELERATION);
+
+        getData(yIndex, DataType.ACCELERATION, data);
 
         if (debugEnabled)
         {
@@ -374,8 +441,6 @@ public abstract class TrcAccelerometer extends TrcSensor implements TrcSensorDat
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
                                "=(timestamp=%.3f,value=%f)", data.timestamp, data.value);
         }
-
-        return data;
     }   //getYAcceleration
 
     /**
@@ -384,9 +449,24 @@ public abstract class TrcAccelerometer extends TrcSensor implements TrcSensorDat
      * @return Z acceleration.
      */
     public SensorData getZAcceleration()
+    {
+        DoubleData data = new DoubleData();
+
+        getZAcceleration(data);
+
+        return data.toSensorData();
+    }   //getZAcceleration
+
+    /**
+     * This method reads the acceleration on the z-axis into the given holder.
+     *
+     * @param data specifies the holder to receive the Z acceleration.
+     */
+    public void getZAcceleration(DoubleData data)
     {
         final String funcName = "getZAcceleration";
-        SensorData data = getData(zIndex, DataType.ACCELERATION);
+
+        getData(zIndex, DataType.ACCELERATION, data);
 
         if (debugEnabled)
         {
@@ -394,29 +474,40 @@ public abstract class TrcAccelerometer extends TrcSensor implements TrcSensorDat
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
                                "=(timestamp=%.3f,value=%f)", data.timestamp, data.value);
         }
-
-        return data;
     }   //getZAcceleration
 
     /**
-     * This method returns the velocity of the x-axis. If there is an integrator,
-     * we call the integrator to get the velocity else we call the platform dependent
-     * accelerometer to get the raw velocity value.
+     * This method returns the velocity of the x-axis.
      *
      * @return X velocity.
      */
     public SensorData getXVelocity()
+    {
+        DoubleData data = new DoubleData();
+
+        getXVelocity(data);
+
+        return data.toSensorData();
+    }   //getXVelocity
+
+    /**
+     * This method reads the velocity of the x-axis into the given holder. If there
+     * is an integrator, we call the integrator to get the velocity else we call the
+     * platform dependent accelerometer to get the raw velocity value.
+     *
+     * @param data specifies the holder to receive the X velocity.
+     */
+    public void getXVelocity(DoubleData data)
     {
         final String funcName = "getXVelocity";
-        SensorData data = null;
 
         if (dataIntegrator != null)
         {
-            data = dataIntegrator.getIntegratedData(xIndex);
+            dataIntegrator.getIntegratedData(xIndex, data);
         }
         else
         {
-            data = getRawXData(DataType.VELOCITY);
+            getRawXData(DataType.VELOCITY, data);
         }
 
         if (debugEnabled)
@@ -425,29 +516,40 @@ public abstract class TrcAccelerometer extends TrcSensor implements TrcSensorDat
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
                                "=(timestamp=%.3f,value=%f)", data.timestamp, data.value);
         }
-
-        return data;
     }   //getXVelocity
 
     /**
-     * This method returns the velocity of the y-axis. If there is an integrator,
-     * we call the integrator to get the velocity else we call the platform dependent
-     * accelerometer to get the raw velocity value.
+     * This method returns the velocity of the y-axis.
      *
      * @return Y velocity.
      */
     public SensorData getYVelocity()
+    {
+        DoubleData data = new DoubleData();
+
+        getYVelocity(data);
+
+        return data.toSensorData();
+    }   //getYVelocity
+
+    /**
+     * This method reads the velocity of the y-axis into the given holder. If there
+     * is an integrator, we call the integrator to get the velocity else we call the
+     * platform dependent accelerometer to get the raw velocity value.
+     *
+     * @param data specifies the holder to receive the Y velocity.
+     */
+    public void getYVelocity(DoubleData data)
     {
         final String funcName = "getYVelocity";
-        SensorData data = null;
 
         if (dataIntegrator != null)
         {
-            data = dataIntegrator.getIntegratedData(yIndex);
+            dataIntegrator.getIntegratedData(yIndex, data);
         }
         else
         {
-            data = getRawYData(DataType.VELOCITY);
+            getRawYData(DataType.VELOCITY, data);
         }
 
         if (debugEnabled)
@@ -456,29 +558,40 @@ public abstract class TrcAccelerometer extends TrcSensor implements TrcSensorDat
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
                                "=(timestamp=%.3f,value=%f)", data.timestamp, data.value);
         }
-
-        return data;
     }   //getYVelocity
 
     /**
-     * This method returns the velocity of the z-axis. If there is an integrator,
-     * we call the integrator to get the velocity else we call the platform dependent
-     * accelerometer to get the raw velocity value.
+     * This method returns the velocity of the z-axis.
      *
      * @return Z velocity.
      */
     public SensorData getZVelocity()
+    {
+        DoubleData data = new DoubleData();
+
+        getZVelocity(data);
+
+        return data.toSensorData();
+    }   //getZVelocity
+
+    /**
+     * This method reads the velocity of the z-axis into the given holder. If there
+     * is an integrator, we call the integrator to get the velocity else we call the
+     * platform dependent accelerometer to get the raw velocity value.
+     *
+     * @param data specifies the holder to receive the Z velocity.
+     */
+    public void getZVelocity(DoubleData data)
     {
         final String funcName = "getZVelocity";
-        SensorData data = null;
 
         if (dataIntegrator != null)
         {
-            data = dataIntegrator.getIntegratedData(zIndex);
+            dataIntegrator.getIntegratedData(zIndex, data);
         }
         else
         {
-            data = getRawZData(DataType.VELOCITY);
+            getRawZData(DataType.VELOCITY, data);
         }
 
         if (debugEnabled)
@@ -487,29 +600,40 @@ public abstract class TrcAccelerometer extends TrcSensor implements TrcSensorDat
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
                                "=(timestamp=%.3f,value=%f)", data.timestamp, data.value);
         }
-
-        return data;
     }   //getZVelocity
 
     /**
-     * This method returns the distance of the x-axis. If there is an integrator,
-     * we call the integrator to get the distance else we call the platform dependent
-     * accelerometer to get the raw distance value.
+     * This method returns the distance of the x-axis.
      *
      * @return X distance.
      */
     public SensorData getXDistance()
+    {
+        DoubleData data = new DoubleData();
+
+        getXDistance(data);
+
+        return data.toSensorData();
+    }   //getXDistance
+
+    /**
+     * This method reads the distance of the x-axis into the given holder. If there
+     * is an integrator, we call the integrator to get the distance else we call the
+     * platform dependent accelerometer to get the raw distance value.
+     *
+     * @param data specifies the holder to receive the X distance.
+     */
+    public void getXDistance(DoubleData data)
     {
         final String funcName = "getXDistance";
-        SensorData data = null;
 
         if (dataIntegrator != null)
         {
-            data = dataIntegrator.getDoubleIntegratedData(xIndex);
+            dataIntegrator.getDoubleIntegratedData(xIndex, data);
         }
         else
         {
-            data = getRawXData(DataType.DISTANCE);
+            getRawXData(DataType.DISTANCE, data);
         }
 
         if (debugEnabled)
@@ -518,29 +642,40 @@ public abstract class TrcAccelerometer extends TrcSensor implements TrcSensorDat
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
                                "=(timestamp=%.3f,value=%f)", data.timestamp, data.value);
         }
-
-        return data;
     }   //getXDistance
 
     /**
-     * This method returns the distance of the y-axis. If there is an integrator,
-     * we call the integrator to get the distance else we call the platform dependent
-     * accelerometer to get the raw distance value.
+     * This method returns the distance of the y-axis.
      *
      * @return Y distance.
      */
     public SensorData getYDistance()
+    {
+        DoubleData data = new DoubleData();
+
+        getYDistance(data);
+
+        return data.toSensorData();
+    }   //getYDistance
+
+    /**
+     * This method reads the distance of the y-axis into the given holder. If there
+     * is an integrator, we call the integrator to get the distance else we call the
+     * platform dependent accelerometer to get the raw distance value.
+     *
+     * @param data specifies the holder to receive the Y distance.
+     */
+    public void getYDistance(DoubleData data)
     {
         final String funcName = "getYDistance";
-        SensorData data = null;
 
         if (dataIntegrator != null)
         {
-            data = dataIntegrator.getDoubleIntegratedData(yIndex);
+            dataIntegrator.getDoubleIntegratedData(yIndex, data);
         }
         else
         {
-            data = getRawYData(DataType.DISTANCE);
+            getRawYData(DataType.DISTANCE, data);
         }
 
         if (debugEnabled)
@@ -549,29 +684,40 @@ public abstract class TrcAccelerometer extends TrcSensor implements TrcSensorDat
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
                                "=(timestamp=%.3f,value=%f)", data.timestamp, data.value);
         }
-
-        return data;
     }   //getYDistance
 
     /**
-     * This method returns the distance of the z-axis. If there is an integrator,
-     * we call the integrator to get the distance else we call the platform dependent
-     * accelerometer to get the raw distance value.
+     * This method returns the distance of the z-axis.
      *
      * @return Z distance.
      */
     public SensorData getZDistance()
+    {
+        DoubleData data = new DoubleData();
+
+        getZDistance(data);
+
+        return data.toSensorData();
+    }   //getZDistance
+
+    /**
+     * This method reads the distance of the z-axis into the given holder. If there
+     * is an integrator, we call the integrator to get the distance else we call the
+     * platform dependent accelerometer to get the raw distance value.
+     *
+     * @param data specifies the holder to receive the Z distance.
+     */
+    public void getZDistance(DoubleData data)
     {
         final String funcName = "getZDistance";
-        SensorData data = null;
 
         if (dataIntegrator != null)
         {
-            data = dataIntegrator.getDoubleIntegratedData(zIndex);
+            dataIntegrator.getDoubleIntegratedData(zIndex, data);
         }
         else
         {
-            data = getRawZData(DataType.DISTANCE);
+            getRawZData(DataType.DISTANCE, data);
         }
 
         if (debugEnabled)
@@ -580,8 +726,6 @@ public abstract class TrcAccelerometer extends TrcSensor implements TrcSensorDat
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
                                "=(timestamp=%.3f,value=%f)", data.timestamp, data.value);
         }
-
-        return data;
     }   //getZDistance
 
     //
@@ -685,6 +829,31 @@ public abstract class TrcAccelerometer extends TrcSensor implements TrcSensorDat
         return data;
     }   //getRawData
 
+    /**
+     * This method reads the raw sensor data for the specified axis and type into
+     * the given holder.
+     *
+     * @param index specifies the axis index.
+     * @param dataType specifies the data type.
+     * @param data specifies the holder to receive the raw data.
+     */
+    @Override
+    public void getRawData(int index, Object dataType, DoubleData data)
+    {
+        if (index == xIndex)
+        {
+            getRawXData((DataType)dataType, data);
+        }
+        else if (index == yIndex)
+        {
+            getRawYData((DataType)dataType, data);
+        }
+        else if (index == zIndex)
+        {
+            getRawZData((DataType)dataType, data);
+        }
+    }   //getRawData
+
     //
     // Implements TrcSensorDataSource interface.
     //
@@ -750,4 +919,53 @@ public abstract class TrcAccelerometer extends TrcSensor implements TrcSensorDat
         return data;
     }   //getSensorData
 
+    /**
+     * This method reads the sensor data of the specified index into the given holder.
+     *
+     * @param index specifies the data index.
+     * @param data specifies the holder to receive the sensor data.
+     */
+    @Override
+    public void getSensorData(int index, TrcSensor.DoubleData data)
+    {
+        switch (index)
+        {
+            case 0:
+                getXAcceleration(data);
+                break;
+
+            case 1:
+                getYAcceleration(data);
+                break;
+
+            case 2:
+                getZAcceleration(data);
+                break;
+
+            case 3:
+                getXVelocity(data);
+                break;
+
+            case 4:
+                getYVelocity(data);
+                break;
+
+            case 5:
+                getZVelocity(data);
+                break;
+
+            case 6:
+                getXDistance(data);
+                break;
+
+            case 7:
+                getYDistance(data);
+                break;
+
+            case 8:
+                getZDistance(data);
+                break;
+        }
+    }   //getSensorData
+
 }   //class TrcAccelerometer
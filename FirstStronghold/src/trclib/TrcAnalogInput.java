@@ -56,6 +56,20 @@ public abstract class TrcAnalogInput extends TrcSensor implements TrcSensorDataS
      */
     public abstract SensorData getRawData(int index, DataType dataType);
 
+    /**
+     * This method reads the raw data with the specified index and type into the given
+     * holder. The default implementation copies the result of getRawData. A platform
+     * dependent sensor should override it to avoid allocation.
+     *
+     * @param index specifies the data index.
+     * @param dataType specifies the data type.
+     * @param data specifies the holder to receive the raw data.
+     */
+    public void getRawData(int index, DataType dataType, DoubleData data)
+    {
+        data.set(getRawData(index, dataType));
+    }   //getRawData
+
     //
     // AnalogInput options.
     //
@@ -68,6 +82,7 @@ public abstract class TrcAnalogInput extends TrcSensor implements TrcSensorDataS
 
     private final String instanceName;
     private TrcDataIntegrator dataIntegrator = null;
+    private TrcTelemetry.Channel[] dataChannels;
 
     /**
      * Constructor: Creates an instance of the object.
@@ -94,6 +109,14 @@ public abstract class TrcAnalogInput extends TrcSensor implements TrcSensorDataS
 
         this.instanceName = instanceName;
 
+        TrcTelemetry telemetry = TrcTelemetry.getInstance();
+        dataChannels = new TrcTelemetry.Channel[numAxes];
+        for (int i = 0; i < numAxes; i++)
+        {
+            dataChannels[i] = telemetry.addChannel(
+                    instanceName + ".data" + i, TrcTelemetry.ChannelType.DOUBLE);
+        }
+
         //
         // Create the data integrator. Data integrator needs data providers to
         // provide processed data from the sensor.
@@ -218,9 +241,27 @@ public abstract class TrcAnalogInput extends TrcSensor implements TrcSensorDataS
      * @return processed data.
      */
     public TrcSensor.SensorData getData(int index)
+    {
+        DoubleData data = new DoubleData();
+
+        getData(index, data);
+
+        return data.toSensorData();
+    }   //getData
+
+    /**
+     * This method reads the processed sensor data of the specified index into the
+     * given holder.
+     *
+     * @param index specifies the data index.
+     * @param data specifies the holder to receive the processed data.
+     */
+    public void getData(int index, DoubleData data)
     {
         final String funcName = "getData";
-        TrcSensor.SensorData data = getData(index, DataType.INPUT_DATA);;
+
+        getData(index, DataType.INPUT_DATA, data);
+        dataChannels[index].recordOncePerFrame(data.value);
 
         if (debugEnabled)
         {
@@ -228,8 +269,6 @@ public abstract class TrcAnalogInput extends TrcSensor implements TrcSensorDataS
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
                                "=(timestamp=%.3f,value=%f)", data.timestamp, data.value);
         }
-
-        return data;
     }   //getData
 
     /**
@@ -239,17 +278,32 @@ public abstract class TrcAnalogInput extends TrcSensor implements TrcSensorDataS
      * @return integrated sensor data.
      */
     public TrcSensor.SensorData getIntegratedData(int index)
+    {
+        DoubleData data = new DoubleData();
+
+        getIntegratedData(index, data);
+
+        return data.toSensorData();
+    }   //getIntegratedData
+
+    /**
+     * This method reads the integrated sensor data of the specified index into the
+     * given holder.
+     *
+     * @param index specifies the data index.
+     * @param data specifies the holder to receive the integrated data.
+     */
+    public void getIntegratedData(int index, DoubleData data)
     {
         final String funcName = "getIntegratedData";
-        TrcSensor.SensorData data = null;
 
         if (dataIntegrator != null)
         {
-            data = dataIntegrator.getIntegratedData(index);
+            dataIntegrator.getIntegratedData(index, data);
         }
         else
         {
-            data = getRawData(index, DataType.DOUBLE_INTEGRATED_DATA);
+            getRawData(index, DataType.INTEGRATED_DATA, data);
         }
 
         if (debugEnabled)
@@ -258,8 +312,6 @@ public abstract class TrcAnalogInput extends TrcSensor implements TrcSensorDataS
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
                                "=(timestamp=%.3f,value=%f)", data.timestamp, data.value);
         }
-
-        return data;
     }   //getIntegratedData
 
     /**
@@ -269,17 +321,32 @@ public abstract class TrcAnalogInput extends TrcSensor implements TrcSensorDataS
      * @return double integrated sensor data.
      */
     public TrcSensor.SensorData getDoubleIntegratedData(int index)
+    {
+        DoubleData data = new DoubleData();
+
+        getDoubleIntegratedData(index, data);
+
+        return data.toSensorData();
+    }   //getDoubleIntegratedData
+
+    /**
+     * This method reads the double integrated sensor data of the specified index into
+     * the given holder.
+     *
+     * @param index specifies the data index.
+     * @param data specifies the holder to receive the double integrated data.
+     */
+    public void getDoubleIntegratedData(int index, DoubleData data)
     {
         final String funcName = "getDoubleIntegratedData";
-        TrcSensor.SensorData data = null;
 
         if (dataIntegrator != null)
         {
-            data = dataIntegrator.getDoubleIntegratedData(index);
+            dataIntegrator.getDoubleIntegratedData(index, data);
         }
         else
         {
-            data = getRawData(index, DataType.DOUBLE_INTEGRATED_DATA);
+            getRawData(index, DataType.DOUBLE_INTEGRATED_DATA, data);
         }
 
         if (debugEnabled)
@@ -288,8 +355,6 @@ public abstract class TrcAnalogInput extends TrcSensor implements TrcSensorDataS
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
                                "=(timestamp=%.3f,value=%f)", data.timestamp, data.value);
         }
-
-        return data;
     }   //getDoubleIntegratedData
 
     //
@@ -346,6 +411,20 @@ public abstract class TrcAnalogInput extends TrcSensor implements TrcSensorDataS
         return data;
     }   //getRawData
 
+    /**
+     * This method reads the raw sensor data for the specified axis and type into
+     * the given holder.
+     *
+     * @param index specifies the axis index.
+     * @param dataType specifies the data type.
+     * @param data specifies the holder to receive the raw data.
+     */
+    @Override
+    public void getRawData(int index, Object dataType, DoubleData data)
+    {
+        getRawData(index, (DataType)dataType, data);
+    }   //getRawData
+
     //
     // Implements TrcSensorDataSource interface.
     //
@@ -362,4 +441,16 @@ public abstract class TrcAnalogInput extends TrcSensor implements TrcSensorDataS
         return getData(index);
     }   //getSensorData
 
+    /**
+     * This method reads the sensor data of the specified index into the given holder.
+     *
+     * @param index specifies the data index.
+     * @param data specifies the holder to receive the sensor data.
+     */
+    @Override
+    public void getSensorData(int index, TrcSensor.DoubleData data)
+    {
+        getData(index, data);
+    }   //getSensorData
+
 }   //class TrcAnalogInput
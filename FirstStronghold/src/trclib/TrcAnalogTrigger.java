@@ -43,6 +43,7 @@ public class TrcAnalogTrigger implements TrcTaskMgr.Task
     private boolean enabled = false;
     private int zone = -1;
     private double value = 0.0;
+    private TrcSensor.DoubleData data = new TrcSensor.DoubleData();
 
     public TrcAnalogTrigger(
             final String instanceName,
@@ -158,23 +159,11 @@ public class TrcAnalogTrigger implements TrcTaskMgr.Task
     public void preContinuousTask(TrcRobot.RunMode runMode)
     {
         final String funcName = "preContinuousTask";
-        TrcSensor.SensorData data = sensor.getSensorData(dataIndex);
 
-        if (data.value != null)
+        sensor.getSensorData(dataIndex, data);
+        if (!Double.isNaN(data.value))
         {
-            double sample;
-            if (data.value instanceof Integer)
-            {
-                sample = (double)(Integer)data.value;
-            }
-            else if (data.value instanceof Double)
-            {
-                sample = (Double)data.value;
-            }
-            else
-            {
-                throw new NumberFormatException("Sensor data must be either integer or double.");
-            }
+            double sample = data.value;
 
             int currZone = -1;
             if (sample < thresholds[0])
@@ -42,10 +42,11 @@ public class TrcDataIntegrator implements TrcTaskMgr.Task
     private TrcSensor sensor;
     private Object dataType;
     private int numAxes;
-    private TrcSensor.SensorData[] inputData;
-    private TrcSensor.SensorData[] integratedData;
-    private TrcSensor.SensorData[] doubleIntegratedData;
+    private TrcSensor.DoubleData[] inputData;
+    private TrcSensor.DoubleData[] integratedData;
+    private TrcSensor.DoubleData[] doubleIntegratedData;
     private double[] prevTimes;
+    private double[] deltaTimes;
     private boolean unwindIntegratedData = false;
 
     /**
@@ -81,19 +82,22 @@ public class TrcDataIntegrator implements TrcTaskMgr.Task
         this.dataType = dataType;
         numAxes = sensor.getNumAxes();
 
-        inputData = new TrcSensor.SensorData[numAxes];
-        integratedData = new TrcSensor.SensorData[numAxes];
-        doubleIntegratedData = doubleIntegration? new TrcSensor.SensorData[numAxes]: null;
+        inputData = new TrcSensor.DoubleData[numAxes];
+        integratedData = new TrcSensor.DoubleData[numAxes];
+        doubleIntegratedData = doubleIntegration? new TrcSensor.DoubleData[numAxes]: null;
         prevTimes = new double[numAxes];
+        deltaTimes = new double[numAxes];
 
         for (int i = 0; i < numAxes; i++)
         {
-            integratedData[i] = new TrcSensor.SensorData(0.0, 0.0);
+            inputData[i] = new TrcSensor.DoubleData();
+            integratedData[i] = new TrcSensor.DoubleData();
             if (doubleIntegratedData != null)
             {
-                doubleIntegratedData[i] = new TrcSensor.SensorData(0.0, 0.0);
+                doubleIntegratedData[i] = new TrcSensor.DoubleData();
             }
             prevTimes[i] = 0.0;
+            deltaTimes[i] = 0.0;
         }
     }   //TrcDataIntegrator
 
@@ -210,21 +214,28 @@ public class TrcDataIntegrator implements TrcTaskMgr.Task
      * @return the last indexed input data.
      */
     public TrcSensor.SensorData getInputData(int index)
+    {
+        return inputData[index].toSensorData();
+    }   //getInputData
+
+    /**
+     * This method reads the last indexed input data into the given holder.
+     *
+     * @param index specifies the index.
+     * @param data specifies the holder to receive the data.
+     */
+    public void getInputData(int index, TrcSensor.DoubleData data)
     {
         final String funcName = "getInputData";
-        TrcSensor.SensorData data =
-                new TrcSensor.SensorData(inputData[index].timestamp, inputData[index].value);
+
+        data.set(inputData[index].timestamp, inputData[index].value);
 
         if (debugEnabled)
         {
             dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API);
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
-                               "=(timestamp=%.3f,value=%f",
-                               data != null? data.timestamp: 0.0,
-                               data != null? data.value: 0.0);
+                               "=(timestamp=%.3f,value=%f", data.timestamp, data.value);
         }
-
-        return data;
     }   //getInputData
 
     /**
@@ -234,21 +245,28 @@ public class TrcDataIntegrator implements TrcTaskMgr.Task
      * @return last indexed integrated data.
      */
     public TrcSensor.SensorData getIntegratedData(int index)
+    {
+        return integratedData[index].toSensorData();
+    }   //getIntegratedData
+
+    /**
+     * This method reads the last indexed integrated data into the given holder.
+     *
+     * @param index specifies the index.
+     * @param data specifies the holder to receive the data.
+     */
+    public void getIntegratedData(int index, TrcSensor.DoubleData data)
     {
         final String funcName = "getIntegratedData";
-        TrcSensor.SensorData data = new TrcSensor.SensorData(
-                integratedData[index].timestamp, integratedData[index].value);
+
+        data.set(integratedData[index].timestamp, integratedData[index].value);
 
         if (debugEnabled)
         {
             dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API);
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
-                               "=(timestamp=%.3f,value=%f",
-                               data != null? data.timestamp: 0.0,
-                               data != null? data.value: 0.0);
+                               "=(timestamp=%.3f,value=%f", data.timestamp, data.value);
         }
-
-        return data;
     }   //getIntegratedData
 
     /**
@@ -258,21 +276,28 @@ public class TrcDataIntegrator implements TrcTaskMgr.Task
      * @return last indexed double integrated data.
      */
     public TrcSensor.SensorData getDoubleIntegratedData(int index)
+    {
+        return doubleIntegratedData[index].toSensorData();
+    }   //getDoubleIntegratedData
+
+    /**
+     * This method reads the last indexed double integrated data into the given holder.
+     *
+     * @param index specifies the index.
+     * @param data specifies the holder to receive the data.
+     */
+    public void getDoubleIntegratedData(int index, TrcSensor.DoubleData data)
     {
         final String funcName = "getDoubleIntegratedData";
-        TrcSensor.SensorData data = new TrcSensor.SensorData(
-                    doubleIntegratedData[index].timestamp, doubleIntegratedData[index].value);
+
+        data.set(doubleIntegratedData[index].timestamp, doubleIntegratedData[index].value);
 
         if (debugEnabled)
         {
             dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API);
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
-                               "=(timestamp=%.3f,value=%f",
-                               data != null? data.timestamp: 0.0,
-                               data != null? data.value: 0.0);
+                               "=(timestamp=%.3f,value=%f", data.timestamp, data.value);
         }
-
-        return data;
     }   //getDoubleIntegratedData
 
     //
@@ -317,15 +342,14 @@ public class TrcDataIntegrator implements TrcTaskMgr.Task
         }
 
         boolean allZeroAxis = true;
-        double[] deltaTime = new double[inputData.length];
         for (int i = 0; i < inputData.length; i++)
         {
             //
             // Get sensor data.
             //
-            inputData[i] = sensor.getData(i, dataType);
-            deltaTime[i] = inputData[i].timestamp - prevTimes[i];
-            if ((Double)inputData[i].value != 0.0)
+            sensor.getData(i, dataType, inputData[i]);
+            deltaTimes[i] = inputData[i].timestamp - prevTimes[i];
+            if (inputData[i].value != 0.0)
             {
                 allZeroAxis = false;
             }
@@ -333,8 +357,7 @@ public class TrcDataIntegrator implements TrcTaskMgr.Task
             // Do integration.
             //
             integratedData[i].timestamp = inputData[i].timestamp;
-            integratedData[i].value = (Double)integratedData[i].value +
-                                      (Double)inputData[i].value*deltaTime[i];
+            integratedData[i].value += inputData[i].value*deltaTimes[i];
             prevTimes[i] = inputData[i].timestamp;
         }
 
@@ -352,9 +375,7 @@ public class TrcDataIntegrator implements TrcTaskMgr.Task
                 }
                 else
                 {
-                    doubleIntegratedData[i].value =
-                            (Double)doubleIntegratedData[i].value +
-                            (Double)integratedData[i].value*deltaTime[i];
+                    doubleIntegratedData[i].value += integratedData[i].value*deltaTimes[i];
                 }
             }
         }
@@ -52,7 +52,8 @@ public class TrcDataUnwrapper implements TrcTaskMgr.Task
     private int numAxes;
     private double[] valueRangeLows;
     private double[] valueRangeHighs;
-    private TrcSensor.SensorData[] prevData;
+    private TrcSensor.DoubleData[] prevData;
+    private TrcSensor.DoubleData currData = new TrcSensor.DoubleData();
     private int[] numCrossovers;
 
     /**
@@ -85,14 +86,14 @@ public class TrcDataUnwrapper implements TrcTaskMgr.Task
 
         valueRangeLows = new double[numAxes];
         valueRangeHighs = new double[numAxes];
-        prevData = new TrcSensor.SensorData[numAxes];
+        prevData = new TrcSensor.DoubleData[numAxes];
         numCrossovers = new int[numAxes];
 
         for (int i = 0; i < numAxes; i++)
         {
             valueRangeLows[i] = 0.0;
             valueRangeHighs[i] = 0.0;
-            prevData[i] = null;
+            prevData[i] = new TrcSensor.DoubleData();
             numCrossovers[i] = 0;
         }
     }   //TrcDataUnwrapper
@@ -152,7 +153,7 @@ public class TrcDataUnwrapper implements TrcTaskMgr.Task
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
         }
 
-        prevData[index] = sensor.getData(index, dataType);
+        sensor.getData(index, dataType, prevData[index]);
         numCrossovers[index] = 0;
     }   //reset
 
@@ -210,13 +211,27 @@ public class TrcDataUnwrapper implements TrcTaskMgr.Task
      * @return unwrapped data.
      */
     public TrcSensor.SensorData getUnwrappedData(int index)
+    {
+        TrcSensor.DoubleData data = new TrcSensor.DoubleData();
+
+        getUnwrappedData(index, data);
+
+        return data.toSensorData();
+    }   //getUnwrappedData
+
+    /**
+     * This method reads the indexed unwrapped data into the given holder.
+     *
+     * @param index specifies the axis index.
+     * @param data specifies the holder to receive the unwrapped data.
+     */
+    public void getUnwrappedData(int index, TrcSensor.DoubleData data)
     {
         final String funcName = "getUnwrappedData";
-        TrcSensor.SensorData data =
-                new TrcSensor.SensorData(prevData[index].timestamp, prevData[index].value);
 
+        data.timestamp = prevData[index].timestamp;
         data.value = (valueRangeHighs[index] - valueRangeLows[index])*numCrossovers[index] +
-                     ((Double)data.value - valueRangeLows[index]);
+                     (prevData[index].value - valueRangeLows[index]);
 
         if (debugEnabled)
         {
@@ -224,8 +239,6 @@ public class TrcDataUnwrapper implements TrcTaskMgr.Task
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
                                "=(timestamp=%.3f,value=%f", data.timestamp, data.value);
         }
-
-        return data;
     }   //getUnwrappedData
 
     //
@@ -271,11 +284,11 @@ public class TrcDataUnwrapper implements TrcTaskMgr.Task
 
         for (int i = 0; i < numAxes; i++)
         {
-            TrcSensor.SensorData data = sensor.getData(i, dataType);
-            if (Math.abs((Double)data.value - (Double)prevData[i].value) >
+            sensor.getData(i, dataType, currData);
+            if (Math.abs(currData.value - prevData[i].value) >
                 (valueRangeHighs[i] - valueRangeLows[i])/2.0)
             {
-                if ((Double)data.value > (Double)prevData[i].value)
+                if (currData.value > prevData[i].value)
                 {
                     numCrossovers[i]--;
                 }
@@ -284,7 +297,7 @@ public class TrcDataUnwrapper implements TrcTaskMgr.Task
                     numCrossovers[i]++;
                 }
             }
-            prevData[i] = data;
+            prevData[i].set(currData.timestamp, currData.value);
         }
 
         if (debugEnabled)
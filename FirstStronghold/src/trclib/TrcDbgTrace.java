@@ -114,8 +114,8 @@ public class TrcDbgTrace
         if (traceEnabled &&
             funcLevel.getValue() <= traceLevel.getValue())
         {
-            HalDbgLog.traceMsg(
-                    tracePrefix(funcName, true, false) + String.format(format, args) + ")\n");
+            indentLevel++;
+            HalDbgLog.traceEnter(indentLevel, instanceName, funcName, format, args);
         }
     }   //traceEnter
 
@@ -126,7 +126,8 @@ public class TrcDbgTrace
         if (traceEnabled &&
             funcLevel.getValue() <= traceLevel.getValue())
         {
-            HalDbgLog.traceMsg(tracePrefix(funcName, true, true));
+            indentLevel++;
+            HalDbgLog.traceEnter(indentLevel, instanceName, funcName, null, null);
         }
     }   //traceEnter
 
@@ -139,8 +140,8 @@ public class TrcDbgTrace
         if (traceEnabled &&
             funcLevel.getValue() <= traceLevel.getValue())
         {
-            HalDbgLog.traceMsg(
-                    tracePrefix(funcName, false, false) + String.format(format, args) + "\n");
+            HalDbgLog.traceExit(indentLevel, instanceName, funcName, format, args);
+            indentLevel--;
         }
     }   //traceExitMsg
 
@@ -151,7 +152,8 @@ public class TrcDbgTrace
         if (traceEnabled &&
             funcLevel.getValue() <= traceLevel.getValue())
         {
-            HalDbgLog.traceMsg(tracePrefix(funcName, false, true));
+            HalDbgLog.traceExit(indentLevel, instanceName, funcName, null, null);
+            indentLevel--;
         }
     }   //traceExit
 
@@ -217,78 +219,9 @@ public class TrcDbgTrace
             if (currTime >= nextTraceTime)
             {
                 nextTraceTime = currTime + traceInterval;
-                HalDbgLog.msg(level,
-                              msgPrefix(funcName, level) + String.format(format, args) + "\n");
+                HalDbgLog.msg(level, instanceName, funcName, format, args);
             }
         }
     }   //traceMsg
 
-    private String tracePrefix(
-            final String funcName,
-            boolean enter,
-            boolean newline)
-    {
-        String prefix = "";
-
-        if (enter)
-        {
-            indentLevel++;
-        }
-
-        for (int i = 0; i < indentLevel; i++)
-        {
-            prefix += "| ";
-        }
-
-        prefix += instanceName + "." + funcName;
-
-        if (enter)
-        {
-            prefix += newline? "()\n": "(";
-        }
-        else
-        {
-            prefix += newline? "!\n": "";
-            indentLevel--;
-        }
-
-        return prefix;
-    }   //tracePrefix
-
-    private String msgPrefix(
-            final String funcName,
-            MsgLevel level)
-    {
-        String prefix = instanceName + "." + funcName;
-
-        switch (level)
-        {
-        case FATAL:
-            prefix += "_Fatal: ";
-            break;
-
-        case ERR:
-            prefix += "_Err: ";
-            break;
-
-        case WARN:
-            prefix += "_Warn: ";
-            break;
-
-        case INFO:
-            prefix += "_Info: ";
-            break;
-
-        case VERBOSE:
-            prefix += "_Verbose: ";
-            break;
-
-        default:
-            prefix += "_Unk: ";
-            break;
-        }
-
-        return prefix;
-    }   //msgPrefix
-
 }   //class TrcDbgTrace
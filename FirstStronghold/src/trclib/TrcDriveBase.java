@@ -26,18 +26,61 @@ package trclib;
 import hallib.HalGyro;
 import hallib.HalMotorController;
 import hallib.HalRobotDrive;
-
+import hallib.HalUtil;
+
+/**
+ * This class implements a drive base that keeps track of the robot position.
+ * Besides the robot frame encoder positions, it integrates the encoder
+ * displacement with the heading every loop into a field relative pose and
+ * keeps a short timestamped history of it. Sensors with latency, such as
+ * vision, can look up where the robot was when their data was captured.
+ * Field coordinates are relative to where the robot was when the position
+ * was last reset: y points forward, x points right and the heading is
+ * clockwise positive in degrees.
+ */
 public class TrcDriveBase extends HalRobotDrive implements TrcTaskMgr.Task
 {
     private static final String moduleName = "TrcDriveBase";
     private static final boolean debugEnabled = false;
     private TrcDbgTrace dbgTrace = null;
 
+    private static final int DEF_POSE_HISTORY_SIZE = 100;
+
+    /**
+     * This class holds a timestamped field pose. The caller owns the object
+     * and passes it in to be filled, so reading a pose does not allocate.
+     */
+    public static class Pose
+    {
+        public double timestamp;
+        public double x;
+        public double y;
+        public double heading;
+
+        public String toString()
+        {
+            return String.format(
+                    "[%.3f] x=%.1f,y=%.1f,heading=%.1f", timestamp, x, y, heading);
+        }   //toString
+
+    }   //class Pose
+
+    private final String instanceName;
     private HalMotorController leftFrontMotor;
     private HalMotorController leftRearMotor;
     private HalMotorController rightFrontMotor;
     private HalMotorController rightRearMotor;
     private HalGyro gyro;
+    private TrcSensor.DoubleData gyroData = new TrcSensor.DoubleData();
+    private TrcTelemetry.Channel xPosChannel;
+    private TrcTelemetry.Channel yPosChannel;
+    private TrcTelemetry.Channel headingChannel;
+    private TrcTelemetry.Channel xSpeedChannel;
+    private TrcTelemetry.Channel ySpeedChannel;
+    private TrcTelemetry.Channel turnSpeedChannel;
+    private TrcTelemetry.Channel fieldXPosChannel;
+    private TrcTelemetry.Channel fieldYPosChannel;
+    private TrcTelemetry.Channel fieldHeadingChannel;
 
     private boolean fourMotors;
     private double xPos;
@@ -50,15 +93,45 @@ public class TrcDriveBase extends HalRobotDrive implements TrcTaskMgr.Task
     private double xSpeed;
     private double ySpeed;
     private double turnSpeed;
-
+    private double prevXPos;
+    private double prevYPos;
+    private double prevFieldHeading;
+    private double fieldHeadingOffset;
+    //
+    // The current field pose and its history are shared with other threads
+    // (e.g. vision), so they are only accessed holding poseLock.
+    //
+    private final Object poseLock = new Object();
+    private double poseTimestamp;
+    private double fieldXPos;
+    private double fieldYPos;
+    private double fieldHeading;
+    private double[] historyTimestamps;
+    private double[] historyXPos;
+    private double[] historyYPos;
+    private double[] historyHeading;
+    private int historyIndex;
+    private int historyCount;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param instanceName specifies the instance name. It also prefixes the telemetry channels.
+     * @param leftFrontMotor specifies the left front motor, can be null for a two motor drive base.
+     * @param leftRearMotor specifies the left rear motor.
+     * @param rightFrontMotor specifies the right front motor, can be null for a two motor drive base.
+     * @param rightRearMotor specifies the right rear motor.
+     * @param gyro specifies the gyro, can be null if the robot has none.
+     */
     public TrcDriveBase(
+            final String instanceName,
             HalMotorController leftFrontMotor,
             HalMotorController leftRearMotor,
             HalMotorController rightFrontMotor,
             HalMotorController rightRearMotor,
             HalGyro gyro)
     {
-        super(leftFrontMotor, leftRearMotor, rightFrontMotor, rightRearMotor);
+        super(instanceName, leftFrontMotor, leftRearMotor, rightFrontMotor, rightRearMotor);
 
         if (debugEnabled)
         {
@@ -69,6 +142,7 @@ public class TrcDriveBase extends HalRobotDrive implements TrcTaskMgr.Task
                     TrcDbgTrace.MsgLevel.INFO);
         }
 
+        this.instanceName = instanceName;
         this.leftFrontMotor = leftFrontMotor;
         this.leftRearMotor = leftRearMotor;
         this.rightFrontMotor = rightFrontMotor;
@@ -78,30 +152,53 @@ public class TrcDriveBase extends HalRobotDrive implements TrcTaskMgr.Task
         xScale = 1.0;
         yScale = 1.0;
         rotScale = 1.0;
+        setPoseHistorySize(DEF_POSE_HISTORY_SIZE);
         resetPosition();
 
+        TrcTelemetry telemetry = TrcTelemetry.getInstance();
+        xPosChannel = telemetry.addChannel(instanceName + ".xPos", TrcTelemetry.ChannelType.DOUBLE);
+        yPosChannel = telemetry.addChannel(instanceName + ".yPos", TrcTelemetry.ChannelType.DOUBLE);
+        headingChannel = telemetry.addChannel(instanceName + ".heading", TrcTelemetry.ChannelType.DOUBLE);
+        xSpeedChannel = telemetry.addChannel(instanceName + ".xSpeed", TrcTelemetry.ChannelType.DOUBLE);
+        ySpeedChannel = telemetry.addChannel(instanceName + ".ySpeed", TrcTelemetry.ChannelType.DOUBLE);
+        turnSpeedChannel = telemetry.addChannel(instanceName + ".turnSpeed", TrcTelemetry.ChannelType.DOUBLE);
+        fieldXPosChannel = telemetry.addChannel(instanceName + ".fieldXPos", TrcTelemetry.ChannelType.DOUBLE);
+        fieldYPosChannel = telemetry.addChannel(instanceName + ".fieldYPos", TrcTelemetry.ChannelType.DOUBLE);
+        fieldHeadingChannel = telemetry.addChannel(
+                instanceName + ".fieldHeading", TrcTelemetry.ChannelType.DOUBLE);
+
         TrcTaskMgr taskMgr = TrcTaskMgr.getInstance();
         taskMgr.registerTask(
-                moduleName,
+                instanceName,
                 this,
                 TrcTaskMgr.TaskType.START_TASK);
         taskMgr.registerTask(
-                moduleName,
+                instanceName,
                 this,
                 TrcTaskMgr.TaskType.STOP_TASK);
         taskMgr.registerTask(
-                moduleName,
+                instanceName,
                 this,
                 TrcTaskMgr.TaskType.PRECONTINUOUS_TASK);
     }   //TrcDriveBase
 
+    public TrcDriveBase(
+            HalMotorController leftFrontMotor,
+            HalMotorController leftRearMotor,
+            HalMotorController rightFrontMotor,
+            HalMotorController rightRearMotor,
+            HalGyro gyro)
+    {
+        this(moduleName, leftFrontMotor, leftRearMotor, rightFrontMotor, rightRearMotor, gyro);
+    }   //TrcDriveBase
+
     public TrcDriveBase(
             HalMotorController leftFrontMotor,
             HalMotorController leftRearMotor,
             HalMotorController rightFrontMotor,
             HalMotorController rightRearMotor)
     {
-        this(leftFrontMotor, leftRearMotor, rightFrontMotor, rightRearMotor, null);
+        this(moduleName, leftFrontMotor, leftRearMotor, rightFrontMotor, rightRearMotor, null);
     }   //TrcDriveBase
 
     public TrcDriveBase(
@@ -109,14 +206,24 @@ public class TrcDriveBase extends HalRobotDrive implements TrcTaskMgr.Task
             HalMotorController rightMotor,
             HalGyro gyro)
     {
-        this(null, leftMotor, null, rightMotor, gyro);
+        this(moduleName, null, leftMotor, null, rightMotor, gyro);
     }   //TrcDriveBase
 
     public TrcDriveBase(HalMotorController leftMotor, HalMotorController rightMotor)
     {
-        this(null, leftMotor, null, rightMotor, null);
+        this(moduleName, null, leftMotor, null, rightMotor, null);
     }   //TrcDriveBase
 
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
     public void resetEncoderPosition()
     {
         final String funcName = "resetEncoderPosition";
@@ -147,11 +254,21 @@ public class TrcDriveBase extends HalRobotDrive implements TrcTaskMgr.Task
             rightRearMotor.resetPosition();
         }
 
+        //
+        // Without a gyro, the field heading comes from rotPos, so carry it
+        // over like resetHeading does for the gyro heading.
+        //
+        if (gyro == null)
+        {
+            fieldHeadingOffset += rotPos;
+        }
         xPos = 0.0;
         yPos = 0.0;
         rotPos = 0.0;
         xSpeed = 0.0;
         ySpeed = 0.0;
+        prevXPos = 0.0;
+        prevYPos = 0.0;
     }   //resetEncoderPosition
 
     public void resetHeading()
@@ -168,7 +285,11 @@ public class TrcDriveBase extends HalRobotDrive implements TrcTaskMgr.Task
         {
             gyro.resetZIntegrator();
         }
-
+        //
+        // The field heading carries on from where it was, so the field pose
+        // survives a heading reset between legs.
+        //
+        fieldHeadingOffset += heading;
         heading = 0.0;
         turnSpeed = 0.0;
     }   //resetHeading
@@ -185,8 +306,53 @@ public class TrcDriveBase extends HalRobotDrive implements TrcTaskMgr.Task
 
         resetEncoderPosition();
         resetHeading();
+        prevFieldHeading = 0.0;
+        fieldHeadingOffset = 0.0;
+
+        synchronized (poseLock)
+        {
+            poseTimestamp = HalUtil.getCurrentTime();
+            fieldXPos = 0.0;
+            fieldYPos = 0.0;
+            fieldHeading = 0.0;
+            historyIndex = 0;
+            historyCount = 0;
+        }
     }   //resetPosition
 
+    /**
+     * This method sets the number of poses kept in the pose history. The
+     * history must cover the longest sensor latency to be compensated, e.g.
+     * 100 entries cover 2 seconds at a 20 msec loop. The history is cleared.
+     *
+     * @param size specifies the number of poses to keep.
+     */
+    public void setPoseHistorySize(int size)
+    {
+        final String funcName = "setPoseHistorySize";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API, "size=%d", size);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        if (size < 2)
+        {
+            throw new IllegalArgumentException("Pose history must hold at least 2 poses.");
+        }
+
+        synchronized (poseLock)
+        {
+            historyTimestamps = new double[size];
+            historyXPos = new double[size];
+            historyYPos = new double[size];
+            historyHeading = new double[size];
+            historyIndex = 0;
+            historyCount = 0;
+        }
+    }   //setPoseHistorySize
+
     public void setXPositionScale(double scale)
     {
         final String funcName = "setXPositionScale";
@@ -256,6 +422,134 @@ public class TrcDriveBase extends HalRobotDrive implements TrcTaskMgr.Task
         return yPos;
     }   //getYPosition
 
+    /**
+     * This method returns the heading on the field relative to the heading
+     * when the position was last reset. Unlike getHeading(), it is not
+     * affected by resetHeading(). Without a gyro, it comes from the wheels,
+     * assuming the rotation scale converts the encoders to degrees.
+     *
+     * @return field heading in degrees.
+     */
+    public double getFieldHeading()
+    {
+        final String funcName = "getFieldHeading";
+        double fieldHeading;
+
+        synchronized (poseLock)
+        {
+            fieldHeading = this.fieldHeading;
+        }
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API);
+            dbgTrace.traceExit(
+                    funcName, TrcDbgTrace.TraceLevel.API,
+                    "=%f", fieldHeading);
+        }
+
+        return fieldHeading;
+    }   //getFieldHeading
+
+    /**
+     * This method returns the latest field pose.
+     *
+     * @param pose specifies the object to fill in.
+     */
+    public void getFieldPose(Pose pose)
+    {
+        final String funcName = "getFieldPose";
+
+        synchronized (poseLock)
+        {
+            pose.timestamp = poseTimestamp;
+            pose.x = fieldXPos;
+            pose.y = fieldYPos;
+            pose.heading = fieldHeading;
+        }
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API);
+            dbgTrace.traceExit(
+                    funcName, TrcDbgTrace.TraceLevel.API,
+                    "=%s", pose.toString());
+        }
+    }   //getFieldPose
+
+    /**
+     * This method returns the field pose at the given time, interpolated
+     * from the pose history. A time newer than the history returns the
+     * latest pose.
+     *
+     * @param timestamp specifies the time in seconds, from HalUtil.getCurrentTime().
+     * @param pose specifies the object to fill in.
+     * @return true if the pose was found, false if the time is older than
+     *         the history or the history was reset since.
+     */
+    public boolean getPoseAt(double timestamp, Pose pose)
+    {
+        final String funcName = "getPoseAt";
+        boolean found = false;
+
+        synchronized (poseLock)
+        {
+            int size = historyTimestamps.length;
+            int newest = (historyIndex + size - 1)%size;
+            int oldest = (historyIndex + size - historyCount)%size;
+
+            if (historyCount == 0 || timestamp < historyTimestamps[oldest])
+            {
+                found = false;
+            }
+            else if (timestamp >= historyTimestamps[newest])
+            {
+                pose.x = historyXPos[newest];
+                pose.y = historyYPos[newest];
+                pose.heading = historyHeading[newest];
+                found = true;
+            }
+            else
+            {
+                //
+                // Walk back from the newest pose to the one at or before the
+                // given time and interpolate towards the one after it.
+                //
+                int after = newest;
+                int before = (after + size - 1)%size;
+                while (historyTimestamps[before] > timestamp)
+                {
+                    after = before;
+                    before = (before + size - 1)%size;
+                }
+
+                double t0 = historyTimestamps[before];
+                double t1 = historyTimestamps[after];
+                double w = t1 > t0? (timestamp - t0)/(t1 - t0): 1.0;
+                pose.x = historyXPos[before] + w*(historyXPos[after] - historyXPos[before]);
+                pose.y = historyYPos[before] + w*(historyYPos[after] - historyYPos[before]);
+                pose.heading =
+                        historyHeading[before] + w*(historyHeading[after] - historyHeading[before]);
+                found = true;
+            }
+        }
+
+        if (found)
+        {
+            pose.timestamp = timestamp;
+        }
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API, "timestamp=%.3f", timestamp);
+            dbgTrace.traceExit(
+                    funcName, TrcDbgTrace.TraceLevel.API,
+                    "=%s (%s)", Boolean.toString(found), pose.toString());
+        }
+
+        return found;
+    }   //getPoseAt
+
     public double getRotatePosition()
     {
         final String funcName = "getRotatePosition";
@@ -271,6 +565,13 @@ public class TrcDriveBase extends HalRobotDrive implements TrcTaskMgr.Task
         return rotPos;
     }   //getRotatePosition
 
+    /**
+     * This method returns the gyro heading since it was last reset. It is
+     * always 0.0 if the drive base has no gyro. Use getFieldHeading for a
+     * heading that falls back to the wheels without a gyro.
+     *
+     * @return gyro heading in degrees.
+     */
     public double getHeading()
     {
         final String funcName = "getHeading";
@@ -562,10 +863,63 @@ public class TrcDriveBase extends HalRobotDrive implements TrcTaskMgr.Task
 
         if (gyro != null)
         {
-            heading = (Double)gyro.getZHeading().value;
-            turnSpeed = (Double)gyro.getZRotationRate().value;
+            gyro.getZHeading(gyroData);
+            heading = gyroData.value;
+            gyro.getZRotationRate(gyroData);
+            turnSpeed = gyroData.value;
+        }
+
+        //
+        // Integrate the displacement since the last loop as an arc of constant
+        // curvature. The chord of the arc points along the average heading and
+        // is shorter than the arc by sin(dTheta/2)/(dTheta/2). Heading is
+        // clockwise positive, so forward is (sin, cos) and right is
+        // (cos, -sin) in field coordinates.
+        //
+        double timestamp = HalUtil.getCurrentTime();
+        double currFieldHeading = getOdometryHeading() + fieldHeadingOffset;
+        double dx = xPos - prevXPos;
+        double dy = yPos - prevYPos;
+        double halfDeltaHeading = Math.toRadians(currFieldHeading - prevFieldHeading)/2.0;
+        double midHeading = Math.toRadians(prevFieldHeading) + halfDeltaHeading;
+        double arcScale =
+                Math.abs(halfDeltaHeading) > 1.0e-4?
+                Math.sin(halfDeltaHeading)/halfDeltaHeading:
+                1.0 - halfDeltaHeading*halfDeltaHeading/6.0;
+        double sinHeading = Math.sin(midHeading);
+        double cosHeading = Math.cos(midHeading);
+        prevXPos = xPos;
+        prevYPos = yPos;
+        prevFieldHeading = currFieldHeading;
+
+        synchronized (poseLock)
+        {
+            poseTimestamp = timestamp;
+            fieldXPos += arcScale*(dx*cosHeading + dy*sinHeading);
+            fieldYPos += arcScale*(dy*cosHeading - dx*sinHeading);
+            fieldHeading = currFieldHeading;
+
+            historyTimestamps[historyIndex] = timestamp;
+            historyXPos[historyIndex] = fieldXPos;
+            historyYPos[historyIndex] = fieldYPos;
+            historyHeading[historyIndex] = fieldHeading;
+            historyIndex = (historyIndex + 1)%historyTimestamps.length;
+            if (historyCount < historyTimestamps.length)
+            {
+                historyCount++;
+            }
         }
 
+        xPosChannel.record(xPos);
+        yPosChannel.record(yPos);
+        headingChannel.record(heading);
+        xSpeedChannel.record(xSpeed);
+        ySpeedChannel.record(ySpeed);
+        turnSpeedChannel.record(turnSpeed);
+        fieldXPosChannel.record(fieldXPos);
+        fieldYPosChannel.record(fieldYPos);
+        fieldHeadingChannel.record(currFieldHeading);
+
         if (debugEnabled)
         {
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.TASK);
@@ -577,4 +931,16 @@ public class TrcDriveBase extends HalRobotDrive implements TrcTaskMgr.Task
     {
     }   //postContinuousTask
 
+    /**
+     * This method returns the robot heading the field pose is integrated
+     * with: the gyro heading, or without a gyro, the wheel rotation assuming
+     * the rotation scale converts the encoders to degrees.
+     *
+     * @return robot heading in degrees.
+     */
+    private double getOdometryHeading()
+    {
+        return gyro != null? heading: rotPos;
+    }   //getOdometryHeading
+
 }   //class TrcDriveBase
@@ -0,0 +1,559 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package trclib;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * This class implements an allocation-free formatter for the subset of
+ * String.format that is used for dashboard and debug text. It renders into a
+ * reusable StringBuilder, and the arguments are passed one at a time with
+ * primitive typed methods so nothing is boxed:
+ *
+ *     formatter.begin("x=%.1f, sw=%d").arg(x).arg(sw).end();
+ *
+ * Supported format specifiers are %d, %x, %f, %s and %b with the '-' and '0'
+ * flags, a width and a precision (e.g. %06.3f, %-8s, %04x), plus %% and %n.
+ * Numbers passed as double to %d or %x are truncated to long. %f rounds like
+ * String.format, i.e. half up on the shortest decimal of the double; only a
+ * value within a few ulps of a tie allocates to get there. As with
+ * String.format, extra arguments are ignored and a missing argument or an
+ * unsupported specifier throws IllegalArgumentException.
+ */
+public class TrcFormatter
+{
+    public static final int DEF_CAPACITY = 128;
+    private static final int DEF_FLOAT_PRECISION = 6;
+    private static final int MAX_FLOAT_PRECISION = 15;
+    private static final double MAX_SCALED_VALUE = 9.0e18;
+    private static final char[] HEX_DIGITS = {
+        '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+    };
+
+    private final StringBuilder buffer;
+    private final long[] powersOf10 = new long[MAX_FLOAT_PRECISION + 1];
+    private final char[] digits = new char[16];
+    private String format = null;
+    private int formatIndex = 0;
+    //
+    // The current format specifier.
+    //
+    private boolean leftJustify = false;
+    private boolean zeroPad = false;
+    private int width = 0;
+    private int precision = -1;
+    private char conversion = 0;
+
+    /**
+     * Constructor: Creates an instance of the object.
+     *
+     * @param capacity specifies the initial capacity of the text buffer.
+     */
+    public TrcFormatter(int capacity)
+    {
+        buffer = new StringBuilder(capacity);
+        powersOf10[0] = 1;
+        for (int i = 1; i < powersOf10.length; i++)
+        {
+            powersOf10[i] = powersOf10[i - 1]*10;
+        }
+    }   //TrcFormatter
+
+    /**
+     * Constructor: Creates an instance of the object with the default capacity.
+     */
+    public TrcFormatter()
+    {
+        this(DEF_CAPACITY);
+    }   //TrcFormatter
+
+    /**
+     * This method returns the text buffer. The buffer is reused by the next
+     * begin(), so copy it if the text must be kept.
+     *
+     * @return text buffer.
+     */
+    public StringBuilder getBuffer()
+    {
+        return buffer;
+    }   //getBuffer
+
+    /**
+     * This method clears the text buffer and starts formatting with the given
+     * format string.
+     *
+     * @param format specifies the format string.
+     * @return this formatter.
+     */
+    public TrcFormatter begin(String format)
+    {
+        buffer.setLength(0);
+        this.format = format;
+        formatIndex = 0;
+
+        return this;
+    }   //begin
+
+    /**
+     * This method formats an integer argument.
+     *
+     * @param value specifies the argument.
+     * @return this formatter.
+     */
+    public TrcFormatter arg(long value)
+    {
+        if (nextSpecifier())
+        {
+            switch (conversion)
+            {
+                case 'd':
+                    appendLong(value);
+                    break;
+
+                case 'x':
+                    appendHex(value);
+                    break;
+
+                case 'f':
+                    appendFixed(value);
+                    break;
+
+                case 's':
+                    int start = buffer.length();
+                    buffer.append(value);
+                    truncateAndPad(start);
+                    break;
+
+                default:
+                    throw new IllegalArgumentException(
+                            "%" + conversion + " does not take an integer argument.");
+            }
+        }
+
+        return this;
+    }   //arg
+
+    /**
+     * This method formats a floating point argument.
+     *
+     * @param value specifies the argument.
+     * @return this formatter.
+     */
+    public TrcFormatter arg(double value)
+    {
+        if (nextSpecifier())
+        {
+            switch (conversion)
+            {
+                case 'f':
+                    appendFixed(value);
+                    break;
+
+                case 'd':
+                    appendLong((long)value);
+                    break;
+
+                case 'x':
+                    appendHex((long)value);
+                    break;
+
+                case 's':
+                    int start = buffer.length();
+                    buffer.append(value);
+                    truncateAndPad(start);
+                    break;
+
+                default:
+                    throw new IllegalArgumentException(
+                            "%" + conversion + " does not take a floating point argument.");
+            }
+        }
+
+        return this;
+    }   //arg
+
+    /**
+     * This method formats a boolean argument.
+     *
+     * @param value specifies the argument.
+     * @return this formatter.
+     */
+    public TrcFormatter arg(boolean value)
+    {
+        if (nextSpecifier())
+        {
+            if (conversion != 's' && conversion != 'b')
+            {
+                throw new IllegalArgumentException("%" + conversion + " does not take a boolean argument.");
+            }
+
+            int start = buffer.length();
+            buffer.append(value);
+            truncateAndPad(start);
+        }
+
+        return this;
+    }   //arg
+
+    /**
+     * This method formats a text argument.
+     *
+     * @param value specifies the argument, null is formatted as "null".
+     * @return this formatter.
+     */
+    public TrcFormatter arg(CharSequence value)
+    {
+        if (nextSpecifier())
+        {
+            if (conversion != 's')
+            {
+                throw new IllegalArgumentException("%" + conversion + " does not take a text argument.");
+            }
+
+            int start = buffer.length();
+            if (value != null)
+            {
+                buffer.append(value);
+            }
+            else
+            {
+                buffer.append("null");
+            }
+            truncateAndPad(start);
+        }
+
+        return this;
+    }   //arg
+
+    /**
+     * This method finishes formatting by copying the rest of the format string.
+     *
+     * @return text buffer.
+     * @throws IllegalArgumentException if the format string has more specifiers
+     *         than arguments.
+     */
+    public StringBuilder end()
+    {
+        if (nextSpecifier())
+        {
+            throw new IllegalArgumentException("Missing argument for %" + conversion + ".");
+        }
+        format = null;
+
+        return buffer;
+    }   //end
+
+    /**
+     * This method copies the literal text up to the next format specifier and
+     * parses the specifier.
+     *
+     * @return true if a specifier was found, false if the end of the format
+     *         string has been reached.
+     * @throws IllegalArgumentException if the specifier is not supported.
+     */
+    private boolean nextSpecifier()
+    {
+        if (format == null)
+        {
+            throw new IllegalStateException("begin() has not been called.");
+        }
+
+        int length = format.length();
+        while (formatIndex < length)
+        {
+            char ch = format.charAt(formatIndex++);
+
+            if (ch != '%')
+            {
+                buffer.append(ch);
+            }
+            else if (formatIndex < length && format.charAt(formatIndex) == '%')
+            {
+                buffer.append('%');
+                formatIndex++;
+            }
+            else if (formatIndex < length && format.charAt(formatIndex) == 'n')
+            {
+                buffer.append('\n');
+                formatIndex++;
+            }
+            else
+            {
+                parseSpecifier();
+                return true;
+            }
+        }
+
+        return false;
+    }   //nextSpecifier
+
+    /**
+     * This method parses the flags, width, precision and conversion of a
+     * format specifier. The format index is right after the '%'.
+     *
+     * @throws IllegalArgumentException if the specifier is not supported.
+     */
+    private void parseSpecifier()
+    {
+        int length = format.length();
+        char ch = 0;
+
+        leftJustify = false;
+        zeroPad = false;
+        width = 0;
+        precision = -1;
+
+        while (formatIndex < length)
+        {
+            ch = format.charAt(formatIndex);
+            if (ch == '-')
+            {
+                leftJustify = true;
+            }
+            else if (ch == '0')
+            {
+                zeroPad = true;
+            }
+            else
+            {
+                break;
+            }
+            formatIndex++;
+        }
+
+        while (formatIndex < length && (ch = format.charAt(formatIndex)) >= '0' && ch <= '9')
+        {
+            width = width*10 + (ch - '0');
+            formatIndex++;
+        }
+
+        if (formatIndex < length && format.charAt(formatIndex) == '.')
+        {
+            formatIndex++;
+            precision = 0;
+            while (formatIndex < length && (ch = format.charAt(formatIndex)) >= '0' && ch <= '9')
+            {
+                precision = precision*10 + (ch - '0');
+                formatIndex++;
+            }
+        }
+
+        if (formatIndex >= length)
+        {
+            throw new IllegalArgumentException("Incomplete format specifier in \"" + format + "\".");
+        }
+
+        conversion = format.charAt(formatIndex++);
+        if (conversion != 'd' && conversion != 'x' && conversion != 'f' && conversion != 's' &&
+            conversion != 'b')
+        {
+            throw new IllegalArgumentException(
+                    "Unsupported format specifier %" + conversion + " in \"" + format + "\".");
+        }
+
+        if (zeroPad && (leftJustify || width == 0 || conversion == 's' || conversion == 'b'))
+        {
+            throw new IllegalArgumentException("Invalid '0' flag in \"" + format + "\".");
+        }
+    }   //parseSpecifier
+
+    /**
+     * This method appends a decimal integer.
+     *
+     * @param value specifies the value.
+     */
+    private void appendLong(long value)
+    {
+        int start = buffer.length();
+
+        buffer.append(value);
+        pad(start, value < 0);
+    }   //appendLong
+
+    /**
+     * This method appends a hexadecimal integer. Values in the int range are
+     * formatted as 32-bit like String.format does for an Integer.
+     *
+     * @param value specifies the value.
+     */
+    private void appendHex(long value)
+    {
+        int start = buffer.length();
+        int numDigits = 0;
+
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE)
+        {
+            value &= 0xffffffffL;
+        }
+
+        do
+        {
+            digits[numDigits++] = HEX_DIGITS[(int)(value & 0xf)];
+            value >>>= 4;
+        } while (value != 0);
+
+        while (numDigits > 0)
+        {
+            buffer.append(digits[--numDigits]);
+        }
+        pad(start, false);
+    }   //appendHex
+
+    /**
+     * This method appends a fixed point number with the current precision.
+     *
+     * @param value specifies the value.
+     */
+    private void appendFixed(double value)
+    {
+        int start = buffer.length();
+        int fracDigits = precision >= 0? precision: DEF_FLOAT_PRECISION;
+
+        if (Double.isNaN(value) || Double.isInfinite(value))
+        {
+            buffer.append(value);
+            zeroPad = false;
+            pad(start, false);
+            return;
+        }
+
+        boolean negative = Double.doubleToRawLongBits(value) < 0;
+        double absValue = Math.abs(value);
+
+        if (fracDigits > MAX_FLOAT_PRECISION || absValue*powersOf10[fracDigits] >= MAX_SCALED_VALUE)
+        {
+            //
+            // Out of the range we can do with a long, let String.format do it.
+            //
+            buffer.append(String.format("%." + fracDigits + "f", value));
+        }
+        else
+        {
+            long scaledValue = roundScaled(absValue, fracDigits);
+            long intPart = scaledValue/powersOf10[fracDigits];
+            long fracPart = scaledValue%powersOf10[fracDigits];
+
+            if (negative)
+            {
+                buffer.append('-');
+            }
+            buffer.append(intPart);
+
+            if (fracDigits > 0)
+            {
+                buffer.append('.');
+                for (int i = fracDigits - 1; i > 0 && fracPart < powersOf10[i]; i--)
+                {
+                    buffer.append('0');
+                }
+                buffer.append(fracPart);
+            }
+        }
+        pad(start, negative);
+    }   //appendFixed
+
+    /**
+     * This method scales a non-negative value by 10^fracDigits and rounds it to
+     * a long the way String.format does: the shortest decimal that maps back to
+     * the double (what Double.toString prints) is rounded half up. Rounding the
+     * binary product instead gets near-ties wrong, e.g. 1.275 is really
+     * 1.27499999... so (long)(1.275*100 + 0.5) gives 127, not 128.
+     *
+     * The product is within about two ulps of the scaled shortest decimal, so
+     * only a product that close to a half needs the exact decimal. That is
+     * rare, so the common case does not allocate.
+     *
+     * @param absValue specifies the non-negative value.
+     * @param fracDigits specifies the number of fraction digits.
+     * @return value scaled by 10^fracDigits and rounded.
+     */
+    private long roundScaled(double absValue, int fracDigits)
+    {
+        double scaled = absValue*powersOf10[fracDigits];
+        double floor = Math.floor(scaled);
+        long scaledValue;
+
+        if (Math.abs(scaled - floor - 0.5) > 4.0*Math.ulp(scaled))
+        {
+            scaledValue = (long)floor + (scaled - floor > 0.5? 1: 0);
+        }
+        else
+        {
+            scaledValue = new BigDecimal(Double.toString(absValue)).setScale(
+                    fracDigits, RoundingMode.HALF_UP).unscaledValue().longValue();
+        }
+
+        return scaledValue;
+    }   //roundScaled
+
+    /**
+     * This method applies the precision of %s and %b, which is the maximum
+     * number of characters, and then pads the text to the width.
+     *
+     * @param start specifies the start of the text in the buffer.
+     */
+    private void truncateAndPad(int start)
+    {
+        if (precision >= 0 && buffer.length() - start > precision)
+        {
+            buffer.setLength(start + precision);
+        }
+        pad(start, false);
+    }   //truncateAndPad
+
+    /**
+     * This method pads the text from the given start to the width of the current
+     * specifier. Zero padding goes after the sign.
+     *
+     * @param start specifies the start of the text in the buffer.
+     * @param hasSign specifies true if the text starts with a minus sign.
+     */
+    private void pad(int start, boolean hasSign)
+    {
+        int padding = width - (buffer.length() - start);
+
+        if (padding > 0)
+        {
+            if (leftJustify)
+            {
+                for (int i = 0; i < padding; i++)
+                {
+                    buffer.append(' ');
+                }
+            }
+            else
+            {
+                char padChar = zeroPad? '0': ' ';
+                int padIndex = zeroPad && hasSign? start + 1: start;
+
+                for (int i = 0; i < padding; i++)
+                {
+                    buffer.insert(padIndex, padChar);
+                }
+            }
+        }
+    }   //pad
+
+}   //class TrcFormatter
@@ -74,6 +74,45 @@ public abstract class TrcGyro extends TrcSensor implements HalGyro,
      */
     public abstract SensorData getRawZData(DataType dataType);
 
+    /**
+     * This method reads the raw data with the specified type of the x-axis into the
+     * given holder. The default implementation copies the result of getRawXData.
+     * A platform dependent gyro should override it to avoid allocation.
+     *
+     * @param dataType specifies the data type.
+     * @param data specifies the holder to receive the raw data.
+     */
+    public void getRawXData(DataType dataType, DoubleData data)
+    {
+        data.set(getRawXData(dataType));
+    }   //getRawXData
+
+    /**
+     * This method reads the raw data with the specified type of the y-axis into the
+     * given holder. The default implementation copies the result of getRawYData.
+     * A platform dependent gyro should override it to avoid allocation.
+     *
+     * @param dataType specifies the data type.
+     * @param data specifies the holder to receive the raw data.
+     */
+    public void getRawYData(DataType dataType, DoubleData data)
+    {
+        data.set(getRawYData(dataType));
+    }   //getRawYData
+
+    /**
+     * This method reads the raw data with the specified type of the z-axis into the
+     * given holder. The default implementation copies the result of getRawZData.
+     * A platform dependent gyro should override it to avoid allocation.
+     *
+     * @param dataType specifies the data type.
+     * @param data specifies the holder to receive the raw data.
+     */
+    public void getRawZData(DataType dataType, DoubleData data)
+    {
+        data.set(getRawZData(dataType));
+    }   //getRawZData
+
     //
     // Gyro options.
     //
@@ -93,6 +132,8 @@ public abstract class TrcGyro extends TrcSensor implements HalGyro,
     private int xIndex = -1;
     private int yIndex = -1;
     private int zIndex = -1;
+    private TrcTelemetry.Channel zRateChannel = null;
+    private TrcTelemetry.Channel zHeadingChannel = null;
 
     /**
      * Constructor: Creates an instance of the object.
@@ -182,6 +223,18 @@ public abstract class TrcGyro extends TrcSensor implements HalGyro,
         {
             dataUnwrapper = new TrcDataUnwrapper(instanceName, this, DataType.HEADING);
         }
+
+        //
+        // Only the z-axis is recorded since that is the one used for driving.
+        //
+        if (zIndex >= 0)
+        {
+            TrcTelemetry telemetry = TrcTelemetry.getInstance();
+            zRateChannel = telemetry.addChannel(
+                    instanceName + ".zRotationRate", TrcTelemetry.ChannelType.DOUBLE);
+            zHeadingChannel = telemetry.addChannel(
+                    instanceName + ".zHeading", TrcTelemetry.ChannelType.DOUBLE);
+        }
     }   //TrcGyro
 
     /**
@@ -505,9 +558,24 @@ public abstract class TrcGyro extends TrcSensor implements HalGyro,
      * @return X rotation rate.
      */
     public SensorData getXRotationRate()
+    {
+        DoubleData data = new DoubleData();
+
+        getXRotationRate(data);
+
+        return data.toSensorData();
+    }   //getXRotationRate
+
+    /**
+     * This method reads the rotation rate on the x-axis into the given holder.
+     *
+     * @param data specifies the holder to receive the X rotation rate.
+     */
+    public void getXRotationRate(DoubleData data)
     {
         final String funcName = "getXRotationRate";
-        SensorData data = getData(xIndex, DataType.ROTATION_RATE);
+
+        getData(xIndex, DataType.ROTATION_RATE, data);
 
         if (debugEnabled)
         {
@@ -515,8 +583,6 @@ public abstract class TrcGyro extends TrcSensor implements HalGyro,
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
                                "=(timestamp=%.3f,value=%f)", data.timestamp, data.value);
         }
-
-        return data;
     }   //getXRotationRate
 
     /**
@@ -525,9 +591,24 @@ public abstract class TrcGyro extends TrcSensor implements HalGyro,
      * @return Y rotation rate.
      */
     public SensorData getYRotationRate()
+    {
+        DoubleData data = new DoubleData();
+
+        getYRotationRate(data);
+
+        return data.toSensorData();
+    }   //getYRotationRate
+
+    /**
+     * This method reads the rotation rate on the y-axis into the given holder.
+     *
+     * @param data specifies the holder to receive the Y rotation rate.
+     */
+    public void getYRotationRate(DoubleData data)
     {
         final String funcName = "getYRotationRate";
-        SensorData data = getData(yIndex, DataType.ROTATION_RATE);
+
+        getData(yIndex, DataType.ROTATION_RATE, data);
 
         if (debugEnabled)
         {
@@ -535,8 +616,6 @@ public abstract class TrcGyro extends TrcSensor implements HalGyro,
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
                                "=(timestamp=%.3f,value=%f)", data.timestamp, data.value);
         }
-
-        return data;
     }   //getYRotationRate
 
     /**
@@ -545,9 +624,28 @@ public abstract class TrcGyro extends TrcSensor implements HalGyro,
      * @return Z rotation rate.
      */
     public SensorData getZRotationRate()
+    {
+        DoubleData data = new DoubleData();
+
+        getZRotationRate(data);
+
+        return data.toSensorData();
+    }   //getZRotationRate
+
+    /**
+     * This method reads the rotation rate on the z-axis into the given holder.
+     *
+     * @param data specifies the holder to receive the Z rotation rate.
+     */
+    public void getZRotationRate(DoubleData data)
     {
         final String funcName = "getZRotationRate";
-        SensorData data = getData(zIndex, DataType.ROTATION_RATE);
+
+        getData(zIndex, DataType.ROTATION_RATE, data);
+        if (zRateChannel != null)
+        {
+            zRateChannel.recordOncePerFrame(data.value);
+        }
 
         if (debugEnabled)
         {
@@ -555,34 +653,45 @@ public abstract class TrcGyro extends TrcSensor implements HalGyro,
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
                                "=(timestamp=%.3f,value=%f)", data.timestamp, data.value);
         }
-
-        return data;
     }   //getZRotationRate
 
     /**
-     * This method returns the heading of the x-axis. If there is an integrator,
-     * we call the integrator to get the heading. Else if we have an unwrapper,
-     * we call the unwrapper to get the heading else we call the platform dependent
-     * gyro to get the raw heading value.
+     * This method returns the heading of the x-axis.
      *
      * @return X heading.
      */
     public SensorData getXHeading()
+    {
+        DoubleData data = new DoubleData();
+
+        getXHeading(data);
+
+        return data.toSensorData();
+    }   //getXHeading
+
+    /**
+     * This method reads the heading of the x-axis into the given holder. If there
+     * is an integrator, we call the integrator to get the heading. Else if we have an
+     * unwrapper, we call the unwrapper to get the heading else we call the platform
+     * dependent gyro to get the raw heading value.
+     *
+     * @param data specifies the holder to receive the X heading.
+     */
+    public void getXHeading(DoubleData data)
     {
         final String funcName = "getXHeading";
-        SensorData data = null;
 
         if (dataIntegrator != null)
         {
-            data = dataIntegrator.getIntegratedData(xIndex);
+            dataIntegrator.getIntegratedData(xIndex, data);
         }
         else if (dataUnwrapper != null)
         {
-            data = dataUnwrapper.getUnwrappedData(xIndex);
+            dataUnwrapper.getUnwrappedData(xIndex, data);
         }
         else
         {
-            data = getRawXData(DataType.HEADING);
+            getRawXData(DataType.HEADING, data);
         }
 
         if (debugEnabled)
@@ -591,34 +700,45 @@ public abstract class TrcGyro extends TrcSensor implements HalGyro,
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
                                "=(timestamp=%.3f,value=%f)", data.timestamp, data.value);
         }
-
-        return data;
     }   //getXHeading
 
     /**
-     * This method returns the heading of the y-axis. If there is an integrator,
-     * we call the integrator to get the heading. Else if we have an unwrapper,
-     * we call the unwrapper to get the heading else we call the platform dependent
-     * gyro to get the raw heading value.
+     * This method returns the heading of the y-axis.
      *
      * @return Y heading.
      */
     public SensorData getYHeading()
+    {
+        DoubleData data = new DoubleData();
+
+        getYHeading(data);
+
+        return data.toSensorData();
+    }   //getYHeading
+
+    /**
+     * This method reads the heading of the y-axis into the given holder. If there
+     * is an integrator, we call the integrator to get the heading. Else if we have an
+     * unwrapper, we call the unwrapper to get the heading else we call the platform
+     * dependent gyro to get the raw heading value.
+     *
+     * @param data specifies the holder to receive the Y heading.
+     */
+    public void getYHeading(DoubleData data)
     {
         final String funcName = "getYHeading";
-        SensorData data = null;
 
         if (dataIntegrator != null)
         {
-            data = dataIntegrator.getIntegratedData(yIndex);
+            dataIntegrator.getIntegratedData(yIndex, data);
         }
         else if (dataUnwrapper != null)
         {
-            data = dataUnwrapper.getUnwrappedData(yIndex);
+            dataUnwrapper.getUnwrappedData(yIndex, data);
         }
         else
         {
-            data = getRawYData(DataType.HEADING);
+            getRawYData(DataType.HEADING, data);
         }
 
         if (debugEnabled)
@@ -627,34 +747,50 @@ public abstract class TrcGyro extends TrcSensor implements HalGyro,
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
                                "=(timestamp=%.3f,value=%f)", data.timestamp, data.value);
         }
-
-        return data;
     }   //getYHeading
 
     /**
-     * This method returns the heading of the z-axis. If there is an integrator,
-     * we call the integrator to get the heading. Else if we have an unwrapper,
-     * we call the unwrapper to get the heading else we call the platform dependent
-     * gyro to get the raw heading value.
+     * This method returns the heading of the z-axis.
      *
      * @return Z heading.
      */
     public SensorData getZHeading()
+    {
+        DoubleData data = new DoubleData();
+
+        getZHeading(data);
+
+        return data.toSensorData();
+    }   //getZHeading
+
+    /**
+     * This method reads the heading of the z-axis into the given holder. If there
+     * is an integrator, we call the integrator to get the heading. Else if we have an
+     * unwrapper, we call the unwrapper to get the heading else we call the platform
+     * dependent gyro to get the raw heading value.
+     *
+     * @param data specifies the holder to receive the Z heading.
+     */
+    public void getZHeading(DoubleData data)
     {
         final String funcName = "getZHeading";
-        SensorData data = null;
 
         if (dataIntegrator != null)
         {
-            data = dataIntegrator.getIntegratedData(zIndex);
+            dataIntegrator.getIntegratedData(zIndex, data);
         }
         else if (dataUnwrapper != null)
         {
-            data = dataUnwrapper.getUnwrappedData(zIndex);
+            dataUnwrapper.getUnwrappedData(zIndex, data);
         }
         else
         {
-            data = getRawZData(DataType.HEADING);
+            getRawZData(DataType.HEADING, data);
+        }
+
+        if (zHeadingChannel != null)
+        {
+            zHeadingChannel.recordOncePerFrame(data.value);
         }
 
         if (debugEnabled)
@@ -663,8 +799,6 @@ public abstract class TrcGyro extends TrcSensor implements HalGyro,
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
                                "=(timestamp=%.3f,value=%f)", data.timestamp, data.value);
         }
-
-        return data;
     }   //getZHeading
 
     //
@@ -768,6 +902,31 @@ public abstract class TrcGyro extends TrcSensor implements HalGyro,
         return data;
     }   //getRawData
 
+    /**
+     * This method reads the raw sensor data for the specified axis and type into
+     * the given holder.
+     *
+     * @param index specifies the axis index.
+     * @param dataType specifies the data type.
+     * @param data specifies the holder to receive the raw data.
+     */
+    @Override
+    public void getRawData(int index, Object dataType, DoubleData data)
+    {
+        if (index == xIndex)
+        {
+            getRawXData((DataType)dataType, data);
+        }
+        else if (index == yIndex)
+        {
+            getRawYData((DataType)dataType, data);
+        }
+        else if (index == zIndex)
+        {
+            getRawZData((DataType)dataType, data);
+        }
+    }   //getRawData
+
     //
     // Implements TrcSensorDataSource interface.
     //
@@ -821,4 +980,41 @@ public abstract class TrcGyro extends TrcSensor implements HalGyro,
         return data;
     }   //getSensorData
 
+    /**
+     * This method reads the sensor data of the specified index into the given holder.
+     *
+     * @param index specifies the data index.
+     * @param data specifies the holder to receive the sensor data.
+     */
+    @Override
+    public void getSensorData(int index, TrcSensor.DoubleData data)
+    {
+        switch (index)
+        {
+            case 0:
+                getXRotationRate(data);
+                break;
+
+            case 1:
+                getYRotationRate(data);
+                break;
+
+            case 2:
+                getZRotationRate(data);
+                break;
+
+            case 3:
+                getXHeading(data);
+                break;
+
+            case 4:
+                getYHeading(data);
+                break;
+
+            case 5:
+                getZHeading(data);
+                break;
+        }
+    }   //getSensorData
+
 }   //class TrcGyro
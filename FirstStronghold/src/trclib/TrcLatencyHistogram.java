@@ -0,0 +1,337 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package trclib;
+
+/**
+ * This class implements a rolling latency histogram. It keeps the most
+ * recent samples in a fixed-size ring buffer and maintains log-scaled
+ * bucket counts over that window so that recording a sample is O(1) and
+ * never allocates. Percentiles are estimated from the bucket counts with a
+ * relative error of about 6%. Minimum, maximum and the overrun count are
+ * kept over the lifetime of the histogram (or since the last reset).
+ */
+public class TrcLatencyHistogram
+{
+    public static final int DEF_WINDOW_SIZE = 256;
+
+    //
+    // Bucket layout: values below SUB_BUCKETS*2 microseconds get one bucket
+    // each, then every power of two is split into SUB_BUCKETS buckets. This
+    // covers up to about 16 seconds.
+    //
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_BUCKETS = SUB_BUCKETS*2;
+    private static final int LINEAR_BITS = SUB_BUCKET_BITS + 1;
+    private static final int MAX_EXPONENT = 24;
+    private static final int NUM_BUCKETS = LINEAR_BUCKETS + (MAX_EXPONENT - LINEAR_BITS + 1)*SUB_BUCKETS;
+
+    private long overrunThreshold;
+    private final long[] samples;
+    private final int[] buckets = new int[NUM_BUCKETS];
+    private int head;
+    private int windowCount;
+    private long windowSum;
+    private long totalCount;
+    private long overrunCount;
+    private long minSample;
+    private long maxSample;
+
+    /**
+     * Constructor: Creates an instance of the object.
+     *
+     * @param windowSize specifies the number of most recent samples to keep.
+     * @param overrunThreshold specifies the latency in nanoseconds above which
+     *                         a sample is counted as an overrun.
+     */
+    public TrcLatencyHistogram(int windowSize, long overrunThreshold)
+    {
+        if (windowSize <= 0)
+        {
+            throw new IllegalArgumentException("Window size must be positive.");
+        }
+
+        this.overrunThreshold = overrunThreshold;
+        samples = new long[windowSize];
+        reset();
+    }   //TrcLatencyHistogram
+
+    /**
+     * Constructor: Creates an instance of the object with the default window size.
+     *
+     * @param overrunThreshold specifies the latency in nanoseconds above which
+     *                         a sample is counted as an overrun.
+     */
+    public TrcLatencyHistogram(long overrunThreshold)
+    {
+        this(DEF_WINDOW_SIZE, overrunThreshold);
+    }   //TrcLatencyHistogram
+
+    /**
+     * This method sets the latency above which a sample is counted as an
+     * overrun. Samples already recorded are not counted again, so callers
+     * normally change it together with a reset.
+     *
+     * @param overrunThreshold specifies the latency in nanoseconds above which
+     *                         a sample is counted as an overrun.
+     */
+    public void setOverrunThreshold(long overrunThreshold)
+    {
+        this.overrunThreshold = overrunThreshold;
+    }   //setOverrunThreshold
+
+    /**
+     * This method returns the latency above which a sample is counted as an overrun.
+     *
+     * @return overrun threshold in nanoseconds.
+     */
+    public long getOverrunThreshold()
+    {
+        return overrunThreshold;
+    }   //getOverrunThreshold
+
+    /**
+     * This method clears all recorded samples and statistics.
+     */
+    public void reset()
+    {
+        for (int i = 0; i < buckets.length; i++)
+        {
+            buckets[i] = 0;
+        }
+        head = 0;
+        windowCount = 0;
+        windowSum = 0;
+        totalCount = 0;
+        overrunCount = 0;
+        minSample = Long.MAX_VALUE;
+        maxSample = 0;
+    }   //reset
+
+    /**
+     * This method records a latency sample. If the window is full, the oldest
+     * sample is evicted from the histogram.
+     *
+     * @param nanos specifies the latency in nanoseconds.
+     */
+    public void record(long nanos)
+    {
+        if (nanos < 0)
+        {
+            nanos = 0;
+        }
+
+        if (windowCount == samples.length)
+        {
+            long oldest = samples[head];
+            buckets[bucketIndex(oldest)]--;
+            windowSum -= oldest;
+        }
+        else
+        {
+            windowCount++;
+        }
+
+        samples[head] = nanos;
+        head = (head + 1)%samples.length;
+        buckets[bucketIndex(nanos)]++;
+        windowSum += nanos;
+
+        totalCount++;
+        if (nanos > overrunThreshold)
+        {
+            overrunCount++;
+        }
+
+        if (nanos < minSample)
+        {
+            minSample = nanos;
+        }
+
+        if (nanos > maxSample)
+        {
+            maxSample = nanos;
+        }
+    }   //record
+
+    /**
+     * This method returns the total number of samples recorded since reset.
+     *
+     * @return total sample count.
+     */
+    public long getTotalCount()
+    {
+        return totalCount;
+    }   //getTotalCount
+
+    /**
+     * This method returns the number of samples that exceeded the overrun threshold.
+     *
+     * @return overrun count.
+     */
+    public long getOverrunCount()
+    {
+        return overrunCount;
+    }   //getOverrunCount
+
+    /**
+     * This method returns the minimum latency recorded since reset.
+     *
+     * @return minimum latency in nanoseconds, 0 if there is no sample.
+     */
+    public long getMin()
+    {
+        return totalCount > 0? minSample: 0;
+    }   //getMin
+
+    /**
+     * This method returns the maximum latency recorded since reset.
+     *
+     * @return maximum latency in nanoseconds.
+     */
+    public long getMax()
+    {
+        return maxSample;
+    }   //getMax
+
+    /**
+     * This method returns the mean latency over the sample window.
+     *
+     * @return mean latency in nanoseconds.
+     */
+    public long getMean()
+    {
+        return windowCount > 0? windowSum/windowCount: 0;
+    }   //getMean
+
+    /**
+     * This method estimates the given percentile over the sample window.
+     *
+     * @param percentile specifies the percentile in the range of 0.0 to 100.0.
+     * @return estimated latency in nanoseconds at the given percentile.
+     */
+    public long getPercentile(double percentile)
+    {
+        long value = 0;
+
+        if (windowCount > 0)
+        {
+            long rank = (long)Math.ceil(TrcUtil.limit(percentile, 0.0, 100.0)*windowCount/100.0);
+            long count = 0;
+
+            if (rank < 1)
+            {
+                rank = 1;
+            }
+
+            for (int i = 0; i < buckets.length; i++)
+            {
+                count += buckets[i];
+                if (count >= rank)
+                {
+                    value = bucketValue(i);
+                    break;
+                }
+            }
+        }
+
+        return value;
+    }   //getPercentile
+
+    /**
+     * This method returns a one-line summary of the statistics in milliseconds.
+     *
+     * @return summary string.
+     */
+    @Override
+    public String toString()
+    {
+        return String.format(
+                "n=%d,min=%.3f,mean=%.3f,p50=%.3f,p99=%.3f,max=%.3f,overruns=%d",
+                totalCount, getMin()/1000000.0, getMean()/1000000.0,
+                getPercentile(50.0)/1000000.0, getPercentile(99.0)/1000000.0,
+                getMax()/1000000.0, overrunCount);
+    }   //toString
+
+    /**
+     * This method maps a latency value to its bucket index.
+     *
+     * @param nanos specifies the latency in nanoseconds.
+     * @return bucket index.
+     */
+    private static int bucketIndex(long nanos)
+    {
+        long micros = nanos/1000;
+        int index;
+
+        if (micros < LINEAR_BUCKETS)
+        {
+            index = (int)micros;
+        }
+        else
+        {
+            int exponent = 63 - Long.numberOfLeadingZeros(micros);
+
+            if (exponent > MAX_EXPONENT)
+            {
+                index = NUM_BUCKETS - 1;
+            }
+            else
+            {
+                int subBucket = (int)(micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+                index = LINEAR_BUCKETS + (exponent - LINEAR_BITS)*SUB_BUCKETS + subBucket;
+            }
+        }
+
+        return index;
+    }   //bucketIndex
+
+    /**
+     * This method returns the representative latency value of a bucket, which
+     * is the midpoint of the bucket range.
+     *
+     * @param index specifies the bucket index.
+     * @return representative latency in nanoseconds.
+     */
+    private static long bucketValue(int index)
+    {
+        long micros;
+
+        if (index < LINEAR_BUCKETS)
+        {
+            micros = index;
+        }
+        else
+        {
+            int exponent = (index - LINEAR_BUCKETS)/SUB_BUCKETS + LINEAR_BITS;
+            int subBucket = (index - LINEAR_BUCKETS)%SUB_BUCKETS;
+            long width = 1L << (exponent - SUB_BUCKET_BITS);
+
+            micros = (SUB_BUCKETS + subBucket)*width + width/2;
+        }
+
+        return micros*1000 + 500;
+    }   //bucketValue
+
+}   //class TrcLatencyHistogram
@@ -0,0 +1,312 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package trclib;
+
+/**
+ * This class implements a rest-to-rest motion profile over a given distance
+ * that is limited in velocity, acceleration and jerk. With a jerk limit, the
+ * profile is an S-curve of seven constant-jerk segments: jerk up, constant
+ * acceleration, jerk down, cruise and the mirror image to stop. Without a jerk
+ * limit, it degenerates to a trapezoidal velocity profile. If the distance is
+ * too short to reach the velocity or acceleration limits, the peaks are
+ * lowered accordingly.
+ *
+ * All the segments are computed when the profile is created, so it can be
+ * built ahead of time (e.g. when an autonomous strategy is constructed) and
+ * sampled at any time in constant time without allocating.
+ */
+public class TrcMotionProfile
+{
+    private static final int NUM_SEGMENTS = 7;
+
+    private final double distance;
+    private final double maxVelocity;
+    private final double maxAcceleration;
+    private final double maxJerk;
+    private final double direction;
+    private final double duration;
+    //
+    // Start time, position, velocity and acceleration of each segment and its
+    // constant jerk, all in the positive direction.
+    //
+    private final double[] segmentTime = new double[NUM_SEGMENTS + 1];
+    private final double[] segmentPos = new double[NUM_SEGMENTS + 1];
+    private final double[] segmentVel = new double[NUM_SEGMENTS + 1];
+    private final double[] segmentAcc = new double[NUM_SEGMENTS + 1];
+    private final double[] segmentJerk = new double[NUM_SEGMENTS];
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param distance specifies the distance to travel, may be negative.
+     * @param maxVelocity specifies the maximum velocity.
+     * @param maxAcceleration specifies the maximum acceleration.
+     * @param maxJerk specifies the maximum jerk, 0.0 for a trapezoidal profile.
+     */
+    public TrcMotionProfile(double distance, double maxVelocity, double maxAcceleration, double maxJerk)
+    {
+        if (maxVelocity <= 0.0 || maxAcceleration <= 0.0 || maxJerk < 0.0)
+        {
+            throw new IllegalArgumentException(
+                    "Velocity and acceleration limits must be positive and jerk limit must not be negative.");
+        }
+
+        this.distance = distance;
+        this.maxVelocity = maxVelocity;
+        this.maxAcceleration = maxAcceleration;
+        this.maxJerk = maxJerk;
+        direction = distance < 0.0? -1.0: 1.0;
+
+        double absDistance = Math.abs(distance);
+        //
+        // Find the peak velocity. Ramping up to v and back down to rest
+        // covers v*rampTime(v), which grows with v, so bisect if the velocity
+        // limit cannot be reached within the distance.
+        //
+        double peakVelocity = maxVelocity;
+        if (peakVelocity*getRampTime(peakVelocity) > absDistance)
+        {
+            double low = 0.0;
+            double high = maxVelocity;
+            for (int i = 0; i < 64; i++)
+            {
+                double mid = (low + high)/2.0;
+                if (mid*getRampTime(mid) > absDistance)
+                {
+                    high = mid;
+                }
+                else
+                {
+                    low = mid;
+                }
+            }
+            peakVelocity = low;
+        }
+
+        double rampTime = getRampTime(peakVelocity);
+        double jerkTime = 0.0;
+        double peakAcceleration = rampTime > 0.0? peakVelocity/rampTime: 0.0;
+        if (maxJerk > 0.0)
+        {
+            jerkTime = Math.min(maxAcceleration/maxJerk, rampTime/2.0);
+            peakAcceleration = maxJerk*jerkTime;
+        }
+        double cruiseTime = peakVelocity > 0.0? absDistance/peakVelocity - rampTime: 0.0;
+        if (cruiseTime < 0.0)
+        {
+            cruiseTime = 0.0;
+        }
+
+        double jerk = maxJerk > 0.0? maxJerk: 0.0;
+        double[] durations =
+        {
+            jerkTime, rampTime - 2.0*jerkTime, jerkTime,
+            cruiseTime,
+            jerkTime, rampTime - 2.0*jerkTime, jerkTime
+        };
+        double[] jerks = {jerk, 0.0, -jerk, 0.0, -jerk, 0.0, jerk};
+
+        //
+        // Without a jerk limit, acceleration steps at the segment boundaries
+        // instead of ramping.
+        //
+        double[] accelerations =
+        {
+            maxJerk > 0.0? Double.NaN: peakAcceleration, Double.NaN, Double.NaN,
+            0.0,
+            maxJerk > 0.0? Double.NaN: -peakAcceleration, Double.NaN, Double.NaN
+        };
+
+        segmentTime[0] = 0.0;
+        segmentPos[0] = 0.0;
+        segmentVel[0] = 0.0;
+        segmentAcc[0] = 0.0;
+        for (int i = 0; i < NUM_SEGMENTS; i++)
+        {
+            double t = durations[i];
+            double a0 = Double.isNaN(accelerations[i])? segmentAcc[i]: accelerations[i];
+            double j = jerks[i];
+
+            segmentAcc[i] = a0;
+            segmentJerk[i] = j;
+            segmentTime[i + 1] = segmentTime[i] + t;
+            segmentPos[i + 1] = segmentPos[i] + segmentVel[i]*t + a0*t*t/2.0 + j*t*t*t/6.0;
+            segmentVel[i + 1] = segmentVel[i] + a0*t + j*t*t/2.0;
+            segmentAcc[i + 1] = a0 + j*t;
+        }
+        segmentAcc[NUM_SEGMENTS] = 0.0;
+        duration = segmentTime[NUM_SEGMENTS];
+    }   //TrcMotionProfile
+
+    /**
+     * Constructor: Create an instance of a trapezoidal profile.
+     *
+     * @param distance specifies the distance to travel, may be negative.
+     * @param maxVelocity specifies the maximum velocity.
+     * @param maxAcceleration specifies the maximum acceleration.
+     */
+    public TrcMotionProfile(double distance, double maxVelocity, double maxAcceleration)
+    {
+        this(distance, maxVelocity, maxAcceleration, 0.0);
+    }   //TrcMotionProfile
+
+    /**
+     * This method returns the profile parameters.
+     *
+     * @return profile parameters.
+     */
+    public String toString()
+    {
+        return String.format(
+                "distance=%.1f,maxVel=%.1f,maxAcc=%.1f,maxJerk=%.1f,duration=%.3f",
+                distance, maxVelocity, maxAcceleration, maxJerk, duration);
+    }   //toString
+
+    /**
+     * This method returns the distance of the profile.
+     *
+     * @return distance.
+     */
+    public double getDistance()
+    {
+        return distance;
+    }   //getDistance
+
+    /**
+     * This method returns the time it takes to complete the profile.
+     *
+     * @return duration in seconds.
+     */
+    public double getDuration()
+    {
+        return duration;
+    }   //getDuration
+
+    /**
+     * This method returns the position at the given time.
+     *
+     * @param time specifies the time since the start of the profile.
+     * @return position relative to the start.
+     */
+    public double getPosition(double time)
+    {
+        if (time >= duration)
+        {
+            return distance;
+        }
+
+        int i = findSegment(time);
+        double t = time - segmentTime[i];
+
+        return direction*(segmentPos[i] + segmentVel[i]*t + segmentAcc[i]*t*t/2.0 +
+                          segmentJerk[i]*t*t*t/6.0);
+    }   //getPosition
+
+    /**
+     * This method returns the velocity at the given time.
+     *
+     * @param time specifies the time since the start of the profile.
+     * @return velocity.
+     */
+    public double getVelocity(double time)
+    {
+        if (time >= duration)
+        {
+            return 0.0;
+        }
+
+        int i = findSegment(time);
+        double t = time - segmentTime[i];
+
+        return direction*(segmentVel[i] + segmentAcc[i]*t + segmentJerk[i]*t*t/2.0);
+    }   //getVelocity
+
+    /**
+     * This method returns the acceleration at the given time.
+     *
+     * @param time specifies the time since the start of the profile.
+     * @return acceleration.
+     */
+    public double getAcceleration(double time)
+    {
+        if (time >= duration)
+        {
+            return 0.0;
+        }
+
+        int i = findSegment(time);
+
+        return direction*(segmentAcc[i] + segmentJerk[i]*(time - segmentTime[i]));
+    }   //getAcceleration
+
+    /**
+     * This method returns the time it takes to ramp from rest up to the given
+     * velocity within the acceleration and jerk limits.
+     *
+     * @param velocity specifies the peak velocity.
+     * @return ramp time in seconds.
+     */
+    private double getRampTime(double velocity)
+    {
+        double rampTime;
+
+        if (maxJerk <= 0.0)
+        {
+            rampTime = velocity/maxAcceleration;
+        }
+        else if (velocity*maxJerk < maxAcceleration*maxAcceleration)
+        {
+            //
+            // Acceleration limit is not reached.
+            //
+            rampTime = 2.0*Math.sqrt(velocity/maxJerk);
+        }
+        else
+        {
+            rampTime = velocity/maxAcceleration + maxAcceleration/maxJerk;
+        }
+
+        return rampTime;
+    }   //getRampTime
+
+    /**
+     * This method finds the segment containing the given time.
+     *
+     * @param time specifies the time since the start of the profile.
+     * @return segment index.
+     */
+    private int findSegment(double time)
+    {
+        int i = 0;
+
+        while (i < NUM_SEGMENTS - 1 && time >= segmentTime[i + 1])
+        {
+            i++;
+        }
+
+        return i;
+    }   //findSegment
+
+}   //class TrcMotionProfile
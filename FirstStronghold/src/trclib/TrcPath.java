@@ -0,0 +1,351 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package trclib;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * This class implements a smooth path through a list of field waypoints.
+ * Consecutive waypoints are joined by quintic Hermite splines whose end
+ * tangents follow the waypoint headings, so position and heading are
+ * continuous and curvature is zero at every waypoint. The splines are sampled
+ * into path points, each with a target velocity limited by the maximum
+ * velocity, by the maximum acceleration along the path and by the lateral
+ * acceleration in curves.
+ *
+ * Generating a path is far too slow for the robot loop, so paths are created
+ * through getPath() which caches them by name. A strategy constructed at the
+ * start of every autonomous period only generates its path the first time.
+ *
+ * Headings are in degrees clockwise from the field y axis and curvature is
+ * positive for clockwise turns, matching the gyro and TrcDriveBase.
+ */
+public class TrcPath
+{
+    private static final int SAMPLES_PER_SEGMENT = 100;
+    private static final double TANGENT_SCALE = 1.2;
+    private static final HashMap<String, TrcPath> pathCache = new HashMap<String, TrcPath>();
+
+    /**
+     * This class specifies a path waypoint.
+     */
+    public static class Waypoint
+    {
+        public final double x;
+        public final double y;
+        public final double heading;
+
+        /**
+         * Constructor: Create an instance of the object.
+         *
+         * @param x specifies the field x position.
+         * @param y specifies the field y position.
+         * @param heading specifies the heading in degrees.
+         */
+        public Waypoint(double x, double y, double heading)
+        {
+            this.x = x;
+            this.y = y;
+            this.heading = heading;
+        }   //Waypoint
+
+        @Override
+        public String toString()
+        {
+            return String.format("(x=%.1f,y=%.1f,heading=%.1f)", x, y, heading);
+        }   //toString
+
+    }   //class Waypoint
+
+    private final String name;
+    private final double[] params;
+    private final int numPoints;
+    private final double[] xPos;
+    private final double[] yPos;
+    private final double[] heading;
+    private final double[] curvature;
+    private final double[] distance;
+    private final double[] velocity;
+
+    /**
+     * This method returns the named path, generating it if it is not cached
+     * yet or if it was cached with different parameters.
+     *
+     * @param name specifies the path name.
+     * @param maxVelocity specifies the maximum velocity.
+     * @param maxAcceleration specifies the maximum acceleration, both along
+     *        the path and lateral.
+     * @param waypoints specifies the waypoints, at least two.
+     * @return path.
+     */
+    public static synchronized TrcPath getPath(
+            String name, double maxVelocity, double maxAcceleration, Waypoint... waypoints)
+    {
+        double[] params = getParams(maxVelocity, maxAcceleration, waypoints);
+        TrcPath path = pathCache.get(name);
+
+        if (path == null || !Arrays.equals(path.params, params))
+        {
+            path = new TrcPath(name, params, maxVelocity, maxAcceleration, waypoints);
+            pathCache.put(name, path);
+        }
+
+        return path;
+    }   //getPath
+
+    /**
+     * This method flattens the path parameters so a cached path can be
+     * checked against a new request.
+     *
+     * @param maxVelocity specifies the maximum velocity.
+     * @param maxAcceleration specifies the maximum acceleration.
+     * @param waypoints specifies the waypoints.
+     * @return path parameters.
+     */
+    private static double[] getParams(double maxVelocity, double maxAcceleration, Waypoint[] waypoints)
+    {
+        double[] params = new double[2 + 3*waypoints.length];
+
+        params[0] = maxVelocity;
+        params[1] = maxAcceleration;
+        for (int i = 0; i < waypoints.length; i++)
+        {
+            params[2 + 3*i] = waypoints[i].x;
+            params[3 + 3*i] = waypoints[i].y;
+            params[4 + 3*i] = waypoints[i].heading;
+        }
+
+        return params;
+    }   //getParams
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param name specifies the path name.
+     * @param params specifies the flattened path parameters.
+     * @param maxVelocity specifies the maximum velocity.
+     * @param maxAcceleration specifies the maximum acceleration.
+     * @param waypoints specifies the waypoints.
+     */
+    private TrcPath(
+            String name, double[] params, double maxVelocity, double maxAcceleration, Waypoint[] waypoints)
+    {
+        if (waypoints.length < 2)
+        {
+            throw new IllegalArgumentException("Path must have at least two waypoints.");
+        }
+
+        if (maxVelocity <= 0.0 || maxAcceleration <= 0.0)
+        {
+            throw new IllegalArgumentException("Velocity and acceleration limits must be positive.");
+        }
+
+        this.name = name;
+        this.params = params;
+        numPoints = (waypoints.length - 1)*SAMPLES_PER_SEGMENT + 1;
+        xPos = new double[numPoints];
+        yPos = new double[numPoints];
+        heading = new double[numPoints];
+        curvature = new double[numPoints];
+        distance = new double[numPoints];
+        velocity = new double[numPoints];
+
+        int index = 0;
+        for (int seg = 0; seg < waypoints.length - 1; seg++)
+        {
+            Waypoint p0 = waypoints[seg];
+            Waypoint p1 = waypoints[seg + 1];
+            double tangentLength = TANGENT_SCALE*TrcUtil.magnitude(p1.x - p0.x, p1.y - p0.y);
+            double vx0 = tangentLength*Math.sin(Math.toRadians(p0.heading));
+            double vy0 = tangentLength*Math.cos(Math.toRadians(p0.heading));
+            double vx1 = tangentLength*Math.sin(Math.toRadians(p1.heading));
+            double vy1 = tangentLength*Math.cos(Math.toRadians(p1.heading));
+            int numSamples = seg == waypoints.length - 2? SAMPLES_PER_SEGMENT + 1: SAMPLES_PER_SEGMENT;
+
+            for (int i = 0; i < numSamples; i++, index++)
+            {
+                double t = (double)i/SAMPLES_PER_SEGMENT;
+                double t2 = t*t;
+                double t3 = t2*t;
+                double t4 = t3*t;
+                double t5 = t4*t;
+                //
+                // Quintic Hermite basis for the end points and end tangents.
+                // The end second derivatives are zero, so their terms drop out.
+                //
+                double h0 = 1.0 - 10.0*t3 + 15.0*t4 - 6.0*t5;
+                double h1 = t - 6.0*t3 + 8.0*t4 - 3.0*t5;
+                double h4 = -4.0*t3 + 7.0*t4 - 3.0*t5;
+                double h5 = 10.0*t3 - 15.0*t4 + 6.0*t5;
+                double d0 = -30.0*t2 + 60.0*t3 - 30.0*t4;
+                double d1 = 1.0 - 18.0*t2 + 32.0*t3 - 15.0*t4;
+                double d4 = -12.0*t2 + 28.0*t3 - 15.0*t4;
+                double dd0 = -60.0*t + 180.0*t2 - 120.0*t3;
+                double dd1 = -36.0*t + 96.0*t2 - 60.0*t3;
+                double dd4 = -24.0*t + 84.0*t2 - 60.0*t3;
+                //
+                // h5 = 1 - h0, so its derivatives are the negated h0 derivatives.
+                //
+                double dx = d0*(p0.x - p1.x) + d1*vx0 + d4*vx1;
+                double dy = d0*(p0.y - p1.y) + d1*vy0 + d4*vy1;
+                double ddx = dd0*(p0.x - p1.x) + dd1*vx0 + dd4*vx1;
+                double ddy = dd0*(p0.y - p1.y) + dd1*vy0 + dd4*vy1;
+                double speed = TrcUtil.magnitude(dx, dy);
+
+                xPos[index] = h0*p0.x + h1*vx0 + h4*vx1 + h5*p1.x;
+                yPos[index] = h0*p0.y + h1*vy0 + h4*vy1 + h5*p1.y;
+                heading[index] = Math.toDegrees(Math.atan2(dx, dy));
+                curvature[index] = speed > 0.0? (dy*ddx - dx*ddy)/(speed*speed*speed): 0.0;
+                distance[index] =
+                        index == 0? 0.0:
+                        distance[index - 1] +
+                        TrcUtil.magnitude(xPos[index] - xPos[index - 1], yPos[index] - yPos[index - 1]);
+            }
+        }
+        //
+        // Limit the velocity in curves so the lateral acceleration stays
+        // within maxAcceleration, then make it reachable by decelerating to
+        // the end and accelerating from the start.
+        //
+        for (int i = 0; i < numPoints; i++)
+        {
+            double absCurvature = Math.abs(curvature[i]);
+            velocity[i] =
+                    absCurvature > 0.0?
+                    Math.min(maxVelocity, Math.sqrt(maxAcceleration/absCurvature)): maxVelocity;
+        }
+
+        velocity[numPoints - 1] = 0.0;
+        for (int i = numPoints - 2; i >= 0; i--)
+        {
+            double ds = distance[i + 1] - distance[i];
+            velocity[i] = Math.min(
+                    velocity[i], Math.sqrt(velocity[i + 1]*velocity[i + 1] + 2.0*maxAcceleration*ds));
+        }
+
+        velocity[0] = 0.0;
+        for (int i = 1; i < numPoints; i++)
+        {
+            double ds = distance[i] - distance[i - 1];
+            velocity[i] = Math.min(
+                    velocity[i], Math.sqrt(velocity[i - 1]*velocity[i - 1] + 2.0*maxAcceleration*ds));
+        }
+    }   //TrcPath
+
+    @Override
+    public String toString()
+    {
+        return String.format(
+                "%s: points=%d,length=%.1f", name, numPoints, distance[numPoints - 1]);
+    }   //toString
+
+    /**
+     * This method returns the number of path points.
+     *
+     * @return number of path points.
+     */
+    public int getNumPoints()
+    {
+        return numPoints;
+    }   //getNumPoints
+
+    /**
+     * This method returns the length of the path.
+     *
+     * @return path length.
+     */
+    public double getLength()
+    {
+        return distance[numPoints - 1];
+    }   //getLength
+
+    /**
+     * This method returns the field x position of a path point.
+     *
+     * @param index specifies the path point index.
+     * @return x position.
+     */
+    public double getX(int index)
+    {
+        return xPos[index];
+    }   //getX
+
+    /**
+     * This method returns the field y position of a path point.
+     *
+     * @param index specifies the path point index.
+     * @return y position.
+     */
+    public double getY(int index)
+    {
+        return yPos[index];
+    }   //getY
+
+    /**
+     * This method returns the heading of a path point.
+     *
+     * @param index specifies the path point index.
+     * @return heading in degrees.
+     */
+    public double getHeading(int index)
+    {
+        return heading[index];
+    }   //getHeading
+
+    /**
+     * This method returns the curvature of a path point.
+     *
+     * @param index specifies the path point index.
+     * @return curvature, positive for clockwise turns.
+     */
+    public double getCurvature(int index)
+    {
+        return curvature[index];
+    }   //getCurvature
+
+    /**
+     * This method returns the distance along the path to a path point.
+     *
+     * @param index specifies the path point index.
+     * @return distance from the start of the path.
+     */
+    public double getDistance(int index)
+    {
+        return distance[index];
+    }   //getDistance
+
+    /**
+     * This method returns the target velocity of a path point.
+     *
+     * @param index specifies the path point index.
+     * @return target velocity.
+     */
+    public double getVelocity(int index)
+    {
+        return velocity[index];
+    }   //getVelocity
+
+}   //class TrcPath
@@ -23,20 +23,38 @@
 
 package trclib;
 
+import java.util.concurrent.locks.LockSupport;
+
 import hallib.HalDashboard;
 import hallib.HalUtil;
 
+/**
+ * This class implements a PID controller. By default, the I and D terms are
+ * computed per call of getOutput, so the effective gains depend on how often
+ * it is called. In discrete time mode, each update is timestamped, the I term
+ * integrates error over the measured period and the D term is the low-pass
+ * filtered rate of change of the input (derivative on measurement, so set
+ * point steps do not kick the output). The gains then mean the same thing at
+ * any loop rate. The controller can also be updated by its own fixed rate
+ * thread, in which case getOutput returns the latest output.
+ */
 public class TrcPidController
 {
     private static final String moduleName = "TrcPidController";
     private static final boolean debugEnabled = false;
     private TrcDbgTrace dbgTrace = null;
 
+    /**
+     * This interface provides the controller input. Once startFixedRate is
+     * called, getInput is also called from the fixed rate thread, so it must
+     * be safe to call from a thread other than the robot loop.
+     */
     public interface PidInput
     {
         public double getInput(TrcPidController pidCtrl);
     }   //interface PidInput
 
+    private final String instanceName;
     private HalDashboard dashboard;
     private double kP;
     private double kI;
@@ -59,7 +77,20 @@ public class TrcPidController
     private double totalError = 0.0;
     private double settlingStartTime = 0.0;
     private double setPoint = 0.0;
-    private double output = 0.0;
+    private volatile double output = 0.0;
+
+    private boolean discreteTime = false;
+    private double derivativeFilterTime = 0.0;
+    private boolean prevTimeValid = false;
+    private long prevTime = 0;
+    private double prevInput = 0.0;
+    private double derivative = 0.0;
+    private volatile Thread fixedRateThread = null;
+    private volatile boolean fixedRateStopRequested = false;
+
+    private TrcTelemetry.Channel targetChannel;
+    private TrcTelemetry.Channel inputChannel;
+    private TrcTelemetry.Channel outputChannel;
 
     public TrcPidController(
             final String instanceName,
@@ -80,6 +111,7 @@ public class TrcPidController
                     TrcDbgTrace.MsgLevel.INFO);
         }
 
+        this.instanceName = instanceName;
         dashboard = HalDashboard.getInstance();
         this.kP = kP;
         this.kI = kI;
@@ -88,15 +120,20 @@ public class TrcPidController
         this.tolerance = tolerance;
         this.settlingTime = settlingTime;
         this.pidInput = pidInput;
+
+        TrcTelemetry telemetry = TrcTelemetry.getInstance();
+        targetChannel = telemetry.addChannel(instanceName + ".target", TrcTelemetry.ChannelType.DOUBLE);
+        inputChannel = telemetry.addChannel(instanceName + ".input", TrcTelemetry.ChannelType.DOUBLE);
+        outputChannel = telemetry.addChannel(instanceName + ".output", TrcTelemetry.ChannelType.DOUBLE);
     }   //TrcPidController
 
     public void displayPidInfo(int lineNum)
     {
-        dashboard.displayPrintf(
+        dashboard.displayPrintfNoAlloc(
                 lineNum,
                 "Target=%.1f, Input=%.1f, Error=%.1f",
                 setPoint, pidInput.getInput(this), prevError);
-        dashboard.displayPrintf(
+        dashboard.displayPrintfNoAlloc(
                 lineNum + 1,
                 "minOutput=%.1f, Output=%.1f, maxOutput=%.1f",
                 minOutput, output, maxOutput);
@@ -182,6 +219,149 @@ public class TrcPidController
         }
     }   //setNoOscillation
 
+    /**
+     * This method enables or disables discrete time mode. It takes effect on
+     * the next update. If the controller has not been timestamped since
+     * discrete time mode was enabled (by setTarget, startTrajectory or a
+     * previous update), that update only starts the timing and does not
+     * change the I and D terms. Note that the I and D gains tuned without
+     * discrete time mode have to be retuned: kI becomes per second and kD is
+     * in seconds.
+     *
+     * @param enabled specifies true to enable discrete time mode, false to disable.
+     * @param derivativeFilterTime specifies the time constant in seconds of the
+     *        low-pass filter on the D term, 0.0 for no filtering.
+     */
+    public synchronized void setDiscreteTimeMode(boolean enabled, double derivativeFilterTime)
+    {
+        final String funcName = "setDiscreteTimeMode";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API,
+                                "enabled=%s,filterTime=%f",
+                                Boolean.toString(enabled), derivativeFilterTime);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        if (derivativeFilterTime < 0.0)
+        {
+            throw new IllegalArgumentException("Derivative filter time must not be negative.");
+        }
+
+        if (enabled && !discreteTime)
+        {
+            prevTimeValid = false;
+        }
+        this.discreteTime = enabled;
+        this.derivativeFilterTime = derivativeFilterTime;
+    }   //setDiscreteTimeMode
+
+    /**
+     * This method starts a thread that updates the controller at a fixed rate.
+     * While it runs, getOutput returns the output of the latest update. Note
+     * that the thread calls PidInput.getInput, so the input must be safe to
+     * read from that thread. The thread is paced by the system clock while the period is measured with
+     * HalUtil, so in a simulation with a virtual clock the controller should
+     * be updated from the robot loop instead.
+     *
+     * @param period specifies the update period in seconds.
+     */
+    public synchronized void startFixedRate(double period)
+    {
+        final String funcName = "startFixedRate";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API, "period=%f", period);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        if (period <= 0.0)
+        {
+            throw new IllegalArgumentException("Period must be positive.");
+        }
+
+        if (fixedRateThread == null)
+        {
+            final long periodNanos = (long)(period*1000000000.0);
+
+            fixedRateStopRequested = false;
+            fixedRateThread = new Thread(
+                new Runnable()
+                {
+                    public void run()
+                    {
+                        long nextTime = System.nanoTime();
+
+                        while (!fixedRateStopRequested)
+                        {
+                            calculate();
+                            nextTime += periodNanos;
+
+                            long waitTime = nextTime - System.nanoTime();
+                            if (waitTime <= 0)
+                            {
+                                //
+                                // Overran the period, start over rather than
+                                // running back to back updates to catch up.
+                                //
+                                nextTime = System.nanoTime();
+                            }
+
+                            while (waitTime > 0 && !fixedRateStopRequested)
+                            {
+                                LockSupport.parkNanos(waitTime);
+                                waitTime = nextTime - System.nanoTime();
+                            }
+                        }
+                    }   //run
+                },
+                moduleName + "." + instanceName);
+            fixedRateThread.setDaemon(true);
+            fixedRateThread.start();
+        }
+    }   //startFixedRate
+
+    /**
+     * This method stops the fixed rate thread.
+     */
+    public void stopFixedRate()
+    {
+        final String funcName = "stopFixedRate";
+        Thread thread;
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        //
+        // Join outside of the monitor, the thread needs it to finish its
+        // last update.
+        //
+        synchronized (this)
+        {
+            thread = fixedRateThread;
+            fixedRateThread = null;
+            fixedRateStopRequested = true;
+        }
+
+        if (thread != null)
+        {
+            LockSupport.unpark(thread);
+            try
+            {
+                thread.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }   //stopFixedRate
+
     public double getKp()
     {
         final String funcName = "getKp";
@@ -354,6 +534,26 @@ public class TrcPidController
         this.maxOutput = maxOutput;
     }   //setOutputRange
 
+    /**
+     * This method returns the lower limit of the output range.
+     *
+     * @return minimum output.
+     */
+    public double getMinOutput()
+    {
+        return minOutput;
+    }   //getMinOutput
+
+    /**
+     * This method returns the upper limit of the output range.
+     *
+     * @return maximum output.
+     */
+    public double getMaxOutput()
+    {
+        return maxOutput;
+    }   //getMaxOutput
+
     public double getTarget()
     {
         final String funcName = "getTarget";
@@ -369,7 +569,7 @@ public class TrcPidController
         return setPoint;
     }   //getTarget
 
-    public void setTarget(double target)
+    public synchronized void setTarget(double target)
     {
         final String funcName = "setTarget";
 
@@ -405,6 +605,10 @@ public class TrcPidController
             prevError = -prevError;
         }
         totalError = 0.0;
+        prevTimeValid = true;
+        prevTime = HalUtil.getCurrentTimeNanos();
+        prevInput = input;
+        derivative = 0.0;
         settlingStartTime = HalUtil.getCurrentTime();
 
         if (debugEnabled)
@@ -413,6 +617,77 @@ public class TrcPidController
         }
     }   //setTarget
 
+    /**
+     * This method resets the controller to start following a trajectory from
+     * the current input. The set point is moved to the current input and then
+     * along the trajectory with updateTarget.
+     *
+     * @return current input, the start of the trajectory.
+     */
+    public synchronized double startTrajectory()
+    {
+        final String funcName = "startTrajectory";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        double input = pidInput.getInput(this);
+        setPoint = input;
+        prevError = 0.0;
+        totalError = 0.0;
+        prevTimeValid = true;
+        prevTime = HalUtil.getCurrentTimeNanos();
+        prevInput = input;
+        derivative = 0.0;
+        settlingStartTime = HalUtil.getCurrentTime();
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API, "=%f", input);
+        }
+
+        return input;
+    }   //startTrajectory
+
+    /**
+     * This method moves the set point to a new absolute target without
+     * resetting the controller, for following a trajectory.
+     *
+     * @param target specifies the new absolute target.
+     */
+    public synchronized void updateTarget(double target)
+    {
+        if (maxInput > minInput)
+        {
+            if (target > maxInput)
+            {
+                target = maxInput;
+            }
+            else if (target < minInput)
+            {
+                target = minInput;
+            }
+        }
+        setPoint = target;
+    }   //updateTarget
+
+    public boolean isInverted()
+    {
+        final String funcName = "isInverted";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API);
+            dbgTrace.traceExit(
+                    funcName, TrcDbgTrace.TraceLevel.API,
+                    "=%s", Boolean.toString(inverted));
+        }
+
+        return inverted;
+    }   //isInverted
+
     public double getError()
     {
         final String funcName = "getError";
@@ -428,7 +703,7 @@ public class TrcPidController
         return prevError;
     }   //getError
 
-    public void reset()
+    public synchronized void reset()
     {
         final String funcName = "reset";
 
@@ -440,6 +715,8 @@ public class TrcPidController
 
         prevError = 0.0;
         totalError = 0.0;
+        derivative = 0.0;
+        prevTimeValid = false;
         setPoint = 0.0;
         output = 0.0;
     }   //reset
@@ -490,34 +767,78 @@ public class TrcPidController
             dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API);
         }
 
-        double error = setPoint - pidInput.getInput(this);
+        double output = fixedRateThread != null? this.output: calculate();
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceExit(
+                    funcName, TrcDbgTrace.TraceLevel.API,
+                    "=%f", output);
+        }
+
+        return output;
+    }   //getOutput
+
+    /**
+     * This method reads the input and updates the output.
+     *
+     * @return new output.
+     */
+    private synchronized double calculate()
+    {
+        double input = pidInput.getInput(this);
+        double error = setPoint - input;
         if (inverted)
         {
             error = -error;
         }
 
-        if (kI != 0.0)
+        double output;
+        if (discreteTime)
         {
-            double potentialGain = (totalError + error)*kI;
-            if (potentialGain >= maxOutput)
+            long currTime = HalUtil.getCurrentTimeNanos();
+            double dt = (currTime - prevTime)/1000000000.0;
+
+            if (!prevTimeValid)
             {
-                totalError = maxOutput/kI;
+                //
+                // Not timestamped since discrete time mode was enabled or the
+                // controller was reset, so there is no period to integrate
+                // over yet. Just start the timing.
+                //
+                prevTimeValid = true;
+                prevTime = currTime;
+                prevInput = input;
             }
-            else if (potentialGain > minOutput)
+            else if (dt > 0.0)
             {
-                totalError += error;
+                integrateError(error*dt);
+
+                double rate = (prevInput - input)/dt;
+                if (inverted)
+                {
+                    rate = -rate;
+                }
+                derivative += (rate - derivative)*dt/(derivativeFilterTime + dt);
+                prevTime = currTime;
+                prevInput = input;
             }
-            else
-            {
-                totalError = minOutput/kI;
-            }
-        }
 
-        output =
-                kP*error +
-                kI*totalError +
-                kD*(error - prevError) +
-                kF*setPoint;
+            output =
+                    kP*error +
+                    kI*totalError +
+                    kD*derivative +
+                    kF*setPoint;
+        }
+        else
+        {
+            integrateError(error);
+            output =
+                    kP*error +
+                    kI*totalError +
+                    kD*(error - prevError) +
+                    kF*setPoint;
+        }
 
         prevError = error;
         if (output > maxOutput)
@@ -528,15 +849,39 @@ public class TrcPidController
         {
             output = minOutput;
         }
+        this.output = output;
 
-        if (debugEnabled)
-        {
-            dbgTrace.traceExit(
-                    funcName, TrcDbgTrace.TraceLevel.API,
-                    "=%f", output);
-        }
+        targetChannel.record(setPoint);
+        inputChannel.record(input);
+        outputChannel.record(output);
 
         return output;
-    }   //getOutput
+    }   //calculate
+
+    /**
+     * This method adds to the accumulated error, clamping it so that the I
+     * term stays within the output range.
+     *
+     * @param increment specifies the error to add.
+     */
+    private void integrateError(double increment)
+    {
+        if (kI != 0.0)
+        {
+            double potentialGain = (totalError + increment)*kI;
+            if (potentialGain >= maxOutput)
+            {
+                totalError = maxOutput/kI;
+            }
+            else if (potentialGain > minOutput)
+            {
+                totalError += increment;
+            }
+            else
+            {
+                totalError = minOutput/kI;
+            }
+        }
+    }   //integrateError
 
 }   //class TrcPidController
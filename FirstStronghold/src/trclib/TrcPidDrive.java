@@ -36,6 +36,99 @@ public class TrcPidDrive implements TrcTaskMgr.Task
     private static final int PIDDRIVEF_TURN_ONLY        = (1 << 2);
     private static final int PIDDRIVEF_SET_HEADING      = (1 << 3);
     private static final int PIDDRIVEF_CANCELED         = (1 << 4);
+    private static final int PIDDRIVEF_PROFILED         = (1 << 5);
+
+    /**
+     * This class follows a motion profile on one axis. It moves the set point
+     * of the axis PID controller along the profile and adds velocity and
+     * acceleration feedforward to the PID output.
+     */
+    private class ProfiledAxis
+    {
+        private final TrcPidController pidCtrl;
+        private TrcMotionProfile profile = null;
+        private double startPosition = 0.0;
+        private double kV = 0.0;
+        private double kA = 0.0;
+
+        ProfiledAxis(TrcPidController pidCtrl)
+        {
+            this.pidCtrl = pidCtrl;
+        }   //ProfiledAxis
+
+        /**
+         * This method starts following a profile from the current position.
+         * Without a profile, the axis gets a zero target as in a stepped leg,
+         * so a relative axis holds its position and an absolute one (e.g. the
+         * gyro turn) goes to 0.
+         *
+         * @param profile specifies the profile, null for a zero target.
+         */
+        void start(TrcMotionProfile profile)
+        {
+            this.profile = profile;
+            if (profile != null)
+            {
+                startPosition = pidCtrl.startTrajectory();
+            }
+            else
+            {
+                pidCtrl.setTarget(0.0);
+            }
+        }   //start
+
+        /**
+         * This method updates the set point and returns the axis output.
+         *
+         * @param elapsedTime specifies the time since the start of the profile.
+         * @return axis output.
+         */
+        double getOutput(double elapsedTime)
+        {
+            double feedforward = 0.0;
+
+            if (profile != null)
+            {
+                pidCtrl.updateTarget(startPosition + profile.getPosition(elapsedTime));
+                feedforward =
+                        kV*profile.getVelocity(elapsedTime) +
+                        kA*profile.getAcceleration(elapsedTime);
+                if (pidCtrl.isInverted())
+                {
+                    feedforward = -feedforward;
+                }
+            }
+
+            //
+            // The PID output is already limited to the output range, but the
+            // feedforward must not take the sum past it either, or the power
+            // cap a caller set with setOutputRange would not hold.
+            //
+            double output = pidCtrl.getOutput() + feedforward;
+            if (output > pidCtrl.getMaxOutput())
+            {
+                output = pidCtrl.getMaxOutput();
+            }
+            else if (output < pidCtrl.getMinOutput())
+            {
+                output = pidCtrl.getMinOutput();
+            }
+
+            return output;
+        }   //getOutput
+
+        /**
+         * This method checks if the profile is complete.
+         *
+         * @param elapsedTime specifies the time since the start of the profile.
+         * @return true if the profile is complete, false otherwise.
+         */
+        boolean isDone(double elapsedTime)
+        {
+            return profile == null || elapsedTime >= profile.getDuration();
+        }   //isDone
+
+    }   //class ProfiledAxis
 
     private String instanceName;
     private TrcDriveBase driveBase;
@@ -47,6 +140,10 @@ public class TrcPidDrive implements TrcTaskMgr.Task
     private int flags;
     private double manualX;
     private double manualY;
+    private ProfiledAxis xAxis;
+    private ProfiledAxis yAxis;
+    private ProfiledAxis turnAxis;
+    private double profileStartTime;
 
     public TrcPidDrive(
         final String instanceName,
@@ -74,8 +171,60 @@ public class TrcPidDrive implements TrcTaskMgr.Task
         this.flags = 0;
         this.manualX = 0.0;
         this.manualY = 0.0;
+        this.xAxis = xPidCtrl != null? new ProfiledAxis(xPidCtrl): null;
+        this.yAxis = yPidCtrl != null? new ProfiledAxis(yPidCtrl): null;
+        this.turnAxis = turnPidCtrl != null? new ProfiledAxis(turnPidCtrl): null;
+        this.profileStartTime = 0.0;
     }   //TrcPidDrive
 
+    /**
+     * This method sets the feedforward gains used when following a motion
+     * profile on the x axis.
+     *
+     * @param kV specifies the output per unit of velocity.
+     * @param kA specifies the output per unit of acceleration.
+     */
+    public void setXFeedforward(double kV, double kA)
+    {
+        if (xAxis != null)
+        {
+            xAxis.kV = kV;
+            xAxis.kA = kA;
+        }
+    }   //setXFeedforward
+
+    /**
+     * This method sets the feedforward gains used when following a motion
+     * profile on the y axis.
+     *
+     * @param kV specifies the output per unit of velocity.
+     * @param kA specifies the output per unit of acceleration.
+     */
+    public void setYFeedforward(double kV, double kA)
+    {
+        if (yAxis != null)
+        {
+            yAxis.kV = kV;
+            yAxis.kA = kA;
+        }
+    }   //setYFeedforward
+
+    /**
+     * This method sets the feedforward gains used when following a motion
+     * profile on the turn axis.
+     *
+     * @param kV specifies the output per unit of angular velocity.
+     * @param kA specifies the output per unit of angular acceleration.
+     */
+    public void setTurnFeedforward(double kV, double kA)
+    {
+        if (turnAxis != null)
+        {
+            turnAxis.kV = kV;
+            turnAxis.kA = kA;
+        }
+    }   //setTurnFeedforward
+
     public void setTarget(
             double xTarget,
             double yTarget,
@@ -188,6 +337,87 @@ public class TrcPidDrive implements TrcTaskMgr.Task
                 0.0);
     }   //setTarget
 
+    /**
+     * This method starts a leg that follows motion profiles instead of
+     * stepping the PID targets. Each profile is relative to the position of
+     * its axis when the leg starts. An axis without a profile gets a zero
+     * target, as in setTarget(0.0, ...): a relative axis holds its position
+     * and an absolute one goes to 0 (e.g. the gyro turn keeps the heading the
+     * autonomous started with). The leg is done when all profiles are complete
+     * and all axes are on target.
+     *
+     * @param xProfile specifies the x axis profile, null for a zero target.
+     * @param yProfile specifies the y axis profile, null for a zero target.
+     * @param turnProfile specifies the turn axis profile, null for a zero target.
+     * @param holdTarget specifies true to keep holding the end of the
+     *        profiles until canceled.
+     * @param event specifies the event to signal when done, can be null.
+     * @param timeout specifies the timeout in seconds, 0.0 for no timeout.
+     */
+    public void setTarget(
+            TrcMotionProfile xProfile,
+            TrcMotionProfile yProfile,
+            TrcMotionProfile turnProfile,
+            boolean holdTarget,
+            TrcEvent event,
+            double timeout)
+    {
+        final String funcName = "setTarget";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(
+                    funcName, TrcDbgTrace.TraceLevel.API,
+                    "xProfile=%s,yProfile=%s,turnProfile=%s,hold=%s,event=%s,timeout=%f",
+                    xProfile, yProfile, turnProfile, Boolean.toString(holdTarget),
+                    event, timeout);
+        }
+
+        if (xAxis != null)
+        {
+            xAxis.start(xProfile);
+        }
+
+        if (yAxis != null)
+        {
+            yAxis.start(yProfile);
+        }
+
+        if (turnAxis != null)
+        {
+            turnAxis.start(turnProfile);
+        }
+        profileStartTime = HalUtil.getCurrentTime();
+
+        if (event != null)
+        {
+            event.clear();
+        }
+        this.notifyEvent = event;
+
+        flags = PIDDRIVEF_PROFILED;
+        if (holdTarget)
+        {
+            flags |= PIDDRIVEF_HOLD_TARGET;
+            this.expiredTime = 0.0;
+        }
+        else
+        {
+            this.expiredTime = timeout;
+            if (timeout != 0)
+            {
+                this.expiredTime += HalUtil.getCurrentTime();
+            }
+        }
+
+        setEnabled(true);
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+    }   //setTarget
+
     public void setHeadingTarget(
             double xPower,
             double yPower,
@@ -409,13 +639,32 @@ public class TrcPidDrive implements TrcTaskMgr.Task
                     "mode=%s", runMode.toString());
         }
 
-        double xPower =
-                (((flags & PIDDRIVEF_TURN_ONLY) != 0) || (xPidCtrl == null))?
-                0.0: xPidCtrl.getOutput();
-        double yPower =
-                (((flags & PIDDRIVEF_TURN_ONLY) != 0) || (yPidCtrl == null))?
-                0.0: yPidCtrl.getOutput();
-        double turnPower = (turnPidCtrl == null)? 0.0: turnPidCtrl.getOutput();
+        double xPower;
+        double yPower;
+        double turnPower;
+        boolean profileDone = true;
+
+        if ((flags & PIDDRIVEF_PROFILED) != 0)
+        {
+            double elapsedTime = HalUtil.getCurrentTime() - profileStartTime;
+
+            xPower = xAxis == null? 0.0: xAxis.getOutput(elapsedTime);
+            yPower = yAxis == null? 0.0: yAxis.getOutput(elapsedTime);
+            turnPower = turnAxis == null? 0.0: turnAxis.getOutput(elapsedTime);
+            profileDone = (xAxis == null || xAxis.isDone(elapsedTime)) &&
+                          (yAxis == null || yAxis.isDone(elapsedTime)) &&
+                          (turnAxis == null || turnAxis.isDone(elapsedTime));
+        }
+        else
+        {
+            xPower =
+                    (((flags & PIDDRIVEF_TURN_ONLY) != 0) || (xPidCtrl == null))?
+                    0.0: xPidCtrl.getOutput();
+            yPower =
+                    (((flags & PIDDRIVEF_TURN_ONLY) != 0) || (yPidCtrl == null))?
+                    0.0: yPidCtrl.getOutput();
+            turnPower = (turnPidCtrl == null)? 0.0: turnPidCtrl.getOutput();
+        }
 
         boolean expired =
                 expiredTime != 0.0 && HalUtil.getCurrentTime() >= expiredTime;
@@ -424,7 +673,7 @@ public class TrcPidDrive implements TrcTaskMgr.Task
         boolean turnOnTarget = turnPidCtrl == null || turnPidCtrl.isOnTarget();
         boolean holdTarget = (flags & PIDDRIVEF_HOLD_TARGET) != 0;
         boolean done = expired ||
-                       !holdTarget &&
+                       !holdTarget && profileDone &&
                        (turnOnTarget && ((flags & PIDDRIVEF_TURN_ONLY) != 0) ||
                         xOnTarget && yOnTarget && turnOnTarget);
 
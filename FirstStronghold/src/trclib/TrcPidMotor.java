@@ -73,6 +73,8 @@ public class TrcPidMotor implements TrcTaskMgr.Task
     private double stallMinPower = 0.0;
     private double stallTimeout = 0.0;
     private double resetTimeout = 0.0;
+    private TrcTelemetry.Channel powerChannel;
+    private TrcTelemetry.Channel positionChannel;
 
     /**
      * Constructor: Creates an instance of the object.
@@ -112,6 +114,9 @@ public class TrcPidMotor implements TrcTaskMgr.Task
         }
 
         this.instanceName = instanceName;
+        TrcTelemetry telemetry = TrcTelemetry.getInstance();
+        powerChannel = telemetry.addChannel(instanceName + ".power", TrcTelemetry.ChannelType.DOUBLE);
+        positionChannel = telemetry.addChannel(instanceName + ".position", TrcTelemetry.ChannelType.DOUBLE);
         this.motor1 = motor1;
         this.motor2 = motor2;
         if (motor2 != null)
@@ -993,6 +998,9 @@ public class TrcPidMotor implements TrcTaskMgr.Task
             }
         }
 
+        powerChannel.record(motorPower);
+        positionChannel.record(getPosition());
+
         if (debugEnabled)
         {
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.TASK);
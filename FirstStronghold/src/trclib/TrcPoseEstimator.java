@@ -0,0 +1,519 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package trclib;
+
+import java.util.Arrays;
+
+/**
+ * This class implements an extended Kalman filter that fuses the drive
+ * encoders, a gyro, an accelerometer and a sonar into a field pose and
+ * velocity. The state is the field position, heading, forward velocity, turn
+ * rate, forward acceleration and the distance travelled by the wheels, with a
+ * constant acceleration and turn rate motion model.
+ *
+ * Each sensor calls its update method whenever it has a new sample, at its own
+ * rate. The filter first predicts the state forward to the sample timestamp
+ * and then corrects it with the sample. Every measurement is a scalar, so the
+ * corrections need no matrix inversion, and all matrices are allocated once
+ * when the filter is created so that updates do not allocate. Samples older
+ * than the current estimate are applied at the current time, which is close
+ * enough for the few milliseconds of skew between sensor threads.
+ *
+ * Field coordinates follow TrcDriveBase: y points forward and x points right
+ * at reset, heading is in degrees clockwise positive and not wrapped. Distances
+ * and times are in the caller's units (e.g. inches and seconds).
+ */
+public class TrcPoseEstimator
+{
+    private static final String moduleName = "TrcPoseEstimator";
+    private static final boolean debugEnabled = false;
+    private TrcDbgTrace dbgTrace = null;
+
+    private static final int X = 0;
+    private static final int Y = 1;
+    private static final int HEADING = 2;
+    private static final int VELOCITY = 3;
+    private static final int TURN_RATE = 4;
+    private static final int ACCELERATION = 5;
+    private static final int DISTANCE = 6;
+    private static final int NUM_STATES = 7;
+    //
+    // Sonar readings further than 3 standard deviations from the prediction
+    // are echoes off something else and are dropped.
+    //
+    private static final double SONAR_GATE = 9.0;
+    //
+    // Default measurement noise for inches and degrees.
+    //
+    private static final double DEF_ENCODER_STDDEV = 0.25;
+    private static final double DEF_GYRO_HEADING_STDDEV = 0.5;
+    private static final double DEF_GYRO_RATE_STDDEV = 2.0;
+    private static final double DEF_ACCEL_STDDEV = 20.0;
+    private static final double DEF_SONAR_STDDEV = 1.0;
+    private static final double DEF_SLIP_NOISE = 0.1;
+
+    private final String instanceName;
+    private final double[] state = new double[NUM_STATES];
+    private final double[][] covariance = new double[NUM_STATES][NUM_STATES];
+    private final double[][] jacobian = new double[NUM_STATES][NUM_STATES];
+    private final double[][] product = new double[NUM_STATES][NUM_STATES];
+    private final double[] measurementRow = new double[NUM_STATES];
+    private final double[] covarianceRow = new double[NUM_STATES];
+    private double stateTime = 0.0;
+    private double jerkNoise;
+    private double turnAccelerationNoise;
+    private double slipNoise = DEF_SLIP_NOISE;
+    private double encoderVariance;
+    private double gyroHeadingVariance;
+    private double gyroRateVariance;
+    private double accelVariance;
+    private double sonarVariance;
+    private double sonarWallY = 0.0;
+    private boolean sonarWallSet = false;
+    private int sonarRejectCount = 0;
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param instanceName specifies the instance name.
+     * @param jerkNoise specifies the spectral density of the jerk driving the
+     *        forward acceleration, in (distance/sec^3)^2 per Hz.
+     * @param turnAccelerationNoise specifies the spectral density of the
+     *        angular acceleration driving the turn rate, in (deg/sec^2)^2 per Hz.
+     */
+    public TrcPoseEstimator(final String instanceName, double jerkNoise, double turnAccelerationNoise)
+    {
+        if (debugEnabled)
+        {
+            dbgTrace = new TrcDbgTrace(
+                    moduleName + "." + instanceName,
+                    false,
+                    TrcDbgTrace.TraceLevel.API,
+                    TrcDbgTrace.MsgLevel.INFO);
+        }
+
+        this.instanceName = instanceName;
+        this.jerkNoise = jerkNoise;
+        this.turnAccelerationNoise = Math.toRadians(Math.toRadians(turnAccelerationNoise));
+        setMeasurementNoise(
+                DEF_ENCODER_STDDEV, DEF_GYRO_HEADING_STDDEV, DEF_GYRO_RATE_STDDEV,
+                DEF_ACCEL_STDDEV, DEF_SONAR_STDDEV);
+        reset(0.0, 0.0, 0.0, 0.0);
+    }   //TrcPoseEstimator
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
+    /**
+     * This method sets the standard deviations of the sensor measurements.
+     *
+     * @param encoderStdDev specifies the encoder distance noise.
+     * @param gyroHeadingStdDev specifies the gyro heading noise in degrees.
+     * @param gyroRateStdDev specifies the gyro rate noise in degrees/sec.
+     * @param accelStdDev specifies the accelerometer noise in distance/sec^2.
+     * @param sonarStdDev specifies the sonar range noise.
+     */
+    public synchronized void setMeasurementNoise(
+            double encoderStdDev,
+            double gyroHeadingStdDev,
+            double gyroRateStdDev,
+            double accelStdDev,
+            double sonarStdDev)
+    {
+        double gyroHeadingRad = Math.toRadians(gyroHeadingStdDev);
+        double gyroRateRad = Math.toRadians(gyroRateStdDev);
+
+        encoderVariance = encoderStdDev*encoderStdDev;
+        gyroHeadingVariance = gyroHeadingRad*gyroHeadingRad;
+        gyroRateVariance = gyroRateRad*gyroRateRad;
+        accelVariance = accelStdDev*accelStdDev;
+        sonarVariance = sonarStdDev*sonarStdDev;
+    }   //setMeasurementNoise
+
+    /**
+     * This method sets how much the wheels may slip. The encoders alone
+     * cannot see slip, so the position variance grows by this amount per unit
+     * of distance travelled, letting absolute sensors such as the sonar pull
+     * the position back.
+     *
+     * @param slipNoise specifies the position variance added per unit of distance.
+     */
+    public synchronized void setSlipNoise(double slipNoise)
+    {
+        this.slipNoise = slipNoise;
+    }   //setSlipNoise
+
+    /**
+     * This method sets the wall the sonar ranges against. The sonar faces
+     * forward and the wall is perpendicular to the field y axis.
+     *
+     * @param wallY specifies the field y position of the wall.
+     */
+    public synchronized void setSonarWall(double wallY)
+    {
+        sonarWallY = wallY;
+        sonarWallSet = true;
+    }   //setSonarWall
+
+    /**
+     * This method resets the estimate to a known pose at rest. The encoder
+     * distance restarts at zero.
+     *
+     * @param timestamp specifies the time of the pose.
+     * @param x specifies the field x position.
+     * @param y specifies the field y position.
+     * @param heading specifies the heading in degrees.
+     */
+    public synchronized void reset(double timestamp, double x, double y, double heading)
+    {
+        final String funcName = "reset";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(
+                    funcName, TrcDbgTrace.TraceLevel.API,
+                    "time=%.3f,x=%.1f,y=%.1f,heading=%.1f", timestamp, x, y, heading);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        Arrays.fill(state, 0.0);
+        state[X] = x;
+        state[Y] = y;
+        state[HEADING] = Math.toRadians(heading);
+        for (int i = 0; i < NUM_STATES; i++)
+        {
+            Arrays.fill(covariance[i], 0.0);
+        }
+        //
+        // The pose is known, the robot is assumed at rest but allowed to be
+        // slightly off.
+        //
+        covariance[VELOCITY][VELOCITY] = 1.0;
+        covariance[TURN_RATE][TURN_RATE] = 0.01;
+        covariance[ACCELERATION][ACCELERATION] = 1.0;
+        stateTime = timestamp;
+        sonarRejectCount = 0;
+    }   //reset
+
+    /**
+     * This method moves the encoder distance to a new value without
+     * affecting the rest of the estimate. Call it when the encoders are reset.
+     *
+     * @param distance specifies the new encoder distance.
+     */
+    public synchronized void setEncoderDistance(double distance)
+    {
+        state[DISTANCE] = distance;
+    }   //setEncoderDistance
+
+    /**
+     * This method corrects the estimate with the forward distance travelled
+     * by the wheels, e.g. TrcDriveBase.getYPosition().
+     *
+     * @param timestamp specifies the sample time.
+     * @param distance specifies the encoder distance.
+     */
+    public synchronized void updateEncoder(double timestamp, double distance)
+    {
+        predict(timestamp);
+        Arrays.fill(measurementRow, 0.0);
+        measurementRow[DISTANCE] = 1.0;
+        correct(distance - state[DISTANCE], encoderVariance, 0.0);
+    }   //updateEncoder
+
+    /**
+     * This method corrects the estimate with a gyro sample.
+     *
+     * @param timestamp specifies the sample time.
+     * @param heading specifies the integrated heading in degrees, not wrapped.
+     * @param rate specifies the turn rate in degrees/sec.
+     */
+    public synchronized void updateGyro(double timestamp, double heading, double rate)
+    {
+        predict(timestamp);
+        Arrays.fill(measurementRow, 0.0);
+        measurementRow[HEADING] = 1.0;
+        correct(Math.toRadians(heading) - state[HEADING], gyroHeadingVariance, 0.0);
+        Arrays.fill(measurementRow, 0.0);
+        measurementRow[TURN_RATE] = 1.0;
+        correct(Math.toRadians(rate) - state[TURN_RATE], gyroRateVariance, 0.0);
+    }   //updateGyro
+
+    /**
+     * This method corrects the estimate with an accelerometer sample in the
+     * robot frame. In a turn, the lateral acceleration is the centripetal
+     * acceleration v*omega, which ties the velocity and turn rate together.
+     *
+     * @param timestamp specifies the sample time.
+     * @param forwardAccel specifies the forward acceleration.
+     * @param lateralAccel specifies the acceleration to the right.
+     */
+    public synchronized void updateAccelerometer(double timestamp, double forwardAccel, double lateralAccel)
+    {
+        predict(timestamp);
+        Arrays.fill(measurementRow, 0.0);
+        measurementRow[ACCELERATION] = 1.0;
+        correct(forwardAccel - state[ACCELERATION], accelVariance, 0.0);
+        Arrays.fill(measurementRow, 0.0);
+        measurementRow[VELOCITY] = state[TURN_RATE];
+        measurementRow[TURN_RATE] = state[VELOCITY];
+        correct(lateralAccel - state[VELOCITY]*state[TURN_RATE], accelVariance, 0.0);
+    }   //updateAccelerometer
+
+    /**
+     * This method corrects the estimate with a sonar range to the wall set by
+     * setSonarWall(). Readings are ignored if no wall is set, if the robot is
+     * not roughly facing the wall or if they are far from the prediction.
+     *
+     * @param timestamp specifies the sample time.
+     * @param range specifies the sonar range.
+     * @return true if the reading was used, false otherwise.
+     */
+    public synchronized boolean updateSonar(double timestamp, double range)
+    {
+        boolean used = false;
+
+        predict(timestamp);
+        double cosHeading = Math.cos(state[HEADING]);
+        if (sonarWallSet && cosHeading > 0.5)
+        {
+            double wallDistance = sonarWallY - state[Y];
+            Arrays.fill(measurementRow, 0.0);
+            measurementRow[Y] = -1.0/cosHeading;
+            measurementRow[HEADING] = wallDistance*Math.sin(state[HEADING])/(cosHeading*cosHeading);
+            used = correct(range - wallDistance/cosHeading, sonarVariance, SONAR_GATE);
+            if (!used)
+            {
+                sonarRejectCount++;
+            }
+        }
+
+        return used;
+    }   //updateSonar
+
+    /**
+     * This method returns the number of sonar readings dropped by the gate
+     * since the last reset.
+     *
+     * @return number of rejected sonar readings.
+     */
+    public synchronized int getSonarRejectCount()
+    {
+        return sonarRejectCount;
+    }   //getSonarRejectCount
+
+    /**
+     * This method returns the estimated pose, predicted to the given time
+     * without changing the estimate.
+     *
+     * @param timestamp specifies the time of the pose.
+     * @param pose specifies the object to fill in.
+     */
+    public synchronized void getPose(double timestamp, TrcDriveBase.Pose pose)
+    {
+        double dt = Math.max(timestamp - stateTime, 0.0);
+        double deltaHeading = state[TURN_RATE]*dt;
+        double distance = state[VELOCITY]*dt + 0.5*state[ACCELERATION]*dt*dt;
+        double midHeading = state[HEADING] + deltaHeading/2.0;
+
+        pose.timestamp = timestamp;
+        pose.x = state[X] + distance*Math.sin(midHeading);
+        pose.y = state[Y] + distance*Math.cos(midHeading);
+        pose.heading = Math.toDegrees(state[HEADING] + deltaHeading);
+    }   //getPose
+
+    /**
+     * This method returns the estimated forward velocity.
+     *
+     * @return forward velocity.
+     */
+    public synchronized double getVelocity()
+    {
+        return state[VELOCITY];
+    }   //getVelocity
+
+    /**
+     * This method returns the estimated turn rate.
+     *
+     * @return turn rate in degrees/sec.
+     */
+    public synchronized double getTurnRate()
+    {
+        return Math.toDegrees(state[TURN_RATE]);
+    }   //getTurnRate
+
+    /**
+     * This method returns the standard deviation of the estimated position,
+     * combining both axes.
+     *
+     * @return position standard deviation.
+     */
+    public synchronized double getPositionStdDev()
+    {
+        return Math.sqrt(covariance[X][X] + covariance[Y][Y]);
+    }   //getPositionStdDev
+
+    /**
+     * This method moves the estimate forward to the given time with the
+     * motion model: P = F*P*F' + Q.
+     *
+     * @param timestamp specifies the time to predict to.
+     */
+    private void predict(double timestamp)
+    {
+        double dt = timestamp - stateTime;
+
+        if (dt > 0.0)
+        {
+            double heading = state[HEADING];
+            double velocity = state[VELOCITY];
+            double turnRate = state[TURN_RATE];
+            double acceleration = state[ACCELERATION];
+            double halfDt2 = 0.5*dt*dt;
+            double distance = velocity*dt + acceleration*halfDt2;
+            double midHeading = heading + turnRate*dt/2.0;
+            double sinHeading = Math.sin(midHeading);
+            double cosHeading = Math.cos(midHeading);
+
+            state[X] += distance*sinHeading;
+            state[Y] += distance*cosHeading;
+            state[HEADING] += turnRate*dt;
+            state[VELOCITY] += acceleration*dt;
+            state[DISTANCE] += distance;
+
+            for (int i = 0; i < NUM_STATES; i++)
+            {
+                Arrays.fill(jacobian[i], 0.0);
+                jacobian[i][i] = 1.0;
+            }
+            jacobian[X][HEADING] = distance*cosHeading;
+            jacobian[X][TURN_RATE] = distance*cosHeading*dt/2.0;
+            jacobian[X][VELOCITY] = dt*sinHeading;
+            jacobian[X][ACCELERATION] = halfDt2*sinHeading;
+            jacobian[Y][HEADING] = -distance*sinHeading;
+            jacobian[Y][TURN_RATE] = -distance*sinHeading*dt/2.0;
+            jacobian[Y][VELOCITY] = dt*cosHeading;
+            jacobian[Y][ACCELERATION] = halfDt2*cosHeading;
+            jacobian[HEADING][TURN_RATE] = dt;
+            jacobian[VELOCITY][ACCELERATION] = dt;
+            jacobian[DISTANCE][VELOCITY] = dt;
+            jacobian[DISTANCE][ACCELERATION] = halfDt2;
+
+            for (int i = 0; i < NUM_STATES; i++)
+            {
+                for (int j = 0; j < NUM_STATES; j++)
+                {
+                    double sum = 0.0;
+                    for (int k = 0; k < NUM_STATES; k++)
+                    {
+                        sum += jacobian[i][k]*covariance[k][j];
+                    }
+                    product[i][j] = sum;
+                }
+            }
+
+            for (int i = 0; i < NUM_STATES; i++)
+            {
+                for (int j = i; j < NUM_STATES; j++)
+                {
+                    double sum = 0.0;
+                    for (int k = 0; k < NUM_STATES; k++)
+                    {
+                        sum += product[i][k]*jacobian[j][k];
+                    }
+                    covariance[i][j] = sum;
+                    covariance[j][i] = sum;
+                }
+            }
+            //
+            // White jerk and angular acceleration integrated over the step, and
+            // wheel slip growing with the distance travelled.
+            //
+            covariance[ACCELERATION][ACCELERATION] += jerkNoise*dt;
+            covariance[TURN_RATE][TURN_RATE] += turnAccelerationNoise*dt;
+            covariance[X][X] += slipNoise*Math.abs(distance);
+            covariance[Y][Y] += slipNoise*Math.abs(distance);
+            stateTime = timestamp;
+        }
+    }   //predict
+
+    /**
+     * This method corrects the estimate with a scalar measurement whose
+     * linearized model is in measurementRow.
+     *
+     * @param innovation specifies the measurement minus its prediction.
+     * @param variance specifies the measurement variance.
+     * @param gate specifies the largest accepted squared normalized
+     *        innovation, 0.0 to accept all.
+     * @return true if the measurement was applied, false if it was gated out.
+     */
+    private boolean correct(double innovation, double variance, double gate)
+    {
+        double innovationVariance = variance;
+
+        for (int i = 0; i < NUM_STATES; i++)
+        {
+            double sum = 0.0;
+            for (int j = 0; j < NUM_STATES; j++)
+            {
+                sum += covariance[i][j]*measurementRow[j];
+            }
+            covarianceRow[i] = sum;
+            innovationVariance += measurementRow[i]*sum;
+        }
+
+        boolean accepted = gate == 0.0 || innovation*innovation <= gate*innovationVariance;
+        if (accepted)
+        {
+            //
+            // K = P*H'/S, x += K*innovation, P -= K*H*P.
+            //
+            for (int i = 0; i < NUM_STATES; i++)
+            {
+                state[i] += covarianceRow[i]*innovation/innovationVariance;
+            }
+
+            for (int i = 0; i < NUM_STATES; i++)
+            {
+                double gain = covarianceRow[i]/innovationVariance;
+                for (int j = i; j < NUM_STATES; j++)
+                {
+                    covariance[i][j] -= gain*covarianceRow[j];
+                    covariance[j][i] = covariance[i][j];
+                }
+            }
+        }
+
+        return accepted;
+    }   //correct
+
+}   //class TrcPoseEstimator
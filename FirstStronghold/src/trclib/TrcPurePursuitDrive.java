@@ -0,0 +1,469 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package trclib;
+
+import hallib.HalUtil;
+
+/**
+ * This class follows a TrcPath with a pure pursuit controller on a
+ * differential drive. Every loop it finds the path point closest to the
+ * robot's field position from TrcDriveBase, picks the first point at least
+ * the lookahead distance away and steers along the arc that reaches it. The
+ * forward velocity comes from the path and is turned into motor power with
+ * a velocity feedforward and an optional proportional velocity correction.
+ * The robot never stops between waypoints; it only stops at the end of the
+ * path.
+ */
+public class TrcPurePursuitDrive implements TrcTaskMgr.Task
+{
+    private static final String moduleName = "TrcPurePursuitDrive";
+    private static final boolean debugEnabled = false;
+    private TrcDbgTrace dbgTrace = null;
+
+    private final String instanceName;
+    private final TrcDriveBase driveBase;
+    private final double trackWidth;
+    private final double lookaheadDistance;
+    private final double kV;
+    private final double kP;
+    private double endTolerance = 0.0;
+    private TrcPath path = null;
+    private TrcEvent notifyEvent = null;
+    private double expiredTime = 0.0;
+    private int closestIndex = 0;
+    private boolean enabled = false;
+    private boolean canceled = false;
+    private final TrcDriveBase.Pose pose = new TrcDriveBase.Pose();
+
+    /**
+     * Constructor: Create an instance of the object.
+     *
+     * @param instanceName specifies the instance name.
+     * @param driveBase specifies the drive base providing the field pose.
+     * @param trackWidth specifies the distance between the left and right wheels.
+     * @param lookaheadDistance specifies the lookahead distance. Longer is
+     *        smoother but cuts corners more.
+     * @param kV specifies the motor power per unit of velocity.
+     * @param kP specifies the motor power per unit of velocity error, 0.0 for
+     *        feedforward only.
+     */
+    public TrcPurePursuitDrive(
+            final String instanceName,
+            TrcDriveBase driveBase,
+            double trackWidth,
+            double lookaheadDistance,
+            double kV,
+            double kP)
+    {
+        if (debugEnabled)
+        {
+            dbgTrace = new TrcDbgTrace(
+                    moduleName + "." + instanceName,
+                    false,
+                    TrcDbgTrace.TraceLevel.API,
+                    TrcDbgTrace.MsgLevel.INFO);
+        }
+
+        if (lookaheadDistance <= 0.0)
+        {
+            throw new IllegalArgumentException("Lookahead distance must be positive.");
+        }
+
+        this.instanceName = instanceName;
+        this.driveBase = driveBase;
+        this.trackWidth = trackWidth;
+        this.lookaheadDistance = lookaheadDistance;
+        this.kV = kV;
+        this.kP = kP;
+    }   //TrcPurePursuitDrive
+
+    /**
+     * This method sets how close to the last path point the robot must get
+     * for the path to be done. The path velocity goes to zero at the end, so
+     * with feedforward alone the robot can stall just short of the last point
+     * and only finish by timing out.
+     *
+     * @param tolerance specifies the distance to the last point, 0.0 to require
+     *        the last point to be the closest one.
+     */
+    public void setEndTolerance(double tolerance)
+    {
+        if (tolerance < 0.0)
+        {
+            throw new IllegalArgumentException("End tolerance must not be negative.");
+        }
+
+        endTolerance = tolerance;
+    }   //setEndTolerance
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
+    /**
+     * This method starts following a path. The path is in the field frame of
+     * the drive base, so the drive base position must have been reset where
+     * the path starts.
+     *
+     * @param path specifies the path to follow.
+     * @param event specifies the event to signal at the end of the path, can be null.
+     * @param timeout specifies the timeout in seconds, 0.0 for no timeout.
+     */
+    public void start(TrcPath path, TrcEvent event, double timeout)
+    {
+        final String funcName = "start";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(
+                    funcName, TrcDbgTrace.TraceLevel.API,
+                    "path=%s,event=%s,timeout=%f", path, event, timeout);
+        }
+
+        this.path = path;
+        closestIndex = 0;
+        canceled = false;
+
+        if (event != null)
+        {
+            event.clear();
+        }
+        this.notifyEvent = event;
+
+        expiredTime = timeout;
+        if (timeout != 0.0)
+        {
+            expiredTime += HalUtil.getCurrentTime();
+        }
+
+        setEnabled(true);
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+    }   //start
+
+    public boolean isEnabled()
+    {
+        final String funcName = "isEnabled";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API);
+            dbgTrace.traceExit(
+                    funcName, TrcDbgTrace.TraceLevel.API,
+                    "=%s", Boolean.toString(enabled));
+        }
+
+        return enabled;
+    }   //isEnabled
+
+    public void cancel()
+    {
+        final String funcName = "cancel";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        if (enabled)
+        {
+            stop();
+            canceled = true;
+            if (notifyEvent != null)
+            {
+                notifyEvent.cancel();
+                notifyEvent = null;
+            }
+        }
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+    }   //cancel
+
+    public boolean isCanceled()
+    {
+        final String funcName = "isCanceled";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API);
+            dbgTrace.traceExit(
+                    funcName, TrcDbgTrace.TraceLevel.API,
+                    "=%s", Boolean.toString(canceled));
+        }
+
+        return canceled;
+    }   //isCanceled
+
+    /**
+     * This method returns how far along the path the robot is, measured at
+     * the path point closest to the robot. Strategies can poll it to trigger
+     * actions part way through the path.
+     *
+     * @return distance along the path.
+     */
+    public double getPathDistance()
+    {
+        final String funcName = "getPathDistance";
+        double distance = path != null? path.getDistance(closestIndex): 0.0;
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API);
+            dbgTrace.traceExit(
+                    funcName, TrcDbgTrace.TraceLevel.API,
+                    "=%f", distance);
+        }
+
+        return distance;
+    }   //getPathDistance
+
+    private void stop()
+    {
+        final String funcName = "stop";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.FUNC);
+        }
+
+        setEnabled(false);
+        driveBase.stop();
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.FUNC);
+        }
+    }   //stop
+
+    private void setEnabled(boolean enabled)
+    {
+        final String funcName = "setEnabled";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(
+                    funcName, TrcDbgTrace.TraceLevel.FUNC,
+                    "enabled=%s", Boolean.toString(enabled));
+        }
+
+        TrcTaskMgr taskMgr = TrcTaskMgr.getInstance();
+        if (enabled)
+        {
+            taskMgr.registerTask(
+                    instanceName,
+                    this,
+                    TrcTaskMgr.TaskType.STOP_TASK);
+            taskMgr.registerTask(
+                    instanceName,
+                    this,
+                    TrcTaskMgr.TaskType.POSTCONTINUOUS_TASK);
+        }
+        else
+        {
+            taskMgr.unregisterTask(
+                    this,
+                    TrcTaskMgr.TaskType.STOP_TASK);
+            taskMgr.unregisterTask(
+                    this,
+                    TrcTaskMgr.TaskType.POSTCONTINUOUS_TASK);
+        }
+        this.enabled = enabled;
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.FUNC);
+        }
+    }   //setEnabled
+
+    /**
+     * This method returns the squared distance from the robot to a path point.
+     *
+     * @param index specifies the path point index.
+     * @param x specifies the robot field x position.
+     * @param y specifies the robot field y position.
+     * @return squared distance.
+     */
+    private double getDistanceSquared(int index, double x, double y)
+    {
+        double dx = path.getX(index) - x;
+        double dy = path.getY(index) - y;
+
+        return dx*dx + dy*dy;
+    }   //getDistanceSquared
+
+    //
+    // Implements TrcTaskMgr.Task
+    //
+
+    @Override
+    public void startTask(TrcRobot.RunMode runMode)
+    {
+    }   //startTask
+
+    @Override
+    public void stopTask(TrcRobot.RunMode runMode)
+    {
+        final String funcName = "stopTask";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(
+                    funcName, TrcDbgTrace.TraceLevel.TASK,
+                    "mode=%s", runMode.toString());
+        }
+
+        stop();
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.TASK);
+        }
+    }   //stopTask
+
+    @Override
+    public void prePeriodicTask(TrcRobot.RunMode runMode)
+    {
+    }   //prePeriodicTask
+
+    @Override
+    public void postPeriodicTask(TrcRobot.RunMode runMode)
+    {
+    }   //postPeriodicTask
+
+    @Override
+    public void preContinuousTask(TrcRobot.RunMode runMode)
+    {
+    }   //preContinuousTask
+
+    @Override
+    public void postContinuousTask(TrcRobot.RunMode runMode)
+    {
+        final String funcName = "postContinuousTask";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(
+                    funcName, TrcDbgTrace.TraceLevel.TASK,
+                    "mode=%s", runMode.toString());
+        }
+
+        //
+        // Read x, y and heading from the same update of the drive base pose.
+        //
+        driveBase.getFieldPose(pose);
+        double x = pose.x;
+        double y = pose.y;
+        double heading = Math.toRadians(pose.heading);
+        int lastIndex = path.getNumPoints() - 1;
+        //
+        // The closest point only moves forward. Searching stops once the
+        // points are a lookahead distance past the best one so far.
+        //
+        double minDistSquared = getDistanceSquared(closestIndex, x, y);
+        double searchLimit = path.getDistance(closestIndex) + lookaheadDistance;
+        for (int i = closestIndex + 1; i <= lastIndex && path.getDistance(i) <= searchLimit; i++)
+        {
+            double distSquared = getDistanceSquared(i, x, y);
+            if (distSquared < minDistSquared)
+            {
+                minDistSquared = distSquared;
+                closestIndex = i;
+                searchLimit = path.getDistance(i) + lookaheadDistance;
+            }
+        }
+
+        boolean expired = expiredTime != 0.0 && HalUtil.getCurrentTime() >= expiredTime;
+        boolean atEnd =
+                closestIndex == lastIndex ||
+                getDistanceSquared(lastIndex, x, y) <= endTolerance*endTolerance;
+        if (expired || atEnd)
+        {
+            stop();
+            if (notifyEvent != null)
+            {
+                notifyEvent.set(true);
+                notifyEvent = null;
+            }
+        }
+        else
+        {
+            double lookaheadSquared = lookaheadDistance*lookaheadDistance;
+            int targetIndex = closestIndex;
+            while (targetIndex < lastIndex && getDistanceSquared(targetIndex, x, y) < lookaheadSquared)
+            {
+                targetIndex++;
+            }
+            //
+            // Rotate the target point into the robot frame and compute the
+            // curvature of the arc through it, positive for clockwise.
+            //
+            double dx = path.getX(targetIndex) - x;
+            double dy = path.getY(targetIndex) - y;
+            double sinHeading = Math.sin(heading);
+            double cosHeading = Math.cos(heading);
+            double right = dx*cosHeading - dy*sinHeading;
+            double forward = dx*sinHeading + dy*cosHeading;
+            double distSquared = right*right + forward*forward;
+            double curvature = distSquared > 0.0? 2.0*right/distSquared: 0.0;
+            //
+            // The first and last points have zero velocity, so take the
+            // faster of the closest point and the next one.
+            //
+            double velocity = Math.max(path.getVelocity(closestIndex), path.getVelocity(closestIndex + 1));
+            double drivePower = kV*velocity + kP*(velocity - driveBase.getYSpeed());
+            double leftPower = drivePower*(1.0 + curvature*trackWidth/2.0);
+            double rightPower = drivePower*(1.0 - curvature*trackWidth/2.0);
+            //
+            // Scale both sides together so saturation keeps the curvature.
+            //
+            double maxMagnitude = Math.max(Math.abs(leftPower), Math.abs(rightPower));
+            if (maxMagnitude > 1.0)
+            {
+                leftPower /= maxMagnitude;
+                rightPower /= maxMagnitude;
+            }
+
+            driveBase.tankDrive(leftPower, rightPower);
+        }
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.TASK);
+        }
+    }   //postContinuousTask
+
+}   //class TrcPurePursuitDrive
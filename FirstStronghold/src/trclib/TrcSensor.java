@@ -64,6 +64,82 @@ public abstract class TrcSensor
 
     }   //class SensorData
 
+    /**
+     * This class implements a mutable sensor data holder with a primitive double
+     * value. Callers allocate it once and pass it to the primitive data methods
+     * which fill it in, so reading sensor data in a loop does not create garbage.
+     */
+    public static class DoubleData
+    {
+        public double timestamp;
+        public double value;
+
+        /**
+         * Constructor: Creates an instance of the object with the given
+         * timestamp and data value.
+         *
+         * @param timestamp specifies the timestamp.
+         * @param value     specifies the data value.
+         */
+        public DoubleData(double timestamp, double value)
+        {
+            this.timestamp = timestamp;
+            this.value = value;
+        }   //DoubleData
+
+        /**
+         * Constructor: Creates an instance of the object with zero timestamp and value.
+         */
+        public DoubleData()
+        {
+            this(0.0, 0.0);
+        }   //DoubleData
+
+        /**
+         * This method sets the timestamp and data value.
+         *
+         * @param timestamp specifies the timestamp.
+         * @param value     specifies the data value.
+         */
+        public void set(double timestamp, double value)
+        {
+            this.timestamp = timestamp;
+            this.value = value;
+        }   //set
+
+        /**
+         * This method copies the timestamp and value of a boxed SensorData object.
+         * A null SensorData sets the value to NaN. A SensorData with a null value
+         * keeps its timestamp and also sets the value to NaN.
+         *
+         * @param data specifies the boxed sensor data.
+         */
+        public void set(SensorData data)
+        {
+            if (data != null)
+            {
+                this.timestamp = data.timestamp;
+                this.value = data.value != null? ((Number)data.value).doubleValue(): Double.NaN;
+            }
+            else
+            {
+                this.value = Double.NaN;
+            }
+        }   //set
+
+        /**
+         * This method returns a boxed copy of the data. It is meant for callers
+         * of the boxed SensorData API and allocates on every call.
+         *
+         * @return boxed sensor data.
+         */
+        public SensorData toSensorData()
+        {
+            return new SensorData(timestamp, value);
+        }   //toSensorData
+
+    }   //class DoubleData
+
     /**
      * This abstract method returns the raw sensor data of the specified axis index and type.
      *
@@ -73,6 +149,21 @@ public abstract class TrcSensor
      */
     public abstract SensorData getRawData(int index, Object dataType);
 
+    /**
+     * This method reads the raw sensor data of the specified axis index and type
+     * into the given holder. The default implementation copies the result of the
+     * boxed getRawData. Platform dependent sensors should override it to avoid
+     * allocating a SensorData on every read.
+     *
+     * @param index specifies the axis index.
+     * @param dataType specifies the data type object.
+     * @param data specifies the holder to receive the raw sensor data.
+     */
+    public void getRawData(int index, Object dataType, DoubleData data)
+    {
+        data.set(getRawData(index, dataType));
+    }   //getRawData
+
     //
     // Sensor data processing options.
     //
@@ -275,7 +366,52 @@ public abstract class TrcSensor
         final String funcName = "getData";
 
         SensorData data = getRawData(index, dataType);
-        double value = (Double)data.value;
+        data.value = processData(index, (Double)data.value);
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API, "index=%d", index);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
+                               "=(timestamp=%.3f,value=%f", data.timestamp, data.value);
+        }
+
+        return data;
+    }   //getData
+
+    /**
+     * This method reads the processed data for the specified axis and type into
+     * the given holder. It does the same processing as the boxed getData but
+     * does not allocate.
+     *
+     * @param index specifies the axis index.
+     * @param dataType specifies the data type object.
+     * @param data specifies the holder to receive the processed sensor data.
+     */
+    public void getData(int index, Object dataType, DoubleData data)
+    {
+        final String funcName = "getData";
+
+        getRawData(index, dataType, data);
+        data.value = processData(index, data.value);
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API, "index=%d", index);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
+                               "=(timestamp=%.3f,value=%f", data.timestamp, data.value);
+        }
+    }   //getData
+
+    /**
+     * This method applies the filter, calibration data, sign and scale of the
+     * specified axis to a raw data value.
+     *
+     * @param index specifies the axis index.
+     * @param value specifies the raw data value.
+     * @return processed data value.
+     */
+    private double processData(int index, double value)
+    {
         //
         // Apply filter if necessary.
         //
@@ -300,18 +436,8 @@ public abstract class TrcSensor
         //
         // Change sign and scale data if necessary.
         //
-        value *= signs[index]*scales[index];
-        data.value = value;
-
-        if (debugEnabled)
-        {
-            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.API, "index=%d", index);
-            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API,
-                               "=(timestamp=%0.3f,value=%f", data.timestamp, data.value);
-        }
-
-        return data;
-    }   //getData
+        return value*signs[index]*scales[index];
+    }   //processData
 
     /**
      * This method calibrates the sensor by reading a number of sensor data samples,
@@ -328,10 +454,12 @@ public abstract class TrcSensor
         double[] minValues = new double[numAxes];
         double[] maxValues = new double[numAxes];
         double[] sums = new double[numAxes];
+        DoubleData data = new DoubleData();
 
         for (int i = 0; i < numAxes; i++)
         {
-            double value = (Double)getRawData(i, dataType).value;
+            getRawData(i, dataType, data);
+            double value = data.value;
             minValues[i] = value;
             maxValues[i] = value;
             sums[i] = 0.0;
@@ -341,7 +469,8 @@ public abstract class TrcSensor
         {
             for (int i = 0; i < numAxes; i++)
             {
-                double value = (Double)getRawData(i, dataType).value;
+                getRawData(i, dataType, data);
+                double value = data.value;
                 sums[i] += value;
 
                 if (value < minValues[i])
@@ -36,4 +36,13 @@ public interface TrcSensorDataSource
      */
     public abstract TrcSensor.SensorData getSensorData(int index);
 
+    /**
+     * This method reads the sensor data of the specified index into the given holder
+     * without allocating.
+     *
+     * @param index specifies the data index.
+     * @param data specifies the holder to receive the sensor data.
+     */
+    public abstract void getSensorData(int index, TrcSensor.DoubleData data);
+
 }   //interface TrcSensorDataSource
@@ -0,0 +1,135 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package trclib;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class implements a lock-free, single-writer/single-reader snapshot
+ * exchange using triple buffering. It is used to hand data from a task
+ * running in one task group thread to a task running in another without
+ * either side ever blocking or allocating. The writer fills the write buffer
+ * and publishes it. The reader always gets the most recently published
+ * buffer, which stays stable until the reader asks for the latest again.
+ *
+ * @param <T> specifies the type of the data buffers.
+ */
+public class TrcSnapshot<T>
+{
+    /**
+     * This interface is provided by the creator of the snapshot to allocate
+     * the data buffers up front.
+     *
+     * @param <T> specifies the type of the data buffers.
+     */
+    public interface BufferFactory<T>
+    {
+        /**
+         * This method creates a new data buffer.
+         *
+         * @return newly created data buffer.
+         */
+        public T createBuffer();
+
+    }   //interface BufferFactory
+
+    private static final int INDEX_MASK = 0x3;
+    private static final int FRESH_FLAG = 0x4;
+
+    private final Object[] buffers = new Object[3];
+    //
+    // The shared state holds the index of the middle buffer and a flag
+    // indicating whether it contains data the reader has not seen yet.
+    // The write and read indices are private to their respective threads.
+    //
+    private final AtomicInteger sharedState = new AtomicInteger(2);
+    private int writeIndex = 0;
+    private int readIndex = 1;
+
+    /**
+     * Constructor: Creates an instance of the object.
+     *
+     * @param factory specifies the factory used to allocate the three data buffers.
+     */
+    public TrcSnapshot(BufferFactory<T> factory)
+    {
+        for (int i = 0; i < buffers.length; i++)
+        {
+            buffers[i] = factory.createBuffer();
+        }
+    }   //TrcSnapshot
+
+    /**
+     * This method is called by the writer to get the buffer to fill. The buffer
+     * contains stale data from an earlier publish, so the writer must overwrite
+     * all of it before calling publish().
+     *
+     * @return write buffer.
+     */
+    @SuppressWarnings("unchecked")
+    public T getWriteBuffer()
+    {
+        return (T)buffers[writeIndex];
+    }   //getWriteBuffer
+
+    /**
+     * This method is called by the writer to publish the write buffer. After
+     * this call, the writer must call getWriteBuffer() again for a new buffer.
+     */
+    public void publish()
+    {
+        writeIndex = sharedState.getAndSet(writeIndex | FRESH_FLAG) & INDEX_MASK;
+    }   //publish
+
+    /**
+     * This method is called by the reader to check if new data has been
+     * published since the last call to getLatest().
+     *
+     * @return true if there is new data, false otherwise.
+     */
+    public boolean hasNewData()
+    {
+        return (sharedState.get() & FRESH_FLAG) != 0;
+    }   //hasNewData
+
+    /**
+     * This method is called by the reader to get the most recently published
+     * buffer. The returned buffer will not be touched by the writer until the
+     * reader calls getLatest() again.
+     *
+     * @return most recently published buffer, or an unpublished buffer if
+     *         nothing has been published yet.
+     */
+    @SuppressWarnings("unchecked")
+    public T getLatest()
+    {
+        if (hasNewData())
+        {
+            readIndex = sharedState.getAndSet(readIndex) & INDEX_MASK;
+        }
+
+        return (T)buffers[readIndex];
+    }   //getLatest
+
+}   //class TrcSnapshot
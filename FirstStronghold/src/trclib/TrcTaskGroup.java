@@ -0,0 +1,527 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package trclib;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+import hallib.HalUtil;
+
+/**
+ * This class implements a task execution group. A task group owns a thread
+ * that runs the continuous tasks registered with it at the group's own fixed
+ * rate, independent of the main robot loop. This allows slow tasks such as
+ * I2C polling or telemetry to run on their own thread at a low rate so they
+ * can never delay fast control tasks, and fast sensor sampling tasks to run
+ * at a higher rate than the main loop. Data should be passed between groups
+ * with TrcSnapshot.
+ *
+ * Only PRECONTINUOUS_TASK and POSTCONTINUOUS_TASK can be registered with a
+ * group. In each cycle, all pre-continuous tasks run, then all post-continuous
+ * tasks. START_TASK, STOP_TASK and the periodic tasks stay with the main
+ * TrcTaskMgr. Task groups are created with TrcTaskMgr.createTaskGroup() which
+ * keeps their run mode in sync with the robot. Pausing the group (setting the
+ * run mode to INVALID_MODE) waits for a cycle in progress to finish, so group
+ * tasks never overlap the stop or start tasks of a mode transition.
+ * Registration may be done from any thread and takes effect no later than the
+ * next cycle of the group.
+ *
+ * For simulation, a group can be created inline. An inline group has no
+ * thread. Its cycles are run by runInline() on the caller's thread against
+ * the HAL clock, so the group follows a virtual clock deterministically.
+ */
+public class TrcTaskGroup implements Runnable
+{
+    private static final String moduleName = "TrcTaskGroup";
+    private static final boolean debugEnabled = false;
+    private TrcDbgTrace dbgTrace = null;
+
+    /**
+     * This class holds a task registered with the group.
+     */
+    private static class GroupTask
+    {
+        private final String taskName;
+        private final TrcTaskMgr.Task task;
+        private volatile boolean preEnabled = false;
+        private volatile boolean postEnabled = false;
+
+        /**
+         * Constructor: Creates an instance of the object.
+         *
+         * @param taskName specifies the instance name of the task.
+         * @param task specifies the task.
+         */
+        public GroupTask(final String taskName, TrcTaskMgr.Task task)
+        {
+            this.taskName = taskName;
+            this.task = task;
+        }   //GroupTask
+
+    }   //class GroupTask
+
+    private static final GroupTask[] NO_TASKS = new GroupTask[0];
+
+    private final String instanceName;
+    private final long periodNanos;
+    private final TrcLatencyHistogram cycleProfile;
+    private final Thread groupThread;
+    //
+    // The task array is copy-on-write. Registrations replace it under the
+    // lock and the group thread picks up the new array at the next cycle
+    // without locking.
+    //
+    private final Object taskLock = new Object();
+    private volatile GroupTask[] tasks = NO_TASKS;
+    //
+    // The run mode is changed and a cycle is started or finished under the
+    // cycle lock. This lets setRunMode wait for the cycle in progress when
+    // pausing the group. The cycle profile is also guarded by this lock.
+    //
+    private final Object cycleLock = new Object();
+    private TrcRobot.RunMode runMode = TrcRobot.RunMode.INVALID_MODE;
+    private boolean cycleActive = false;
+    private volatile boolean terminated = false;
+    private volatile long cycleOverrunCount = 0;
+    private long nextInlineDeadline = 0;
+    private boolean inlineStarted = false;
+
+    /**
+     * Constructor: Creates an instance of the object. Typically, this is called
+     * by TrcTaskMgr.createTaskGroup().
+     *
+     * @param instanceName specifies the instance name of the group.
+     * @param period specifies the cycle period of the group in seconds.
+     * @param priority specifies the thread priority of the group.
+     * @param inline specifies true to create the group without a thread, its
+     *               cycles are then run by calling runInline().
+     */
+    public TrcTaskGroup(final String instanceName, double period, int priority, boolean inline)
+    {
+        if (debugEnabled)
+        {
+            dbgTrace = new TrcDbgTrace(
+                    moduleName + "." + instanceName,
+                    false,
+                    TrcDbgTrace.TraceLevel.API,
+                    TrcDbgTrace.MsgLevel.INFO);
+        }
+
+        if (period <= 0.0)
+        {
+            throw new IllegalArgumentException("Period must be positive.");
+        }
+
+        this.instanceName = instanceName;
+        this.periodNanos = (long)(period*1000000000.0);
+        cycleProfile = new TrcLatencyHistogram(periodNanos);
+        if (inline)
+        {
+            groupThread = null;
+        }
+        else
+        {
+            groupThread = new Thread(this, instanceName);
+            groupThread.setDaemon(true);
+            groupThread.setPriority(priority);
+            groupThread.start();
+        }
+    }   //TrcTaskGroup
+
+    /**
+     * Constructor: Creates an instance of the object and starts its thread.
+     *
+     * @param instanceName specifies the instance name of the group.
+     * @param period specifies the cycle period of the group in seconds.
+     * @param priority specifies the thread priority of the group.
+     */
+    public TrcTaskGroup(final String instanceName, double period, int priority)
+    {
+        this(instanceName, period, priority, false);
+    }   //TrcTaskGroup
+
+    /**
+     * This method returns the instance name.
+     *
+     * @return instance name.
+     */
+    public String toString()
+    {
+        return instanceName;
+    }   //toString
+
+    /**
+     * This method registers a task with the group.
+     *
+     * @param taskName specifies the instance name of the task.
+     * @param task specifies the task.
+     * @param type specifies the task type, must be PRECONTINUOUS_TASK or POSTCONTINUOUS_TASK.
+     * @return true if registered successfully, false otherwise.
+     */
+    public boolean registerTask(final String taskName, TrcTaskMgr.Task task, TrcTaskMgr.TaskType type)
+    {
+        final String funcName = "registerTask";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(
+                    funcName, TrcDbgTrace.TraceLevel.API,
+                    "task=%s,type=%s", taskName, type.toString());
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        if (type != TrcTaskMgr.TaskType.PRECONTINUOUS_TASK && type != TrcTaskMgr.TaskType.POSTCONTINUOUS_TASK)
+        {
+            throw new IllegalArgumentException("Task group only supports continuous task types.");
+        }
+
+        synchronized (taskLock)
+        {
+            GroupTask groupTask = findTask(task);
+
+            if (groupTask == null)
+            {
+                groupTask = new GroupTask(taskName, task);
+                GroupTask[] newTasks = Arrays.copyOf(tasks, tasks.length + 1);
+                newTasks[tasks.length] = groupTask;
+                tasks = newTasks;
+            }
+
+            if (type == TrcTaskMgr.TaskType.PRECONTINUOUS_TASK)
+            {
+                groupTask.preEnabled = true;
+            }
+            else
+            {
+                groupTask.postEnabled = true;
+            }
+        }
+
+        return true;
+    }   //registerTask
+
+    /**
+     * This method unregisters a task type from the group. The task will not be
+     * called for that type after this method returns, except possibly for a
+     * call already in progress on the group thread.
+     *
+     * @param task specifies the task.
+     * @param type specifies the task type.
+     */
+    public void unregisterTask(TrcTaskMgr.Task task, TrcTaskMgr.TaskType type)
+    {
+        final String funcName = "unregisterTask";
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceEnter(
+                    funcName, TrcDbgTrace.TraceLevel.API, "type=%s", type.toString());
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+
+        synchronized (taskLock)
+        {
+            GroupTask groupTask = findTask(task);
+
+            if (groupTask != null)
+            {
+                if (type == TrcTaskMgr.TaskType.PRECONTINUOUS_TASK)
+                {
+                    groupTask.preEnabled = false;
+                }
+                else if (type == TrcTaskMgr.TaskType.POSTCONTINUOUS_TASK)
+                {
+                    groupTask.postEnabled = false;
+                }
+
+                if (!groupTask.preEnabled && !groupTask.postEnabled)
+                {
+                    GroupTask[] oldTasks = tasks;
+                    GroupTask[] newTasks = oldTasks.length > 1? new GroupTask[oldTasks.length - 1]: NO_TASKS;
+
+                    for (int i = 0, j = 0; i < oldTasks.length; i++)
+                    {
+                        if (oldTasks[i] != groupTask)
+                        {
+                            newTasks[j++] = oldTasks[i];
+                        }
+                    }
+                    tasks = newTasks;
+                }
+            }
+        }
+    }   //unregisterTask
+
+    /**
+     * This method sets the run mode passed to the tasks. The group thread only
+     * runs tasks while the run mode is not INVALID_MODE. Setting INVALID_MODE
+     * pauses the group and blocks until the cycle in progress, if any, has
+     * finished, so no group task is running when this method returns.
+     * Typically, this is called by TrcTaskMgr on mode transitions.
+     *
+     * @param runMode specifies the robot run mode.
+     */
+    public void setRunMode(TrcRobot.RunMode runMode)
+    {
+        synchronized (cycleLock)
+        {
+            this.runMode = runMode;
+
+            if (runMode == TrcRobot.RunMode.INVALID_MODE && Thread.currentThread() != groupThread)
+            {
+                boolean interrupted = false;
+
+                while (cycleActive)
+                {
+                    try
+                    {
+                        cycleLock.wait();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        interrupted = true;
+                    }
+                }
+
+                if (interrupted)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }   //setRunMode
+
+    /**
+     * This method stops the group thread. The group cannot be restarted.
+     */
+    public void terminate()
+    {
+        terminated = true;
+        if (groupThread != null)
+        {
+            groupThread.interrupt();
+        }
+    }   //terminate
+
+    /**
+     * This method checks if the group was created inline, without a thread.
+     *
+     * @return true if the group is inline, false otherwise.
+     */
+    public boolean isInline()
+    {
+        return groupThread == null;
+    }   //isInline
+
+    /**
+     * This method runs all cycles of an inline group that are due at the
+     * current HAL time. The first call runs one cycle and each following
+     * cycle is due one period later. If the caller's loop is slower than the
+     * group period, several cycles run back to back so the group keeps its
+     * rate in simulated time. It does nothing for a group with a thread.
+     */
+    public void runInline()
+    {
+        long currNanos = HalUtil.getCurrentTimeNanos();
+
+        if (groupThread == null && !terminated)
+        {
+            if (!inlineStarted)
+            {
+                nextInlineDeadline = currNanos;
+                inlineStarted = true;
+            }
+
+            while (currNanos >= nextInlineDeadline)
+            {
+                runCycle();
+                nextInlineDeadline += periodNanos;
+            }
+        }
+    }   //runInline
+
+    /**
+     * This method returns a one-line summary of the execution time profile of
+     * the group cycles in milliseconds. A cycle that takes longer than the
+     * group period is counted as an overrun. The profile is recorded on the
+     * group thread, so it is only accessed under the cycle lock.
+     *
+     * @return cycle profile summary.
+     */
+    public String getCycleProfileSummary()
+    {
+        synchronized (cycleLock)
+        {
+            return cycleProfile.toString();
+        }
+    }   //getCycleProfileSummary
+
+    /**
+     * This method clears the execution time profile of the group cycles.
+     */
+    public void resetCycleProfile()
+    {
+        synchronized (cycleLock)
+        {
+            cycleProfile.reset();
+        }
+    }   //resetCycleProfile
+
+    /**
+     * This method returns the number of cycles that missed their deadline by
+     * more than a whole period.
+     *
+     * @return number of missed cycles.
+     */
+    public long getCycleOverrunCount()
+    {
+        return cycleOverrunCount;
+    }   //getCycleOverrunCount
+
+    /**
+     * This method finds the given task in the task array. It must be called
+     * with taskLock held.
+     *
+     * @param task specifies the task to look for.
+     * @return group task if found, null otherwise.
+     */
+    private GroupTask findTask(TrcTaskMgr.Task task)
+    {
+        GroupTask[] currTasks = tasks;
+
+        for (int i = 0; i < currTasks.length; i++)
+        {
+            if (currTasks[i].task == task)
+            {
+                return currTasks[i];
+            }
+        }
+
+        return null;
+    }   //findTask
+
+    /**
+     * This method runs one group cycle: all pre-continuous tasks, then all
+     * post-continuous tasks. It does nothing if the group is paused.
+     */
+    private void runCycle()
+    {
+        final String funcName = "runCycle";
+        TrcRobot.RunMode mode;
+
+        synchronized (cycleLock)
+        {
+            mode = runMode;
+            cycleActive = mode != TrcRobot.RunMode.INVALID_MODE;
+        }
+
+        if (cycleActive)
+        {
+            GroupTask[] currTasks = tasks;
+            long startNanos = System.nanoTime();
+
+            try
+            {
+                for (int i = 0; i < currTasks.length; i++)
+                {
+                    if (currTasks[i].preEnabled)
+                    {
+                        if (debugEnabled)
+                        {
+                            dbgTrace.traceInfo(funcName, "Executing PreContinuousTask %s", currTasks[i].taskName);
+                        }
+                        currTasks[i].task.preContinuousTask(mode);
+                    }
+                }
+
+                for (int i = 0; i < currTasks.length; i++)
+                {
+                    if (currTasks[i].postEnabled)
+                    {
+                        if (debugEnabled)
+                        {
+                            dbgTrace.traceInfo(funcName, "Executing PostContinuousTask %s", currTasks[i].taskName);
+                        }
+                        currTasks[i].task.postContinuousTask(mode);
+                    }
+                }
+            }
+            finally
+            {
+                //
+                // Always end the cycle, even if a task threw, so a pending
+                // setRunMode is never left waiting.
+                //
+                synchronized (cycleLock)
+                {
+                    cycleProfile.record(System.nanoTime() - startNanos);
+                    cycleActive = false;
+                    cycleLock.notifyAll();
+                }
+            }
+        }
+    }   //runCycle
+
+    //
+    // Implements Runnable.
+    //
+
+    /**
+     * This method runs the group cycles against absolute deadlines until the
+     * group is terminated.
+     */
+    @Override
+    public void run()
+    {
+        long nextDeadline = System.nanoTime();
+
+        while (!terminated)
+        {
+            runCycle();
+
+            nextDeadline += periodNanos;
+            long sleepNanos = nextDeadline - System.nanoTime();
+            if (-sleepNanos > periodNanos)
+            {
+                //
+                // We are more than a whole period behind, skip the missed
+                // cycles instead of running a burst to catch up.
+                //
+                cycleOverrunCount++;
+                nextDeadline = System.nanoTime();
+            }
+            //
+            // parkNanos has sub-millisecond resolution but may return early,
+            // so keep parking until the deadline. It also returns on interrupt
+            // so terminate() takes effect promptly.
+            //
+            while (sleepNanos > 0 && !terminated)
+            {
+                LockSupport.parkNanos(sleepNanos);
+                sleepNanos = nextDeadline - System.nanoTime();
+            }
+        }
+    }   //run
+
+}   //class TrcTaskGroup
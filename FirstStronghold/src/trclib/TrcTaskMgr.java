@@ -23,8 +23,18 @@
 
 package trclib;
 
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+
+import hallib.HalDashboard;
+import hallib.HalUtil;
 
 /**
  * This class provides methods for the callers to register/unregister
@@ -46,36 +56,86 @@ public class TrcTaskMgr
         /**
          * START_TASK is called one time before a mode is about to start.
          */
-        START_TASK,
+        START_TASK
+        {
+            @Override
+            void invoke(Task task, TrcRobot.RunMode runMode)
+            {
+                task.startTask(runMode);
+            }
+        },
 
         /**
          * STOP_TASK is called one time before a mode is about to end.
          */
-        STOP_TASK,
+        STOP_TASK
+        {
+            @Override
+            void invoke(Task task, TrcRobot.RunMode runMode)
+            {
+                task.stopTask(runMode);
+            }
+        },
 
         /**
          * PREPERIODIC_TASK is called periodically at a rate about 50/sec
          * before runPeriodic().
          */
-        PREPERIODIC_TASK,
+        PREPERIODIC_TASK
+        {
+            @Override
+            void invoke(Task task, TrcRobot.RunMode runMode)
+            {
+                task.prePeriodicTask(runMode);
+            }
+        },
 
         /**
          * POSTPERIODIC_TASK is called periodically at a rate about 50/sec
          * after runPeriodic().
          */
-        POSTPERIODIC_TASK,
+        POSTPERIODIC_TASK
+        {
+            @Override
+            void invoke(Task task, TrcRobot.RunMode runMode)
+            {
+                task.postPeriodicTask(runMode);
+            }
+        },
 
         /**
          * PRECONTINUOUS_TASK is called periodically at a rate as fast as
          * the scheduler is able to loop and is run before runContinuous().
          */
-        PRECONTINUOUS_TASK,
+        PRECONTINUOUS_TASK
+        {
+            @Override
+            void invoke(Task task, TrcRobot.RunMode runMode)
+            {
+                task.preContinuousTask(runMode);
+            }
+        },
 
         /**
          * POSTCONTINUOUS_TASK is called periodically at a rate as fast as
          * the schedule is able to loop and is run after runContinuous().
          */
         POSTCONTINUOUS_TASK
+        {
+            @Override
+            void invoke(Task task, TrcRobot.RunMode runMode)
+            {
+                task.postContinuousTask(runMode);
+            }
+        };
+
+        /**
+         * This method calls the task method corresponding to this task type.
+         *
+         * @param task specifies the task to call.
+         * @param runMode specifies the robot run mode.
+         */
+        abstract void invoke(Task task, TrcRobot.RunMode runMode);
 
     }   //enum TaskType
 
@@ -158,14 +218,19 @@ public class TrcTaskMgr
     /**
      * This class implements TaskObject that will be created whenever
      * a class is registered as a cooperative multi-tasking task. The
-     * created task objects will be entered into an array list of task
-     * objects to be scheduled by the scheduler.
+     * created task objects will be entered into the per task type
+     * arrays to be scheduled by the scheduler.
      */
     private static class TaskObject
     {
-        private HashSet<TaskType> taskTypes;
+        private EnumSet<TaskType> taskTypes;
+        private final boolean[] typeEnabled = new boolean[TaskType.values().length];
+        private final boolean[] typeListed = new boolean[TaskType.values().length];
+        private final boolean[] typePending = new boolean[TaskType.values().length];
+        private final int[] typeSlot = new int[TaskType.values().length];
         private final String taskName;
         private Task task;
+        private TrcLatencyHistogram[] taskProfiles = new TrcLatencyHistogram[TaskType.values().length];
 
         /**
          * Constructor: Creates an instgance of the task object with the given name
@@ -177,7 +242,7 @@ public class TrcTaskMgr
          */
         public TaskObject(final String taskName, Task task)
         {
-            taskTypes = new HashSet<TaskType>();
+            taskTypes = EnumSet.noneOf(TaskType.class);
             this.taskName = taskName;
             this.task = task;
         }   //TaskObject
@@ -191,6 +256,7 @@ public class TrcTaskMgr
          */
         public boolean addTaskType(TaskType type)
         {
+            typeEnabled[type.ordinal()] = true;
             return taskTypes.add(type);
         }   //addTaskType
 
@@ -203,30 +269,21 @@ public class TrcTaskMgr
          */
         public boolean removeTaskType(TaskType type)
         {
+            typeEnabled[type.ordinal()] = false;
             return taskTypes.remove(type);
         }   //removeTaskType
 
-        /**
-         * This method checks if the given task is associated with this task object.
-         *
-         * @param task specifies the task to be checked against.
-         * @return true if it is the same task, false otherwise.
-         */
-        public boolean isSame(Task task)
-        {
-            return task == this.task;
-        }   //isSame
-
         /**
          * This method checks if the given task type is registered with this task object.
+         * This is the authoritative registration state and takes effect immediately,
+         * even while the task arrays are waiting for pending changes to be applied.
          *
          * @param type specifies the task type to be checked against.
-         * @return true if this task is registered as the given type,
-         *         false otherwise.
+         * @return true if this task is registered as the given type, false otherwise.
          */
         public boolean hasType(TaskType type)
         {
-            return taskTypes.contains(type);
+            return typeEnabled[type.ordinal()];
         }   //hasType
 
         /**
@@ -259,18 +316,217 @@ public class TrcTaskMgr
             return task;
         }   //getTask
 
+        /**
+         * This method returns the execution profile of the given task type,
+         * creating it on first use.
+         *
+         * @param type specifies the task type.
+         * @param overrunThreshold specifies the overrun threshold in nanoseconds
+         *                         used if the profile needs to be created.
+         * @return execution profile of the task type.
+         */
+        public TrcLatencyHistogram getProfile(TaskType type, long overrunThreshold)
+        {
+            TrcLatencyHistogram profile = taskProfiles[type.ordinal()];
+
+            if (profile == null)
+            {
+                profile = new TrcLatencyHistogram(overrunThreshold);
+                taskProfiles[type.ordinal()] = profile;
+            }
+
+            return profile;
+        }   //getProfile
+
+        /**
+         * This method returns the execution profile of the given task type.
+         *
+         * @param type specifies the task type.
+         * @return execution profile of the task type, null if it has never been profiled.
+         */
+        public TrcLatencyHistogram peekProfile(TaskType type)
+        {
+            return taskProfiles[type.ordinal()];
+        }   //peekProfile
+
+        /**
+         * This method checks if any task type of this task has recorded profile samples.
+         *
+         * @return true if there are profile samples, false otherwise.
+         */
+        public boolean hasProfileSamples()
+        {
+            for (int i = 0; i < taskProfiles.length; i++)
+            {
+                if (taskProfiles[i] != null && taskProfiles[i].getTotalCount() > 0)
+                {
+                    return true;
+                }
+            }
+
+            return false;
+        }   //hasProfileSamples
+
     }   //class TaskObject
 
+    /**
+     * This class implements a growable array of task objects of one task type
+     * kept in registration order. It is only modified outside of dispatch, so
+     * the dispatcher can walk it directly without taking a snapshot.
+     *
+     * Each task object remembers its slot in the array of each type, so a
+     * removal just clears that slot instead of searching and shifting. The
+     * cleared slots are squeezed out once they make up half of the array, or
+     * when the array is full, which keeps both add and remove amortized O(1)
+     * and the registration order intact. The dispatcher skips cleared slots.
+     */
+    private static class TaskArray
+    {
+        private final int typeIndex;
+        private TaskObject[] tasks = new TaskObject[16];
+        private int size = 0;
+        private int holeCount = 0;
+
+        /**
+         * Constructor: Creates an instance of the task array of the given type.
+         *
+         * @param type specifies the task type of the array.
+         */
+        public TaskArray(TaskType type)
+        {
+            this.typeIndex = type.ordinal();
+        }   //TaskArray
+
+        /**
+         * This method appends a task object to the array.
+         *
+         * @param taskObj specifies the task object to be added.
+         */
+        public void add(TaskObject taskObj)
+        {
+            if (size == tasks.length)
+            {
+                if (holeCount > 0)
+                {
+                    compact();
+                }
+                else
+                {
+                    tasks = Arrays.copyOf(tasks, size*2);
+                }
+            }
+            taskObj.typeSlot[typeIndex] = size;
+            tasks[size++] = taskObj;
+        }   //add
+
+        /**
+         * This method removes a task object from the array by clearing its slot.
+         * The order of the remaining task objects is preserved.
+         *
+         * @param taskObj specifies the task object to be removed.
+         */
+        public void remove(TaskObject taskObj)
+        {
+            int slot = taskObj.typeSlot[typeIndex];
+
+            if (slot >= 0 && slot < size && tasks[slot] == taskObj)
+            {
+                tasks[slot] = null;
+                taskObj.typeSlot[typeIndex] = -1;
+                if (slot == size - 1)
+                {
+                    size--;
+                }
+                else
+                {
+                    holeCount++;
+                    if (holeCount*2 >= size)
+                    {
+                        compact();
+                    }
+                }
+            }
+        }   //remove
+
+        /**
+         * This method squeezes the cleared slots out of the array, updating the
+         * slot of every task object it moves.
+         */
+        private void compact()
+        {
+            int newSize = 0;
+
+            for (int i = 0; i < size; i++)
+            {
+                TaskObject taskObj = tasks[i];
+                if (taskObj != null)
+                {
+                    taskObj.typeSlot[typeIndex] = newSize;
+                    tasks[newSize++] = taskObj;
+                }
+            }
+            Arrays.fill(tasks, newSize, size, null);
+            size = newSize;
+            holeCount = 0;
+        }   //compact
+
+    }   //class TaskArray
+
     private static TrcTaskMgr instance = null;
-    private ArrayList<TaskObject> taskList = new ArrayList<TaskObject>();
+    //
+    // The identity map gives O(1) lookup of the task object of a given task.
+    // Each task type has its own array of task objects in registration order.
+    // Tasks may register or unregister while the dispatcher is walking the
+    // arrays (e.g. a PID drive unregistering itself on target). The registration
+    // state of the task object changes immediately, but the array changes are
+    // deferred to the end of the dispatch pass. Hence, a task unregistered
+    // during a pass is not called again in that pass, a task registered
+    // during a pass is first called in the next pass, and no other task is
+    // skipped or called twice.
+    //
+    // Task group threads may register tasks too, so the registry is guarded
+    // by the registry lock. The dispatcher only holds it while entering and
+    // leaving a pass, never while calling tasks. Any change made while a pass
+    // is in progress, from whatever thread, is deferred until the pass ends.
+    // Only the scheduler thread dispatches, so the per-task profiles are
+    // recorded and read on that thread.
+    //
+    private final Object registryLock = new Object();
+    private IdentityHashMap<Task, TaskObject> taskMap = new IdentityHashMap<Task, TaskObject>();
+    //
+    // A task that unregisters its last type (e.g. a timer that expired) keeps
+    // its task object here until its profile has been dumped and reset, so a
+    // mode dump still shows it. If it registers again before that, the same
+    // task object is put back and its profile keeps accumulating.
+    //
+    private IdentityHashMap<Task, TaskObject> retiredTasks = new IdentityHashMap<Task, TaskObject>();
+    private EnumMap<TaskType, TaskArray> taskArrays = new EnumMap<TaskType, TaskArray>(TaskType.class);
+    private TaskObject[] pendingTasks = new TaskObject[16];
+    private TaskType[] pendingTypes = new TaskType[16];
+    private int pendingCount = 0;
+    private int dispatchDepth = 0;
+    private volatile TrcTaskGroup[] taskGroups = new TrcTaskGroup[0];
+    private final boolean inlineTaskGroups;
+    //
+    // Armed timers are not tasks. They are kept in a min-heap and checked
+    // with a single clock read at the start of each PRECONTINUOUS pass.
+    //
+    private TrcTimerQueue timerQueue = new TrcTimerQueue();
+    private boolean profilingEnabled = false;
+    private long profileOverrunThreshold = 0;
 
     /**
      * Constructor: Creates an instance of the task manager.
      * Typically, there is only one global instance of task manager.
      * Any class that needs to call task manager can call its static
      * method getInstance().
+     *
+     * @param inlineTaskGroups specifies true to create task groups without
+     *                         threads. Their cycles are then run by
+     *                         runInlineTaskGroups() on the HAL clock, which is
+     *                         what a deterministic simulation needs.
      */
-    public TrcTaskMgr()
+    public TrcTaskMgr(boolean inlineTaskGroups)
     {
         if (debugEnabled)
         {
@@ -280,9 +536,23 @@ public class TrcTaskMgr
                     TrcDbgTrace.TraceLevel.API,
                     TrcDbgTrace.MsgLevel.INFO);
         }
+        for (TaskType type: TaskType.values())
+        {
+            taskArrays.put(type, new TaskArray(type));
+        }
+        this.inlineTaskGroups = inlineTaskGroups;
         instance = this;
     }   //TrcTaskMgr
 
+    /**
+     * Constructor: Creates an instance of the task manager whose task groups
+     * run on their own threads.
+     */
+    public TrcTaskMgr()
+    {
+        this(false);
+    }   //TrcTaskMgr
+
     /**
      * This method returns the global instance of TrcTaskMgr.
      *
@@ -316,23 +586,33 @@ public class TrcTaskMgr
                     "task=%s,type=%s", taskName, type.toString());
         }
 
-        //
-        // Check if the task object already exist. If not, create a new task object
-        // and add it to the task object list.
-        //
-        TaskObject taskObj = findTask(task);
-        if (taskObj == null)
-        {
-            taskObj = new TaskObject(taskName, task);
-            taskList.add(taskObj);
-        }
+        TaskObject taskObj;
 
-        if (taskObj != null)
+        synchronized (registryLock)
         {
             //
-            // Register the task type with the task object.
+            // Check if the task object already exist. If not, create a new task object
+            // and add it to the task map.
             //
-            taskObj.addTaskType(type);
+            taskObj = taskMap.get(task);
+            if (taskObj == null)
+            {
+                taskObj = retiredTasks.remove(task);
+                if (taskObj == null)
+                {
+                    taskObj = new TaskObject(taskName, task);
+                }
+                taskMap.put(task, taskObj);
+            }
+
+            //
+            // Register the task type with the task object and add it to the
+            // task array of that type.
+            //
+            if (taskObj.addTaskType(type))
+            {
+                updateTaskArray(taskObj, type);
+            }
         }
 
         if (debugEnabled)
@@ -355,40 +635,365 @@ public class TrcTaskMgr
     public void unregisterTask(Task task, TaskType type)
     {
         final String funcName = "unregisterTask";
-        TaskObject taskObj = findTask(task);
+
+        synchronized (registryLock)
+        {
+            TaskObject taskObj = taskMap.get(task);
+
+            if (debugEnabled)
+            {
+                dbgTrace.traceEnter(
+                        funcName, TrcDbgTrace.TraceLevel.API,
+                        "task=%s,type=%s",
+                        taskObj != null ? taskObj.getName() : "unknown",
+                        type.toString());
+            }
+
+            //
+            // If we found the task object associated with the given task,
+            // unregister the task type from it and if the task object has
+            // no more task type, remove it from the task map.
+            //
+            if (taskObj != null && taskObj.removeTaskType(type))
+            {
+                updateTaskArray(taskObj, type);
+
+                if (taskObj.hasNoType())
+                {
+                    taskMap.remove(task);
+                    if (taskObj.hasProfileSamples())
+                    {
+                        retiredTasks.put(task, taskObj);
+                    }
+                }
+            }
+        }
+
+        if (debugEnabled)
+        {
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
+        }
+    }   //unregisterTask
+
+    /**
+     * This method creates a task group that runs its continuous tasks on its
+     * own thread at the given rate. The task manager keeps the run mode of
+     * the group in sync with the robot (see setRunMode).
+     *
+     * @param groupName specifies the instance name of the group.
+     * @param period specifies the cycle period of the group in seconds.
+     * @param priority specifies the thread priority of the group.
+     * @return the created task group.
+     */
+    public TrcTaskGroup createTaskGroup(final String groupName, double period, int priority)
+    {
+        final String funcName = "createTaskGroup";
 
         if (debugEnabled)
         {
             dbgTrace.traceEnter(
                     funcName, TrcDbgTrace.TraceLevel.API,
-                    "task=%s,type=%s",
-                    taskObj != null ? taskObj.getName() : "unknown",
-                    type.toString());
+                    "group=%s,period=%f,priority=%d", groupName, period, priority);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
         }
 
-        //
-        // If we found the task object associated with the given task,
-        // unregister the task type from it and if the task object has
-        // no more task type, remove it from the task list.
-        //
-        if (taskObj != null)
+        TrcTaskGroup taskGroup = new TrcTaskGroup(groupName, period, priority, inlineTaskGroups);
+        synchronized (registryLock)
         {
-            taskObj.removeTaskType(type);
-            if (taskObj.hasNoType())
+            TrcTaskGroup[] newGroups = Arrays.copyOf(taskGroups, taskGroups.length + 1);
+            newGroups[taskGroups.length] = taskGroup;
+            taskGroups = newGroups;
+        }
+
+        return taskGroup;
+    }   //createTaskGroup
+
+    /**
+     * This method runs the cycles of all task groups that are due at the
+     * current HAL time. It only does something if the task manager was
+     * created with inline task groups. The loop driver calls it once per
+     * continuous loop.
+     */
+    public void runInlineTaskGroups()
+    {
+        if (inlineTaskGroups)
+        {
+            TrcTaskGroup[] groups = taskGroups;
+
+            for (int i = 0; i < groups.length; i++)
             {
-                taskList.remove(taskObj);
+                groups[i].runInline();
             }
         }
+    }   //runInlineTaskGroups
+
+    /**
+     * This method returns the queue of armed timers. It is used by TrcTimer.
+     *
+     * @return timer queue.
+     */
+    TrcTimerQueue getTimerQueue()
+    {
+        return timerQueue;
+    }   //getTimerQueue
+
+    /**
+     * This method sets the run mode of all task groups. The scheduler calls
+     * this with INVALID_MODE before running the stop tasks of a mode and with
+     * the new mode after running its start tasks, so group tasks never run
+     * outside of a mode. Setting INVALID_MODE blocks until every group has
+     * finished the cycle it was running.
+     *
+     * @param runMode specifies the robot run mode.
+     */
+    public void setRunMode(TrcRobot.RunMode runMode)
+    {
+        TrcTaskGroup[] groups = taskGroups;
+
+        for (int i = 0; i < groups.length; i++)
+        {
+            groups[i].setRunMode(runMode);
+        }
+    }   //setRunMode
+
+    /**
+     * This method enables/disables per-task execution profiling. When enabled,
+     * every task call is timed and recorded into a rolling latency histogram
+     * for its task type. Disabling profiling does not discard the recorded data.
+     * The overrun threshold applies to all profiles, including the ones that
+     * already exist, from the next recorded sample on.
+     *
+     * @param enabled specifies true to enable profiling, false to disable.
+     * @param overrunThreshold specifies the execution time in seconds above
+     *                         which a task call is counted as an overrun.
+     */
+    public void setProfilingEnabled(boolean enabled, double overrunThreshold)
+    {
+        final String funcName = "setProfilingEnabled";
 
         if (debugEnabled)
         {
+            dbgTrace.traceEnter(
+                    funcName, TrcDbgTrace.TraceLevel.API,
+                    "enabled=%s,threshold=%f", Boolean.toString(enabled), overrunThreshold);
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
         }
-    }   //unregisterTask
+
+        synchronized (registryLock)
+        {
+            profilingEnabled = enabled;
+            profileOverrunThreshold = (long)(overrunThreshold*1000000000.0);
+            for (TaskObject taskObj: getProfiledTasks())
+            {
+                for (TaskType type: TaskType.values())
+                {
+                    TrcLatencyHistogram profile = taskObj.peekProfile(type);
+                    if (profile != null)
+                    {
+                        profile.setOverrunThreshold(profileOverrunThreshold);
+                    }
+                }
+            }
+        }
+    }   //setProfilingEnabled
+
+    /**
+     * This method checks if per-task execution profiling is enabled.
+     *
+     * @return true if profiling is enabled, false otherwise.
+     */
+    public boolean isProfilingEnabled()
+    {
+        return profilingEnabled;
+    }   //isProfilingEnabled
+
+    /**
+     * This method clears the execution profiles of all registered tasks and
+     * drops the profiles of the tasks that have been unregistered since.
+     */
+    public void resetProfiles()
+    {
+        synchronized (registryLock)
+        {
+            retiredTasks.clear();
+            for (TaskObject taskObj: taskMap.values())
+            {
+                for (TaskType type: TaskType.values())
+                {
+                    TrcLatencyHistogram profile = taskObj.peekProfile(type);
+                    if (profile != null)
+                    {
+                        profile.reset();
+                    }
+                }
+            }
+        }
+
+        TrcTaskGroup[] groups = taskGroups;
+        for (int i = 0; i < groups.length; i++)
+        {
+            groups[i].resetCycleProfile();
+        }
+    }   //resetProfiles
+
+    /**
+     * This method prints the execution profiles of all tasks profiled since the
+     * last reset, sorted by task name. All times are in milliseconds.
+     *
+     * @param out specifies the stream to print to (e.g. System.out).
+     */
+    public void printProfiles(PrintStream out)
+    {
+        out.printf(
+                "%-24s %-20s %s\n",
+                "Task", "Type", "Profile (msec, overrun > " + profileOverrunThreshold/1000000.0 + ")");
+        synchronized (registryLock)
+        {
+            for (TaskObject taskObj: getProfiledTasks())
+            {
+                for (TaskType type: TaskType.values())
+                {
+                    TrcLatencyHistogram profile = taskObj.peekProfile(type);
+                    if (profile != null && profile.getTotalCount() > 0)
+                    {
+                        out.printf("%-24s %-20s %s\n", taskObj.getName(), type.toString(), profile.toString());
+                    }
+                }
+            }
+        }
+
+        TrcTaskGroup[] groups = taskGroups;
+        for (int i = 0; i < groups.length; i++)
+        {
+            out.printf("%-24s %-20s %s\n", groups[i].toString(), "GROUP_CYCLE", groups[i].getCycleProfileSummary());
+        }
+        out.flush();
+    }   //printProfiles
+
+    /**
+     * This method traces the execution profiles of all tasks profiled since the
+     * last reset, one info message per task and task type, sorted by task name.
+     * All times are in milliseconds.
+     *
+     * @param tracer specifies the tracer to log the profiles with.
+     */
+    public void traceProfiles(TrcDbgTrace tracer)
+    {
+        final String funcName = "traceProfiles";
+
+        tracer.traceInfo(
+                funcName, "%-24s %-20s %s",
+                "Task", "Type", "Profile (msec, overrun > " + profileOverrunThreshold/1000000.0 + ")");
+        synchronized (registryLock)
+        {
+            for (TaskObject taskObj: getProfiledTasks())
+            {
+                for (TaskType type: TaskType.values())
+                {
+                    TrcLatencyHistogram profile = taskObj.peekProfile(type);
+                    if (profile != null && profile.getTotalCount() > 0)
+                    {
+                        tracer.traceInfo(
+                                funcName, "%-24s %-20s %s", taskObj.getName(), type.toString(), profile.toString());
+                    }
+                }
+            }
+        }
+
+        TrcTaskGroup[] groups = taskGroups;
+        for (int i = 0; i < groups.length; i++)
+        {
+            tracer.traceInfo(
+                    funcName, "%-24s %-20s %s",
+                    groups[i].toString(), "GROUP_CYCLE", groups[i].getCycleProfileSummary());
+        }
+    }   //traceProfiles
+
+    /**
+     * This method writes the execution profiles of all tasks profiled since the
+     * last reset to a file.
+     *
+     * @param fileName specifies the file path.
+     * @return true if the file was written successfully, false otherwise.
+     */
+    public boolean writeProfiles(String fileName)
+    {
+        final String funcName = "writeProfiles";
+        boolean success = false;
+
+        try
+        {
+            PrintStream out = new PrintStream(fileName);
+            printProfiles(out);
+            out.close();
+            success = true;
+        }
+        catch (FileNotFoundException e)
+        {
+            if (debugEnabled)
+            {
+                dbgTrace.traceErr(funcName, "Failed to open %s: %s", fileName, e.getMessage());
+            }
+        }
+
+        return success;
+    }   //writeProfiles
+
+    /**
+     * This method publishes the execution profiles of all tasks profiled since
+     * the last reset to the dashboard, one key per task and task type.
+     */
+    public void displayProfiles()
+    {
+        synchronized (registryLock)
+        {
+            for (TaskObject taskObj: getProfiledTasks())
+            {
+                for (TaskType type: TaskType.values())
+                {
+                    TrcLatencyHistogram profile = taskObj.peekProfile(type);
+                    if (profile != null && profile.getTotalCount() > 0)
+                    {
+                        HalDashboard.publishString(
+                                "TaskProfile." + taskObj.getName() + "." + type.toString(),
+                                profile.toString());
+                    }
+                }
+            }
+        }
+    }   //displayProfiles
 
     /**
-     * Thie method enumerates the task list and calls all the tasks that
-     * matches the given task type.
+     * This method returns the registered and the retired task objects sorted by
+     * task name, so profile dumps come out in a stable order. It must be called
+     * with the registry lock held.
+     *
+     * @return sorted list of task objects.
+     */
+    private ArrayList<TaskObject> getProfiledTasks()
+    {
+        ArrayList<TaskObject> taskList = new ArrayList<TaskObject>(taskMap.size() + retiredTasks.size());
+
+        taskList.addAll(taskMap.values());
+        taskList.addAll(retiredTasks.values());
+        Collections.sort(
+                taskList,
+                new Comparator<TaskObject>()
+                {
+                    @Override
+                    public int compare(TaskObject taskObj1, TaskObject taskObj2)
+                    {
+                        return taskObj1.getName().compareTo(taskObj2.getName());
+                    }   //compare
+                });
+
+        return taskList;
+    }   //getProfiledTasks
+
+    /**
+     * This method calls all the tasks registered with the given task type
+     * in the order they were registered. A PRECONTINUOUS pass first expires
+     * all timers that are due.
      *
      * @param type specifies the task type to be executed.
      * @param mode specifies the robot run mode.
@@ -396,102 +1001,130 @@ public class TrcTaskMgr
     public void executeTaskType(TaskType type, TrcRobot.RunMode mode)
     {
         final String funcName = "executeTaskType";
+        TaskArray taskArray = taskArrays.get(type);
 
-        for (int i = 0; i < taskList.size(); i++)
+        //
+        // A task that throws must not leave the depth raised, or every later
+        // registry change would be deferred forever.
+        //
+        synchronized (registryLock)
         {
-            TaskObject taskObj = taskList.get(i);
-            if (taskObj.hasType(type))
+            dispatchDepth++;
+        }
+
+        try
+        {
+            if (type == TaskType.PRECONTINUOUS_TASK && timerQueue.size() > 0)
+            {
+                timerQueue.processExpired(HalUtil.getCurrentTime());
+            }
+
+            for (int i = 0; i < taskArray.size; i++)
             {
-                Task task = taskObj.getTask();
-                switch (type)
+                TaskObject taskObj = taskArray.tasks[i];
+
+                //
+                // Skip cleared slots and tasks unregistered earlier in this pass.
+                //
+                if (taskObj == null || !taskObj.hasType(type))
+                {
+                    continue;
+                }
+
+                if (debugEnabled)
                 {
-                    case START_TASK:
-                        if (debugEnabled)
-                        {
-                            dbgTrace.traceInfo(
-                                    funcName,
-                                    "Executing StartTask %s",
-                                    taskObj.getName());
-                        }
-                        task.startTask(mode);
-                        break;
-
-                    case STOP_TASK:
-                        if (debugEnabled)
-                        {
-                            dbgTrace.traceInfo(
-                                    funcName,
-                                    "Executing StopTask %s",
-                                    taskObj.getName());
-                        }
-                        task.stopTask(mode);
-                        break;
-
-                    case PREPERIODIC_TASK:
-                        if (debugEnabled)
-                        {
-                            dbgTrace.traceInfo(
-                                    funcName,
-                                    "Executing PrePeriodicTask %s",
-                                    taskObj.getName());
-                        }
-                        task.prePeriodicTask(mode);
-                        break;
-
-                    case POSTPERIODIC_TASK:
-                        if (debugEnabled)
-                        {
-                            dbgTrace.traceInfo(
-                                    funcName,
-                                    "Executing PostPeriodicTask %s",
-                                    taskObj.getName());
-                        }
-                        task.postPeriodicTask(mode);
-                        break;
-
-                    case PRECONTINUOUS_TASK:
-                        if (debugEnabled)
-                        {
-                            dbgTrace.traceInfo(
-                                    funcName,
-                                    "Executing PreContinuousTask %s",
-                                    taskObj.getName());
-                        }
-                        task.preContinuousTask(mode);
-                        break;
-
-                    case POSTCONTINUOUS_TASK:
-                        if (debugEnabled)
-                        {
-                            dbgTrace.traceInfo(
-                                    funcName,
-                                    "Executing PostContinuousTask %s",
-                                    taskObj.getName());
-                        }
-                        task.postContinuousTask(mode);
-                        break;
+                    dbgTrace.traceInfo(
+                            funcName,
+                            "Executing %s %s",
+                            type.toString(), taskObj.getName());
+                }
+
+                if (profilingEnabled)
+                {
+                    long startNanos = System.nanoTime();
+                    type.invoke(taskObj.getTask(), mode);
+                    taskObj.getProfile(type, profileOverrunThreshold).record(System.nanoTime() - startNanos);
+                }
+                else
+                {
+                    type.invoke(taskObj.getTask(), mode);
+                }
+            }
+        }
+        finally
+        {
+            synchronized (registryLock)
+            {
+                dispatchDepth--;
+                if (dispatchDepth == 0)
+                {
+                    applyPendingChanges();
                 }
             }
         }
     }   //executeTaskType
 
     /**
-     * This method finds the given task in the task list and return it.
+     * This method brings the task array of the given type in sync with the
+     * registration state of the task object. If we are in the middle of
+     * dispatching, the change is queued and applied at the end of the pass.
+     * It must be called with the registry lock held.
      *
-     * @param task specifies the task to look for.
-     * @return true if found, false otherwise.
+     * @param taskObj specifies the task object whose registration changed.
+     * @param type specifies the task type that changed.
      */
-    private TaskObject findTask(Task task)
+    private void updateTaskArray(TaskObject taskObj, TaskType type)
     {
-        for (int i = 0; i < taskList.size(); i++)
+        int index = type.ordinal();
+
+        if (dispatchDepth > 0)
+        {
+            if (!taskObj.typePending[index])
+            {
+                if (pendingCount == pendingTasks.length)
+                {
+                    pendingTasks = Arrays.copyOf(pendingTasks, pendingCount*2);
+                    pendingTypes = Arrays.copyOf(pendingTypes, pendingCount*2);
+                }
+                pendingTasks[pendingCount] = taskObj;
+                pendingTypes[pendingCount] = type;
+                pendingCount++;
+                taskObj.typePending[index] = true;
+            }
+        }
+        else if (taskObj.typeEnabled[index] != taskObj.typeListed[index])
         {
-            TaskObject taskObj = taskList.get(i);
-            if (taskObj.isSame(task))
+            if (taskObj.typeEnabled[index])
             {
-                return taskObj;
+                taskArrays.get(type).add(taskObj);
             }
+            else
+            {
+                taskArrays.get(type).remove(taskObj);
+            }
+            taskObj.typeListed[index] = taskObj.typeEnabled[index];
+        }
+    }   //updateTaskArray
+
+    /**
+     * This method applies the task array changes queued during dispatch.
+     * Multiple changes to the same task and type within a pass collapse into
+     * one, based on the final registration state. It must be called with the
+     * registry lock held.
+     */
+    private void applyPendingChanges()
+    {
+        for (int i = 0; i < pendingCount; i++)
+        {
+            TaskObject taskObj = pendingTasks[i];
+            TaskType type = pendingTypes[i];
+
+            taskObj.typePending[type.ordinal()] = false;
+            updateTaskArray(taskObj, type);
+            pendingTasks[i] = null;
+            pendingTypes[i] = null;
         }
-        return null;
-    }   //findTask
+        pendingCount = 0;
+    }   //applyPendingChanges
 
 }   //class TaskMgr
@@ -0,0 +1,640 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package trclib;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import hallib.HalUtil;
+
+/**
+ * This class implements a binary telemetry recorder. Modules register typed
+ * channels once and record primitive samples into them every loop. The robot
+ * loop marks the start of each loop with a frame. Samples go into a
+ * preallocated lock-free ring buffer, so recording costs a few stores and
+ * never blocks or allocates. A low priority background thread streams the
+ * ring buffer into a memory-mapped log file. If the ring buffer is full,
+ * samples are dropped and counted.
+ *
+ * Channels can be registered at any time. Recording only costs a volatile
+ * read while the recorder is stopped.
+ *
+ * The log file is little-endian and consists of an 8-byte magic "TRCTLM01"
+ * followed by records. Each record starts with a 16-bit tag:
+ *   -1 (FRAME): followed by a 64-bit timestamp in nanoseconds.
+ *   -2 (DEF):   followed by a 16-bit channel ID, an 8-bit channel type and
+ *               a 16-bit length prefixed UTF-8 channel name.
+ *   0 (END):    end of the log. The unwritten part of the last mapped
+ *               region is zero filled, so a log that was not closed
+ *               properly also ends here.
+ *   > 0:        sample of the channel with ID tag - 1, followed by an 8-byte
+ *               double, a 4-byte int or a 1-byte boolean depending on the
+ *               channel type.
+ * A channel is always defined before its first sample, and samples belong to
+ * the most recent frame.
+ */
+public class TrcTelemetry implements Runnable
+{
+    private static final String moduleName = "TrcTelemetry";
+    private static final boolean debugEnabled = false;
+    private TrcDbgTrace dbgTrace = null;
+
+    public enum ChannelType
+    {
+        DOUBLE(8),
+        INT(4),
+        BOOLEAN(1);
+
+        private final int size;
+
+        ChannelType(int size)
+        {
+            this.size = size;
+        }   //ChannelType
+
+        /**
+         * This method returns the sample payload size in bytes.
+         *
+         * @return payload size.
+         */
+        public int getSize()
+        {
+            return size;
+        }   //getSize
+
+    }   //enum ChannelType
+
+    /**
+     * This class implements a telemetry channel. It is created by addChannel.
+     */
+    public class Channel
+    {
+        private final int id;
+        private final String name;
+        private final ChannelType type;
+        private long lastFrame = -1;
+
+        private Channel(int id, String name, ChannelType type)
+        {
+            this.id = id;
+            this.name = name;
+            this.type = type;
+        }   //Channel
+
+        /**
+         * This method returns the channel name.
+         *
+         * @return channel name.
+         */
+        public String toString()
+        {
+            return name;
+        }   //toString
+
+        /**
+         * This method returns the channel ID.
+         *
+         * @return channel ID.
+         */
+        public int getId()
+        {
+            return id;
+        }   //getId
+
+        /**
+         * This method returns the channel type.
+         *
+         * @return channel type.
+         */
+        public ChannelType getType()
+        {
+            return type;
+        }   //getType
+
+        /**
+         * This method records a sample of a DOUBLE channel.
+         *
+         * @param value specifies the sample value.
+         */
+        public void record(double value)
+        {
+            if (recording)
+            {
+                post(id, Double.doubleToRawLongBits(value));
+            }
+        }   //record
+
+        /**
+         * This method records a sample of a DOUBLE channel if it has no sample
+         * in the current frame yet. Sensor inputs that are read several times
+         * per loop use it so that the log holds the first reading of each loop,
+         * which is what the replay feeds back for the whole loop.
+         *
+         * @param value specifies the sample value.
+         */
+        public void recordOncePerFrame(double value)
+        {
+            if (recording && lastFrame != frameCount)
+            {
+                lastFrame = frameCount;
+                post(id, Double.doubleToRawLongBits(value));
+            }
+        }   //recordOncePerFrame
+
+        /**
+         * This method records a sample of an INT channel.
+         *
+         * @param value specifies the sample value.
+         */
+        public void record(int value)
+        {
+            if (recording)
+            {
+                post(id, value);
+            }
+        }   //record
+
+        /**
+         * This method records a sample of a BOOLEAN channel.
+         *
+         * @param value specifies the sample value.
+         */
+        public void record(boolean value)
+        {
+            if (recording)
+            {
+                post(id, value? 1: 0);
+            }
+        }   //record
+
+    }   //class Channel
+
+    public static final int DEF_CAPACITY = 1 << 16;
+    public static final double DEF_FLUSH_PERIOD = 0.05;     //in seconds.
+    public static final String LOG_MAGIC = "TRCTLM01";
+    public static final short TAG_END = 0;
+    public static final short TAG_FRAME = -1;
+    public static final short TAG_DEF = -2;
+    private static final int REGION_SIZE = 4*1024*1024;
+    private static final byte[] MAGIC = LOG_MAGIC.getBytes(Charset.forName("US-ASCII"));
+    private static final int FRAME_ID = -1;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static TrcTelemetry instance = null;
+
+    private final ArrayList<Channel> channels = new ArrayList<Channel>();
+    private final HashSet<String> channelNames = new HashSet<String>();
+    private final int capacity;
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final int[] ids;
+    private final long[] values;
+    private final AtomicLong tail = new AtomicLong(0);
+    private final AtomicLong droppedCount = new AtomicLong(0);
+    private final long flushPeriodNanos;
+    private long head = 0;
+
+    private volatile boolean recording = false;
+    private volatile long frameCount = 0;
+    private volatile boolean stopRequested = false;
+    private Thread writerThread = null;
+    private RandomAccessFile file = null;
+    private FileChannel fileChannel = null;
+    private MappedByteBuffer region = null;
+    private long regionStart = 0;
+    private int definedCount = 0;
+
+    /**
+     * Constructor: Creates an instance of the object.
+     *
+     * @param capacity specifies the number of samples the ring buffer can hold.
+     *                 It is rounded up to a power of two.
+     * @param flushPeriod specifies the interval in seconds between writes.
+     */
+    public TrcTelemetry(int capacity, double flushPeriod)
+    {
+        if (debugEnabled)
+        {
+            dbgTrace = new TrcDbgTrace(
+                    moduleName,
+                    false,
+                    TrcDbgTrace.TraceLevel.API,
+                    TrcDbgTrace.MsgLevel.INFO);
+        }
+
+        if (capacity <= 0)
+        {
+            throw new IllegalArgumentException("capacity must be positive.");
+        }
+
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity)
+        {
+            size <<= 1;
+        }
+
+        this.capacity = size;
+        this.mask = size - 1;
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++)
+        {
+            sequences.set(i, i);
+        }
+        ids = new int[size];
+        values = new long[size];
+        flushPeriodNanos = (long)(flushPeriod*1000000000.0);
+    }   //TrcTelemetry
+
+    /**
+     * This method returns the global telemetry recorder, creating one with
+     * default parameters if necessary.
+     *
+     * @return global telemetry recorder.
+     */
+    public static synchronized TrcTelemetry getInstance()
+    {
+        if (instance == null)
+        {
+            instance = new TrcTelemetry(DEF_CAPACITY, DEF_FLUSH_PERIOD);
+        }
+
+        return instance;
+    }   //getInstance
+
+    /**
+     * This method registers a channel. Channel names must be unique, typically
+     * instanceName.quantity, since the log and the replay tell channels apart
+     * by name.
+     *
+     * @param name specifies the channel name.
+     * @param type specifies the channel type.
+     * @return the new channel.
+     * @throws IllegalArgumentException if a channel with the same name exists.
+     */
+    public Channel addChannel(String name, ChannelType type)
+    {
+        synchronized (channels)
+        {
+            if (channels.size() >= Short.MAX_VALUE)
+            {
+                throw new IllegalStateException("Too many telemetry channels.");
+            }
+            else if (!channelNames.add(name))
+            {
+                throw new IllegalArgumentException("Telemetry channel " + name + " already exists.");
+            }
+
+            Channel channel = new Channel(channels.size(), name, type);
+            channels.add(channel);
+
+            return channel;
+        }
+    }   //addChannel
+
+    /**
+     * This method checks if the recorder is recording.
+     *
+     * @return true if recording, false otherwise.
+     */
+    public boolean isRecording()
+    {
+        return recording;
+    }   //isRecording
+
+    /**
+     * This method returns the number of samples dropped because the ring
+     * buffer was full.
+     *
+     * @return number of dropped samples.
+     */
+    public long getDroppedCount()
+    {
+        return droppedCount.get();
+    }   //getDroppedCount
+
+    /**
+     * This method marks the start of a control loop. It is called by the robot
+     * main loop before the continuous tasks.
+     */
+    public void recordFrame()
+    {
+        //
+        // Only the robot main loop calls this, so the increment does not race.
+        //
+        frameCount++;
+        if (recording)
+        {
+            post(FRAME_ID, HalUtil.getCurrentTimeNanos());
+        }
+    }   //recordFrame
+
+    /**
+     * This method creates the log file and starts recording. It does nothing
+     * if already recording.
+     *
+     * @param fileName specifies the log file path.
+     * @return true if recording has started, false if the file cannot be created.
+     */
+    public synchronized boolean start(String fileName)
+    {
+        final String funcName = "start";
+
+        if (writerThread != null && !writerThread.isAlive())
+        {
+            //
+            // The writer thread died on a write error and has already closed
+            // the file, so the recorder is stopped.
+            //
+            writerThread = null;
+        }
+
+        if (writerThread == null)
+        {
+            try
+            {
+                file = new RandomAccessFile(fileName, "rw");
+                file.setLength(0);
+                fileChannel = file.getChannel();
+                regionStart = 0;
+                region = null;
+                definedCount = 0;
+                ensureSpace(MAGIC.length);
+                region.put(MAGIC);
+            }
+            catch (IOException e)
+            {
+                if (debugEnabled)
+                {
+                    dbgTrace.traceErr(funcName, "Failed to create %s: %s", fileName, e.getMessage());
+                }
+                closeFile();
+                return false;
+            }
+
+            stopRequested = false;
+            recording = true;
+            writerThread = new Thread(this, moduleName);
+            writerThread.setDaemon(true);
+            writerThread.setPriority(Thread.MIN_PRIORITY);
+            writerThread.start();
+        }
+
+        return true;
+    }   //start
+
+    /**
+     * This method stops recording, writes all pending samples and closes the
+     * log file.
+     */
+    public synchronized void stop()
+    {
+        if (writerThread != null)
+        {
+            recording = false;
+            stopRequested = true;
+            LockSupport.unpark(writerThread);
+            try
+            {
+                writerThread.join();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            writerThread = null;
+            closeFile();
+        }
+    }   //stop
+
+    /**
+     * This method posts a sample to the ring buffer. It never blocks.
+     *
+     * @param id specifies the channel ID, or FRAME_ID for a frame.
+     * @param value specifies the sample value bits.
+     */
+    private void post(int id, long value)
+    {
+        long pos;
+        int index;
+
+        for (;;)
+        {
+            pos = tail.get();
+            index = (int)(pos & mask);
+            long diff = sequences.get(index) - pos;
+
+            if (diff == 0)
+            {
+                if (tail.compareAndSet(pos, pos + 1))
+                {
+                    break;
+                }
+            }
+            else if (diff < 0)
+            {
+                droppedCount.incrementAndGet();
+                return;
+            }
+        }
+
+        ids[index] = id;
+        values[index] = value;
+        sequences.lazySet(index, pos + 1);
+    }   //post
+
+    /**
+     * This method runs the writer thread.
+     */
+    @Override
+    public void run()
+    {
+        final String funcName = "run";
+
+        try
+        {
+            while (!stopRequested)
+            {
+                drain();
+                LockSupport.parkNanos(flushPeriodNanos);
+            }
+            drain();
+        }
+        catch (IOException e)
+        {
+            recording = false;
+            if (debugEnabled)
+            {
+                dbgTrace.traceErr(funcName, "Failed to write telemetry: %s", e.getMessage());
+            }
+            closeFile();
+        }
+    }   //run
+
+    /**
+     * This method writes the definitions of new channels and all published
+     * samples to the log file.
+     *
+     * @throws IOException if the log file cannot be extended.
+     */
+    private void drain() throws IOException
+    {
+        Channel[] channelArray;
+
+        synchronized (channels)
+        {
+            channelArray = channels.toArray(new Channel[channels.size()]);
+        }
+
+        for (; definedCount < channelArray.length; definedCount++)
+        {
+            Channel channel = channelArray[definedCount];
+            byte[] name = channel.name.getBytes(UTF8);
+
+            ensureSpace(7 + name.length);
+            region.putShort(TAG_DEF);
+            region.putShort((short)channel.id);
+            region.put((byte)channel.type.ordinal());
+            region.putShort((short)name.length);
+            region.put(name);
+        }
+
+        for (;;)
+        {
+            int index = (int)(head & mask);
+
+            if (sequences.get(index) != head + 1)
+            {
+                break;
+            }
+
+            int id = ids[index];
+            long value = values[index];
+
+            if (id >= channelArray.length)
+            {
+                //
+                // The channel was added after the snapshot, define it on the next pass.
+                //
+                break;
+            }
+            else if (id == FRAME_ID)
+            {
+                ensureSpace(10);
+                region.putShort(TAG_FRAME);
+                region.putLong(value);
+            }
+            else
+            {
+                ChannelType type = channelArray[id].type;
+
+                ensureSpace(2 + type.getSize());
+                region.putShort((short)(id + 1));
+                switch (type)
+                {
+                    case DOUBLE:
+                        region.putLong(value);
+                        break;
+
+                    case INT:
+                        region.putInt((int)value);
+                        break;
+
+                    case BOOLEAN:
+                        region.put((byte)value);
+                        break;
+                }
+            }
+
+            sequences.lazySet(index, head + capacity);
+            head++;
+        }
+    }   //drain
+
+    /**
+     * This method makes sure the mapped region has room for the given number
+     * of bytes, mapping the next region of the file if necessary.
+     *
+     * @param size specifies the number of bytes needed.
+     * @throws IOException if the file cannot be mapped.
+     */
+    private void ensureSpace(int size) throws IOException
+    {
+        if (region == null || region.remaining() < size)
+        {
+            if (region != null)
+            {
+                regionStart += region.position();
+            }
+            region = fileChannel.map(FileChannel.MapMode.READ_WRITE, regionStart, REGION_SIZE);
+            region.order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }   //ensureSpace
+
+    /**
+     * This method truncates the log file to the recorded size and closes it.
+     */
+    private void closeFile()
+    {
+        try
+        {
+            if (fileChannel != null)
+            {
+                long size = regionStart + (region != null? region.position(): 0);
+                if (region != null)
+                {
+                    region.force();
+                    region = null;
+                }
+                fileChannel.truncate(size);
+                fileChannel.close();
+            }
+
+            if (file != null)
+            {
+                file.close();
+            }
+        }
+        catch (IOException e)
+        {
+            if (debugEnabled)
+            {
+                dbgTrace.traceErr("closeFile", "Failed to close telemetry file: %s", e.getMessage());
+            }
+        }
+
+        fileChannel = null;
+        file = null;
+    }   //closeFile
+
+}   //class TrcTelemetry
@@ -28,9 +28,10 @@ import hallib.HalUtil;
 /**
  * This class implements a timer that will generate an event or callback
  * when the timer has expired or canceled. This is useful for doing delays
- * in autonomous.
+ * in autonomous. Armed timers are kept in the timer queue of the task
+ * manager, which checks for expiration once per continuous loop.
  */
-public class TrcTimer implements TrcTaskMgr.Task
+public class TrcTimer
 {
     private static final String moduleName = "TrcTimer";
     private static final boolean debugEnabled = false;
@@ -52,9 +53,15 @@ public class TrcTimer implements TrcTaskMgr.Task
 
     }   //interface Callback
 
+    //
+    // These are maintained by TrcTimerQueue.
+    //
+    double expiredTime;
+    int queueIndex = -1;
+    long armSequence = 0;
+
     private final String instanceName;
-    private double expiredTime;
-    private boolean taskEnabled;
+    private boolean armed;
     private boolean expired;
     private boolean canceled;
     private TrcEvent notifyEvent;
@@ -78,7 +85,7 @@ public class TrcTimer implements TrcTaskMgr.Task
 
         this.instanceName = instanceName;
         this.expiredTime = 0.0;
-        this.taskEnabled = false;
+        this.armed = false;
         this.expired = false;
         this.canceled = false;
         this.notifyEvent = null;
@@ -110,9 +117,9 @@ public class TrcTimer implements TrcTaskMgr.Task
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.API);
         }
 
-        if (taskEnabled)
+        if (armed)
         {
-            setTaskEnabled(false);
+            setArmed(false);
             expiredTime = 0.0;
             expired = false;
             if (notifyEvent != null)
@@ -150,14 +157,14 @@ public class TrcTimer implements TrcTaskMgr.Task
             throw new IllegalArgumentException("Must provide the callback interface.");
         }
 
-        if (taskEnabled)
+        if (armed)
         {
             cancel();
         }
 
         expiredTime = HalUtil.getCurrentTime() + time;
         this.callback = callback;
-        setTaskEnabled(true);
+        setArmed(true);
     }   //set
 
     /**
@@ -185,7 +192,7 @@ public class TrcTimer implements TrcTaskMgr.Task
             throw new IllegalArgumentException("Must provide a notification event.");
         }
 
-        if (taskEnabled)
+        if (armed)
         {
             cancel();
         }
@@ -195,7 +202,7 @@ public class TrcTimer implements TrcTaskMgr.Task
         expiredTime = HalUtil.getCurrentTime() + time;
         notifyEvent = event;
         notifyEvent.clear();
-        setTaskEnabled(true);
+        setArmed(true);
     }   //set
 
     /**
@@ -237,84 +244,57 @@ public class TrcTimer implements TrcTaskMgr.Task
     }   //isCanceled
 
     /**
-     * This private method enables/disables the task that checks for timer expiration.
+     * This private method adds the timer to or removes it from the timer queue
+     * of the task manager.
      *
-     * @param enabled specifies if the timer task is enabled.
+     * @param armed specifies true to add the timer, false to remove it.
      */
-    private void setTaskEnabled(boolean enabled)
+    private void setArmed(boolean armed)
     {
-        final String funcName = "setTaskEnabled";
+        final String funcName = "setArmed";
 
         if (debugEnabled)
         {
             dbgTrace.traceEnter(
                     funcName, TrcDbgTrace.TraceLevel.FUNC,
-                    "enabled=%s", Boolean.toString(enabled));
+                    "armed=%s", Boolean.toString(armed));
         }
 
-        if (enabled)
+        TrcTimerQueue timerQueue = TrcTaskMgr.getInstance().getTimerQueue();
+        if (armed)
         {
-            TrcTaskMgr.getInstance().registerTask(
-                    instanceName, this, TrcTaskMgr.TaskType.PRECONTINUOUS_TASK);
+            timerQueue.add(this);
         }
         else
         {
-            TrcTaskMgr.getInstance().unregisterTask(this, TrcTaskMgr.TaskType.PRECONTINUOUS_TASK);
+            timerQueue.remove(this);
         }
-        this.taskEnabled = enabled;
+        this.armed = armed;
 
         if (debugEnabled)
         {
             dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.FUNC);
         }
-    }   //setTaskEnabled
-
-    //
-    // Implements TrcTaskMgr.Task
-    //
-
-    @Override
-    public void startTask(TrcRobot.RunMode runMode)
-    {
-    }   //startTask
-
-    @Override
-    public void stopTask(TrcRobot.RunMode runMode)
-    {
-    }   //stopTask
-
-    @Override
-    public void prePeriodicTask(TrcRobot.RunMode runMode)
-    {
-    }   //prePeriodicTask
-
-    @Override
-    public void postPeriodicTask(TrcRobot.RunMode runMode)
-    {
-    }   //postPeriodicTask
+    }   //setArmed
 
     /**
-     * This method runs periodically at the fastest rate and checks if the timer
-     * has expired. After the timer expired, the task is disabled and if there is
-     * an event object, it will be signaled.
-     *
-     * @param runMode specifies the current robot run mode.
+     * This method is called by the timer queue after it has taken the timer
+     * off the queue because it has expired. If the event is not null, it will
+     * be signaled, otherwise the callback is called. It does nothing if the
+     * timer was canceled or re-armed after it was taken off the queue.
      */
-    @Override
-    public void preContinuousTask(TrcRobot.RunMode runMode)
+    void expire()
     {
-        final String funcName = "preContinuousTask";
+        final String funcName = "expire";
 
         if (debugEnabled)
         {
-            dbgTrace.traceEnter(
-                    funcName, TrcDbgTrace.TraceLevel.TASK,
-                    "mode=%s", runMode.toString());
+            dbgTrace.traceEnter(funcName, TrcDbgTrace.TraceLevel.FUNC);
         }
 
-        if (HalUtil.getCurrentTime() >= expiredTime)
+        if (armed && queueIndex < 0)
         {
-            setTaskEnabled(false);
+            armed = false;
 
             if (debugEnabled)
             {
@@ -324,29 +304,29 @@ public class TrcTimer implements TrcTaskMgr.Task
                         notifyEvent != null? notifyEvent.toString(): "null");
             }
 
+            //
+            // Update the state before notifying in case the callback re-arms
+            // the timer.
+            //
+            expiredTime = 0.0;
+            expired = true;
+
             if (notifyEvent != null)
             {
-                notifyEvent.set(true);
+                TrcEvent event = notifyEvent;
                 notifyEvent = null;
+                event.set(true);
             }
             else if (callback != null)
             {
                 callback.timerCallback(this,  false);
             }
-
-            expiredTime = 0.0;
-            expired = true;
         }
 
         if (debugEnabled)
         {
-            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.TASK);
+            dbgTrace.traceExit(funcName, TrcDbgTrace.TraceLevel.FUNC);
         }
-    }   //preContinuousTask
-
-    @Override
-    public void postContinuousTask(TrcRobot.RunMode runMode)
-    {
-    }   //postContinuousTask
+    }   //expire
 
 }   //class TrcTimer
@@ -0,0 +1,243 @@
+/*
+ * Titan Robotics Framework Library
+ * Copyright (c) 2015 Titan Robotics Club (http://www.titanrobotics.net)
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package trclib;
+
+/**
+ * This class implements the queue of armed timers owned by the task manager.
+ * The timers are kept in a binary min-heap ordered by expiration time, so
+ * arming and canceling a timer is O(log n) and checking for expiration is
+ * O(1) when nothing has expired. Timers with the same expiration time expire
+ * in the order they were armed. Timers may be armed from task group threads,
+ * so the heap is only accessed with the queue locked. Expired timers are
+ * notified after the lock is released.
+ */
+class TrcTimerQueue
+{
+    private TrcTimer[] heap = new TrcTimer[16];
+    private int size = 0;
+    private TrcTimer[] expiredTimers = new TrcTimer[16];
+    private long armSequence = 0;
+
+    /**
+     * This method returns the number of armed timers.
+     *
+     * @return number of armed timers.
+     */
+    public synchronized int size()
+    {
+        return size;
+    }   //size
+
+    /**
+     * This method returns the earliest expiration time of all armed timers.
+     *
+     * @return earliest expiration time in seconds, or Double.POSITIVE_INFINITY
+     *         if there is no armed timer.
+     */
+    public synchronized double getNextExpiredTime()
+    {
+        return size > 0? heap[0].expiredTime: Double.POSITIVE_INFINITY;
+    }   //getNextExpiredTime
+
+    /**
+     * This method adds a timer to the queue. The expiration time of the timer
+     * must already be set.
+     *
+     * @param timer specifies the timer to add.
+     */
+    public synchronized void add(TrcTimer timer)
+    {
+        if (timer.queueIndex >= 0)
+        {
+            remove(timer);
+        }
+
+        if (size == heap.length)
+        {
+            TrcTimer[] newHeap = new TrcTimer[size*2];
+            System.arraycopy(heap, 0, newHeap, 0, size);
+            heap = newHeap;
+        }
+
+        timer.armSequence = armSequence++;
+        heap[size] = timer;
+        timer.queueIndex = size;
+        size++;
+        siftUp(timer.queueIndex);
+    }   //add
+
+    /**
+     * This method removes a timer from the queue. It does nothing if the timer
+     * is not in the queue.
+     *
+     * @param timer specifies the timer to remove.
+     */
+    public synchronized void remove(TrcTimer timer)
+    {
+        int index = timer.queueIndex;
+
+        if (index >= 0 && index < size && heap[index] == timer)
+        {
+            size--;
+            timer.queueIndex = -1;
+            if (index < size)
+            {
+                heap[index] = heap[size];
+                heap[index].queueIndex = index;
+                heap[size] = null;
+                siftDown(index);
+                siftUp(index);
+            }
+            else
+            {
+                heap[size] = null;
+            }
+        }
+    }   //remove
+
+    /**
+     * This method expires all timers whose expiration time is at or before the
+     * given time. The expired timers are taken off the queue before any of
+     * them is notified, so a timer re-armed by its own callback is not
+     * expired again until the next call.
+     *
+     * @param currTime specifies the current time in seconds.
+     */
+    public void processExpired(double currTime)
+    {
+        int expiredCount = 0;
+
+        synchronized (this)
+        {
+            while (size > 0 && heap[0].expiredTime <= currTime)
+            {
+                TrcTimer timer = heap[0];
+
+                remove(timer);
+                if (expiredCount == expiredTimers.length)
+                {
+                    TrcTimer[] newArray = new TrcTimer[expiredCount*2];
+                    System.arraycopy(expiredTimers, 0, newArray, 0, expiredCount);
+                    expiredTimers = newArray;
+                }
+                expiredTimers[expiredCount] = timer;
+                expiredCount++;
+            }
+        }
+
+        for (int i = 0; i < expiredCount; i++)
+        {
+            TrcTimer timer = expiredTimers[i];
+
+            expiredTimers[i] = null;
+            timer.expire();
+        }
+    }   //processExpired
+
+    /**
+     * This method checks if the timer at the first index expires before the
+     * timer at the second index.
+     *
+     * @param i specifies the first heap index.
+     * @param j specifies the second heap index.
+     * @return true if heap[i] expires first, false otherwise.
+     */
+    private boolean isEarlier(int i, int j)
+    {
+        TrcTimer a = heap[i];
+        TrcTimer b = heap[j];
+
+        return a.expiredTime < b.expiredTime ||
+               a.expiredTime == b.expiredTime && a.armSequence < b.armSequence;
+    }   //isEarlier
+
+    /**
+     * This method swaps two heap entries and updates their indices.
+     *
+     * @param i specifies the first heap index.
+     * @param j specifies the second heap index.
+     */
+    private void swap(int i, int j)
+    {
+        TrcTimer timer = heap[i];
+
+        heap[i] = heap[j];
+        heap[j] = timer;
+        heap[i].queueIndex = i;
+        heap[j].queueIndex = j;
+    }   //swap
+
+    /**
+     * This method moves a heap entry up until its parent expires no later.
+     *
+     * @param index specifies the heap index of the entry.
+     */
+    private void siftUp(int index)
+    {
+        while (index > 0)
+        {
+            int parent = (index - 1)/2;
+
+            if (!isEarlier(index, parent))
+            {
+                break;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }   //siftUp
+
+    /**
+     * This method moves a heap entry down until both its children expire no
+     * earlier.
+     *
+     * @param index specifies the heap index of the entry.
+     */
+    private void siftDown(int index)
+    {
+        for (;;)
+        {
+            int child = 2*index + 1;
+
+            if (child >= size)
+            {
+                break;
+            }
+
+            if (child + 1 < size && isEarlier(child + 1, child))
+            {
+                child++;
+            }
+
+            if (!isEarlier(child, index))
+            {
+                break;
+            }
+            swap(index, child);
+            index = child;
+        }
+    }   //siftDown
+
+}   //class TrcTimerQueue
@@ -77,6 +77,20 @@ public class TrcUtil
         return limit(value, -1.0, 1.0);
     }   //limit
 
+    /**
+     * This method returns the magnitude of the given vector. Unlike
+     * Math.hypot, it does not guard against overflow, which makes it much
+     * cheaper for the small values in robot geometry.
+     *
+     * @param x specifies the x component of the vector.
+     * @param y specifies the y component of the vector.
+     * @return the magnitude of the vector.
+     */
+    public static double magnitude(double x, double y)
+    {
+        return Math.sqrt(x*x + y*y);
+    }   //magnitude
+
     /**
      * This method scales the given value from the source range to the target range.
      *
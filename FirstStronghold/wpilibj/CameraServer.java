@@ -7,18 +7,18 @@
 
 package edu.wpi.first.wpilibj;
 
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
 import java.net.InetSocketAddress;
-import java.net.ServerSocket;
-import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -44,6 +44,9 @@ public class CameraServer {
   private static final int kHardwareCompression = -1;
   private static final String kDefaultCameraName = "cam1";
   private static final int kMaxImageSize = 200000;
+  private static final int kMaxClients = 4;
+  // One buffer being captured, one latest frame and one being sent per client.
+  private static final int kNumImageBuffers = kMaxClients + 2;
   private static CameraServer server;
 
   public static CameraServer getInstance() {
@@ -60,14 +63,52 @@ public class CameraServer {
   private USBCamera m_camera;
   private CameraData m_imageData;
   private Deque<ByteBuffer> m_imageDataPool;
+  private int m_jpegStartHint = 0;
+  private long m_frameSequence = 0;
+  private int m_clientFps = 0;
+  private Selector m_selector;
 
+  /**
+   * A captured frame shared by every client that is sending it. The server
+   * holds one reference while the frame is the latest one and each client
+   * holds one while sending it; the buffer goes back to the pool when the
+   * last reference is released.
+   */
   private class CameraData {
     RawData data;
     int start;
+    int end;
+    long sequence;
+    int refCount;
 
     public CameraData(RawData d, int s) {
       data = d;
       start = s;
+      end = d.getBuffer().limit();
+      refCount = 1;
+    }
+  }
+
+  /**
+   * State of one dashboard connection. Only the server thread touches it, and
+   * the buffers are reused so that sending a frame does not allocate.
+   */
+  private static class StreamClient {
+    final SocketChannel channel;
+    final ByteBuffer request = ByteBuffer.allocate(12);
+    final ByteBuffer header = ByteBuffer.allocateDirect(kMagicNumber.length + 4);
+    final ByteBuffer[] buffers = new ByteBuffer[2];
+    SelectionKey key;
+    boolean streaming = false;
+    long periodNanos;
+    long nextFrameTime;
+    long lastSequence;
+    CameraData frame = null;
+    int frameOffset;
+
+    StreamClient(SocketChannel channel) {
+      this.channel = channel;
+      buffers[0] = header;
     }
   }
 
@@ -75,8 +116,8 @@ public class CameraServer {
     m_quality = 50;
     m_camera = null;
     m_imageData = null;
-    m_imageDataPool = new ArrayDeque<>(3);
-    for (int i = 0; i < 3; i++) {
+    m_imageDataPool = new ArrayDeque<>(kNumImageBuffers);
+    for (int i = 0; i < kNumImageBuffers; i++) {
       m_imageDataPool.addLast(ByteBuffer.allocateDirect(kMaxImageSize));
     }
     serverThread = new Thread(new Runnable() {
@@ -85,8 +126,6 @@ public class CameraServer {
           serve();
         } catch (IOException e) {
           // do stuff here
-        } catch (InterruptedException e) {
-          // do stuff here
         }
       }
     });
@@ -95,13 +134,48 @@ public class CameraServer {
   }
 
   private synchronized void setImageData(RawData data, int start) {
-    if (m_imageData != null && m_imageData.data != null) {
-      m_imageData.data.free();
-      if (m_imageData.data.getBuffer() != null)
-        m_imageDataPool.addLast(m_imageData.data.getBuffer());
-      m_imageData = null;
+    CameraData frame = new CameraData(data, start);
+    frame.sequence = ++m_frameSequence;
+    if (m_imageData != null) {
+      releaseImageData(m_imageData);
+    }
+    m_imageData = frame;
+    notifyAll();
+    if (m_selector != null) {
+      m_selector.wakeup();
+    }
+  }
+
+  /**
+   * Take a reference to the latest frame if it is newer than the given one.
+   *
+   * @param sequence The sequence number of the last frame the caller has seen
+   * @return The latest frame, or null if there is no newer frame
+   */
+  private synchronized CameraData acquireImageData(long sequence) {
+    if (m_imageData == null || m_imageData.sequence <= sequence) {
+      return null;
+    }
+    m_imageData.refCount++;
+    return m_imageData;
+  }
+
+  private synchronized boolean hasImageDataAfter(long sequence) {
+    return m_imageData != null && m_imageData.sequence > sequence;
+  }
+
+  /**
+   * Drop a reference to a frame, returning its buffer to the pool when no one
+   * is using it anymore.
+   */
+  private synchronized void releaseImageData(CameraData imageData) {
+    if (--imageData.refCount > 0) {
+      return;
+    }
+    imageData.data.free();
+    if (imageData.data.getBuffer() != null) {
+      m_imageDataPool.addLast(imageData.data.getBuffer());
     }
-    m_imageData = new CameraData(data, start);
     notifyAll();
   }
 
@@ -133,11 +207,7 @@ public class CameraServer {
     /* Find the start of the JPEG data */
     int index = 0;
     if (hwClient) {
-      while (index < buffer.limit() - 1) {
-        if ((buffer.get(index) & 0xff) == 0xFF && (buffer.get(index + 1) & 0xff) == 0xD8)
-          break;
-        index++;
-      }
+      index = findJpegStart(buffer);
     }
 
     if (buffer.limit() - index - 1 <= 2) {
@@ -147,6 +217,39 @@ public class CameraServer {
     setImageData(data, index);
   }
 
+  /**
+   * Find the 0xFFD8 start of image marker of the JPEG data in a flattened
+   * image. The flatten header has the same size from frame to frame, so the
+   * offset found last time is checked first. Otherwise the buffer is scanned
+   * two bytes at a time: the byte at every odd offset is looked at, and only
+   * when it is 0xFF or 0xD8 can a marker overlap it.
+   *
+   * @param buffer The flattened image
+   * @return The offset of the marker, or the buffer limit if there is none
+   */
+  private int findJpegStart(ByteBuffer buffer) {
+    int limit = buffer.limit();
+    int hint = m_jpegStartHint;
+
+    if (hint < limit - 1 && buffer.get(hint) == (byte) 0xFF && buffer.get(hint + 1) == (byte) 0xD8)
+      return hint;
+
+    int index = 0;
+    while (index < limit - 1) {
+      byte b = buffer.get(index + 1);
+      if (b == (byte) 0xD8 && buffer.get(index) == (byte) 0xFF) {
+        m_jpegStartHint = index;
+        return index;
+      } else if (b == (byte) 0xFF && index + 2 < limit && buffer.get(index + 2) == (byte) 0xD8) {
+        m_jpegStartHint = index + 1;
+        return index + 1;
+      }
+      index += 2;
+    }
+
+    return limit;
+  }
+
   /**
    * Start automatically capturing images to send to the dashboard. You should
    * call this method to just see a camera feed on the dashboard without doing
@@ -183,6 +286,9 @@ public class CameraServer {
       return;
     m_autoCaptureStarted = true;
     m_camera = camera;
+    if (m_clientFps > 0) {
+      m_camera.setFPS(m_clientFps);
+    }
 
     m_camera.startCapture();
 
@@ -204,6 +310,14 @@ public class CameraServer {
       synchronized (this) {
         hwClient = m_hwClient;
         if (hwClient) {
+          // Slow clients may hold every buffer; wait for one to be released.
+          while (m_imageDataPool.isEmpty()) {
+            try {
+              wait();
+            } catch (InterruptedException ex) {
+              return;
+            }
+          }
           dataBuffer = m_imageDataPool.removeLast();
         }
       }
@@ -285,95 +399,226 @@ public class CameraServer {
   /**
    * Run the M-JPEG server.
    *
-   * This function listens for a connection from the dashboard in a background
-   * thread, then sends back the M-JPEG stream.
+   * One thread serves every dashboard connection with a selector over
+   * non-blocking channels. A frame is shared by reference between all the
+   * clients sending it, and each client writes it with gathering writes of its
+   * own header buffer and the image buffer, so the JPEG goes straight from the
+   * NIVision buffer to the sockets without a copy. Each client is sent at most
+   * one frame per the period it asked for; frames that arrive while it is still
+   * sending are dropped, and it picks up the latest one when it is done.
    *
-   * @throws IOException if the Socket connection fails
-   * @throws InterruptedException if the sleep is interrupted
+   * @throws IOException if the server socket cannot be opened
    */
-  protected void serve() throws IOException, InterruptedException {
+  protected void serve() throws IOException {
 
-    ServerSocket socket = new ServerSocket();
-    socket.setReuseAddress(true);
+    Selector selector = Selector.open();
+    ServerSocketChannel serverChannel = ServerSocketChannel.open();
+    serverChannel.socket().setReuseAddress(true);
     InetSocketAddress address = new InetSocketAddress(kPort);
-    socket.bind(address);
+    serverChannel.socket().bind(address);
+    serverChannel.configureBlocking(false);
+    serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    synchronized (this) {
+      m_selector = selector;
+    }
 
+    List<StreamClient> clients = new ArrayList<>(kMaxClients);
     while (true) {
-      try {
-        Socket s = socket.accept();
-
-        DataInputStream is = new DataInputStream(s.getInputStream());
-        DataOutputStream os = new DataOutputStream(s.getOutputStream());
+      long timeout = dispatchFrames(clients);
+      if (timeout > 0) {
+        selector.select(timeout);
+      } else {
+        selector.select();
+      }
 
-        int fps = is.readInt();
-        int compression = is.readInt();
-        int size = is.readInt();
+      Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+      while (keys.hasNext()) {
+        SelectionKey key = keys.next();
+        keys.remove();
+        if (!key.isValid())
+          continue;
 
-        if (compression != kHardwareCompression) {
-          DriverStation.reportError("Choose \"USB Camera HW\" on the dashboard", false);
-          s.close();
+        if (key.isAcceptable()) {
+          try {
+            acceptClient(serverChannel, selector, clients);
+          } catch (IOException ex) {
+            DriverStation.reportError(ex.getMessage(), true);
+          }
           continue;
         }
 
-        // Wait for the camera
-        synchronized (this) {
-          System.out.println("Camera not yet ready, awaiting image");
-          if (m_camera == null)
-            wait();
-          m_hwClient = compression == kHardwareCompression;
-          if (!m_hwClient)
-            setQuality(100 - compression);
-          else if (m_camera != null)
-            m_camera.setFPS(fps);
-          setSize(size);
+        StreamClient client = (StreamClient) key.attachment();
+        try {
+          if (key.isReadable() && !readRequest(client)) {
+            closeClient(client, clients);
+            continue;
+          }
+          if (key.isValid() && key.isWritable() && client.frame != null) {
+            sendFrame(client);
+          }
+        } catch (IOException | UnsupportedOperationException ex) {
+          DriverStation.reportError(ex.getMessage(), true);
+          closeClient(client, clients);
         }
+      }
+    }
+  }
 
-        long period = (long) (1000 / (1.0 * fps));
-        while (true) {
-          long t0 = System.currentTimeMillis();
-          CameraData imageData = null;
-          synchronized (this) {
-            wait();
-            imageData = m_imageData;
-            m_imageData = null;
-          }
+  private void acceptClient(ServerSocketChannel serverChannel, Selector selector,
+      List<StreamClient> clients) throws IOException {
+    SocketChannel channel = serverChannel.accept();
+    if (channel == null)
+      return;
 
-          if (imageData == null)
-            continue;
-          // Set the buffer position to the start of the data,
-          // and then create a new wrapper for the data at
-          // exactly that position
-          imageData.data.getBuffer().position(imageData.start);
-          byte[] imageArray = new byte[imageData.data.getBuffer().remaining()];
-          imageData.data.getBuffer().get(imageArray, 0, imageData.data.getBuffer().remaining());
-
-          // write numbers
-          try {
-            os.write(kMagicNumber);
-            os.writeInt(imageArray.length);
-            os.write(imageArray);
-            os.flush();
-            long dt = System.currentTimeMillis() - t0;
-
-            if (dt < period) {
-              Thread.sleep(period - dt);
-            }
-          } catch (IOException | UnsupportedOperationException ex) {
-            DriverStation.reportError(ex.getMessage(), true);
-            break;
-          } finally {
-            imageData.data.free();
-            if (imageData.data.getBuffer() != null) {
-              synchronized (this) {
-                m_imageDataPool.addLast(imageData.data.getBuffer());
-              }
-            }
-          }
+    if (clients.size() >= kMaxClients) {
+      DriverStation.reportError("Too many camera clients, dropping the connection", false);
+      channel.close();
+      return;
+    }
+
+    channel.configureBlocking(false);
+    StreamClient client = new StreamClient(channel);
+    client.key = channel.register(selector, SelectionKey.OP_READ, client);
+    clients.add(client);
+  }
+
+  private void closeClient(StreamClient client, List<StreamClient> clients) {
+    clients.remove(client);
+    client.key.cancel();
+    if (client.frame != null) {
+      releaseImageData(client.frame);
+      client.frame = null;
+    }
+    try {
+      client.channel.close();
+    } catch (IOException ex) {
+      // the connection is gone either way
+    }
+  }
+
+  /**
+   * Read the request the dashboard sends when it connects.
+   *
+   * @param client The client to read from
+   * @return false if the client has closed the connection or cannot be served
+   */
+  private boolean readRequest(StreamClient client) throws IOException {
+    if (client.streaming) {
+      // The dashboard sends nothing after its request; reading only tells us
+      // when it has gone away.
+      client.request.clear();
+      return client.channel.read(client.request) >= 0;
+    }
+
+    if (client.channel.read(client.request) < 0)
+      return false;
+    if (client.request.hasRemaining())
+      return true;
+
+    client.request.flip();
+    int fps = client.request.getInt();
+    int compression = client.request.getInt();
+    int size = client.request.getInt();
+
+    if (compression != kHardwareCompression) {
+      DriverStation.reportError("Choose \"USB Camera HW\" on the dashboard", false);
+      return false;
+    }
+
+    synchronized (this) {
+      m_hwClient = true;
+      // The camera runs at the fastest rate any dashboard has asked for, the
+      // slower ones are limited per client.
+      if (fps > m_clientFps) {
+        m_clientFps = fps;
+        if (m_camera != null)
+          m_camera.setFPS(m_clientFps);
+      }
+      setSize(size);
+    }
+
+    client.periodNanos = fps > 0 ? 1000000000L / fps : 0;
+    client.nextFrameTime = System.nanoTime();
+    client.streaming = true;
+    return true;
+  }
+
+  /**
+   * Start sending the latest frame to every idle client whose frame period has
+   * elapsed.
+   *
+   * @param clients The connected clients
+   * @return How long to wait in milliseconds before a rate limited client is
+   *         due a waiting frame, or 0 if there is none
+   */
+  private long dispatchFrames(List<StreamClient> clients) {
+    long now = System.nanoTime();
+    long timeout = 0;
+
+    for (int i = clients.size() - 1; i >= 0; i--) {
+      StreamClient client = clients.get(i);
+      if (!client.streaming || client.frame != null)
+        continue;
+
+      long wait = client.nextFrameTime - now;
+      if (wait > 0) {
+        if (hasImageDataAfter(client.lastSequence)) {
+          long waitMs = wait / 1000000 + 1;
+          if (timeout == 0 || waitMs < timeout)
+            timeout = waitMs;
         }
-      } catch (IOException ex) {
-        DriverStation.reportError(ex.getMessage(), true);
         continue;
       }
+
+      CameraData frame = acquireImageData(client.lastSequence);
+      if (frame == null)
+        continue;
+
+      client.frame = frame;
+      client.frameOffset = 0;
+      client.lastSequence = frame.sequence;
+      client.nextFrameTime = now + client.periodNanos;
+      client.header.clear();
+      client.header.put(kMagicNumber);
+      client.header.putInt(frame.end - frame.start);
+      client.header.flip();
+      try {
+        sendFrame(client);
+      } catch (IOException | UnsupportedOperationException ex) {
+        DriverStation.reportError(ex.getMessage(), true);
+        closeClient(client, clients);
+      }
+    }
+
+    return timeout;
+  }
+
+  /**
+   * Write as much of the client's current frame as the socket takes without
+   * blocking, and wait for the socket to be writable again if it is not done.
+   */
+  private void sendFrame(StreamClient client) throws IOException {
+    CameraData frame = client.frame;
+    ByteBuffer data = frame.data.getBuffer();
+
+    // The buffer is shared by every client sending this frame, so its position
+    // and limit only belong to this client for the duration of the write.
+    data.limit(frame.end);
+    data.position(frame.start + client.frameOffset);
+    client.buffers[1] = data;
+    try {
+      client.channel.write(client.buffers);
+    } finally {
+      client.buffers[1] = null;
+    }
+    client.frameOffset = data.position() - frame.start;
+
+    if (client.header.hasRemaining() || data.hasRemaining()) {
+      client.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    } else {
+      client.frame = null;
+      releaseImageData(frame);
+      client.key.interestOps(SelectionKey.OP_READ);
     }
   }
 }